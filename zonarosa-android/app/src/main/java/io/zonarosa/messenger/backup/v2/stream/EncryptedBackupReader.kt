@@ -9,11 +9,10 @@ import androidx.annotation.VisibleForTesting
 import com.google.common.io.CountingInputStream
 import io.zonarosa.core.models.ServiceId.ACI
 import io.zonarosa.core.models.backup.MessageBackupKey
-import io.zonarosa.core.util.readFully
+import io.zonarosa.core.util.drain
 import io.zonarosa.core.util.readNBytesOrThrow
 import io.zonarosa.core.util.readVarInt32
-import io.zonarosa.core.util.stream.LimitedInputStream
-import io.zonarosa.core.util.stream.MacInputStream
+import io.zonarosa.core.util.stream.CipherPipelineInputStream
 import io.zonarosa.core.util.writeVarInt32
 import io.zonarosa.libzonarosa.messagebackup.BackupForwardSecrecyToken
 import io.zonarosa.messenger.backup.v2.proto.BackupInfo
@@ -24,7 +23,6 @@ import java.io.IOException
 import java.io.InputStream
 import java.util.zip.GZIPInputStream
 import javax.crypto.Cipher
-import javax.crypto.CipherInputStream
 import javax.crypto.Mac
 import javax.crypto.spec.IvParameterSpec
 import javax.crypto.spec.SecretKeySpec
@@ -108,14 +106,15 @@ class EncryptedBackupReader private constructor(
         init(SecretKeySpec(macKey, "HmacSHA256"))
       }
 
-      val macStream = MacInputStream(
-        wrapped = LimitedInputStream(dataStream, maxBytes = streamLength - MAC_SIZE),
+      // Intentionally not closed, since that would close the underlying stream before we've read the MAC off of the end
+      CipherPipelineInputStream(
+        source = dataStream,
+        cipher = null,
+        inputLength = streamLength - MAC_SIZE,
         mac = mac
-      )
-
-      macStream.readFully(false)
+      ).drain()
 
-      val calculatedMac = macStream.mac.doFinal()
+      val calculatedMac = mac.doFinal()
       val expectedMac = dataStream.readNBytesOrThrow(MAC_SIZE)
 
       if (!calculatedMac.contentEquals(expectedMac)) {
@@ -158,12 +157,10 @@ class EncryptedBackupReader private constructor(
     }
 
     stream = GZIPInputStream(
-      CipherInputStream(
-        LimitedInputStream(
-          wrapped = countingStream,
-          maxBytes = encryptedLength - MAC_SIZE
-        ),
-        cipher
+      CipherPipelineInputStream(
+        source = countingStream,
+        cipher = cipher,
+        inputLength = encryptedLength - iv.size - MAC_SIZE
       )
     )
     backupInfo = readHeader()
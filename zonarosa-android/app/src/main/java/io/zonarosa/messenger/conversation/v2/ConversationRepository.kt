@@ -156,6 +156,7 @@ class ConversationRepository(
       )
       val config = PagingConfig.Builder().setPageSize(25)
         .setBufferPages(2)
+        .setMaxCachedPages(40)
         .setStartIndex(max(metadata.getStartPosition(), 0))
         .build()
 
@@ -14,16 +14,21 @@ import io.zonarosa.messenger.util.concurrent.SerialExecutor;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Allows listening to database changes to varying degrees of specificity.
  * <p>
  * A replacement for the observer system in {@link DatabaseTable}. We should move to this over time.
+ * <p>
+ * Notifications made during a transaction are collected, de-duplicated by observer key, and handed to the executor as a single batch once the
+ * transaction commits, so bulk operations (like draining the inbox or restoring a backup) don't flood the executor with redundant tasks.
  */
 public class DatabaseObserver {
 
@@ -35,22 +40,29 @@ public class DatabaseObserver {
   private static final String KEY_CHAT_COLORS           = "ChatColors";
   private static final String KEY_STICKERS              = "Stickers";
   private static final String KEY_STICKER_PACKS         = "StickerPacks";
-  private static final String KEY_ATTACHMENTS           = "Attachments";
+  private static final String KEY_ATTACHMENT_UPDATES    = "AttachmentUpdates";
+  private static final String KEY_ATTACHMENT_DELETES    = "AttachmentDeletes";
   private static final String KEY_MESSAGE_UPDATE        = "MessageUpdate:";
   private static final String KEY_MESSAGE_INSERT        = "MessageInsert:";
   private static final String KEY_NOTIFICATION_PROFILES = "NotificationProfiles";
   private static final String KEY_RECIPIENT             = "Recipient";
-  private static final String KEY_STORY_OBSERVER        = "Story";
+  private static final String KEY_STORY_OBSERVER        = "Story:";
   private static final String KEY_SCHEDULED_MESSAGES    = "ScheduledMessages";
   private static final String KEY_CONVERSATION_DELETES  = "ConversationDeletes";
 
   private static final String KEY_CALL_UPDATES      = "CallUpdates";
-  private static final String KEY_CALL_LINK_UPDATES = "CallLinkUpdates";
+  private static final String KEY_CALL_LINK_UPDATES = "CallLinkUpdates:";
   private static final String KEY_IN_APP_PAYMENTS   = "InAppPayments";
   private static final String KEY_CHAT_FOLDER       = "ChatFolder";
 
+  private static final String KEY_PENDING_NOTIFICATIONS = "DatabaseObserver:PendingNotifications";
+
   private final Executor    executor;
 
+  private final AtomicLong dispatchedNotifications = new AtomicLong();
+  private final AtomicLong suppressedNotifications = new AtomicLong();
+  private final AtomicLong dispatchedBatches       = new AtomicLong();
+
   private final Set<Observer>                      conversationListObservers;
   private final Map<Long, Set<Observer>>           conversationObservers;
   private final Map<Long, Set<Observer>>           verboseConversationObservers;
@@ -321,13 +333,13 @@ public class DatabaseObserver {
   }
 
   public void notifyAttachmentUpdatedObservers() {
-    runPostSuccessfulTransaction(KEY_ATTACHMENTS, () -> {
+    runPostSuccessfulTransaction(KEY_ATTACHMENT_UPDATES, () -> {
       notifySet(attachmentUpdatedObservers);
     });
   }
 
   public void notifyAttachmentDeletedObservers() {
-    runPostSuccessfulTransaction(KEY_ATTACHMENTS, () -> {
+    runPostSuccessfulTransaction(KEY_ATTACHMENT_DELETES, () -> {
       notifySet(attachmentDeletedObservers);
       notifySet(attachmentUpdatedObservers);
     });
@@ -362,16 +374,14 @@ public class DatabaseObserver {
   }
 
   public void notifyStoryObservers(@NonNull RecipientId recipientId) {
-    runPostSuccessfulTransaction(KEY_STORY_OBSERVER, () -> {
+    runPostSuccessfulTransaction(KEY_STORY_OBSERVER + recipientId.serialize(), () -> {
       notifyMapped(storyObservers, recipientId);
     });
   }
 
   public void notifyStoryObservers(@NonNull Collection<RecipientId> recipientIds) {
     for (RecipientId recipientId : recipientIds) {
-      runPostSuccessfulTransaction(KEY_STORY_OBSERVER, () -> {
-        notifyMapped(storyObservers, recipientId);
-      });
+      notifyStoryObservers(recipientId);
     }
   }
 
@@ -386,7 +396,7 @@ public class DatabaseObserver {
   }
 
   public void notifyCallLinkObservers(@NonNull CallLinkRoomId callLinkRoomId) {
-    runPostSuccessfulTransaction(KEY_CALL_LINK_UPDATES, () -> notifyMapped(callLinkObservers, callLinkRoomId));
+    runPostSuccessfulTransaction(KEY_CALL_LINK_UPDATES + callLinkRoomId.serialize(), () -> notifyMapped(callLinkObservers, callLinkRoomId));
   }
 
   public void notifyInAppPaymentsObservers(@NonNull InAppPaymentTable.InAppPayment inAppPayment) {
@@ -400,9 +410,28 @@ public class DatabaseObserver {
   }
 
   private void runPostSuccessfulTransaction(@NonNull String dedupeKey, @NonNull Runnable runnable) {
-    ZonaRosaDatabase.runPostSuccessfulTransaction(dedupeKey, () -> {
-      executor.execute(runnable);
-    });
+    ZonaRosaDatabase.accumulatePostSuccessfulTransaction(KEY_PENDING_NOTIFICATIONS, PendingNotifications::new, pending -> pending.add(dedupeKey, runnable));
+  }
+
+  /**
+   * @return The number of notifications that have been handed to the executor.
+   */
+  public long getDispatchedNotificationCount() {
+    return dispatchedNotifications.get();
+  }
+
+  /**
+   * @return The number of notifications that were dropped because an identical notification was already pending in the same transaction.
+   */
+  public long getSuppressedNotificationCount() {
+    return suppressedNotifications.get();
+  }
+
+  /**
+   * @return The number of tasks that have been handed to the executor to dispatch notifications.
+   */
+  public long getDispatchedBatchCount() {
+    return dispatchedBatches.get();
   }
 
   private <K, V> void registerMapped(@NonNull Map<K, Set<V>> map, @NonNull K key, @NonNull V listener) {
@@ -453,6 +482,31 @@ public class DatabaseObserver {
     }
   }
 
+  /**
+   * The notifications collected over the course of a single transaction, keyed by dedupe key. Only the first notification for a given key is kept.
+   */
+  private final class PendingNotifications implements Runnable {
+    private final Map<String, Runnable> notifications = new LinkedHashMap<>();
+
+    void add(@NonNull String dedupeKey, @NonNull Runnable notification) {
+      if (notifications.putIfAbsent(dedupeKey, notification) != null) {
+        suppressedNotifications.incrementAndGet();
+      }
+    }
+
+    @Override
+    public void run() {
+      dispatchedNotifications.addAndGet(notifications.size());
+      dispatchedBatches.incrementAndGet();
+
+      executor.execute(() -> {
+        for (Runnable notification : notifications.values()) {
+          notification.run();
+        }
+      });
+    }
+  }
+
   public interface Observer {
     /**
      * Called when the relevant data changes. Executed on a serial executor, so don't do any
@@ -8,6 +8,7 @@ import android.os.CancellationZonaRosa;
 import android.util.Pair;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
@@ -25,6 +26,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * This is a wrapper around {@link net.zetetic.database.sqlcipher.SQLiteDatabase}. There's difficulties
@@ -50,10 +53,12 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
 
   private static final ThreadLocal<Set<Runnable>> PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS;
   private static final ThreadLocal<Set<Runnable>> POST_SUCCESSFUL_TRANSACTION_TASKS;
+  private static final ThreadLocal<Map<String, Runnable>> PENDING_ACCUMULATING_TASKS;
 
   static {
     PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS = new ThreadLocal<>();
     POST_SUCCESSFUL_TRANSACTION_TASKS         = new ThreadLocal<>();
+    PENDING_ACCUMULATING_TASKS                = new ThreadLocal<>();
 
     PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS.set(new LinkedHashSet<>());
   }
@@ -63,11 +68,13 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
     this.tracer  = Tracer.getInstance();
   }
 
-  private void traceLockStart() {
+  @VisibleForTesting
+  protected void traceLockStart() {
     tracer.start(NAME_LOCK, Tracer.TrackId.DB_LOCK, KEY_THREAD, Thread.currentThread().getName());
   }
 
-  private void traceLockEnd() {
+  @VisibleForTesting
+  protected void traceLockEnd() {
     tracer.end(NAME_LOCK, Tracer.TrackId.DB_LOCK);
   }
 
@@ -133,7 +140,7 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
    * If there is no current transaction open, the task is run immediately.
    */
   public void runPostSuccessfulTransaction(@NonNull Runnable task) {
-    if (wrapped.inTransaction()) {
+    if (inTransaction()) {
       getPendingPostSuccessfulTransactionTasks().add(task);
     } else {
       task.run();
@@ -145,13 +152,49 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
    * There can only be one task enqueued for a given dedupe key. So, if you enqueue a second task with that key, it will be discarded.
    */
   public void runPostSuccessfulTransaction(@NonNull String dedupeKey, @NonNull Runnable task) {
-    if (wrapped.inTransaction()) {
+    if (inTransaction()) {
       getPendingPostSuccessfulTransactionTasks().add(new DedupedRunnable(dedupeKey, task));
     } else {
       task.run();
     }
   }
 
+  /**
+   * Does the same as {@link #runPostSuccessfulTransaction(String, Runnable)}, except that instead of discarding tasks enqueued with a dedupe key that's
+   * already in use, the task that's already enqueued is handed to the accumulator. This lets callers collect work over the course of a transaction into a
+   * single task. If there is no current transaction open, a new task is created, accumulated into, and run immediately.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Runnable> void accumulatePostSuccessfulTransaction(@NonNull String dedupeKey, @NonNull Supplier<T> taskFactory, @NonNull Consumer<T> accumulator) {
+    if (inTransaction()) {
+      Map<String, Runnable> accumulatingTasks = getPendingAccumulatingTasks();
+      T                     task              = (T) accumulatingTasks.get(dedupeKey);
+
+      if (task == null) {
+        task = taskFactory.get();
+        accumulatingTasks.put(dedupeKey, task);
+        getPendingPostSuccessfulTransactionTasks().add(new DedupedRunnable(dedupeKey, task));
+      }
+
+      accumulator.accept(task);
+    } else {
+      T task = taskFactory.get();
+      accumulator.accept(task);
+      task.run();
+    }
+  }
+
+  private @NonNull Map<String, Runnable> getPendingAccumulatingTasks() {
+    Map<String, Runnable> tasks = PENDING_ACCUMULATING_TASKS.get();
+
+    if (tasks == null) {
+      tasks = new HashMap<>();
+      PENDING_ACCUMULATING_TASKS.set(tasks);
+    }
+
+    return tasks;
+  }
+
   private @NonNull Set<Runnable> getPendingPostSuccessfulTransactionTasks() {
     Set<Runnable> tasks = PENDING_POST_SUCCESSFUL_TRANSACTION_TASKS.get();
 
@@ -288,11 +331,11 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
   public void beginTransaction() {
     traceLockStart();
 
-    if (wrapped.inTransaction()) {
+    if (inTransaction()) {
       trace("beginTransaction()", wrapped::beginTransaction);
     } else {
       trace("beginTransaction()", () -> {
-        wrapped.beginTransactionWithListener(new SQLiteTransactionListener() {
+        beginTransactionWithListener(new SQLiteTransactionListener() {
           @Override
           public void onBegin() { }
 
@@ -303,11 +346,13 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
             tasks.clear();
             tasks.addAll(pendingTasks);
             pendingTasks.clear();
+            getPendingAccumulatingTasks().clear();
           }
 
           @Override
           public void onRollback() {
             getPendingPostSuccessfulTransactionTasks().clear();
+            getPendingAccumulatingTasks().clear();
           }
         });
       });
@@ -317,6 +362,14 @@ public class SQLiteDatabase implements SupportSQLiteDatabase {
   public void endTransaction() {
     trace("endTransaction()", wrapped::endTransaction);
     traceLockEnd();
+    runPostSuccessfulTransactionTasks();
+  }
+
+  /**
+   * Runs the tasks queued up by the most recently committed transaction. Called once the outermost transaction has ended.
+   */
+  @VisibleForTesting
+  protected void runPostSuccessfulTransactionTasks() {
     Set<Runnable> tasks = getPostSuccessfulTransactionTasks();
     for (Runnable r : new HashSet<>(tasks)) {
       r.run();
@@ -23,6 +23,8 @@ import io.zonarosa.messenger.migrations.LegacyMigrationJob.DatabaseUpgradeListen
 import io.zonarosa.messenger.service.KeyCachingService
 import io.zonarosa.messenger.util.ZonaRosaPreferences
 import java.io.File
+import java.util.function.Consumer
+import java.util.function.Supplier
 import io.zonarosa.messenger.database.SQLiteDatabase as ZonaRosaSQLiteDatabase
 
 open class ZonaRosaDatabase(private val context: Application, databaseSecret: DatabaseSecret, attachmentSecret: AttachmentSecret, name: String = DATABASE_NAME) :
@@ -295,6 +297,11 @@ open class ZonaRosaDatabase(private val context: Application, databaseSecret: Da
       instance!!.zonarosaWritableDatabase.runPostSuccessfulTransaction(task)
     }
 
+    @JvmStatic
+    fun <T : Runnable> accumulatePostSuccessfulTransaction(dedupeKey: String, taskFactory: Supplier<T>, accumulator: Consumer<T>) {
+      instance!!.zonarosaWritableDatabase.accumulatePostSuccessfulTransaction(dedupeKey, taskFactory, accumulator)
+    }
+
     @JvmStatic
     fun databaseFileExists(context: Context): Boolean {
       return context.getDatabasePath(DATABASE_NAME).exists()
@@ -13,7 +13,7 @@ import kotlinx.serialization.Transient
 import okio.ByteString
 import io.zonarosa.core.util.DatabaseId
 import io.zonarosa.core.util.Hex
-import io.zonarosa.core.util.LRUCache
+import io.zonarosa.core.util.ConcurrentLRUCache
 import io.zonarosa.core.util.Util
 import io.zonarosa.libzonarosa.protocol.kdf.HKDF
 import io.zonarosa.libzonarosa.zkgroup.InvalidInputException
@@ -42,7 +42,7 @@ sealed class GroupId(private val encodedId: String) : DatabaseId, Parcelable {
     private const val V1_BYTE_LENGTH = 16
     private const val V2_BYTE_LENGTH = GroupIdentifier.SIZE
 
-    private val groupIdentifierCache: LRUCache<GroupMasterKey, GroupIdentifier> = LRUCache(1000)
+    private val groupIdentifierCache: ConcurrentLRUCache<GroupMasterKey, GroupIdentifier> = ConcurrentLRUCache(1000)
 
     @JvmStatic
     fun mms(mmsGroupIdBytes: ByteArray): Mms = Mms(mmsGroupIdBytes)
@@ -95,19 +95,14 @@ sealed class GroupId(private val encodedId: String) : DatabaseId, Parcelable {
 
     @JvmStatic
     fun getIdentifierForMasterKey(masterKey: GroupMasterKey): GroupIdentifier {
-      var cachedIdentifier: GroupIdentifier? = null
-      synchronized(groupIdentifierCache) {
-        cachedIdentifier = groupIdentifierCache.get(masterKey)
-      }
+      var cachedIdentifier: GroupIdentifier? = groupIdentifierCache[masterKey]
 
       if (cachedIdentifier == null) {
         cachedIdentifier = GroupSecretParams.deriveFromMasterKey(masterKey)
           .publicParams
           .groupIdentifier
 
-        synchronized(groupIdentifierCache) {
-          groupIdentifierCache.put(masterKey, cachedIdentifier)
-        }
+        groupIdentifierCache[masterKey] = cachedIdentifier
       }
 
       return cachedIdentifier
@@ -651,20 +651,34 @@ class JobController {
     }
   }
 
+  /**
+   * Constraints are shared by many jobs (e.g. every attachment download waits on the network), so while scanning we only instantiate and check each
+   * constraint once, rather than once per candidate job. Results are only kept for the duration of a single scan, since constraints can change at any time.
+   */
   @WorkerThread
   private @Nullable Job getNextEligibleJobForExecution(@NonNull Predicate<MinimalJobSpec> predicate) {
+    Map<String, Boolean> constraintResults = new HashMap<>();
+
     JobSpec jobSpec = jobStorage.getNextEligibleJob(System.currentTimeMillis(), minimalJobSpec -> {
       if (!predicate.test(minimalJobSpec)) {
         return false;
       }
 
-      List<ConstraintSpec> constraintSpecs = jobStorage.getConstraintSpecs(minimalJobSpec.getId());
-      List<Constraint>     constraints     = Stream.of(constraintSpecs)
-                                                   .map(ConstraintSpec::getFactoryKey)
-                                                   .map(constraintInstantiator::instantiate)
-                                                   .toList();
+      for (ConstraintSpec constraintSpec : jobStorage.getConstraintSpecs(minimalJobSpec.getId())) {
+        String  factoryKey = constraintSpec.getFactoryKey();
+        Boolean met        = constraintResults.get(factoryKey);
+
+        if (met == null) {
+          met = constraintInstantiator.instantiate(factoryKey).isMet();
+          constraintResults.put(factoryKey, met);
+        }
 
-      return Stream.of(constraints).allMatch(Constraint::isMet);
+        if (!met) {
+          return false;
+        }
+      }
+
+      return true;
     });
 
     if (jobSpec == null) {
@@ -24,8 +24,11 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     private const val DEBUG = false
   }
 
-  /** We keep a trimmed down version of every job in memory. */
-  private val minimalJobs: MutableList<MinimalJobSpec> = mutableListOf()
+  /** We keep a trimmed down version of every job in memory, keyed by ID and kept in insertion order. */
+  private val minimalJobs: LinkedHashMap<String, MinimalJobSpec> = LinkedHashMap()
+
+  /** Every job in each queue, sorted so that the most eligible job in the queue is first. Queues with no jobs have no entry. */
+  private val jobsByQueue: MutableMap<String, TreeSet<MinimalJobSpec>> = hashMapOf()
 
   /**
    * We keep a set of job specs in memory to facilitate fast retrieval. This is important because the most common job storage pattern is
@@ -58,10 +61,13 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
   @Synchronized
   override fun init() {
     val stopwatch = Stopwatch("init", decimalPlaces = 2)
-    minimalJobs += jobDatabase.getAllMinimalJobSpecs()
+    val allMinimalJobs: List<MinimalJobSpec> = jobDatabase.getAllMinimalJobSpecs()
     stopwatch.split("fetch-min-jobs")
 
-    for (job in minimalJobs) {
+    for (job in allMinimalJobs) {
+      minimalJobs[job.id] = job
+      addToQueueIndex(job)
+
       if (job.queueKey == Job.Parameters.MIGRATION_QUEUE_KEY) {
         migrationJobs += job
       } else {
@@ -103,7 +109,8 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
 
     for (fullSpec in fullSpecs) {
       val minimalJobSpec = fullSpec.jobSpec.toMinimalJobSpec()
-      minimalJobs += minimalJobSpec
+      minimalJobs[minimalJobSpec.id] = minimalJobSpec
+      addToQueueIndex(minimalJobSpec)
       jobSpecCache[fullSpec.jobSpec.id] = fullSpec.jobSpec
 
       if (fullSpec.jobSpec.queueKey == Job.Parameters.MIGRATION_QUEUE_KEY) {
@@ -124,7 +131,7 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
 
   @Synchronized
   override fun getJobSpec(id: String): JobSpec? {
-    return minimalJobs.firstOrNull { it.id == id }?.toJobSpec()
+    return minimalJobs[id]?.toJobSpec()
   }
 
   @Synchronized
@@ -180,9 +187,7 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
 
   @Synchronized
   override fun getJobsInQueue(queue: String): List<JobSpec> {
-    return minimalJobs
-      .filter { it.queueKey == queue }
-      .map { it.toJobSpec() }
+    return jobsByQueue[queue]?.map { it.toJobSpec() } ?: emptyList()
   }
 
   @Synchronized
@@ -192,14 +197,12 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
 
   @Synchronized
   override fun getJobCountForFactoryAndQueue(factoryKey: String, queueKey: String): Int {
-    return minimalJobs
-      .filter { it.factoryKey == factoryKey && it.queueKey == queueKey }
-      .size
+    return jobsByQueue[queueKey]?.count { it.factoryKey == factoryKey } ?: 0
   }
 
   @Synchronized
   override fun areQueuesEmpty(queueKeys: Set<String>): Boolean {
-    return minimalJobs.none { it.queueKey != null && queueKeys.contains(it.queueKey) }
+    return queueKeys.none { jobsByQueue.containsKey(it) }
   }
 
   @Synchronized
@@ -209,27 +212,23 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
 
   @Synchronized
   override fun markJobAsRunning(id: String, currentTime: Long) {
-    val job: JobSpec? = getJobSpec(id)
+    val job: MinimalJobSpec? = minimalJobs[id]
     if (job == null || !job.isMemoryOnly) {
       jobDatabase.markJobAsRunning(id, currentTime)
       // Don't need to update jobSpecCache because all changed fields are in the min spec
     }
 
-    updateCachedJobSpecs(
-      filter = { it.id == id },
-      transformer = { jobSpec ->
-        jobSpec.copy(
-          isRunning = true,
-          lastRunAttemptTime = currentTime
-        )
-      },
-      singleUpdate = true
-    )
+    updateCachedJobSpec(id) { jobSpec ->
+      jobSpec.copy(
+        isRunning = true,
+        lastRunAttemptTime = currentTime
+      )
+    }
   }
 
   @Synchronized
   override fun updateJobAfterRetry(id: String, currentTime: Long, runAttempt: Int, nextBackoffInterval: Long, serializedData: ByteArray?) {
-    val job = getJobSpec(id)
+    val job: MinimalJobSpec? = minimalJobs[id]
     if (job == null || !job.isMemoryOnly) {
       jobDatabase.updateJobAfterRetry(id, currentTime, runAttempt, nextBackoffInterval, serializedData)
 
@@ -244,17 +243,13 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
       }
     }
 
-    updateCachedJobSpecs(
-      filter = { it.id == id },
-      transformer = { jobSpec ->
-        jobSpec.copy(
-          isRunning = false,
-          lastRunAttemptTime = currentTime,
-          nextBackoffInterval = nextBackoffInterval
-        )
-      },
-      singleUpdate = true
-    )
+    updateCachedJobSpec(id) { jobSpec ->
+      jobSpec.copy(
+        isRunning = false,
+        lastRunAttemptTime = currentTime,
+        nextBackoffInterval = nextBackoffInterval
+      )
+    }
   }
 
   @Synchronized
@@ -262,21 +257,16 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     jobDatabase.updateAllJobsToBePending()
     // Don't need to update jobSpecCache because all changed fields are in the min spec
 
-    updateCachedJobSpecs(
-      filter = { it.isRunning },
-      transformer = { jobSpec ->
-        jobSpec.copy(
-          isRunning = false
-        )
-      }
-    )
+    for (running in minimalJobs.values.filter { it.isRunning }) {
+      updateCachedJobSpec(running, running.copy(isRunning = false))
+    }
   }
 
   @Synchronized
   override fun updateJobs(jobSpecs: List<JobSpec>) {
     val durable: List<JobSpec> = jobSpecs
       .filter { updatedJob ->
-        val found = getJobSpec(updatedJob.id)
+        val found = minimalJobs[updatedJob.id]
         found != null && !found.isMemoryOnly
       }
 
@@ -284,14 +274,9 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
       jobDatabase.updateJobs(durable)
     }
 
-    val updatesById: Map<String, MinimalJobSpec> = jobSpecs
-      .map { it.toMinimalJobSpec() }
-      .associateBy { it.id }
-
-    updateCachedJobSpecs(
-      filter = { updatesById.containsKey(it.id) },
-      transformer = { updatesById.getValue(it.id) }
-    )
+    for (update in jobSpecs) {
+      updateCachedJobSpec(update.id) { update.toMinimalJobSpec() }
+    }
 
     for (update in jobSpecs) {
       jobSpecCache[update.id] = update
@@ -305,22 +290,9 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
       jobSpecCache[update.id] = update
     }
 
-    val iterator = minimalJobs.listIterator()
-    while (iterator.hasNext()) {
-      val current = iterator.next()
-      val updatedJob = updated.firstOrNull { it.id == current.id }
-
-      if (updatedJob != null) {
-        iterator.set(updatedJob.toMinimalJobSpec())
-        replaceJobInEligibleList(current, updatedJob.toMinimalJobSpec())
-
-        if (current.factoryKey != updatedJob.factoryKey) {
-          if (factoryCountIndex[current.factoryKey]?.decrementAndGet() == 0) {
-            factoryCountIndex.remove(current.factoryKey)
-          }
-          factoryCountIndex.getOrPut(updatedJob.factoryKey) { AtomicInteger(0) }.incrementAndGet()
-        }
-      }
+    for (updatedJob in updated) {
+      val current = minimalJobs[updatedJob.id] ?: continue
+      replaceMinimalJob(current, updatedJob.toMinimalJobSpec())
     }
   }
 
@@ -332,9 +304,7 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
   @Synchronized
   override fun deleteJobs(ids: List<String>) {
     val jobsToDelete: Set<MinimalJobSpec> = ids
-      .mapNotNull { id ->
-        minimalJobs.firstOrNull { it.id == id }
-      }
+      .mapNotNull { id -> minimalJobs[id] }
       .toSet()
 
     val durableJobIdsToDelete: List<String> = jobsToDelete
@@ -348,22 +318,19 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     }
 
     val deleteIds: Set<String> = ids.toSet()
-    minimalJobs.removeIf { deleteIds.contains(it.id) }
+    for (job in jobsToDelete) {
+      minimalJobs.remove(job.id)
+      removeFromQueueIndex(job)
+      // Every entry in eligibleJobs is also the current entry in minimalJobs, so we can remove by value rather than scanning
+      eligibleJobs.remove(job)
+    }
     deleteIds.forEach { jobSpecCache.remove(it) }
-    eligibleJobs.removeIf { deleteIds.contains(it.id) }
     migrationJobs.removeIf { deleteIds.contains(it.id) }
 
     mostEligibleJobForQueue.keys.removeAll(affectedQueues)
 
     for (queue in affectedQueues) {
-      minimalJobs
-        .filter { it.queueKey == queue }
-        .minWithOrNull(
-          compareByDescending<MinimalJobSpec> { it.globalPriority }
-            .thenByDescending { it.queuePriority }
-            .thenBy { it.createTime }
-        )
-        ?.let { placeJobInEligibleList(it) }
+      jobsByQueue[queue]?.first()?.let { placeJobInEligibleList(it) }
     }
 
     for (jobId in ids) {
@@ -432,7 +399,7 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     val nonEmptyDependencies = dependenciesByJobId.filterValues { it.isNotEmpty() }
 
     return buildString {
-      appendLine("minimalJobs: Size(${minimalJobs.size}), Items(${minimalJobs.joinToString(", ") { it.toLogString() }})")
+      appendLine("minimalJobs: Size(${minimalJobs.size}), Items(${minimalJobs.values.joinToString(", ") { it.toLogString() }})")
       appendLine("jobSpecCache: Size(${jobSpecCache.size}), Items(${jobSpecCache.keys.joinToString(", ") { it.toLogString() }})")
       appendLine("eligibleJobs: Size(${eligibleJobs.size}), Items(${eligibleJobs.joinToString(", ") { it.toLogString() }})")
       appendLine("migrationJobs: Size(${migrationJobs.size}), Items(${migrationJobs.joinToString(", ") { it.toLogString() }})")
@@ -446,43 +413,59 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     return "JOB::$this"
   }
 
-  private fun updateCachedJobSpecs(filter: (MinimalJobSpec) -> Boolean, transformer: (MinimalJobSpec) -> MinimalJobSpec, singleUpdate: Boolean = false) {
-    val iterator = minimalJobs.listIterator()
-
-    while (iterator.hasNext()) {
-      val current = iterator.next()
+  private fun updateCachedJobSpec(id: String, transformer: (MinimalJobSpec) -> MinimalJobSpec) {
+    val current: MinimalJobSpec = minimalJobs[id] ?: return
+    updateCachedJobSpec(current, transformer(current))
+  }
 
-      if (filter(current)) {
-        val updated = transformer(current)
-        iterator.set(updated)
-        replaceJobInEligibleList(current, updated)
+  private fun updateCachedJobSpec(current: MinimalJobSpec, updated: MinimalJobSpec) {
+    replaceMinimalJob(current, updated)
 
-        if (current.factoryKey != updated.factoryKey) {
-          if (factoryCountIndex[current.factoryKey]?.decrementAndGet() == 0) {
-            factoryCountIndex.remove(current.factoryKey)
-          }
-          factoryCountIndex.getOrPut(updated.factoryKey) { AtomicInteger(0) }.incrementAndGet()
-        }
+    jobSpecCache.remove(current.id)?.let { currentJobSpec ->
+      val updatedJobSpec = currentJobSpec.copy(
+        id = updated.id,
+        factoryKey = updated.factoryKey,
+        queueKey = updated.queueKey,
+        createTime = updated.createTime,
+        lastRunAttemptTime = updated.lastRunAttemptTime,
+        nextBackoffInterval = updated.nextBackoffInterval,
+        globalPriority = updated.globalPriority,
+        isRunning = updated.isRunning,
+        isMemoryOnly = updated.isMemoryOnly
+      )
+      jobSpecCache[updatedJobSpec.id] = updatedJobSpec
+    }
+  }
 
-        jobSpecCache.remove(current.id)?.let { currentJobSpec ->
-          val updatedJobSpec = currentJobSpec.copy(
-            id = updated.id,
-            factoryKey = updated.factoryKey,
-            queueKey = updated.queueKey,
-            createTime = updated.createTime,
-            lastRunAttemptTime = updated.lastRunAttemptTime,
-            nextBackoffInterval = updated.nextBackoffInterval,
-            globalPriority = updated.globalPriority,
-            isRunning = updated.isRunning,
-            isMemoryOnly = updated.isMemoryOnly
-          )
-          jobSpecCache[updatedJobSpec.id] = updatedJobSpec
-
-          if (singleUpdate) {
-            return
-          }
-        }
+  /**
+   * Swaps a job for an updated version of itself in [minimalJobs] and every index derived from it.
+   */
+  private fun replaceMinimalJob(current: MinimalJobSpec, updated: MinimalJobSpec) {
+    minimalJobs[updated.id] = updated
+    removeFromQueueIndex(current)
+    addToQueueIndex(updated)
+    replaceJobInEligibleList(current, updated)
+
+    if (current.factoryKey != updated.factoryKey) {
+      if (factoryCountIndex[current.factoryKey]?.decrementAndGet() == 0) {
+        factoryCountIndex.remove(current.factoryKey)
       }
+      factoryCountIndex.getOrPut(updated.factoryKey) { AtomicInteger(0) }.incrementAndGet()
+    }
+  }
+
+  private fun addToQueueIndex(job: MinimalJobSpec) {
+    val queueKey = job.queueKey ?: return
+    jobsByQueue.getOrPut(queueKey) { TreeSet(QueueMinJobComparator) } += job
+  }
+
+  private fun removeFromQueueIndex(job: MinimalJobSpec) {
+    val queueKey = job.queueKey ?: return
+    val queue = jobsByQueue[queueKey] ?: return
+
+    queue.remove(job)
+    if (queue.isEmpty()) {
+      jobsByQueue.remove(queueKey)
     }
   }
 
@@ -522,7 +505,8 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
   }
 
   /**
-   * Replaces a job in the eligible list with an updated version of the job.
+   * Replaces a job in the eligible list with an updated version of the job. Expects [jobsByQueue] to already reflect the update, since the
+   * updated job may no longer be the first in its queue (or may have moved to a different queue).
    */
   private fun replaceJobInEligibleList(current: MinimalJobSpec?, updated: MinimalJobSpec?) {
     if (current == null || updated == null) {
@@ -537,9 +521,10 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
       current.queueKey?.let { queueKey ->
         if (mostEligibleJobForQueue[queueKey] == current) {
           mostEligibleJobForQueue.remove(queueKey)
+          jobsByQueue[queueKey]?.first()?.let { placeJobInEligibleList(it) }
         }
       }
-      placeJobInEligibleList(updated)
+      placeJobInEligibleList(updated.queueKey?.let { jobsByQueue[it]?.first() } ?: updated)
     }
   }
 
@@ -634,6 +619,24 @@ class FastJobStorage(private val jobDatabase: JobDatabase) : JobStorage {
     }
   }
 
+  private object QueueMinJobComparator : Comparator<MinimalJobSpec> {
+    override fun compare(o1: MinimalJobSpec, o2: MinimalJobSpec): Int {
+      // We want to sort by priority descending, then queue priority descending, then createTime ascending.
+      // This is for determining which job to run next within a single queue.
+
+      // CAUTION: This is used by a TreeSet, so it must be consistent with equals. See EligibleMinJobComparator.
+      return when {
+        o1.globalPriority > o2.globalPriority -> -1
+        o1.globalPriority < o2.globalPriority -> 1
+        o1.queuePriority > o2.queuePriority -> -1
+        o1.queuePriority < o2.queuePriority -> 1
+        o1.createTime < o2.createTime -> -1
+        o1.createTime > o2.createTime -> 1
+        else -> o1.id.compareTo(o2.id)
+      }
+    }
+  }
+
   private fun debugStopwatch(label: String): Stopwatch? {
     return if (DEBUG) Stopwatch(label, decimalPlaces = 2) else null
   }
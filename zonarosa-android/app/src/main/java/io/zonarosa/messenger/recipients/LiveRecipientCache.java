@@ -18,7 +18,7 @@ import io.zonarosa.messenger.database.ThreadTable;
 import io.zonarosa.messenger.database.model.ThreadRecord;
 import io.zonarosa.messenger.keyvalue.ZonaRosaStore;
 import io.zonarosa.core.util.CursorUtil;
-import io.zonarosa.core.util.LRUCache;
+import io.zonarosa.core.util.ConcurrentLRUCache;
 import io.zonarosa.core.util.Stopwatch;
 import io.zonarosa.messenger.util.concurrent.FilteredExecutor;
 import io.zonarosa.core.models.ServiceId.ACI;
@@ -26,7 +26,6 @@ import io.zonarosa.core.models.ServiceId.ACI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -41,7 +40,7 @@ public final class LiveRecipientCache {
 
   private final Context                         context;
   private final RecipientTable                  recipientTable;
-  private final Map<RecipientId, LiveRecipient> recipients;
+  private final ConcurrentLRUCache<RecipientId, LiveRecipient> recipients;
   private final LiveRecipient                   unknown;
   private final Executor                        resolveExecutor;
 
@@ -56,7 +55,7 @@ public final class LiveRecipientCache {
   public LiveRecipientCache(@NonNull Context context, @NonNull Executor executor) {
     this.context        = context.getApplicationContext();
     this.recipientTable = ZonaRosaDatabase.recipients();
-    this.recipients     = new LRUCache<>(CACHE_MAX);
+    this.recipients     = new ConcurrentLRUCache<>(CACHE_MAX);
     this.warmedUp          = new AtomicBoolean(false);
     this.localRecipientId  = new AtomicReference<>(null);
     this.unknown           = new LiveRecipient(context, Recipient.UNKNOWN);
@@ -67,22 +66,14 @@ public final class LiveRecipientCache {
   @NonNull LiveRecipient getLive(@NonNull RecipientId id) {
     if (id.isUnknown()) return unknown;
 
-    LiveRecipient live;
-    boolean       needsResolve;
+    AtomicBoolean needsResolve = new AtomicBoolean(false);
 
-    synchronized (recipients) {
-      live = recipients.get(id);
-
-      if (live == null) {
-        live = new LiveRecipient(context, RecipientCreator.forId(id));
-        recipients.put(id, live);
-        needsResolve = true;
-      } else {
-        needsResolve = false;
-      }
-    }
+    LiveRecipient live = recipients.computeIfAbsent(id, key -> {
+      needsResolve.set(true);
+      return new LiveRecipient(context, RecipientCreator.forId(key));
+    });
 
-    if (needsResolve) {
+    if (needsResolve.get()) {
       resolveExecutor.execute(live::resolve);
     }
 
@@ -93,12 +84,12 @@ public final class LiveRecipientCache {
    * Handles remapping cache entries when recipients are merged.
    */
   public void remap(@NonNull RecipientId oldId, @NonNull RecipientId newId) {
-    synchronized (recipients) {
-      if (recipients.containsKey(newId)) {
-        recipients.put(oldId, recipients.get(newId));
-      } else {
-        recipients.remove(oldId);
-      }
+    LiveRecipient live = recipients.get(newId);
+
+    if (live != null) {
+      recipients.put(oldId, live);
+    } else {
+      recipients.remove(oldId);
     }
   }
 
@@ -111,23 +102,22 @@ public final class LiveRecipientCache {
   @AnyThread
   public void addToCache(@NonNull Collection<Recipient> newRecipients) {
     newRecipients.stream().filter(this::isValidForCache).forEach(recipient -> {
-      LiveRecipient live;
+      AtomicBoolean created  = new AtomicBoolean(false);
       boolean       needsResolve;
       boolean       needsSet = false;
 
-      synchronized (recipients) {
-        live = recipients.get(recipient.getId());
-
-        if (live == null) {
-          live = new LiveRecipient(context, recipient);
-          recipients.put(recipient.getId(), live);
-          needsResolve = recipient.isResolving();
-        } else if (live.get().isResolving() || !recipient.isResolving()) {
-          needsSet = true;
-          needsResolve = recipient.isResolving();
-        } else {
-          needsResolve = false;
-        }
+      LiveRecipient live = recipients.computeIfAbsent(recipient.getId(), key -> {
+        created.set(true);
+        return new LiveRecipient(context, recipient);
+      });
+
+      if (created.get()) {
+        needsResolve = recipient.isResolving();
+      } else if (live.get().isResolving() || !recipient.isResolving()) {
+        needsSet = true;
+        needsResolve = recipient.isResolving();
+      } else {
+        needsResolve = false;
       }
 
       // This requires taking another lock, so we move it out of the critical section above
@@ -266,9 +256,7 @@ public final class LiveRecipientCache {
 
   @AnyThread
   public void clear() {
-    synchronized (recipients) {
-      recipients.clear();
-    }
+    recipients.clear();
   }
 
   private boolean isValidForCache(@NonNull Recipient recipient) {
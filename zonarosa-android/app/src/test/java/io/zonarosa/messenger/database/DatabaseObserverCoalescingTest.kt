@@ -0,0 +1,172 @@
+package io.zonarosa.messenger.database
+
+import android.app.Application
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import io.mockk.every
+import io.mockk.mockkObject
+import io.mockk.mockkStatic
+import io.mockk.unmockkObject
+import io.mockk.unmockkStatic
+import org.junit.After
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import io.zonarosa.core.util.withinTransaction
+import io.zonarosa.messenger.dependencies.AppDependencies
+import io.zonarosa.messenger.mms.IncomingMessage
+import io.zonarosa.messenger.recipients.Recipient
+import io.zonarosa.messenger.recipients.RecipientId
+import io.zonarosa.messenger.testutil.ZonaRosaDatabaseRule
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Measures how many notifications [DatabaseObserver] dispatches for messages inserted through [MessageTable] into an in-memory database.
+ *
+ * Be sure to call [DatabaseObserver.flush] before asserting any observer state.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class DatabaseObserverCoalescingTest {
+
+  companion object {
+    private const val MESSAGE_COUNT = 1000
+    private const val THREAD_ID = 1L
+
+    private val SELF = RecipientId.from(1)
+    private val SENDER = RecipientId.from(2)
+  }
+
+  @get:Rule
+  val zonarosaDatabaseRule = ZonaRosaDatabaseRule()
+
+  private lateinit var observer: DatabaseObserver
+
+  @Before
+  fun setUp() {
+    observer = DatabaseObserver()
+
+    mockkStatic(AppDependencies::class)
+    every { AppDependencies.databaseObserver } returns observer
+
+    mockkObject(Recipient)
+    every { Recipient.self() } returns Recipient(id = SELF)
+  }
+
+  @After
+  fun tearDown() {
+    unmockkObject(Recipient)
+    unmockkStatic(AppDependencies::class)
+  }
+
+  @Test
+  fun `given 1000 messages inserted in one transaction, when committed, then notifications are dispatched in one batch`() {
+    val conversationNotifications = AtomicInteger(0)
+
+    observer.registerConversationObserver(THREAD_ID) { conversationNotifications.incrementAndGet() }
+
+    zonarosaDatabaseRule.writeableDatabase.withinTransaction {
+      for (sentTime in 1..MESSAGE_COUNT) {
+        insertMessage(sentTime.toLong())
+      }
+    }
+
+    observer.flush()
+
+    assertThat(ZonaRosaDatabase.messages.getMessageCountForThread(THREAD_ID)).isEqualTo(MESSAGE_COUNT)
+    assertThat(conversationNotifications.get()).isEqualTo(1)
+
+    assertThat(observer.dispatchedBatchCount).isEqualTo(1L)
+    assertThat(observer.dispatchedNotificationCount).isEqualTo(1L)
+    assertThat(observer.suppressedNotificationCount).isEqualTo(MESSAGE_COUNT - 1L)
+  }
+
+  @Test
+  fun `given 1000 messages inserted outside of a transaction, then every notification is dispatched`() {
+    val conversationNotifications = AtomicInteger(0)
+
+    observer.registerConversationObserver(THREAD_ID) { conversationNotifications.incrementAndGet() }
+
+    for (sentTime in 1..MESSAGE_COUNT) {
+      insertMessage(sentTime.toLong())
+    }
+
+    observer.flush()
+
+    assertThat(ZonaRosaDatabase.messages.getMessageCountForThread(THREAD_ID)).isEqualTo(MESSAGE_COUNT)
+    assertThat(conversationNotifications.get()).isEqualTo(MESSAGE_COUNT)
+    assertThat(observer.dispatchedBatchCount).isEqualTo(MESSAGE_COUNT.toLong())
+    assertThat(observer.suppressedNotificationCount).isEqualTo(0L)
+  }
+
+  @Test
+  fun `given story notifications for different recipients in one transaction, then each recipient is notified`() {
+    val firstRecipientNotifications = AtomicInteger(0)
+    val secondRecipientNotifications = AtomicInteger(0)
+
+    observer.registerStoryObserver(RecipientId.from(1)) { firstRecipientNotifications.incrementAndGet() }
+    observer.registerStoryObserver(RecipientId.from(2)) { secondRecipientNotifications.incrementAndGet() }
+
+    zonarosaDatabaseRule.writeableDatabase.withinTransaction {
+      observer.notifyStoryObservers(listOf(RecipientId.from(1), RecipientId.from(2)))
+      observer.notifyStoryObservers(RecipientId.from(2))
+    }
+
+    observer.flush()
+
+    assertThat(firstRecipientNotifications.get()).isEqualTo(1)
+    assertThat(secondRecipientNotifications.get()).isEqualTo(1)
+    assertThat(observer.suppressedNotificationCount).isEqualTo(1L)
+  }
+
+  @Test
+  fun `given messages inserted in a transaction that is rolled back, then nothing is dispatched and the next transaction starts fresh`() {
+    val conversationNotifications = AtomicInteger(0)
+
+    observer.registerConversationObserver(THREAD_ID) { conversationNotifications.incrementAndGet() }
+
+    val db = zonarosaDatabaseRule.writeableDatabase
+
+    db.beginTransaction()
+    try {
+      for (sentTime in 1..MESSAGE_COUNT) {
+        insertMessage(sentTime.toLong())
+      }
+    } finally {
+      db.endTransaction()
+    }
+
+    observer.flush()
+
+    assertThat(ZonaRosaDatabase.messages.getMessageCountForThread(THREAD_ID)).isEqualTo(0)
+    assertThat(conversationNotifications.get()).isEqualTo(0)
+    assertThat(observer.dispatchedBatchCount).isEqualTo(0L)
+
+    db.withinTransaction {
+      insertMessage(MESSAGE_COUNT + 1L)
+    }
+
+    observer.flush()
+
+    assertThat(ZonaRosaDatabase.messages.getMessageCountForThread(THREAD_ID)).isEqualTo(1)
+    assertThat(conversationNotifications.get()).isEqualTo(1)
+    assertThat(observer.dispatchedBatchCount).isEqualTo(1L)
+    assertThat(observer.dispatchedNotificationCount).isEqualTo(1L)
+  }
+
+  private fun insertMessage(sentTime: Long) {
+    val message = IncomingMessage(
+      type = MessageType.NORMAL,
+      from = SENDER,
+      sentTimeMillis = sentTime,
+      serverTimeMillis = sentTime,
+      receivedTimeMillis = sentTime,
+      body = "Message $sentTime"
+    )
+
+    ZonaRosaDatabase.messages.insertMessageInbox(message, THREAD_ID, skipThreadUpdate = true)
+  }
+}
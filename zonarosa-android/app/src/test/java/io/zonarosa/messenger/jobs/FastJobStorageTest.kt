@@ -823,6 +823,70 @@ class FastJobStorageTest {
     assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(olderJob)
   }
 
+  @Test
+  fun `getNextEligibleJob - updating first job in queue to a lower global priority makes next job eligible`() {
+    val firstJob = DataSet1.JOB_1
+    val secondJob = DataSet1.JOB_1.copy(id = "id2", createTime = 2)
+    val subject = FastJobStorage(mockDatabase(listOf(firstJob, secondJob).map { FullSpec(jobSpec = it, constraintSpecs = emptyList(), dependencySpecs = emptyList()) }))
+    subject.init()
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(firstJob)
+
+    val lowerPriorityJob = firstJob.copy(globalPriority = Job.Parameters.PRIORITY_LOW)
+    subject.updateJobs(listOf(lowerPriorityJob))
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(secondJob)
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id2", "id1"))
+  }
+
+  @Test
+  fun `getNextEligibleJob - transforming first job in queue to a lower queue priority makes next job eligible`() {
+    val firstJob = DataSet1.JOB_1
+    val secondJob = DataSet1.JOB_1.copy(id = "id2", createTime = 2)
+    val subject = FastJobStorage(mockDatabase(listOf(firstJob, secondJob).map { FullSpec(jobSpec = it, constraintSpecs = emptyList(), dependencySpecs = emptyList()) }))
+    subject.init()
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(firstJob)
+
+    subject.transformJobs { if (it.id == firstJob.id) it.copy(queuePriority = Job.Parameters.PRIORITY_LOW) else it }
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(secondJob)
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id2", "id1"))
+  }
+
+  @Test
+  fun `getNextEligibleJob - moving first job to another queue makes next job in old queue eligible`() {
+    val firstJob = DataSet1.JOB_1
+    val secondJob = DataSet1.JOB_1.copy(id = "id2", createTime = 2)
+    val subject = FastJobStorage(mockDatabase(listOf(firstJob, secondJob).map { FullSpec(jobSpec = it, constraintSpecs = emptyList(), dependencySpecs = emptyList()) }))
+    subject.init()
+
+    subject.updateJobs(listOf(firstJob.copy(queueKey = "q2")))
+
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id2"))
+    assertThat(subject.getJobsInQueue("q2").map { it.id }).isEqualTo(listOf("id1"))
+
+    subject.markJobAsRunning(firstJob.id, 50)
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(secondJob)
+  }
+
+  @Test
+  fun `getNextEligibleJob - first job in queue backing off after a retry still blocks the rest of the queue`() {
+    val firstJob = DataSet1.JOB_1
+    val secondJob = DataSet1.JOB_1.copy(id = "id2", createTime = 2)
+    val subject = FastJobStorage(mockDatabase(listOf(firstJob, secondJob).map { FullSpec(jobSpec = it, constraintSpecs = emptyList(), dependencySpecs = emptyList()) }))
+    subject.init()
+
+    subject.markJobAsRunning(firstJob.id, 10)
+    subject.updateJobAfterRetry(firstJob.id, 10, 1, 1000, null)
+
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isNull()
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id1", "id2"))
+
+    assertThat(subject.getNextEligibleJob(2000, NO_PREDICATE)?.id).isEqualTo(firstJob.id)
+  }
+
   @Test
   fun `getNextEligibleJob - jobs with initial delay will not run until after the delay`() {
     val fullSpec1 = FullSpec(jobSpec(id = "1", factoryKey = "f1", queueKey = "q1", createTime = 1, initialDelay = 10), emptyList(), emptyList())
@@ -1017,6 +1081,37 @@ class FastJobStorageTest {
     assertThat(result[0].id).isEqualTo("id1")
   }
 
+  @Test
+  fun `getJobsInQueue - stays ordered after updates, deletes, and priority changes`() {
+    val firstJob = DataSet1.JOB_1
+    val secondJob = DataSet1.JOB_1.copy(id = "id2", createTime = 2)
+    val thirdJob = DataSet1.JOB_1.copy(id = "id3", createTime = 3)
+    val subject = FastJobStorage(mockDatabase(listOf(firstJob, secondJob, thirdJob).map { FullSpec(jobSpec = it, constraintSpecs = emptyList(), dependencySpecs = emptyList()) }))
+    subject.init()
+
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id1", "id2", "id3"))
+
+    subject.updateJobs(listOf(thirdJob.copy(queuePriority = Job.Parameters.PRIORITY_HIGH)))
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id3", "id1", "id2"))
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)?.id).isEqualTo("id3")
+
+    subject.deleteJob(thirdJob.id)
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id1", "id2"))
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isEqualTo(firstJob)
+
+    subject.updateJobs(listOf(secondJob.copy(globalPriority = Job.Parameters.PRIORITY_HIGH)))
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id2", "id1"))
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)?.id).isEqualTo("id2")
+
+    subject.updateJobAfterRetry(secondJob.id, 10, 1, 0, null)
+    assertThat(subject.getJobsInQueue("q1").map { it.id }).isEqualTo(listOf("id2", "id1"))
+
+    subject.deleteJobs(listOf(firstJob.id, secondJob.id))
+    assertThat(subject.getJobsInQueue("q1").size).isEqualTo(0)
+    assertThat(subject.areQueuesEmpty(TestHelpers.setOf("q1"))).isEqualTo(true)
+    assertThat(subject.getNextEligibleJob(100, NO_PREDICATE)).isNull()
+  }
+
   @Test
   fun `getJobCountForFactory - general`() {
     val subject = FastJobStorage(mockDatabase(DataSet1.FULL_SPECS))
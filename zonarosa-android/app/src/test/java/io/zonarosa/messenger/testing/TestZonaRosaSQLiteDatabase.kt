@@ -25,11 +25,18 @@ class TestZonaRosaSQLiteDatabase(private val database: SupportSQLiteDatabase) :
   }
 
   override fun beginTransaction() {
-    database.beginTransaction()
+    if (database.inTransaction()) {
+      traceLockStart()
+      database.beginTransaction()
+    } else {
+      super.beginTransaction()
+    }
   }
 
   override fun endTransaction() {
     database.endTransaction()
+    traceLockEnd()
+    runPostSuccessfulTransactionTasks()
   }
 
   override fun setTransactionSuccessful() {
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.core.util
+
+import java.util.concurrent.atomic.LongAdder
+import java.util.function.Function
+
+/**
+ * A thread-safe cache that evicts its least recently used entries once it's full.
+ *
+ * Unlike [LRUCache], callers don't need to synchronize around it. Entries are spread across independently locked segments by key hash, so threads
+ * working with different keys rarely contend with each other. Each segment evicts its own least recently used entries, which means eviction is only
+ * approximately least-recently-used across the cache as a whole.
+ *
+ * By default every entry weighs one, making [maxWeight] a maximum entry count. Provide a [Weigher] to bound the cache by something else instead,
+ * like the size of its values in bytes. An entry that weighs more than a single segment can hold is never cached.
+ */
+class ConcurrentLRUCache<K : Any, V : Any> @JvmOverloads constructor(
+  val maxWeight: Long,
+  private val weigher: Weigher<K, V> = Weigher { _, _ -> 1 },
+  concurrencyLevel: Int = DEFAULT_CONCURRENCY_LEVEL
+) {
+
+  companion object {
+    const val DEFAULT_CONCURRENCY_LEVEL = 16
+  }
+
+  private val segments: List<Segment>
+
+  private val hitCount = LongAdder()
+  private val missCount = LongAdder()
+  private val evictionCount = LongAdder()
+
+  init {
+    require(maxWeight > 0) { "maxWeight must be positive! Requested: $maxWeight" }
+    require(concurrencyLevel > 0) { "concurrencyLevel must be positive! Requested: $concurrencyLevel" }
+
+    // A power of two so a segment can be picked with a mask, and never more segments than there is weight to go around
+    val segmentCount = Integer.highestOneBit(minOf(concurrencyLevel.toLong(), maxWeight).toInt())
+    val remainder = maxWeight % segmentCount
+
+    segments = List(segmentCount) { i ->
+      Segment(maxWeight / segmentCount + if (i < remainder) 1 else 0)
+    }
+  }
+
+  /**
+   * @return The value for the key, or null if it isn't cached. Marks the entry as the most recently used.
+   */
+  operator fun get(key: K): V? {
+    val value = segmentFor(key).get(key)
+
+    if (value != null) {
+      hitCount.increment()
+    } else {
+      missCount.increment()
+    }
+
+    return value
+  }
+
+  /**
+   * Caches the value, evicting the least recently used entries if needed to make room.
+   *
+   * @return The value that was previously cached for the key, if any.
+   */
+  fun put(key: K, value: V): V? {
+    return segmentFor(key).put(key, value)
+  }
+
+  /**
+   * Kotlin-friendly alias for [put].
+   */
+  operator fun set(key: K, value: V) {
+    put(key, value)
+  }
+
+  /**
+   * @return The cached value for the key if present, otherwise the result of [loader], which is cached before being returned. The loader is run while
+   *         holding the lock for the key's segment, so it should be cheap.
+   */
+  fun computeIfAbsent(key: K, loader: Function<in K, out V>): V {
+    return segmentFor(key).computeIfAbsent(key, loader)
+  }
+
+  /**
+   * @return The value that was cached for the key, if any.
+   */
+  fun remove(key: K): V? {
+    return segmentFor(key).remove(key)
+  }
+
+  fun clear() {
+    segments.forEach { it.clear() }
+  }
+
+  /**
+   * @return The number of cached entries. Segments are counted one at a time, so this is a snapshot that may be stale under concurrent writes.
+   */
+  val size: Int
+    get() = segments.sumOf { it.size() }
+
+  /**
+   * @return The combined weight of all cached entries. Like [size], this is a snapshot.
+   */
+  val weightedSize: Long
+    get() = segments.sumOf { it.weight() }
+
+  fun stats(): Stats {
+    return Stats(
+      hitCount = hitCount.sum(),
+      missCount = missCount.sum(),
+      evictionCount = evictionCount.sum()
+    )
+  }
+
+  private fun segmentFor(key: K): Segment {
+    val hash = key.hashCode()
+    return segments[(hash xor (hash ushr 16)) and (segments.size - 1)]
+  }
+
+  /**
+   * Determines how much of the cache's [maxWeight] an entry takes up. Must return the same weight for the same entry every time.
+   */
+  fun interface Weigher<K, V> {
+    fun weigh(key: K, value: V): Int
+  }
+
+  data class Stats(
+    val hitCount: Long,
+    val missCount: Long,
+    val evictionCount: Long
+  ) {
+    val requestCount: Long
+      get() = hitCount + missCount
+
+    val hitRate: Double
+      get() = if (requestCount == 0L) 1.0 else hitCount.toDouble() / requestCount
+  }
+
+  private class Entry<V>(val value: V, val weight: Int)
+
+  /**
+   * An independently locked slice of the cache, backed by an access-ordered [LinkedHashMap]. Since reads reorder the map, every operation takes the lock.
+   */
+  private inner class Segment(private val capacity: Long) {
+    private val map: LinkedHashMap<K, Entry<V>> = LinkedHashMap(16, 0.75f, true)
+    private var weight: Long = 0
+
+    fun get(key: K): V? {
+      synchronized(this) {
+        return map[key]?.value
+      }
+    }
+
+    fun put(key: K, value: V): V? {
+      synchronized(this) {
+        return putLocked(key, value)
+      }
+    }
+
+    fun computeIfAbsent(key: K, loader: Function<in K, out V>): V {
+      synchronized(this) {
+        val existing = map[key]
+        if (existing != null) {
+          hitCount.increment()
+          return existing.value
+        }
+
+        missCount.increment()
+
+        val value = loader.apply(key)
+        putLocked(key, value)
+        return value
+      }
+    }
+
+    fun remove(key: K): V? {
+      synchronized(this) {
+        val removed = map.remove(key) ?: return null
+        weight -= removed.weight
+        return removed.value
+      }
+    }
+
+    fun clear() {
+      synchronized(this) {
+        map.clear()
+        weight = 0
+      }
+    }
+
+    fun size(): Int {
+      synchronized(this) {
+        return map.size
+      }
+    }
+
+    fun weight(): Long {
+      synchronized(this) {
+        return weight
+      }
+    }
+
+    private fun putLocked(key: K, value: V): V? {
+      val entryWeight = weigher.weigh(key, value)
+      require(entryWeight >= 0) { "Weights must not be negative! Weighed: $entryWeight" }
+
+      val previous = map.remove(key)
+      if (previous != null) {
+        weight -= previous.weight
+      }
+
+      if (entryWeight > capacity) {
+        return previous?.value
+      }
+
+      map[key] = Entry(value, entryWeight)
+      weight += entryWeight
+
+      val iterator = map.values.iterator()
+      while (weight > capacity && iterator.hasNext()) {
+        val eldest = iterator.next()
+        iterator.remove()
+        weight -= eldest.weight
+        evictionCount.increment()
+      }
+
+      return previous?.value
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.core.util.stream
+
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A small pool of fixed-size buffers for streams that push a lot of data through, so that every stream doesn't need to allocate (and the GC doesn't
+ * need to collect) its own large buffers.
+ *
+ * Buffers are handed out with [acquire]/[acquireDirect] and should be handed back with [release]/[releaseDirect] once the caller is done with them.
+ * Forgetting to release a buffer is harmless -- it'll just be garbage collected like any other array. At most [maxPooled] buffers of each kind are
+ * held on to while idle, so the pool never pins more than `2 * maxPooled * bufferSize` bytes.
+ */
+class BufferPool(val bufferSize: Int, private val maxPooled: Int) {
+
+  companion object {
+    /** Large enough that per-call overhead of ciphers and MACs is negligible, while small enough to not be a memory concern. */
+    const val DEFAULT_BUFFER_SIZE = 64 * 1024
+
+    @JvmField
+    val DEFAULT = BufferPool(bufferSize = DEFAULT_BUFFER_SIZE, maxPooled = 8)
+  }
+
+  private val arrays = ConcurrentLinkedQueue<ByteArray>()
+  private val arrayCount = AtomicInteger(0)
+
+  private val directBuffers = ConcurrentLinkedQueue<ByteBuffer>()
+  private val directBufferCount = AtomicInteger(0)
+
+  init {
+    require(bufferSize > 0) { "bufferSize must be positive! Requested: $bufferSize" }
+    require(maxPooled >= 0) { "maxPooled must not be negative! Requested: $maxPooled" }
+  }
+
+  /**
+   * @return A heap buffer of exactly [bufferSize] bytes. Contents are undefined.
+   */
+  fun acquire(): ByteArray {
+    val pooled = arrays.poll()
+    if (pooled != null) {
+      arrayCount.decrementAndGet()
+      return pooled
+    }
+    return ByteArray(bufferSize)
+  }
+
+  /**
+   * Returns a buffer obtained from [acquire] to the pool. Buffers of the wrong size are ignored.
+   */
+  fun release(buffer: ByteArray) {
+    if (buffer.size != bufferSize) {
+      return
+    }
+
+    if (arrayCount.incrementAndGet() <= maxPooled) {
+      arrays.offer(buffer)
+    } else {
+      arrayCount.decrementAndGet()
+    }
+  }
+
+  /**
+   * @return A direct buffer with a capacity of [bufferSize] bytes, cleared and ready to be written to. Contents are undefined.
+   */
+  fun acquireDirect(): ByteBuffer {
+    val pooled = directBuffers.poll()
+    if (pooled != null) {
+      directBufferCount.decrementAndGet()
+      pooled.clear()
+      return pooled
+    }
+    return ByteBuffer.allocateDirect(bufferSize)
+  }
+
+  /**
+   * Returns a buffer obtained from [acquireDirect] to the pool. Heap buffers and buffers of the wrong size are ignored.
+   */
+  fun releaseDirect(buffer: ByteBuffer) {
+    if (!buffer.isDirect || buffer.capacity() != bufferSize) {
+      return
+    }
+
+    if (directBufferCount.incrementAndGet() <= maxPooled) {
+      directBuffers.offer(buffer)
+    } else {
+      directBufferCount.decrementAndGet()
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.core.util.stream
+
+import io.zonarosa.core.util.readNBytesOrThrow
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import java.nio.channels.ReadableByteChannel
+import java.security.GeneralSecurityException
+import java.security.MessageDigest
+import javax.crypto.Cipher
+import javax.crypto.Mac
+import kotlin.math.min
+
+/**
+ * Limits, MACs, and decrypts a stream in a single pass. This does the job of stacking a [LimitedInputStream], a [MacInputStream], a cipher stream, and
+ * another [LimitedInputStream] on top of each other, but moves data through in large chunks from a [BufferPool] rather than having every layer do its own
+ * small reads and copies.
+ *
+ * Each stage is optional:
+ * - [inputLength] is the number of bytes to consume from [source]. Anything after that is left unread. [UNLIMITED] reads until the end of the stream.
+ * - [mac], if present, is updated with every byte consumed from [source]. Read the final result with [Mac.doFinal] after the stream has been fully read,
+ *   the same as you would with a [MacInputStream]. Alternatively, set [validateTrailingMac] to have the stream read the [Mac.getMacLength] bytes that follow
+ *   the input itself and throw if they don't match.
+ * - [cipher], if present, must already be initialized, and decrypts (or encrypts) everything that's consumed. If absent, input is passed through as-is.
+ * - [outputLength] is the maximum number of bytes to return, which is useful for trimming padding off of plaintext. [UNLIMITED] returns everything.
+ *
+ * Besides the usual [InputStream] methods, this is also a [ReadableByteChannel], so output can be read straight into a [ByteBuffer] (including direct
+ * buffers, e.g. ones obtained from [BufferPool.acquireDirect]). Large reads, both into arrays and buffers, are decrypted directly into the destination
+ * without an intermediate copy.
+ *
+ * Closing this stream closes [source] and returns the buffers it used to the pool.
+ */
+class CipherPipelineInputStream @JvmOverloads constructor(
+  private val source: InputStream,
+  private val cipher: Cipher?,
+  inputLength: Long = UNLIMITED,
+  val mac: Mac? = null,
+  private val validateTrailingMac: Boolean = false,
+  outputLength: Long = UNLIMITED,
+  private val bufferPool: BufferPool = BufferPool.DEFAULT
+) : InputStream(), ReadableByteChannel {
+
+  companion object {
+    const val UNLIMITED = -1L
+  }
+
+  private var inputRemaining: Long = inputLength
+  private var outputRemaining: Long = outputLength
+
+  private val inputBuffer: ByteArray = bufferPool.acquire()
+  private val outputBuffer: ByteArray? = if (cipher != null) bufferPool.acquire() else null
+
+  /**
+   * How much input we can take in one go while guaranteeing that [Cipher.update] output fits in [outputBuffer]. Ciphers may hold on to up to a block
+   * from previous calls (and decrypting ciphers hold back one more in case it's padding), so we leave room for two.
+   */
+  private val inputChunkSize: Int = inputBuffer.size - 2 * (cipher?.blockSize ?: 0)
+
+  private var pending: ByteArray = inputBuffer
+  private var pendingPosition = 0
+  private var pendingLimit = 0
+
+  private var inputEnded = false
+  private var finished = false
+  private var closed = false
+
+  init {
+    require(inputLength >= 0 || inputLength == UNLIMITED) { "Invalid inputLength: $inputLength" }
+    require(outputLength >= 0 || outputLength == UNLIMITED) { "Invalid outputLength: $outputLength" }
+    require(!validateTrailingMac || (mac != null && inputLength != UNLIMITED)) { "Validating a trailing MAC requires a mac and a known inputLength!" }
+    require(inputChunkSize > 0) { "Buffers of ${inputBuffer.size} bytes are too small for this cipher!" }
+  }
+
+  @Throws(IOException::class)
+  override fun read(): Int {
+    if (outputRemaining == 0L || !fillPending()) {
+      return -1
+    }
+
+    val byte = pending[pendingPosition++].toInt() and 0xFF
+    consumeOutput(1)
+    return byte
+  }
+
+  @Throws(IOException::class)
+  override fun read(destination: ByteArray): Int {
+    return read(destination, 0, destination.size)
+  }
+
+  @Throws(IOException::class)
+  override fun read(destination: ByteArray, offset: Int, length: Int): Int {
+    ensureOpen()
+
+    if (length == 0) {
+      return 0
+    }
+
+    if (outputRemaining == 0L) {
+      return -1
+    }
+
+    // Large reads with nothing buffered can skip the intermediate copy. We can only do that if we're allowed to write to the whole destination range.
+    while (pendingPosition >= pendingLimit && !inputEnded && length >= inputBuffer.size && outputCovers(length)) {
+      val read = readInput(if (cipher != null) inputBuffer else destination, if (cipher != null) 0 else offset)
+      if (read == -1) {
+        break
+      }
+
+      val produced = if (cipher != null) update(read, destination, offset) else read
+      if (produced > 0) {
+        consumeOutput(produced)
+        return produced
+      }
+    }
+
+    if (!fillPending()) {
+      return -1
+    }
+
+    val count = limitToOutput(min(length, pendingLimit - pendingPosition))
+    System.arraycopy(pending, pendingPosition, destination, offset, count)
+    pendingPosition += count
+    consumeOutput(count)
+
+    return count
+  }
+
+  @Throws(IOException::class)
+  override fun read(destination: ByteBuffer): Int {
+    if (closed) {
+      throw ClosedChannelException()
+    }
+
+    if (!destination.hasRemaining()) {
+      return 0
+    }
+
+    if (outputRemaining == 0L) {
+      return -1
+    }
+
+    while (cipher != null && pendingPosition >= pendingLimit && !inputEnded && destination.remaining() >= inputBuffer.size && outputCovers(destination.remaining())) {
+      val read = readInput(inputBuffer, 0)
+      if (read == -1) {
+        break
+      }
+
+      val produced = try {
+        cipher.update(ByteBuffer.wrap(inputBuffer, 0, read), destination)
+      } catch (e: GeneralSecurityException) {
+        throw IOException(e)
+      }
+
+      if (produced > 0) {
+        consumeOutput(produced)
+        return produced
+      }
+    }
+
+    if (!fillPending()) {
+      return -1
+    }
+
+    val count = limitToOutput(min(destination.remaining(), pendingLimit - pendingPosition))
+    destination.put(pending, pendingPosition, count)
+    pendingPosition += count
+    consumeOutput(count)
+
+    return count
+  }
+
+  override fun available(): Int {
+    return if (closed) 0 else limitToOutput(pendingLimit - pendingPosition)
+  }
+
+  override fun markSupported(): Boolean = false
+
+  override fun isOpen(): Boolean = !closed
+
+  @Throws(IOException::class)
+  override fun close() {
+    if (closed) {
+      return
+    }
+
+    closed = true
+    pendingPosition = 0
+    pendingLimit = 0
+
+    bufferPool.release(inputBuffer)
+    outputBuffer?.let { bufferPool.release(it) }
+
+    source.close()
+  }
+
+  /**
+   * Makes sure there's at least one byte in [pending], pulling more through the pipeline if necessary.
+   *
+   * @return False if the pipeline has nothing more to give.
+   */
+  @Throws(IOException::class)
+  private fun fillPending(): Boolean {
+    ensureOpen()
+
+    while (pendingPosition >= pendingLimit) {
+      if (finished) {
+        return false
+      }
+
+      if (inputEnded) {
+        finish()
+        continue
+      }
+
+      val read = readInput(inputBuffer, 0)
+      if (read == -1) {
+        continue
+      }
+
+      if (cipher != null) {
+        setPending(outputBuffer!!, update(read, outputBuffer, 0))
+      } else {
+        setPending(inputBuffer, read)
+      }
+    }
+
+    return true
+  }
+
+  /**
+   * Reads the next chunk of input into [buffer], updating the MAC along the way.
+   *
+   * @return The number of bytes read, or -1 if the input is exhausted, in which case [inputEnded] is set.
+   */
+  @Throws(IOException::class)
+  private fun readInput(buffer: ByteArray, offset: Int): Int {
+    val toRead = if (inputRemaining == UNLIMITED) inputChunkSize else min(inputChunkSize.toLong(), inputRemaining).toInt()
+    if (toRead == 0) {
+      inputEnded = true
+      return -1
+    }
+
+    val read = source.read(buffer, offset, toRead)
+    if (read == -1) {
+      inputEnded = true
+      return -1
+    }
+
+    mac?.update(buffer, offset, read)
+
+    if (inputRemaining != UNLIMITED) {
+      inputRemaining -= read
+    }
+
+    return read
+  }
+
+  @Throws(IOException::class)
+  private fun update(inputLength: Int, output: ByteArray, outputOffset: Int): Int {
+    try {
+      return cipher!!.update(inputBuffer, 0, inputLength, output, outputOffset)
+    } catch (e: GeneralSecurityException) {
+      throw IOException(e)
+    }
+  }
+
+  /**
+   * Called once all of the input has been consumed. Validates the trailing MAC if requested, and then flushes whatever the cipher was holding on to.
+   */
+  @Throws(IOException::class)
+  private fun finish() {
+    finished = true
+
+    if (validateTrailingMac) {
+      if (inputRemaining > 0) {
+        throw IOException("Stream ended before MAC could be read! Missing $inputRemaining bytes of input.")
+      }
+
+      val ourMac = mac!!.doFinal()
+      val theirMac = source.readNBytesOrThrow(mac.macLength)
+
+      if (!MessageDigest.isEqual(ourMac, theirMac)) {
+        throw IOException("MAC doesn't match!")
+      }
+    }
+
+    if (cipher == null) {
+      return
+    }
+
+    try {
+      val finalSize = cipher.getOutputSize(0)
+      val buffer = if (finalSize <= outputBuffer!!.size) outputBuffer else ByteArray(finalSize)
+      setPending(buffer, cipher.doFinal(buffer, 0))
+    } catch (e: GeneralSecurityException) {
+      throw IOException(e)
+    }
+  }
+
+  private fun setPending(buffer: ByteArray, length: Int) {
+    pending = buffer
+    pendingPosition = 0
+    pendingLimit = length
+  }
+
+  private fun outputCovers(length: Int): Boolean {
+    return outputRemaining == UNLIMITED || outputRemaining >= length
+  }
+
+  private fun limitToOutput(count: Int): Int {
+    return if (outputRemaining == UNLIMITED) count else min(count.toLong(), outputRemaining).toInt()
+  }
+
+  private fun consumeOutput(count: Int) {
+    if (outputRemaining != UNLIMITED) {
+      outputRemaining -= count
+    }
+  }
+
+  private fun ensureOpen() {
+    if (closed) {
+      throw IOException("Stream closed")
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.core.util
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isNull
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class ConcurrentLRUCacheTest {
+
+  @Test
+  fun `get returns what was put`() {
+    val cache = ConcurrentLRUCache<String, Int>(10)
+
+    cache["a"] = 1
+
+    assertThat(cache["a"]).isEqualTo(1)
+    assertThat(cache["b"]).isNull()
+  }
+
+  @Test
+  fun `evicts least recently used entry when full`() {
+    val cache = ConcurrentLRUCache<String, Int>(maxWeight = 2, concurrencyLevel = 1)
+
+    cache["a"] = 1
+    cache["b"] = 2
+    cache["a"]
+    cache["c"] = 3
+
+    assertThat(cache["a"]).isEqualTo(1)
+    assertThat(cache["b"]).isNull()
+    assertThat(cache["c"]).isEqualTo(3)
+    assertThat(cache.stats().evictionCount).isEqualTo(1L)
+  }
+
+  @Test
+  fun `never holds more than max weight across segments`() {
+    val cache = ConcurrentLRUCache<Int, Int>(maxWeight = 100)
+
+    for (i in 0 until 1_000) {
+      cache[i] = i
+    }
+
+    assertThat(cache.size).isLessThanOrEqualTo(100)
+  }
+
+  @Test
+  fun `weigher bounds by weight rather than count`() {
+    val cache = ConcurrentLRUCache<String, ByteArray>(maxWeight = 10, weigher = { _, value -> value.size }, concurrencyLevel = 1)
+
+    cache["a"] = ByteArray(4)
+    cache["b"] = ByteArray(4)
+    cache["c"] = ByteArray(4)
+
+    assertThat(cache["a"]).isNull()
+    assertThat(cache.size).isEqualTo(2)
+    assertThat(cache.weightedSize).isEqualTo(8L)
+  }
+
+  @Test
+  fun `entries heavier than the cache are not cached`() {
+    val cache = ConcurrentLRUCache<String, ByteArray>(maxWeight = 10, weigher = { _, value -> value.size }, concurrencyLevel = 1)
+
+    cache["a"] = ByteArray(4)
+    cache["b"] = ByteArray(11)
+
+    assertThat(cache["a"]?.size).isEqualTo(4)
+    assertThat(cache["b"]).isNull()
+    assertThat(cache.weightedSize).isEqualTo(4L)
+  }
+
+  @Test
+  fun `replacing an entry updates its weight`() {
+    val cache = ConcurrentLRUCache<String, ByteArray>(maxWeight = 10, weigher = { _, value -> value.size }, concurrencyLevel = 1)
+
+    cache["a"] = ByteArray(4)
+    cache["a"] = ByteArray(6)
+
+    assertThat(cache.size).isEqualTo(1)
+    assertThat(cache.weightedSize).isEqualTo(6L)
+  }
+
+  @Test
+  fun `remove returns value and frees weight`() {
+    val cache = ConcurrentLRUCache<String, Int>(10)
+
+    cache["a"] = 1
+
+    assertThat(cache.remove("a")).isEqualTo(1)
+    assertThat(cache.remove("a")).isNull()
+    assertThat(cache.weightedSize).isEqualTo(0L)
+  }
+
+  @Test
+  fun `computeIfAbsent only loads once`() {
+    val cache = ConcurrentLRUCache<String, Int>(10)
+    var loads = 0
+
+    assertThat(cache.computeIfAbsent("a") { loads++; 1 }).isEqualTo(1)
+    assertThat(cache.computeIfAbsent("a") { loads++; 2 }).isEqualTo(1)
+    assertThat(loads).isEqualTo(1)
+  }
+
+  @Test
+  fun `stats count hits and misses`() {
+    val cache = ConcurrentLRUCache<String, Int>(10)
+
+    cache["a"] = 1
+    cache["a"]
+    cache["a"]
+    cache["b"]
+    cache.computeIfAbsent("c") { 3 }
+
+    val stats = cache.stats()
+    assertThat(stats.hitCount).isEqualTo(2L)
+    assertThat(stats.missCount).isEqualTo(2L)
+    assertThat(stats.hitRate).isEqualTo(0.5)
+  }
+
+  @Test
+  fun `concurrent computeIfAbsent returns a single value per key`() {
+    val cache = ConcurrentLRUCache<Int, Any>(1_000)
+    val executor = Executors.newFixedThreadPool(8)
+    val start = CountDownLatch(1)
+    val results = Array(8) { arrayOfNulls<Any>(100) }
+
+    for (thread in 0 until 8) {
+      executor.execute {
+        start.await()
+        for (key in 0 until 100) {
+          results[thread][key] = cache.computeIfAbsent(key) { Any() }
+        }
+      }
+    }
+
+    start.countDown()
+    executor.shutdown()
+    executor.awaitTermination(10, TimeUnit.SECONDS)
+
+    for (key in 0 until 100) {
+      val expected = results[0][key]
+      for (thread in 1 until 8) {
+        assertThat(results[thread][key]).isEqualTo(expected)
+      }
+    }
+  }
+}
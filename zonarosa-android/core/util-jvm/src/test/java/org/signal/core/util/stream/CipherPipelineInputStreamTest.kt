@@ -0,0 +1,213 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.core.util.stream
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isSameInstanceAs
+import org.junit.Assert.assertArrayEquals
+import org.junit.Test
+import io.zonarosa.core.util.readFully
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import javax.crypto.Cipher
+import javax.crypto.Mac
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+import kotlin.random.Random
+
+class CipherPipelineInputStreamTest {
+
+  private val aesKey = Random.nextBytes(32)
+  private val macKey = Random.nextBytes(32)
+  private val iv = Random.nextBytes(16)
+
+  @Test
+  fun `decrypts what was encrypted, across many chunks`() {
+    val plaintext = Random.nextBytes(300_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+
+    val actual = CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher()).readFully()
+
+    assertArrayEquals(plaintext, actual)
+  }
+
+  @Test
+  fun `decrypts correctly when read one byte at a time`() {
+    val plaintext = Random.nextBytes(1_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+
+    val output = ByteArrayOutputStream()
+    CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher()).use { stream ->
+      var byte = stream.read()
+      while (byte != -1) {
+        output.write(byte)
+        byte = stream.read()
+      }
+    }
+
+    assertArrayEquals(plaintext, output.toByteArray())
+  }
+
+  @Test
+  fun `decrypts correctly when read in odd sized chunks`() {
+    val plaintext = Random.nextBytes(200_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+    val pool = BufferPool(bufferSize = 4096, maxPooled = 2)
+
+    val output = ByteArrayOutputStream()
+    CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher(), bufferPool = pool).use { stream ->
+      val buffer = ByteArray(10_000)
+      var length = 1
+      var read = stream.read(buffer, 3, length)
+      while (read != -1) {
+        output.write(buffer, 3, read)
+        length = (length * 7 + 13) % (buffer.size - 3) + 1
+        read = stream.read(buffer, 3, length)
+      }
+    }
+
+    assertArrayEquals(plaintext, output.toByteArray())
+  }
+
+  @Test
+  fun `decrypts into direct byte buffers`() {
+    val plaintext = Random.nextBytes(300_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+    val pool = BufferPool(bufferSize = 8192, maxPooled = 2)
+
+    val output = ByteArrayOutputStream()
+    CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher(), bufferPool = pool).use { stream ->
+      val buffer = pool.acquireDirect()
+      while (stream.read(buffer) != -1) {
+        buffer.flip()
+        val bytes = ByteArray(buffer.remaining())
+        buffer.get(bytes)
+        output.write(bytes)
+        buffer.clear()
+      }
+      pool.releaseDirect(buffer)
+    }
+
+    assertArrayEquals(plaintext, output.toByteArray())
+  }
+
+  @Test
+  fun `input length leaves the rest of the source unread`() {
+    val plaintext = Random.nextBytes(100_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+    val trailer = Random.nextBytes(32)
+    val source = (ciphertext + trailer).inputStream()
+
+    val actual = CipherPipelineInputStream(source, decryptCipher(), inputLength = ciphertext.size.toLong()).readFully(autoClose = false)
+
+    assertArrayEquals(plaintext, actual)
+    assertArrayEquals(trailer, source.readFully())
+  }
+
+  @Test
+  fun `output length trims the plaintext`() {
+    val plaintext = Random.nextBytes(100_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+
+    val actual = CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher(), outputLength = 77_777).readFully()
+
+    assertArrayEquals(plaintext.copyOf(77_777), actual)
+  }
+
+  @Test
+  fun `mac matches a mac of the consumed input`() {
+    val data = Random.nextBytes(150_000)
+    val mac = mac()
+
+    val actual = CipherPipelineInputStream((data + Random.nextBytes(32)).inputStream(), cipher = null, inputLength = data.size.toLong(), mac = mac).use { stream ->
+      assertArrayEquals(data, stream.readFully(autoClose = false))
+      stream.mac!!.doFinal()
+    }
+
+    assertArrayEquals(mac().doFinal(data), actual)
+  }
+
+  @Test
+  fun `decrypts and validates a trailing mac in one pass`() {
+    val plaintext = Random.nextBytes(150_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+    val combined = ciphertext + mac().doFinal(ciphertext)
+
+    val actual = CipherPipelineInputStream(
+      source = combined.inputStream(),
+      cipher = decryptCipher(),
+      inputLength = ciphertext.size.toLong(),
+      mac = mac(),
+      validateTrailingMac = true
+    ).readFully()
+
+    assertArrayEquals(plaintext, actual)
+  }
+
+  @Test(expected = IOException::class)
+  fun `throws when trailing mac does not match`() {
+    val plaintext = Random.nextBytes(1_000)
+    val ciphertext = encryptCipher().doFinal(plaintext)
+    val combined = ciphertext + Random.nextBytes(32)
+
+    CipherPipelineInputStream(
+      source = combined.inputStream(),
+      cipher = decryptCipher(),
+      inputLength = ciphertext.size.toLong(),
+      mac = mac(),
+      validateTrailingMac = true
+    ).readFully()
+  }
+
+  @Test(expected = IOException::class)
+  fun `throws on bad padding`() {
+    val ciphertext = encryptCipher().doFinal(Random.nextBytes(1_000))
+    ciphertext[ciphertext.size - 1] = (ciphertext[ciphertext.size - 1] + 1).toByte()
+
+    CipherPipelineInputStream(ciphertext.inputStream(), decryptCipher()).readFully()
+  }
+
+  @Test
+  fun `close returns buffers to the pool`() {
+    val pool = BufferPool(bufferSize = 4096, maxPooled = 2)
+    val first = pool.acquire()
+    pool.release(first)
+
+    val stream = CipherPipelineInputStream(ByteArray(0).inputStream(), cipher = null, bufferPool = pool)
+    stream.close()
+
+    assertThat(stream.isOpen()).isFalse()
+    assertThat(pool.acquire()).isSameInstanceAs(first)
+  }
+
+  @Test
+  fun `reading into an empty byte buffer returns zero`() {
+    val stream = CipherPipelineInputStream(ByteArray(10).inputStream(), cipher = null)
+
+    assertThat(stream.read(ByteBuffer.allocate(0))).isEqualTo(0)
+  }
+
+  private fun encryptCipher(): Cipher {
+    return Cipher.getInstance("AES/CBC/PKCS5Padding").apply {
+      init(Cipher.ENCRYPT_MODE, SecretKeySpec(aesKey, "AES"), IvParameterSpec(iv))
+    }
+  }
+
+  private fun decryptCipher(): Cipher {
+    return Cipher.getInstance("AES/CBC/PKCS5Padding").apply {
+      init(Cipher.DECRYPT_MODE, SecretKeySpec(aesKey, "AES"), IvParameterSpec(iv))
+    }
+  }
+
+  private fun mac(): Mac {
+    return Mac.getInstance("HmacSHA256").apply {
+      init(SecretKeySpec(macKey, "HmacSHA256"))
+    }
+  }
+}
@@ -21,93 +21,194 @@
 package io.zonarosa.blurhash;
 
 import android.graphics.Bitmap;
-import android.graphics.Color;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import static io.zonarosa.blurhash.BlurHashUtil.linearTosRGB;
+import static io.zonarosa.blurhash.BlurHashUtil.linearTosRGBFast;
 import static io.zonarosa.blurhash.BlurHashUtil.sRGBToLinear;
 import static io.zonarosa.blurhash.BlurHashUtil.signPow;
 
 public class BlurHashDecoder {
 
+  /**
+   * Scratch space for decoding, reused between calls on the same thread so that decoding doesn't allocate.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<>();
+
   public static @Nullable Bitmap decode(@Nullable String blurHash, int width, int height) {
     return decode(blurHash, width, height, 1f);
   }
 
   static @Nullable Bitmap decode(@Nullable String blurHash, int width, int height, double punch) {
-
-    if (blurHash == null || blurHash.length() < 6) {
+    if (!isValid(blurHash)) {
       return null;
     }
 
+    int[] pixels = new int[width * height];
+    decode(blurHash, width, height, punch, pixels);
+
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
+    return bitmap;
+  }
+
+  /**
+   * Decodes a BlurHash into ARGB_8888 pixels without touching any Android graphics classes, so it can run (and be tested) off-device.
+   *
+   * @param pixels Receives the decoded pixels, row by row. Must hold at least width * height values.
+   * @return True if the hash was valid and the pixels were written, otherwise false.
+   */
+  public static boolean decode(@Nullable String blurHash, int width, int height, double punch, @NonNull int[] pixels) {
+    if (!isValid(blurHash)) {
+      return false;
+    }
+
+    if (pixels.length < width * height) {
+      throw new IllegalArgumentException("Pixel buffer is too small! " + pixels.length + " < " + width + " * " + height);
+    }
+
     int numCompEnc = Base83.decode(blurHash, 0, 1);
     int numCompX   = (numCompEnc % 9) + 1;
     int numCompY   = (numCompEnc / 9) + 1;
+    int numComp    = numCompX * numCompY;
 
-    if (blurHash.length() != 4 + 2 * numCompX * numCompY) {
-      return null;
+    Scratch scratch = Scratch.get(numComp, numCompX, numCompY, width, height);
+
+    int      maxAcEnc = Base83.decode(blurHash, 1, 2);
+    double   maxAc    = (maxAcEnc + 1) / 166f;
+    double[] colors   = scratch.colors;
+
+    decodeDc(Base83.decode(blurHash, 2, 6), colors);
+    for (int i = 1; i < numComp; i++) {
+      int from = 4 + i * 2;
+      decodeAc(Base83.decode(blurHash, from, from + 2), maxAc * punch, colors, i * 3);
     }
 
-    int        maxAcEnc = Base83.decode(blurHash, 1, 2);
-    double     maxAc    = (maxAcEnc + 1) / 166f;
-    double[][] colors   = new double[numCompX * numCompY][];
-    for (int i = 0; i < colors.length; i++) {
-      if (i == 0) {
-        int colorEnc = Base83.decode(blurHash, 2, 6);
-        colors[i] = decodeDc(colorEnc);
-      } else {
-        int from = 4 + i * 2;
-        int colorEnc = Base83.decode(blurHash, from, from + 2);
-        colors[i] = decodeAc(colorEnc, maxAc * punch);
-      }
+    composePixels(width, height, numCompX, numCompY, colors, scratch, pixels);
+
+    return true;
+  }
+
+  private static boolean isValid(@Nullable String blurHash) {
+    if (blurHash == null || blurHash.length() < 6) {
+      return false;
     }
 
-    return composeBitmap(width, height, numCompX, numCompY, colors);
+    int numCompEnc = Base83.decode(blurHash, 0, 1);
+    int numCompX   = (numCompEnc % 9) + 1;
+    int numCompY   = (numCompEnc / 9) + 1;
+
+    return blurHash.length() == 4 + 2 * numCompX * numCompY;
   }
 
-  private static double[] decodeDc(int colorEnc) {
+  private static void decodeDc(int colorEnc, double[] out) {
     int r = colorEnc >> 16;
     int g = (colorEnc >> 8) & 255;
     int b = colorEnc & 255;
-    return new double[] {sRGBToLinear(r),
-                         sRGBToLinear(g),
-                         sRGBToLinear(b)};
+
+    out[0] = sRGBToLinear(r);
+    out[1] = sRGBToLinear(g);
+    out[2] = sRGBToLinear(b);
   }
 
-  private static double[] decodeAc(int value, double maxAc) {
+  private static void decodeAc(int value, double maxAc, double[] out, int offset) {
     int r = value / (19 * 19);
     int g = (value / 19) % 19;
     int b = value % 19;
-    return new double[]{
-        signPow((r - 9) / 9.0f, 2f) * maxAc,
-        signPow((g - 9) / 9.0f, 2f) * maxAc,
-        signPow((b - 9) / 9.0f, 2f) * maxAc
-    };
+
+    out[offset]     = signPow((r - 9) / 9.0f, 2f) * maxAc;
+    out[offset + 1] = signPow((g - 9) / 9.0f, 2f) * maxAc;
+    out[offset + 2] = signPow((b - 9) / 9.0f, 2f) * maxAc;
   }
 
-  private static Bitmap composeBitmap(int width, int height, int numCompX, int numCompY, double[][] colors) {
-    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+  /**
+   * The basis function for component (i, j) at pixel (x, y) is cos(PI * x * i / width) * cos(PI * y * j / height), so it can be split into a horizontal
+   * and a vertical table. For each row, we first fold the vertical factors into a per-column color, then only need one pass over the horizontal
+   * components for each pixel.
+   */
+  private static void composePixels(int width, int height, int numCompX, int numCompY, double[] colors, Scratch scratch, int[] pixels) {
+    double[] cosX = scratch.cosX;
+    double[] cosY = scratch.cosY;
+    double[] row  = scratch.row;
+
+    for (int x = 0; x < width; x++) {
+      for (int i = 0; i < numCompX; i++) {
+        cosX[x * numCompX + i] = Math.cos(Math.PI * x * i / width);
+      }
+    }
+
     for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
+      for (int j = 0; j < numCompY; j++) {
+        cosY[y * numCompY + j] = Math.cos(Math.PI * y * j / height);
+      }
+    }
 
-        double r = 0f;
-        double g = 0f;
-        double b = 0f;
+    for (int y = 0; y < height; y++) {
+      for (int i = 0; i < numCompX; i++) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
 
         for (int j = 0; j < numCompY; j++) {
-          for (int i = 0; i < numCompX; i++) {
-            double basis = (Math.cos(Math.PI * x * i / width) * Math.cos(Math.PI * y * j / height));
-            double[] color = colors[j * numCompX + i];
-            r += color[0] * basis;
-            g += color[1] * basis;
-            b += color[2] * basis;
-          }
+          double basis = cosY[y * numCompY + j];
+          int    color = (j * numCompX + i) * 3;
+
+          r += colors[color]     * basis;
+          g += colors[color + 1] * basis;
+          b += colors[color + 2] * basis;
         }
-        bitmap.setPixel(x, y, Color.rgb((int) linearTosRGB(r), (int) linearTosRGB(g), (int) linearTosRGB(b)));
+
+        row[i * 3]     = r;
+        row[i * 3 + 1] = g;
+        row[i * 3 + 2] = b;
+      }
+
+      int rowOffset = y * width;
+
+      for (int x = 0; x < width; x++) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+
+        for (int i = 0; i < numCompX; i++) {
+          double basis = cosX[x * numCompX + i];
+
+          r += row[i * 3]     * basis;
+          g += row[i * 3 + 1] * basis;
+          b += row[i * 3 + 2] * basis;
+        }
+
+        pixels[rowOffset + x] = 0xff000000 | (linearTosRGBFast(r) << 16) | (linearTosRGBFast(g) << 8) | linearTosRGBFast(b);
       }
     }
+  }
 
-    return bitmap;
+  private static final class Scratch {
+    private double[] colors = new double[0];
+    private double[] cosX   = new double[0];
+    private double[] cosY   = new double[0];
+    private double[] row    = new double[0];
+
+    static @NonNull Scratch get(int numComp, int numCompX, int numCompY, int width, int height) {
+      Scratch scratch = SCRATCH.get();
+
+      if (scratch == null) {
+        scratch = new Scratch();
+        SCRATCH.set(scratch);
+      }
+
+      scratch.colors = ensureCapacity(scratch.colors, numComp * 3);
+      scratch.cosX   = ensureCapacity(scratch.cosX, width * numCompX);
+      scratch.cosY   = ensureCapacity(scratch.cosY, height * numCompY);
+      scratch.row    = ensureCapacity(scratch.row, numCompX * 3);
+
+      return scratch;
+    }
+
+    private static double[] ensureCapacity(double[] array, int capacity) {
+      return array.length >= capacity ? array : new double[capacity];
+    }
   }
 }
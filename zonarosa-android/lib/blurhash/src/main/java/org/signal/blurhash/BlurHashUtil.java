@@ -6,15 +6,34 @@ package io.zonarosa.blurhash;
 
 final class BlurHashUtil {
 
-  static double sRGBToLinear(long value) {
-    double v = value / 255.0;
-    if (v <= 0.04045) {
-      return v / 12.92;
-    } else {
-      return Math.pow((v + 0.055) / 1.055, 2.4);
+  /**
+   * The number of entries in {@link #LINEAR_TO_SRGB}. The steepest part of the sRGB curve changes by a little over 3000 units per unit of linear
+   * value, so this is enough for lookups to land within one unit of the exact conversion.
+   */
+  private static final int LINEAR_TO_SRGB_TABLE_SIZE = 4096;
+
+  private static final double[] SRGB_TO_LINEAR = new double[256];
+  private static final int[]    LINEAR_TO_SRGB = new int[LINEAR_TO_SRGB_TABLE_SIZE];
+
+  static {
+    for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+      double v = i / 255.0;
+      if (v <= 0.04045) {
+        SRGB_TO_LINEAR[i] = v / 12.92;
+      } else {
+        SRGB_TO_LINEAR[i] = Math.pow((v + 0.055) / 1.055, 2.4);
+      }
+    }
+
+    for (int i = 0; i < LINEAR_TO_SRGB.length; i++) {
+      LINEAR_TO_SRGB[i] = (int) linearTosRGB(i / (double) (LINEAR_TO_SRGB_TABLE_SIZE - 1));
     }
   }
 
+  static double sRGBToLinear(long value) {
+    return SRGB_TO_LINEAR[(int) value & 0xff];
+  }
+
   static long linearTosRGB(double value) {
     double v = Math.max(0, Math.min(1, value));
     if (v <= 0.0031308) {
@@ -24,6 +43,14 @@ final class BlurHashUtil {
     }
   }
 
+  /**
+   * Like {@link #linearTosRGB(double)}, but uses a lookup table. May differ from the exact conversion by one.
+   */
+  static int linearTosRGBFast(double value) {
+    double v = Math.max(0, Math.min(1, value));
+    return LINEAR_TO_SRGB[(int) (v * (LINEAR_TO_SRGB_TABLE_SIZE - 1) + 0.5)];
+  }
+
   static double signPow(double val, double exp) {
     return Math.copySign(Math.pow(Math.abs(val), exp), val);
   }
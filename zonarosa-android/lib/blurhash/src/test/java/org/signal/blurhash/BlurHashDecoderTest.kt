@@ -0,0 +1,112 @@
+package io.zonarosa.blurhash
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.abs
+import kotlin.math.cos
+
+class BlurHashDecoderTest {
+
+  companion object {
+    private const val HASH = "LEHV6nWB2yk8pyo0adR*.7kCMdnj"
+  }
+
+  @Test
+  fun decode_matchesReferenceDecoder() {
+    for ((width, height) in listOf(32 to 32, 20 to 13, 1 to 1)) {
+      val pixels = IntArray(width * height)
+
+      assertTrue(BlurHashDecoder.decode(HASH, width, height, 1.0, pixels))
+      assertPixelsClose(referenceDecode(HASH, width, height), pixels)
+    }
+  }
+
+  @Test
+  fun decode_reusesLargerBufferForSmallerImage() {
+    val pixels = IntArray(64 * 64)
+
+    assertTrue(BlurHashDecoder.decode(HASH, 64, 64, 1.0, pixels))
+    assertTrue(BlurHashDecoder.decode(HASH, 8, 4, 1.0, pixels))
+
+    assertPixelsClose(referenceDecode(HASH, 8, 4), pixels.copyOf(8 * 4))
+  }
+
+  @Test
+  fun decode_invalidHash_returnsFalse() {
+    val pixels = IntArray(16)
+
+    assertFalse(BlurHashDecoder.decode(null, 4, 4, 1.0, pixels))
+    assertFalse(BlurHashDecoder.decode("LEHV6", 4, 4, 1.0, pixels))
+    assertFalse(BlurHashDecoder.decode(HASH + "a", 4, 4, 1.0, pixels))
+  }
+
+  @Test(expected = IllegalArgumentException::class)
+  fun decode_bufferTooSmall_throws() {
+    BlurHashDecoder.decode(HASH, 4, 4, 1.0, IntArray(15))
+  }
+
+  @Test
+  fun linearTosRGBFast_withinOneOfExact() {
+    for (i in 0..100_000) {
+      val value = i / 100_000.0
+      val exact = BlurHashUtil.linearTosRGB(value)
+      val fast = BlurHashUtil.linearTosRGBFast(value)
+
+      assertTrue("value: $value, exact: $exact, fast: $fast", abs(exact - fast) <= 1)
+    }
+  }
+
+  private fun assertPixelsClose(expected: IntArray, actual: IntArray) {
+    assertEquals(expected.size, actual.size)
+
+    for (i in expected.indices) {
+      assertEquals(0xff, actual[i] ushr 24)
+
+      for (shift in intArrayOf(16, 8, 0)) {
+        val expectedChannel = (expected[i] shr shift) and 0xff
+        val actualChannel = (actual[i] shr shift) and 0xff
+
+        assertTrue("pixel $i, expected: $expectedChannel, actual: $actualChannel", abs(expectedChannel - actualChannel) <= 1)
+      }
+    }
+  }
+
+  /**
+   * A straightforward decoder, computing every basis function from scratch for every pixel.
+   */
+  private fun referenceDecode(hash: String, width: Int, height: Int): IntArray {
+    val numCompEnc = Base83.decode(hash, 0, 1)
+    val numCompX = (numCompEnc % 9) + 1
+    val numCompY = (numCompEnc / 9) + 1
+    val maxAc = (Base83.decode(hash, 1, 2) + 1) / 166f
+
+    val colors = Array(numCompX * numCompY) { i ->
+      if (i == 0) {
+        val value = Base83.decode(hash, 2, 6)
+        doubleArrayOf(BlurHashUtil.sRGBToLinear((value shr 16).toLong()), BlurHashUtil.sRGBToLinear(((value shr 8) and 255).toLong()), BlurHashUtil.sRGBToLinear((value and 255).toLong()))
+      } else {
+        val value = Base83.decode(hash, 4 + i * 2, 6 + i * 2)
+        intArrayOf(value / (19 * 19), (value / 19) % 19, value % 19).map { BlurHashUtil.signPow((it - 9) / 9.0, 2.0) * maxAc }.toDoubleArray()
+      }
+    }
+
+    return IntArray(width * height) { p ->
+      val x = p % width
+      val y = p / width
+      val rgb = DoubleArray(3)
+
+      for (j in 0 until numCompY) {
+        for (i in 0 until numCompX) {
+          val basis = cos(Math.PI * x * i / width) * cos(Math.PI * y * j / height)
+          for (c in 0..2) {
+            rgb[c] += colors[j * numCompX + i][c] * basis
+          }
+        }
+      }
+
+      (0xff shl 24) or (BlurHashUtil.linearTosRGB(rgb[0]).toInt() shl 16) or (BlurHashUtil.linearTosRGB(rgb[1]).toInt() shl 8) or BlurHashUtil.linearTosRGB(rgb[2]).toInt()
+    }
+  }
+}
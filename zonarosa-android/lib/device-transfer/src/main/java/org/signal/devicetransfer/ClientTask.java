@@ -16,10 +16,21 @@ public interface ClientTask extends Serializable {
 
   /**
    * @param context      Android context, mostly like the foreground transfer service
-   * @param outputStream Output stream associated with socket connected to remote server.
+   * @param outputStream Output stream associated with socket connected to remote server. If both devices support it, this is a
+   *                     {@link ParallelTransferOutputStream} spread across several sockets, with compression initially set by
+   *                     {@link #isCompressionEnabled()}. Compression can be toggled per section with
+   *                     {@link ParallelTransferOutputStream#setCompressionEnabled(boolean)}.
    */
   void run(@NonNull Context context, @NonNull OutputStream outputStream) throws IOException;
 
+  /**
+   * Whether chunks should be compressed when sending over parallel streams. Off by default, since compressing data that is already
+   * compressed or encrypted only costs CPU time.
+   */
+  default boolean isCompressionEnabled() {
+    return false;
+  }
+
   /**
    * Called after the output stream has been successfully flushed and closed.
    */
@@ -14,7 +14,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLHandshakeException;
@@ -38,13 +43,14 @@ final class NetworkClientThread extends Thread {
   private volatile boolean   isRunning;
   private volatile Boolean   isVerified;
 
-  private final Context    context;
-  private final ClientTask clientTask;
-  private final String     serverHostAddress;
-  private final int        port;
-  private final Handler    handler;
-  private final Object     verificationLock;
-  private       boolean    success;
+  private final Context         context;
+  private final ClientTask      clientTask;
+  private final String          serverHostAddress;
+  private final int             port;
+  private final Handler         handler;
+  private final Object          verificationLock;
+  private final List<SSLSocket> dataSockets = new CopyOnWriteArrayList<>();
+  private       boolean         success;
 
   public NetworkClientThread(@NonNull Context context,
                              @NonNull ClientTask clientTask,
@@ -92,10 +98,11 @@ final class NetworkClientThread extends Thread {
           Log.i(TAG, "Waiting for user to verify sas");
           awaitAuthenticationCodeVerification();
           Log.d(TAG, "Waiting for server to tell us they also verified");
-          outputStream.write(0x43);
+          outputStream.write(ParallelTransfer.VERIFIED_PARALLEL);
           outputStream.flush();
+          int result;
           try {
-            int result = inputStream.read();
+            result = inputStream.read();
             if (result == -1) {
               Log.w(TAG, "Something happened waiting for server to verify");
               throw new DeviceTransferAuthentication.DeviceTransferAuthenticationException("server disconnected while we waited");
@@ -106,7 +113,12 @@ final class NetworkClientThread extends Thread {
           }
 
           handler.sendEmptyMessage(NETWORK_CLIENT_CONNECTED);
-          clientTask.run(context, outputStream);
+          if (ParallelTransfer.isParallel(ParallelTransfer.VERIFIED_PARALLEL, result)) {
+            ParallelTransfer.runClientTask(context, clientTask, openDataStreams(x509, inputStream, outputStream));
+          } else {
+            Log.i(TAG, "Server does not support parallel streams");
+            clientTask.run(context, outputStream);
+          }
           outputStream.flush();
 
           Log.d(TAG, "Waiting for server to tell us they got everything");
@@ -130,6 +142,7 @@ final class NetworkClientThread extends Thread {
         if (success) {
           clientTask.success();
         }
+        closeDataSockets();
         StreamUtil.close(client);
         handler.sendEmptyMessage(NETWORK_CLIENT_DISCONNECTED);
       }
@@ -143,6 +156,48 @@ final class NetworkClientThread extends Thread {
     handler.sendEmptyMessage(NETWORK_CLIENT_STOPPED);
   }
 
+  /**
+   * Opens the additional sockets the server asked for, making sure each one reaches the same server we already verified.
+   *
+   * @return The verified socket's stream followed by the stream of every additional socket.
+   */
+  private @NonNull List<OutputStream> openDataStreams(@NonNull X509Certificate x509, @NonNull InputStream inputStream, @NonNull OutputStream outputStream)
+      throws IOException, CertificateEncodingException
+  {
+    ParallelTransfer.Session session = ParallelTransfer.readSession(inputStream);
+
+    List<OutputStream> outputStreams = new ArrayList<>(session.getStreamCount());
+    outputStreams.add(outputStream);
+
+    while (outputStreams.size() < session.getStreamCount()) {
+      SelfSignedIdentity.ApprovingTrustManager trustManager = new SelfSignedIdentity.ApprovingTrustManager();
+      SSLSocket                                dataSocket   = (SSLSocket) SelfSignedIdentity.getApprovingSocketFactory(trustManager).createSocket();
+      dataSockets.add(dataSocket);
+
+      dataSocket.bind(null);
+      dataSocket.connect(new InetSocketAddress(serverHostAddress, port), 10000);
+      dataSocket.startHandshake();
+
+      X509Certificate dataX509 = trustManager.getX509Certificate();
+      if (dataX509 == null || !Arrays.equals(dataX509.getEncoded(), x509.getEncoded())) {
+        throw new SSLHandshakeException("Additional stream presented a different certificate");
+      }
+
+      ParallelTransfer.writeToken(dataSocket.getOutputStream(), session);
+      outputStreams.add(dataSocket.getOutputStream());
+    }
+
+    Log.i(TAG, "Sending over " + outputStreams.size() + " streams");
+    return outputStreams;
+  }
+
+  private void closeDataSockets() {
+    for (SSLSocket dataSocket : dataSockets) {
+      StreamUtil.close(dataSocket);
+    }
+    dataSockets.clear();
+  }
+
   private void awaitAuthenticationCodeVerification() throws DeviceTransferAuthentication.DeviceTransferAuthenticationException {
     synchronized (verificationLock) {
       try {
@@ -169,6 +224,7 @@ final class NetworkClientThread extends Thread {
   @AnyThread
   public void shutdown() {
     isRunning = false;
+    closeDataSockets();
     StreamUtil.close(client);
     interrupt();
   }
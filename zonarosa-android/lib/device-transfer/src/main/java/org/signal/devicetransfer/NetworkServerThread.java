@@ -14,6 +14,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Performs the networking setup/tear down for the server. This includes
@@ -30,6 +34,8 @@ final class NetworkServerThread extends Thread {
   public static final int NETWORK_CLIENT_DISCONNECTED    = 1004;
   public static final int NETWORK_CLIENT_SSL_ESTABLISHED = 1005;
 
+  private static final int DATA_SOCKET_ACCEPT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
   private volatile ServerSocket serverSocket;
   private volatile Socket       clientSocket;
   private volatile boolean      isRunning;
@@ -40,6 +46,7 @@ final class NetworkServerThread extends Thread {
   private final SelfSignedIdentity.SelfSignedKeys keys;
   private final Handler                           handler;
   private final Object                            verificationLock;
+  private final List<Socket>                      dataSockets = new CopyOnWriteArrayList<>();
 
   public NetworkServerThread(@NonNull Context context,
                              @NonNull ServerTask serverTask,
@@ -80,10 +87,11 @@ final class NetworkServerThread extends Thread {
           Log.i(TAG, "Waiting for user to verify sas");
           awaitAuthenticationCodeVerification();
           Log.d(TAG, "Waiting for client to tell us they also verified");
-          outputStream.write(0x43);
+          outputStream.write(ParallelTransfer.VERIFIED_PARALLEL);
           outputStream.flush();
+          int result;
           try {
-            int result = inputStream.read();
+            result = inputStream.read();
             if (result == -1) {
               Log.w(TAG, "Something happened waiting for client to verify");
               throw new DeviceTransferAuthentication.DeviceTransferAuthenticationException("client disconnected while we waited");
@@ -94,7 +102,18 @@ final class NetworkServerThread extends Thread {
           }
 
           handler.sendEmptyMessage(NETWORK_CLIENT_CONNECTED);
-          serverTask.run(context, inputStream);
+          if (ParallelTransfer.isParallel(ParallelTransfer.VERIFIED_PARALLEL, result)) {
+            ParallelTransferInputStream parallelInputStream = acceptDataStreams(inputStream, outputStream);
+            serverTask.run(context, parallelInputStream);
+
+            long discarded = parallelInputStream.drain();
+            if (discarded > 0) {
+              Log.w(TAG, "Discarded " + discarded + " bytes the server task did not read");
+            }
+          } else {
+            Log.i(TAG, "Client does not support parallel streams");
+            serverTask.run(context, inputStream);
+          }
 
           outputStream.write(0x53);
           outputStream.flush();
@@ -105,6 +124,7 @@ final class NetworkServerThread extends Thread {
             Log.i(TAG, "Server shutting down...");
           }
         } finally {
+          closeDataSockets();
           StreamUtil.close(clientSocket);
           handler.sendEmptyMessage(NETWORK_CLIENT_DISCONNECTED);
         }
@@ -122,6 +142,45 @@ final class NetworkServerThread extends Thread {
     handler.sendEmptyMessage(NETWORK_SERVER_STOPPED);
   }
 
+  /**
+   * Sends the client a session for parallel streams and accepts its additional sockets.
+   *
+   * @return A stream that reads the transfer from the verified socket and every additional socket.
+   */
+  private @NonNull ParallelTransferInputStream acceptDataStreams(@NonNull InputStream inputStream, @NonNull OutputStream outputStream) throws IOException {
+    ParallelTransfer.Session session = ParallelTransfer.createSession();
+    ParallelTransfer.writeSession(outputStream, session);
+
+    List<InputStream> inputStreams = new ArrayList<>(session.getStreamCount());
+    inputStreams.add(inputStream);
+
+    serverSocket.setSoTimeout(DATA_SOCKET_ACCEPT_TIMEOUT);
+    try {
+      while (inputStreams.size() < session.getStreamCount()) {
+        Socket dataSocket = serverSocket.accept();
+        dataSockets.add(dataSocket);
+
+        dataSocket.setSoTimeout(DATA_SOCKET_ACCEPT_TIMEOUT);
+        ParallelTransfer.verifyToken(dataSocket.getInputStream(), session);
+        dataSocket.setSoTimeout(0);
+
+        inputStreams.add(dataSocket.getInputStream());
+      }
+    } finally {
+      serverSocket.setSoTimeout(0);
+    }
+
+    Log.i(TAG, "Receiving over " + inputStreams.size() + " streams");
+    return new ParallelTransferInputStream(inputStreams);
+  }
+
+  private void closeDataSockets() {
+    for (Socket dataSocket : dataSockets) {
+      StreamUtil.close(dataSocket);
+    }
+    dataSockets.clear();
+  }
+
   private void awaitAuthenticationCodeVerification() throws DeviceTransferAuthentication.DeviceTransferAuthenticationException {
     synchronized (verificationLock) {
       try {
@@ -161,6 +220,7 @@ final class NetworkServerThread extends Thread {
   @AnyThread
   public void shutdown() {
     isRunning = false;
+    closeDataSockets();
     StreamUtil.close(clientSocket);
     StreamUtil.close(serverSocket);
     interrupt();
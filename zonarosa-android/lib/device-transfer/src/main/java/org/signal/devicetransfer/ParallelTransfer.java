@@ -0,0 +1,110 @@
+package io.zonarosa.devicetransfer;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * Negotiation for sending a transfer over several sockets with {@link ParallelTransferOutputStream}.
+ * <p>
+ * After SAS verification both sides write a single byte. Older versions write {@link #VERIFIED} and ignore the value they read, so a side
+ * that supports parallel streams writes {@link #VERIFIED_PARALLEL} instead and only uses them if the other side did the same.
+ * <p>
+ * In parallel mode the server then sends a random session token and the number of streams on the verified socket. The client opens the
+ * additional sockets to the same server, checks they present the same certificate, and sends the token on each so the server can tell them
+ * apart from anything else that connects.
+ */
+final class ParallelTransfer {
+
+  static final int VERIFIED          = 0x43;
+  static final int VERIFIED_PARALLEL = 0x50;
+
+  static final int STREAM_COUNT = 4;
+
+  private static final int TOKEN_LENGTH     = 32;
+  private static final int MAX_STREAM_COUNT = 16;
+
+  private ParallelTransfer() {}
+
+  static boolean isParallel(int sent, int received) {
+    return sent == VERIFIED_PARALLEL && received == VERIFIED_PARALLEL;
+  }
+
+  static @NonNull Session createSession() {
+    byte[] token = new byte[TOKEN_LENGTH];
+    new SecureRandom().nextBytes(token);
+
+    return new Session(token, STREAM_COUNT);
+  }
+
+  static void writeSession(@NonNull OutputStream outputStream, @NonNull Session session) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+
+    out.write(session.token);
+    out.writeInt(session.streamCount);
+    out.flush();
+  }
+
+  static @NonNull Session readSession(@NonNull InputStream inputStream) throws IOException {
+    DataInputStream in    = new DataInputStream(inputStream);
+    byte[]          token = new byte[TOKEN_LENGTH];
+
+    in.readFully(token);
+    int streamCount = in.readInt();
+
+    if (streamCount < 1 || streamCount > MAX_STREAM_COUNT) {
+      throw new IOException("Invalid stream count: " + streamCount);
+    }
+
+    return new Session(token, streamCount);
+  }
+
+  static void writeToken(@NonNull OutputStream outputStream, @NonNull Session session) throws IOException {
+    outputStream.write(session.token);
+    outputStream.flush();
+  }
+
+  static void verifyToken(@NonNull InputStream inputStream, @NonNull Session session) throws IOException {
+    byte[] token = new byte[TOKEN_LENGTH];
+    new DataInputStream(inputStream).readFully(token);
+
+    if (!MessageDigest.isEqual(token, session.token)) {
+      throw new IOException("Additional stream presented the wrong session token");
+    }
+  }
+
+  /**
+   * Runs the client task over a {@link ParallelTransferOutputStream} spread across the given streams, with compression enabled if the task
+   * asks for it, and waits for every chunk to be written.
+   */
+  static void runClientTask(@NonNull Context context, @NonNull ClientTask clientTask, @NonNull List<OutputStream> outputStreams)
+      throws IOException
+  {
+    try (ParallelTransferOutputStream parallelOutputStream = new ParallelTransferOutputStream(outputStreams, clientTask.isCompressionEnabled())) {
+      clientTask.run(context, parallelOutputStream);
+    }
+  }
+
+  static final class Session {
+    private final byte[] token;
+    private final int    streamCount;
+
+    private Session(@NonNull byte[] token, int streamCount) {
+      this.token       = token;
+      this.streamCount = streamCount;
+    }
+
+    int getStreamCount() {
+      return streamCount;
+    }
+  }
+}
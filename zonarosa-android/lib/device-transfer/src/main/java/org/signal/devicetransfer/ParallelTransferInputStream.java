@@ -0,0 +1,269 @@
+package io.zonarosa.devicetransfer;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the chunks sent by a {@link ParallelTransferOutputStream} from several streams at once and returns their contents in order.
+ * <p>
+ * Each stream gets its own thread, which reads, decompresses, and verifies the checksum of each chunk before handing it over. At most
+ * {@code maxBufferedChunks} chunks are held waiting for an earlier chunk to arrive, after which the reading threads wait, so a slow stream
+ * applies back pressure instead of the others buffering the whole transfer.
+ * <p>
+ * The end of the transfer is only reported once every stream has been read to its end. Closing this stream does not close the underlying
+ * streams.
+ */
+public final class ParallelTransferInputStream extends InputStream {
+
+  private static final int DEFAULT_MAX_BUFFERED_CHUNKS = 16;
+
+  private final Object                   lock    = new Object();
+  private final Map<Long, TransferChunk> pending = new HashMap<>();
+  private final List<Thread>             readers;
+  private final int                      maxChunkSize;
+  private final int                      maxBufferedChunks;
+
+  private TransferChunk current;
+  private int           currentPosition;
+  private long          nextSequence;
+  private long          totalChunks = -1;
+  private int           endedStreams;
+  private IOException   failure;
+  private boolean       closed;
+
+  public ParallelTransferInputStream(@NonNull List<InputStream> inputStreams) {
+    this(inputStreams, ParallelTransferOutputStream.DEFAULT_CHUNK_SIZE, DEFAULT_MAX_BUFFERED_CHUNKS);
+  }
+
+  ParallelTransferInputStream(@NonNull List<InputStream> inputStreams, int maxChunkSize, int maxBufferedChunks) {
+    if (inputStreams.isEmpty()) {
+      throw new IllegalArgumentException("Need at least one stream!");
+    }
+
+    this.maxChunkSize      = maxChunkSize;
+    this.maxBufferedChunks = Math.max(maxBufferedChunks, inputStreams.size());
+    this.readers           = new ArrayList<>(inputStreams.size());
+
+    for (int i = 0; i < inputStreams.size(); i++) {
+      DataInputStream in     = new DataInputStream(new BufferedInputStream(inputStreams.get(i), 64 * 1024));
+      Thread          reader = new Thread(() -> readChunks(in), "ParallelTransferReader-" + i);
+
+      reader.setDaemon(true);
+      reader.start();
+      readers.add(reader);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+
+    return current.payload[currentPosition++] & 0xff;
+  }
+
+  @Override
+  public int read(@NonNull byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!nextChunk()) {
+      return -1;
+    }
+
+    int count = Math.min(len, current.originalLength - currentPosition);
+
+    System.arraycopy(current.payload, currentPosition, b, off, count);
+    currentPosition += count;
+
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return current != null ? current.originalLength - currentPosition : 0;
+  }
+
+  @Override
+  public void close() {
+    synchronized (lock) {
+      closed = true;
+      pending.clear();
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Reads and discards anything left, so that every stream has been read to its end before the caller acknowledges the transfer.
+   *
+   * @return The number of bytes discarded.
+   */
+  public long drain() throws IOException {
+    long   discarded = 0;
+    byte[] buffer    = new byte[8192];
+    int    read;
+
+    while ((read = read(buffer)) != -1) {
+      discarded += read;
+    }
+
+    return discarded;
+  }
+
+  /**
+   * Makes sure {@link #current} has data left to read, waiting for the next chunk if necessary.
+   *
+   * @return False if the end of the transfer has been reached.
+   */
+  private boolean nextChunk() throws IOException {
+    if (current != null && currentPosition < current.originalLength) {
+      return true;
+    }
+
+    synchronized (lock) {
+      while (true) {
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+
+        TransferChunk next = pending.remove(nextSequence);
+
+        if (next != null) {
+          nextSequence++;
+          lock.notifyAll();
+
+          if (next.originalLength == 0) {
+            continue;
+          }
+
+          current         = next;
+          currentPosition = 0;
+          return true;
+        }
+
+        if (endedStreams == readers.size()) {
+          if (nextSequence < totalChunks) {
+            throw new IOException("Transfer ended without chunk " + nextSequence);
+          }
+
+          current = null;
+          return false;
+        }
+
+        if (failure != null) {
+          throw new IOException("Failed to receive chunk " + nextSequence, failure);
+        }
+
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while waiting for chunk " + nextSequence);
+        }
+      }
+    }
+  }
+
+  private void readChunks(@NonNull DataInputStream in) {
+    Inflater inflater = new Inflater();
+    CRC32    crc      = new CRC32();
+
+    try {
+      while (true) {
+        TransferChunk chunk = TransferChunk.read(in, maxChunkSize);
+
+        if (chunk.isEnd()) {
+          synchronized (lock) {
+            if (totalChunks >= 0 && totalChunks != chunk.sequence) {
+              throw new IOException("Streams disagree on the number of chunks! " + totalChunks + " vs " + chunk.sequence);
+            }
+
+            totalChunks = chunk.sequence;
+            endedStreams++;
+            lock.notifyAll();
+          }
+          return;
+        }
+
+        TransferChunk verified = chunk.isCompressed() ? decompress(inflater, chunk) : chunk;
+
+        if (verified.originalLength != verified.payloadLength || TransferChunk.checksum(crc, verified.payload, verified.originalLength) != chunk.checksum) {
+          throw new IOException("Checksum mismatch for chunk " + chunk.sequence);
+        }
+
+        synchronized (lock) {
+          while (!closed && chunk.sequence >= nextSequence + maxBufferedChunks) {
+            lock.wait();
+          }
+
+          if (closed) {
+            return;
+          }
+
+          if (chunk.sequence < nextSequence || pending.put(chunk.sequence, verified) != null) {
+            throw new IOException("Received chunk " + chunk.sequence + " more than once!");
+          }
+
+          lock.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      fail(e instanceof EOFException ? new EOFException("Stream ended before the transfer finished") : e);
+    } catch (InterruptedException e) {
+      fail(new InterruptedIOException("Interrupted while reading chunks"));
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private void fail(@NonNull IOException e) {
+    synchronized (lock) {
+      if (failure == null) {
+        failure = e;
+      }
+      lock.notifyAll();
+    }
+  }
+
+  private @NonNull TransferChunk decompress(@NonNull Inflater inflater, @NonNull TransferChunk chunk) throws IOException {
+    byte[] output = new byte[chunk.originalLength];
+    int    length = 0;
+
+    inflater.reset();
+    inflater.setInput(chunk.payload, 0, chunk.payloadLength);
+
+    try {
+      while (!inflater.finished() && length < output.length) {
+        int count = inflater.inflate(output, length, output.length - length);
+
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated compressed chunk " + chunk.sequence);
+        }
+
+        length += count;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt compressed chunk " + chunk.sequence, e);
+    }
+
+    if (!inflater.finished()) {
+      throw new IOException("Compressed chunk " + chunk.sequence + " is larger than expected");
+    }
+
+    return TransferChunk.decompressed(chunk, output, length);
+  }
+}
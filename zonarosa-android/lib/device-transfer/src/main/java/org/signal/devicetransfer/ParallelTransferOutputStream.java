@@ -0,0 +1,269 @@
+package io.zonarosa.devicetransfer;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Splits everything written to it into checksummed chunks and sends them over several streams at once, so a transfer isn't limited to a
+ * single TCP flow or to a single thread doing compression and encryption. Read the other end with a {@link ParallelTransferInputStream}.
+ * <p>
+ * Each stream gets its own thread, which takes the next available chunk, optionally compresses it, and writes it. Chunks are numbered, so
+ * the receiver can put them back in order.
+ * <p>
+ * {@link #close()} must be called to finish the transfer. It waits for every chunk to be written but does not close the underlying
+ * streams. If the transfer fails, closing stops the writer threads instead, so callers should still close the stream (and then the
+ * underlying streams) after a failure.
+ */
+public final class ParallelTransferOutputStream extends OutputStream {
+
+  static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+
+  private static final Chunk END_OF_CHUNKS = new Chunk(-1, new byte[0], 0, false);
+
+  private final int                   chunkSize;
+  private final BlockingQueue<Chunk>  chunks;
+  private final BlockingQueue<byte[]> freeBuffers;
+  private final List<Thread>          writers;
+
+  private byte[]  buffer;
+  private int     position;
+  private long    nextSequence;
+  private boolean compressionEnabled;
+  private boolean closed;
+
+  private volatile IOException failure;
+
+  public ParallelTransferOutputStream(@NonNull List<OutputStream> outputStreams, boolean compressionEnabled) {
+    this(outputStreams, compressionEnabled, DEFAULT_CHUNK_SIZE);
+  }
+
+  ParallelTransferOutputStream(@NonNull List<OutputStream> outputStreams, boolean compressionEnabled, int chunkSize) {
+    if (outputStreams.isEmpty()) {
+      throw new IllegalArgumentException("Need at least one stream!");
+    }
+
+    this.chunkSize          = chunkSize;
+    this.compressionEnabled = compressionEnabled;
+    this.chunks             = new ArrayBlockingQueue<>(outputStreams.size() * 2);
+    this.freeBuffers        = new ArrayBlockingQueue<>(outputStreams.size() * 4);
+    this.writers            = new ArrayList<>(outputStreams.size());
+    this.buffer             = new byte[chunkSize];
+
+    for (int i = 0; i < outputStreams.size(); i++) {
+      DataOutputStream out    = new DataOutputStream(new BufferedOutputStream(outputStreams.get(i), 64 * 1024));
+      Thread           writer = new Thread(() -> writeChunks(out), "ParallelTransferWriter-" + i);
+
+      writer.setDaemon(true);
+      writer.start();
+      writers.add(writer);
+    }
+  }
+
+  /**
+   * Enables or disables compression for everything written after this call, e.g. to compress database sections but not media that is
+   * already compressed. Even when enabled, chunks that don't get smaller are sent as-is.
+   */
+  public void setCompressionEnabled(boolean compressionEnabled) throws IOException {
+    if (this.compressionEnabled != compressionEnabled) {
+      dispatch();
+      this.compressionEnabled = compressionEnabled;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+
+    buffer[position++] = (byte) b;
+
+    if (position == chunkSize) {
+      dispatch();
+    }
+  }
+
+  @Override
+  public void write(@NonNull byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+
+    while (len > 0) {
+      int count = Math.min(len, chunkSize - position);
+
+      System.arraycopy(b, off, buffer, position, count);
+      position += count;
+      off      += count;
+      len      -= count;
+
+      if (position == chunkSize) {
+        dispatch();
+      }
+    }
+  }
+
+  /**
+   * Sends whatever has been written so far as a (possibly short) chunk. This does not wait for the chunk to be written.
+   */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    dispatch();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+
+    boolean finished = false;
+
+    try {
+      dispatch();
+
+      for (int i = 0; i < writers.size(); i++) {
+        enqueue(END_OF_CHUNKS);
+      }
+
+      for (Thread writer : writers) {
+        writer.join();
+      }
+
+      finished = true;
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while finishing transfer");
+    } finally {
+      if (!finished) {
+        // Not every writer is going to get an end marker, so wake up any that are waiting for more chunks rather than leaving them blocked
+        // forever. We don't send end markers instead, since that would tell the receiver the transfer finished cleanly.
+        for (Thread writer : writers) {
+          writer.interrupt();
+        }
+      }
+    }
+
+    throwIfFailed();
+  }
+
+  private void dispatch() throws IOException {
+    throwIfFailed();
+
+    if (position == 0) {
+      return;
+    }
+
+    try {
+      enqueue(new Chunk(nextSequence++, buffer, position, compressionEnabled));
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while sending chunk");
+    }
+
+    byte[] freeBuffer = freeBuffers.poll();
+
+    buffer   = freeBuffer != null ? freeBuffer : new byte[chunkSize];
+    position = 0;
+  }
+
+  /**
+   * Waits for room in the queue, giving up if a writer has failed so we don't wait forever on streams that are no longer being drained.
+   */
+  private void enqueue(@NonNull Chunk chunk) throws IOException, InterruptedException {
+    while (!chunks.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+      throwIfFailed();
+    }
+  }
+
+  private void writeChunks(@NonNull DataOutputStream out) {
+    Deflater deflater   = new Deflater(Deflater.BEST_SPEED);
+    CRC32    crc        = new CRC32();
+    byte[]   compressed = new byte[chunkSize];
+
+    try {
+      while (true) {
+        Chunk chunk = chunks.take();
+
+        if (chunk == END_OF_CHUNKS) {
+          TransferChunk.writeEnd(out, nextSequence);
+          out.flush();
+          return;
+        }
+
+        long checksum         = TransferChunk.checksum(crc, chunk.data, chunk.length);
+        int  compressedLength = chunk.compress ? compress(deflater, chunk.data, chunk.length, compressed) : -1;
+
+        if (compressedLength > 0) {
+          TransferChunk.write(out, chunk.sequence, TransferChunk.FLAG_COMPRESSED, chunk.length, checksum, compressed, compressedLength);
+        } else {
+          TransferChunk.write(out, chunk.sequence, 0, chunk.length, checksum, chunk.data, chunk.length);
+        }
+
+        freeBuffers.offer(chunk.data);
+      }
+    } catch (IOException e) {
+      failure = e;
+      chunks.clear();
+    } catch (InterruptedException e) {
+      // Writers are interrupted after another writer has already failed; don't replace the original failure
+      if (failure == null) {
+        failure = new InterruptedIOException("Interrupted while writing chunks");
+      }
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * @return The compressed length, or -1 if compressing didn't make the chunk any smaller.
+   */
+  private static int compress(@NonNull Deflater deflater, @NonNull byte[] data, int length, @NonNull byte[] output) {
+    deflater.reset();
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+
+    int compressedLength = 0;
+    while (!deflater.finished() && compressedLength < output.length) {
+      compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+    }
+
+    return deflater.finished() && compressedLength < length ? compressedLength : -1;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private void throwIfFailed() throws IOException {
+    IOException localFailure = failure;
+    if (localFailure != null) {
+      throw new IOException("Failed to send chunk", localFailure);
+    }
+  }
+
+  private static final class Chunk {
+    private final long    sequence;
+    private final byte[]  data;
+    private final int     length;
+    private final boolean compress;
+
+    private Chunk(long sequence, byte[] data, int length, boolean compress) {
+      this.sequence = sequence;
+      this.data     = data;
+      this.length   = length;
+      this.compress = compress;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package io.zonarosa.devicetransfer;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Framing for chunks sent by {@link ParallelTransferOutputStream} and received by {@link ParallelTransferInputStream}.
+ * <p>
+ * Each frame is: sequence (8 bytes), flags (1 byte), length of the original data (4 bytes), length of the payload (4 bytes), CRC32 of the
+ * original data (4 bytes), then the payload. A frame with {@link #FLAG_END} set carries no payload, and its sequence is the total number of
+ * chunks in the transfer.
+ */
+final class TransferChunk {
+
+  static final int FLAG_COMPRESSED = 1;
+  static final int FLAG_END        = 1 << 1;
+
+  final long   sequence;
+  final int    flags;
+  final int    originalLength;
+  final int    payloadLength;
+  final long   checksum;
+  final byte[] payload;
+
+  private TransferChunk(long sequence, int flags, int originalLength, int payloadLength, long checksum, byte[] payload) {
+    this.sequence       = sequence;
+    this.flags          = flags;
+    this.originalLength = originalLength;
+    this.payloadLength  = payloadLength;
+    this.checksum       = checksum;
+    this.payload        = payload;
+  }
+
+  boolean isEnd() {
+    return (flags & FLAG_END) != 0;
+  }
+
+  boolean isCompressed() {
+    return (flags & FLAG_COMPRESSED) != 0;
+  }
+
+  static void write(@NonNull DataOutputStream out, long sequence, int flags, int originalLength, long checksum, @NonNull byte[] payload, int payloadLength) throws IOException {
+    out.writeLong(sequence);
+    out.writeByte(flags);
+    out.writeInt(originalLength);
+    out.writeInt(payloadLength);
+    out.writeInt((int) checksum);
+    out.write(payload, 0, payloadLength);
+  }
+
+  static void writeEnd(@NonNull DataOutputStream out, long totalChunks) throws IOException {
+    write(out, totalChunks, FLAG_END, 0, 0, new byte[0], 0);
+  }
+
+  /**
+   * Reads the next frame. The payload is read into a new array, since the chunk will typically outlive the read while it waits its turn.
+   *
+   * @param maxLength The largest original or payload length to accept; anything larger is treated as corruption.
+   */
+  static @NonNull TransferChunk read(@NonNull DataInputStream in, int maxLength) throws IOException {
+    long sequence       = in.readLong();
+    int  flags          = in.readUnsignedByte();
+    int  originalLength = in.readInt();
+    int  payloadLength  = in.readInt();
+    long checksum       = in.readInt() & 0xffffffffL;
+
+    if (sequence < 0 || originalLength < 0 || originalLength > maxLength || payloadLength < 0 || payloadLength > maxLength) {
+      throw new IOException("Malformed chunk header! sequence: " + sequence + " original: " + originalLength + " payload: " + payloadLength);
+    }
+
+    byte[] payload = new byte[payloadLength];
+    in.readFully(payload);
+
+    return new TransferChunk(sequence, flags, originalLength, payloadLength, checksum, payload);
+  }
+
+  static @NonNull TransferChunk decompressed(@NonNull TransferChunk chunk, @NonNull byte[] data, int length) {
+    return new TransferChunk(chunk.sequence, chunk.flags & ~FLAG_COMPRESSED, chunk.originalLength, length, chunk.checksum, data);
+  }
+
+  static long checksum(@NonNull CRC32 crc, @NonNull byte[] data, int length) {
+    crc.reset();
+    crc.update(data, 0, length);
+    return crc.getValue();
+  }
+}
@@ -0,0 +1,57 @@
+package io.zonarosa.devicetransfer
+
+import android.app.Application
+import android.content.Context
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE, application = Application::class)
+class ParallelTransferClientTaskTest {
+
+  private val data = ByteArray(2_000_000) { (it % 17).toByte() }
+
+  @Test
+  fun runClientTask_compressesWhenTaskEnablesCompression() {
+    val sent = runClientTask(WritingClientTask(data, compressionEnabled = true))
+
+    assertTrue(sent.sumOf { it.size() } < data.size / 10)
+    assertArrayEquals(data, receive(sent))
+  }
+
+  @Test
+  fun runClientTask_doesNotCompressByDefault() {
+    val sent = runClientTask(WritingClientTask(data, compressionEnabled = false))
+
+    assertTrue(sent.sumOf { it.size() } > data.size)
+    assertArrayEquals(data, receive(sent))
+  }
+
+  private fun runClientTask(clientTask: ClientTask): List<ByteArrayOutputStream> {
+    val sent = List(3) { ByteArrayOutputStream() }
+    ParallelTransfer.runClientTask(RuntimeEnvironment.getApplication(), clientTask, sent)
+    return sent
+  }
+
+  private fun receive(sent: List<ByteArrayOutputStream>): ByteArray {
+    return ParallelTransferInputStream(sent.map { ByteArrayInputStream(it.toByteArray()) }).readBytes()
+  }
+
+  private class WritingClientTask(private val data: ByteArray, private val compressionEnabled: Boolean) : ClientTask {
+    override fun run(context: Context, outputStream: OutputStream) {
+      outputStream.write(data)
+    }
+
+    override fun isCompressionEnabled(): Boolean = compressionEnabled
+
+    override fun success() = Unit
+  }
+}
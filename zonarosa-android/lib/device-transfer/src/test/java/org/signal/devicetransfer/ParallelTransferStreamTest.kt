@@ -0,0 +1,204 @@
+package io.zonarosa.devicetransfer
+
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+class ParallelTransferStreamTest {
+
+  companion object {
+    private const val CHUNK_SIZE = 16 * 1024
+  }
+
+  private val sockets = mutableListOf<Socket>()
+  private lateinit var serverSocket: ServerSocket
+
+  @Before
+  fun setUp() {
+    serverSocket = ServerSocket(0, 50, InetAddress.getLoopbackAddress())
+  }
+
+  @After
+  fun tearDown() {
+    sockets.forEach { it.close() }
+    serverSocket.close()
+  }
+
+  @Test
+  fun roundTrip_overLoopbackSockets() {
+    val data = compressible(1_000_000) + Random(1).nextBytes(1_000_000)
+
+    val (outputs, inputs) = connect(4)
+    val received = transfer(outputs, inputs) { output ->
+      output.setCompressionEnabled(true)
+      output.write(data, 0, 1_000_000)
+      output.setCompressionEnabled(false)
+      output.write(data, 1_000_000, 1_000_000)
+    }
+
+    assertArrayEquals(data, received)
+  }
+
+  @Test
+  fun roundTrip_singleStream() {
+    val data = Random(2).nextBytes(100_000)
+
+    val (outputs, inputs) = connect(1)
+    val received = transfer(outputs, inputs) { output ->
+      data.forEach { output.write(it.toInt()) }
+    }
+
+    assertArrayEquals(data, received)
+  }
+
+  @Test
+  fun roundTrip_empty() {
+    val (outputs, inputs) = connect(3)
+    val received = transfer(outputs, inputs) { }
+
+    assertEquals(0, received.size)
+  }
+
+  @Test
+  fun compression_onlyUsedWhenSmaller() {
+    val compressibleSent = ByteArrayOutputStream()
+    ParallelTransferOutputStream(listOf(compressibleSent), true, CHUNK_SIZE).use { it.write(compressible(CHUNK_SIZE * 4)) }
+    assertTrue(compressibleSent.size() < CHUNK_SIZE)
+
+    val randomSent = ByteArrayOutputStream()
+    ParallelTransferOutputStream(listOf(randomSent), true, CHUNK_SIZE).use { it.write(Random(3).nextBytes(CHUNK_SIZE * 4)) }
+    assertTrue(randomSent.size() > CHUNK_SIZE * 4)
+  }
+
+  @Test
+  fun corruptChunk_failsRead() {
+    val sent = ByteArrayOutputStream()
+    ParallelTransferOutputStream(listOf(sent), false, CHUNK_SIZE).use { it.write(Random(5).nextBytes(CHUNK_SIZE * 2)) }
+
+    val corrupted = sent.toByteArray()
+    corrupted[CHUNK_SIZE + 100] = (corrupted[CHUNK_SIZE + 100] + 1).toByte()
+
+    val input = ParallelTransferInputStream(listOf(ByteArrayInputStream(corrupted)), CHUNK_SIZE, 4)
+
+    assertFailsToDrain(input)
+  }
+
+  @Test
+  fun truncatedStream_failsRead() {
+    val first = ByteArrayOutputStream()
+    val second = ByteArrayOutputStream()
+    ParallelTransferOutputStream(listOf(first, second), false, CHUNK_SIZE).use { it.write(Random(6).nextBytes(CHUNK_SIZE * 8)) }
+
+    val truncated = second.toByteArray().copyOf(second.size() - 10)
+    val input = ParallelTransferInputStream(listOf(ByteArrayInputStream(first.toByteArray()), ByteArrayInputStream(truncated)), CHUNK_SIZE, 4)
+
+    assertFailsToDrain(input)
+  }
+
+  @Test
+  fun failedStream_failsWrite() {
+    val failing = object : OutputStream() {
+      override fun write(b: Int) {
+        throw IOException("broken pipe")
+      }
+    }
+
+    try {
+      ParallelTransferOutputStream(listOf(failing), false, CHUNK_SIZE).use { output ->
+        repeat(64) { output.write(ByteArray(CHUNK_SIZE)) }
+      }
+      fail("Expected the write to fail")
+    } catch (e: IOException) {
+      // Expected
+    }
+  }
+
+  @Test
+  fun failedStream_stopsOtherWriters() {
+    val failing = object : OutputStream() {
+      override fun write(b: Int) {
+        throw IOException("broken pipe")
+      }
+    }
+
+    val output = ParallelTransferOutputStream(listOf(failing, ByteArrayOutputStream(), ByteArrayOutputStream()), false, CHUNK_SIZE)
+
+    try {
+      output.use { repeat(64) { output.write(ByteArray(CHUNK_SIZE)) } }
+      fail("Expected the write to fail")
+    } catch (e: IOException) {
+      // Expected
+    }
+
+    val deadline = System.currentTimeMillis() + 1_000
+    while (writerThreads().isNotEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10)
+    }
+
+    assertTrue("Writer threads still running: ${writerThreads()}", writerThreads().isEmpty())
+  }
+
+  private fun writerThreads(): List<Thread> {
+    return Thread.getAllStackTraces().keys.filter { it.isAlive && it.name.startsWith("ParallelTransferWriter-") }
+  }
+
+  private fun connect(count: Int): Pair<List<OutputStream>, List<InputStream>> {
+    val outputs = mutableListOf<OutputStream>()
+    val inputs = mutableListOf<InputStream>()
+
+    repeat(count) {
+      val client = Socket(InetAddress.getLoopbackAddress(), serverSocket.localPort)
+      val server = serverSocket.accept()
+
+      sockets += client
+      sockets += server
+
+      outputs += client.getOutputStream()
+      inputs += server.getInputStream()
+    }
+
+    return outputs to inputs
+  }
+
+  private fun transfer(outputs: List<OutputStream>, inputs: List<InputStream>, write: (ParallelTransferOutputStream) -> Unit): ByteArray {
+    val executor = Executors.newSingleThreadExecutor()
+
+    try {
+      val sending = executor.submit { ParallelTransferOutputStream(outputs, false, CHUNK_SIZE).use(write) }
+      val received = ParallelTransferInputStream(inputs, CHUNK_SIZE, 8).readBytes()
+
+      sending.get(30, TimeUnit.SECONDS)
+      return received
+    } finally {
+      executor.shutdownNow()
+    }
+  }
+
+  private fun assertFailsToDrain(input: ParallelTransferInputStream) {
+    try {
+      input.drain()
+      fail("Expected the read to fail")
+    } catch (e: IOException) {
+      // Expected
+    }
+  }
+
+  private fun compressible(length: Int): ByteArray {
+    return ByteArray(length) { (it % 17).toByte() }
+  }
+}
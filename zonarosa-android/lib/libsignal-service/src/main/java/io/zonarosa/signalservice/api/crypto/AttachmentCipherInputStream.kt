@@ -8,7 +8,8 @@ package io.zonarosa.service.api.crypto
 import io.zonarosa.core.models.backup.MediaRootBackupKey.MediaKeyMaterial
 import io.zonarosa.core.util.Base64
 import io.zonarosa.core.util.readNBytesOrThrow
-import io.zonarosa.core.util.stream.LimitedInputStream
+import io.zonarosa.core.util.stream.BufferPool
+import io.zonarosa.core.util.stream.CipherPipelineInputStream
 import io.zonarosa.core.util.stream.TrimmingInputStream
 import io.zonarosa.libzonarosa.protocol.InvalidMessageException
 import io.zonarosa.libzonarosa.protocol.incrementalmac.ChunkSizeChoice
@@ -162,9 +163,9 @@ object AttachmentCipherInputStream {
       verifyMacAndMaybeEncryptedDigest(macVerificationStream, file.length(), outerMac, null)
     }
 
-    val outerEncryptedStreamExcludingMac = LimitedInputStream(FileInputStream(file), maxBytes = file.length() - outerMac.macLength)
-    val outerCipher = createCipher(outerEncryptedStreamExcludingMac, archivedMediaKeyMaterial.aesKey)
-    val innerEncryptedStream = BetterCipherInputStream(outerEncryptedStreamExcludingMac, outerCipher)
+    val outerEncryptedStream = FileInputStream(file)
+    val outerCipher = createCipher(outerEncryptedStream, archivedMediaKeyMaterial.aesKey)
+    val innerEncryptedStream = CipherPipelineInputStream(outerEncryptedStream, outerCipher, inputLength = file.length() - BLOCK_SIZE - outerMac.macLength)
 
     val innerKeyMaterial = CombinedKeyMaterial.from(innerCombinedKeyMaterial)
     val innerMac = initMac(innerKeyMaterial.macKey)
@@ -194,10 +195,9 @@ object AttachmentCipherInputStream {
     }
 
     val encryptedStream = ByteArrayInputStream(data)
-    val encryptedStreamExcludingMac = LimitedInputStream(encryptedStream, data.size.toLong() - mac.macLength)
-    val cipher = createCipher(encryptedStreamExcludingMac, keyMaterial.aesKey)
+    val cipher = createCipher(encryptedStream, keyMaterial.aesKey)
 
-    return BetterCipherInputStream(encryptedStreamExcludingMac, cipher)
+    return CipherPipelineInputStream(encryptedStream, cipher, inputLength = data.size.toLong() - BLOCK_SIZE - mac.macLength)
   }
 
   /**
@@ -208,7 +208,7 @@ object AttachmentCipherInputStream {
    */
   @JvmStatic
   @Throws(InvalidMessageException::class, IOException::class)
-  private fun createForArchivedMediaOuterLayer(archivedMediaKeyMaterial: MediaKeyMaterial, file: File, originalCipherTextLength: Long): LimitedInputStream {
+  private fun createForArchivedMediaOuterLayer(archivedMediaKeyMaterial: MediaKeyMaterial, file: File, originalCipherTextLength: Long): InputStream {
     val mac = initMac(archivedMediaKeyMaterial.macKey)
 
     if (file.length() <= BLOCK_SIZE + mac.macLength) {
@@ -220,11 +220,14 @@ object AttachmentCipherInputStream {
     }
 
     val encryptedStream = FileInputStream(file)
-    val encryptedStreamExcludingMac = LimitedInputStream(encryptedStream, file.length() - mac.macLength)
-    val cipher = createCipher(encryptedStreamExcludingMac, archivedMediaKeyMaterial.aesKey)
-    val inputStream: InputStream = BetterCipherInputStream(encryptedStreamExcludingMac, cipher)
+    val cipher = createCipher(encryptedStream, archivedMediaKeyMaterial.aesKey)
 
-    return LimitedInputStream(inputStream, originalCipherTextLength)
+    return CipherPipelineInputStream(
+      source = encryptedStream,
+      cipher = cipher,
+      inputLength = file.length() - BLOCK_SIZE - mac.macLength,
+      outputLength = originalCipherTextLength
+    )
   }
 
   /**
@@ -280,10 +283,14 @@ object AttachmentCipherInputStream {
       wrappedStream = streamSupplier.openStream()
     }
 
-    val encryptedStreamExcludingMac = LimitedInputStream(wrappedStream, streamLength - mac.macLength)
-    val cipher = createCipher(encryptedStreamExcludingMac, keyMaterial.aesKey)
-    val decryptingStream: InputStream = BetterCipherInputStream(encryptedStreamExcludingMac, cipher)
-    val paddinglessDecryptingStream = LimitedInputStream(decryptingStream, plaintextLength)
+    // Excluding the IV and the MAC, decrypting and trimming the padding off in a single pass
+    val cipher = createCipher(wrappedStream, keyMaterial.aesKey)
+    val paddinglessDecryptingStream = CipherPipelineInputStream(
+      source = wrappedStream,
+      cipher = cipher,
+      inputLength = streamLength - BLOCK_SIZE - mac.macLength,
+      outputLength = plaintextLength
+    )
 
     return if (integrityCheck?.plaintextHash != null) {
       if (integrityCheck.plaintextHash.size != MessageDigest.getInstance("SHA-256").digestLength) {
@@ -329,13 +336,20 @@ object AttachmentCipherInputStream {
     try {
       val digest = MessageDigest.getInstance("SHA256")
       var remainingData = Util.toIntExact(length) - mac.macLength
-      val buffer = ByteArray(4096)
-
-      while (remainingData > 0) {
-        val read = inputStream.read(buffer, 0, min(buffer.size, remainingData))
-        mac.update(buffer, 0, read)
-        digest.update(buffer, 0, read)
-        remainingData -= read
+      val buffer = BufferPool.DEFAULT.acquire()
+
+      try {
+        while (remainingData > 0) {
+          val read = inputStream.read(buffer, 0, min(buffer.size, remainingData))
+          if (read == -1) {
+            throw InvalidMessageException("Stream ended before MAC could be read!")
+          }
+          mac.update(buffer, 0, read)
+          digest.update(buffer, 0, read)
+          remainingData -= read
+        }
+      } finally {
+        BufferPool.DEFAULT.release(buffer)
       }
 
       val ourMac = mac.doFinal()
@@ -53,6 +53,10 @@ sealed class ZonaRosaWebSocket(
     const val SERVER_DELIVERED_TIMESTAMP_HEADER = "X-ZonaRosa-Timestamp"
 
     const val FOREGROUND_KEEPALIVE = "Foregrounded"
+
+    /** Acks are sent for every envelope, so only the id is filled in per ack. */
+    private val ACK_OK = WebSocketResponseMessage(status = 200, message = "OK")
+    private val ACK_UNKNOWN = WebSocketResponseMessage(status = 400, message = "Unknown")
   }
 
   private var connection: WebSocketConnection? = null
@@ -285,17 +289,9 @@ sealed class ZonaRosaWebSocket(
 
   private fun WebSocketRequestMessage.getWebSocketResponse(): WebSocketResponseMessage {
     return if (this.isZonaRosaServiceEnvelope()) {
-      WebSocketResponseMessage.Builder()
-        .id(this.id)
-        .status(200)
-        .message("OK")
-        .build()
+      ACK_OK.copy(id = this.id)
     } else {
-      WebSocketResponseMessage.Builder()
-        .id(this.id)
-        .status(400)
-        .message("Unknown")
-        .build()
+      ACK_UNKNOWN.copy(id = this.id)
     }
   }
 
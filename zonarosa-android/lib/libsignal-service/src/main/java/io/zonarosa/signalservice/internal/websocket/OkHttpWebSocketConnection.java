@@ -20,10 +20,10 @@ import java.net.SocketException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -59,10 +59,12 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
   private static final String TAG                         = OkHttpWebSocketConnection.class.getSimpleName();
   public static final  int    KEEPALIVE_FREQUENCY_SECONDS = 30;
 
-  private final LinkedList<WebSocketRequestMessage> incomingRequests = new LinkedList<>();
+  private final ArrayDeque<WebSocketRequestMessage> incomingRequests = new ArrayDeque<>();
   private final Map<Long, OutgoingRequest>          outgoingRequests = new HashMap<>();
   private final Set<Long>                           keepAlives       = new HashSet<>();
 
+  private final WebSocketRequestMessage.Builder keepAliveBuilder = new WebSocketRequestMessage.Builder().path("/v1/keepalive").verb("GET");
+
   private final String                                    name;
   private final TrustStore                                trustStore;
   private final Optional<CredentialsProvider>             credentialsProvider;
@@ -235,16 +237,11 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
       throw new IOException("No connection!");
     }
 
-    WebSocketMessage message = new WebSocketMessage.Builder()
-                                                   .type(WebSocketMessage.Type.REQUEST)
-                                                   .request(request)
-                                                   .build();
-
     SingleSubject<WebsocketResponse> single = SingleSubject.create();
 
     outgoingRequests.put(request.id, new OutgoingRequest(single));
 
-    if (!client.send(ByteString.of(message.encode()))) {
+    if (!client.send(WebSocketFrames.encodeRequest(request))) {
       throw new IOException("Write failed!");
     }
 
@@ -259,12 +256,7 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
       throw new IOException("Connection closed!");
     }
 
-    WebSocketMessage message = new WebSocketMessage.Builder()
-                                                   .type(WebSocketMessage.Type.RESPONSE)
-                                                   .response(response)
-                                                   .build();
-
-    if (!client.send(ByteString.of(message.encode()))) {
+    if (!client.send(WebSocketFrames.encodeResponse(response))) {
       throw new IOException("Write failed!");
     }
   }
@@ -274,17 +266,8 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
     if (client != null) {
       log("Sending keep alive...");
       long id = System.currentTimeMillis();
-      byte[] message = new WebSocketMessage.Builder()
-                                           .type(WebSocketMessage.Type.REQUEST)
-                                           .request(new WebSocketRequestMessage.Builder()
-                                                                               .id(id)
-                                                                               .path("/v1/keepalive")
-                                                                               .verb("GET")
-                                                                               .build())
-                                           .build()
-                                           .encode();
       keepAlives.add(id);
-      if (!client.send(ByteString.of(message))) {
+      if (!client.send(WebSocketFrames.encodeRequest(keepAliveBuilder.id(id).build()))) {
         throw new IOException("Write failed!");
       }
     }
@@ -301,15 +284,15 @@ public class OkHttpWebSocketConnection extends WebSocketListener implements WebS
   @Override
   public synchronized void onMessage(WebSocket webSocket, ByteString payload) {
     try {
-      WebSocketMessage message = WebSocketMessage.ADAPTER.decode(payload.toByteArray());
+      WebSocketMessage message = WebSocketFrames.decode(payload);
 
-      if (message.type == WebSocketMessage.Type.REQUEST) {
+      if (message.type == WebSocketMessage.Type.REQUEST && message.request != null) {
         incomingRequests.add(message.request);
       } else if (message.type == WebSocketMessage.Type.RESPONSE) {
         OutgoingRequest listener = outgoingRequests.remove(message.response.id);
         if (listener != null) {
           listener.onSuccess(new WebsocketResponse(message.response.status,
-                                                   message.response.body == null ? "" : new String(message.response.body.toByteArray()),
+                                                   message.response.body == null ? "" : message.response.body.utf8(),
                                                    message.response.headers,
                                                    !credentialsProvider.isPresent()));
           if (message.response.status >= 400) {
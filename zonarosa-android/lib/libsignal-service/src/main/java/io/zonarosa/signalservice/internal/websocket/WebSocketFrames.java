@@ -0,0 +1,48 @@
+package io.zonarosa.service.internal.websocket;
+
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Encodes and decodes {@link WebSocketMessage} frames without the intermediate copies that going through {@code byte[]} involves.
+ * <p>
+ * Decoding reads straight from the frame's {@link ByteString}, and encoding writes the envelope and the wrapped request or response
+ * straight into a buffer, producing exactly the bytes {@link WebSocketMessage#encodeByteString()} would without building the wrapper
+ * message first.
+ */
+final class WebSocketFrames {
+
+  private static final int TYPE_FIELD     = 1;
+  private static final int REQUEST_FIELD  = 2;
+  private static final int RESPONSE_FIELD = 3;
+
+  private WebSocketFrames() {}
+
+  static WebSocketMessage decode(ByteString frame) throws IOException {
+    return WebSocketMessage.ADAPTER.decode(frame);
+  }
+
+  static ByteString encodeRequest(WebSocketRequestMessage request) throws IOException {
+    Buffer      buffer = new Buffer();
+    ProtoWriter writer = new ProtoWriter(buffer);
+
+    WebSocketMessage.Type.ADAPTER.encodeWithTag(writer, TYPE_FIELD, WebSocketMessage.Type.REQUEST);
+    WebSocketRequestMessage.ADAPTER.encodeWithTag(writer, REQUEST_FIELD, request);
+
+    return buffer.readByteString();
+  }
+
+  static ByteString encodeResponse(WebSocketResponseMessage response) throws IOException {
+    Buffer      buffer = new Buffer();
+    ProtoWriter writer = new ProtoWriter(buffer);
+
+    WebSocketMessage.Type.ADAPTER.encodeWithTag(writer, TYPE_FIELD, WebSocketMessage.Type.RESPONSE);
+    WebSocketResponseMessage.ADAPTER.encodeWithTag(writer, RESPONSE_FIELD, response);
+
+    return buffer.readByteString();
+  }
+}
@@ -0,0 +1,51 @@
+package io.zonarosa.service.internal.websocket
+
+import okio.ByteString.Companion.encodeUtf8
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class WebSocketFramesTest {
+
+  @Test
+  fun encodeRequest_matchesWrappedMessage() {
+    val request = WebSocketRequestMessage(
+      verb = "PUT",
+      path = "/api/v1/message",
+      body = "envelope".encodeUtf8(),
+      headers = listOf("X-ZonaRosa-Timestamp:1234"),
+      id = 42
+    )
+
+    val expected = WebSocketMessage(type = WebSocketMessage.Type.REQUEST, request = request).encodeByteString()
+
+    assertEquals(expected, WebSocketFrames.encodeRequest(request))
+  }
+
+  @Test
+  fun encodeResponse_matchesWrappedMessage() {
+    val response = WebSocketResponseMessage(id = 42, status = 200, message = "OK")
+
+    val expected = WebSocketMessage(type = WebSocketMessage.Type.RESPONSE, response = response).encodeByteString()
+
+    assertEquals(expected, WebSocketFrames.encodeResponse(response))
+  }
+
+  @Test
+  fun encodeResponse_withEmptyMessage() {
+    val response = WebSocketResponseMessage()
+
+    val expected = WebSocketMessage(type = WebSocketMessage.Type.RESPONSE, response = response).encodeByteString()
+
+    assertEquals(expected, WebSocketFrames.encodeResponse(response))
+  }
+
+  @Test
+  fun decode_roundTrip() {
+    val request = WebSocketRequestMessage(verb = "GET", path = "/v1/keepalive", id = 7)
+
+    val decoded = WebSocketFrames.decode(WebSocketFrames.encodeRequest(request))
+
+    assertEquals(WebSocketMessage.Type.REQUEST, decoded.type)
+    assertEquals(request, decoded.request)
+  }
+}
@@ -3,46 +3,172 @@ package io.zonarosa.paging;
 import androidx.annotation.NonNull;
 
 import java.util.AbstractList;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * A placeholder class for efficiently storing lists that are mostly empty space.
- * TODO [greyson][paging]
+ * A list for efficiently storing data that is mostly empty space.
+ *
+ * Items are stored in fixed-size pages, and a page only takes up space once something has been written to it. Copies share pages with the list they
+ * were copied from, and a page is only duplicated the first time either list writes to it, so copying costs time proportional to the number of
+ * populated pages rather than the size of the list.
  */
 public class CompressedList<E> extends AbstractList<E> {
 
-  private final List<E> wrapped;
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
+  private final int                    pageSize;
+  private final Map<Integer, Object[]> pages;
+
+  /** Pages that only this list references, and can therefore be written to without copying them first. */
+  private final Set<Integer> ownedPages;
+
+  private int size;
 
   public CompressedList(@NonNull List<E> source) {
-    this.wrapped = new ArrayList<>(source);
+    if (source instanceof CompressedList) {
+      CompressedList<E> other = (CompressedList<E>) source;
+
+      this.pageSize   = other.pageSize;
+      this.pages      = new HashMap<>(other.pages);
+      this.ownedPages = new HashSet<>();
+      this.size       = other.size;
+
+      // Every page is now shared, so neither list may write to one without copying it first
+      other.ownedPages.clear();
+    } else {
+      this.pageSize   = DEFAULT_PAGE_SIZE;
+      this.pages      = new HashMap<>();
+      this.ownedPages = new HashSet<>();
+      this.size       = source.size();
+
+      for (int i = 0; i < size; i++) {
+        E item = source.get(i);
+        if (item != null) {
+          set(i, item);
+        }
+      }
+    }
   }
 
   public CompressedList(int totalSize) {
-    this.wrapped = new ArrayList<>(totalSize);
+    this(totalSize, DEFAULT_PAGE_SIZE);
+  }
 
-    for (int i = 0; i < totalSize; i++) {
-      wrapped.add(null);
+  public CompressedList(int totalSize, int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be at least one! Requested: " + pageSize);
     }
+
+    this.pageSize   = pageSize;
+    this.pages      = new HashMap<>();
+    this.ownedPages = new HashSet<>();
+    this.size       = totalSize;
   }
 
   @Override
   public int size() {
-    return wrapped.size();
+    return size;
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public E get(int index) {
-    return wrapped.get(index);
+    checkIndex(index, size);
+
+    Object[] page = pages.get(index / pageSize);
+    return page != null ? (E) page[index % pageSize] : null;
   }
 
+  @SuppressWarnings("unchecked")
   @Override
   public E set(int globalIndex, E element) {
-    return wrapped.set(globalIndex, element);
+    checkIndex(globalIndex, size);
+
+    int pageIndex = globalIndex / pageSize;
+
+    if (element == null && !pages.containsKey(pageIndex)) {
+      return null;
+    }
+
+    Object[] page     = getWritablePage(pageIndex);
+    E        previous = (E) page[globalIndex % pageSize];
+
+    page[globalIndex % pageSize] = element;
+
+    return previous;
   }
 
   @Override
   public void add(int index, E element) {
-    wrapped.add(index, element);
+    checkIndex(index, size + 1);
+
+    size++;
+    modCount++;
+
+    // Shift everything at or after the index right by one, carrying the last item of each page over to the start of the next
+    Object carry     = element;
+    int    firstPage = index / pageSize;
+    int    lastPage  = (size - 1) / pageSize;
+
+    for (int pageIndex = firstPage; pageIndex <= lastPage; pageIndex++) {
+      int start = pageIndex == firstPage ? index % pageSize : 0;
+
+      if (!pages.containsKey(pageIndex)) {
+        if (carry != null) {
+          getWritablePage(pageIndex)[start] = carry;
+          carry = null;
+        }
+        continue;
+      }
+
+      Object[] page     = getWritablePage(pageIndex);
+      Object   outgoing = page[pageSize - 1];
+
+      System.arraycopy(page, start, page, start + 1, pageSize - 1 - start);
+      page[start] = carry;
+      carry       = outgoing;
+    }
+  }
+
+  /**
+   * @return The indices of the pages that currently take up space.
+   */
+  @NonNull Set<Integer> getPopulatedPages() {
+    return new HashSet<>(pages.keySet());
+  }
+
+  /**
+   * Empties the page with the provided index, releasing the space it took up.
+   */
+  void clearPage(int pageIndex) {
+    pages.remove(pageIndex);
+    ownedPages.remove(pageIndex);
+  }
+
+  private @NonNull Object[] getWritablePage(int pageIndex) {
+    Object[] page = pages.get(pageIndex);
+
+    if (page == null) {
+      page = new Object[pageSize];
+    } else if (ownedPages.contains(pageIndex)) {
+      return page;
+    } else {
+      page = page.clone();
+    }
+
+    pages.put(pageIndex, page);
+    ownedPages.add(pageIndex);
+
+    return page;
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
   }
 }
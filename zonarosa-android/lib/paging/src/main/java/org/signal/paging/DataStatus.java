@@ -40,22 +40,18 @@ class DataStatus {
     state.set(startInclusive, endExclusive, true);
   }
 
+  void unmarkRange(int startInclusive, int endExclusive) {
+    state.clear(startInclusive, endExclusive);
+  }
+
   int getEarliestUnmarkedIndexInRange(int startInclusive, int endExclusive) {
-    for (int i = startInclusive; i < endExclusive; i++) {
-      if (!state.get(i)) {
-        return i;
-      }
-    }
-    return -1;
+    int index = state.nextClearBit(startInclusive);
+    return index < endExclusive ? index : -1;
   }
 
   int getLatestUnmarkedIndexInRange(int startInclusive, int endExclusive) {
-    for (int i = endExclusive - 1; i >= startInclusive; i--) {
-      if (!state.get(i)) {
-        return i;
-      }
-    }
-    return -1;
+    int index = state.previousClearBit(endExclusive - 1);
+    return index >= startInclusive ? index : -1;
   }
 
   boolean get(int position) {
@@ -67,8 +63,14 @@ class DataStatus {
       throw new IndexOutOfBoundsException();
     }
 
-    for (int i = size; i > position; i--) {
-      state.set(i, state.get(i - 1));
+    // Only marked positions need to move, so shift those rather than every position after the insert
+    if (position < size) {
+      BitSet shifted = state.get(position, size);
+      state.clear(position, size + 1);
+
+      for (int i = shifted.nextSetBit(0); i >= 0; i = shifted.nextSetBit(i + 1)) {
+        state.set(position + 1 + i);
+      }
     }
 
     state.set(position, value);
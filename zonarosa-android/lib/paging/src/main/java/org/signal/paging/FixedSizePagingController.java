@@ -1,13 +1,17 @@
 package io.zonarosa.paging;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import io.zonarosa.core.util.ThreadUtil;
 import io.zonarosa.core.util.concurrent.ZonaRosaExecutors;
 import io.zonarosa.core.util.logging.Log;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -19,6 +23,11 @@ import java.util.concurrent.Executor;
  * a fixed size throughout. It assumes that all interface methods are called on a single thread,
  * which allows it to keep track of pending requests in a thread-safe way, while spinning off
  * tasks to fetch data on its own executor.
+ *
+ * Data is loaded and cached a page at a time. Pages are tracked in the order they were last near the
+ * requested position, and once more than {@link PagingConfig#maxCachedPages()} are cached, the pages
+ * least recently near the requested position are dropped. Loading also leans in the direction the
+ * user is scrolling, prefetching an extra buffer's worth of pages ahead of them.
  */
 class FixedSizePagingController<Key, Data> implements PagingController<Key> {
 
@@ -27,13 +36,19 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
   private static final Executor FETCH_EXECUTOR = ZonaRosaExecutors.newCachedSingleThreadExecutor("zonarosa-FixedSizePagingController", ThreadUtil.PRIORITY_UI_BLOCKING_THREAD);
   private static final boolean  DEBUG          = false;
 
-  private final PagedDataSource<Key, Data>  dataSource;
-  private final PagingConfig                config;
-  private final DataStream<Data>            dataStream;
-  private final DataStatus                  loadState;
-  private final Map<Key, Integer>           keyToPosition;
+  private final PagedDataSource<Key, Data>       dataSource;
+  private final PagingConfig                     config;
+  private final DataStream<Data>                 dataStream;
+  private final Executor                         fetchExecutor;
+  private final DataStatus                       loadState;
+  private final Map<Key, Integer>                keyToPosition;
+  private final LinkedHashMap<Integer, Boolean>  recentPages;
+  private final boolean                          boundedCache;
+  private final int                              maxCachedPages;
+
+  private CompressedList<Data> data;
 
-  private List<Data> data;
+  private int lastAroundIndex = -1;
 
   private volatile boolean invalidated;
 
@@ -42,12 +57,26 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
                             @NonNull DataStream<Data> dataStream,
                             int size)
   {
-    this.dataSource    = dataSource;
-    this.config        = config;
-    this.dataStream    = dataStream;
-    this.loadState     = DataStatus.obtain(size);
-    this.data          = new CompressedList<>(loadState.size());
-    this.keyToPosition = new HashMap<>();
+    this(dataSource, config, dataStream, size, FETCH_EXECUTOR);
+  }
+
+  @VisibleForTesting
+  FixedSizePagingController(@NonNull PagedDataSource<Key, Data> dataSource,
+                            @NonNull PagingConfig config,
+                            @NonNull DataStream<Data> dataStream,
+                            int size,
+                            @NonNull Executor fetchExecutor)
+  {
+    this.dataSource     = dataSource;
+    this.config         = config;
+    this.dataStream     = dataStream;
+    this.fetchExecutor  = fetchExecutor;
+    this.loadState      = DataStatus.obtain(size);
+    this.data           = new CompressedList<>(loadState.size(), config.pageSize());
+    this.keyToPosition  = new HashMap<>();
+    this.recentPages    = new LinkedHashMap<>(16, 0.75f, true);
+    this.boundedCache   = config.maxCachedPages() != Integer.MAX_VALUE;
+    this.maxCachedPages = Math.max(config.maxCachedPages(), 1 + 3 * config.bufferPages());
 
     if (DEBUG) Log.d(TAG, "[Constructor] Creating with size " + size + " (loadState.size() = " + loadState.size() + ")");
   }
@@ -78,8 +107,22 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
       int rightPageBoundary = leftPageBoundary + config.pageSize();
       int buffer            = config.bufferPages() * config.pageSize();
 
-      int leftLoadBoundary  = Math.max(0, leftPageBoundary - buffer);
-      int rightLoadBoundary = Math.min(loadState.size(), rightPageBoundary + buffer);
+      // Lean the load window in the direction of travel, so the next pages are ready before they're needed
+      int leftBuffer  = buffer;
+      int rightBuffer = buffer;
+
+      if (lastAroundIndex >= 0 && aroundIndex > lastAroundIndex) {
+        rightBuffer += buffer;
+      } else if (lastAroundIndex >= 0 && aroundIndex < lastAroundIndex) {
+        leftBuffer += buffer;
+      }
+
+      lastAroundIndex = aroundIndex;
+
+      int leftLoadBoundary  = Math.max(0, leftPageBoundary - leftBuffer);
+      int rightLoadBoundary = Math.min(loadState.size(), rightPageBoundary + rightBuffer);
+
+      touchPages(leftLoadBoundary, rightLoadBoundary);
 
       loadStart = loadState.getEarliestUnmarkedIndexInRange(leftLoadBoundary, rightLoadBoundary);
 
@@ -102,7 +145,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
       if (DEBUG) Log.i(TAG, buildDataNeededLog(aroundIndex, "start: " + loadStart + ", end: " + loadEnd + ", totalSize: " + totalSize));
     }
 
-    FETCH_EXECUTOR.execute(() -> {
+    fetchExecutor.execute(() -> {
       if (invalidated) {
         Log.w(TAG, buildDataNeededLog(aroundIndex, "Invalidated! At beginning of load task."));
         return;
@@ -115,7 +158,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
         return;
       }
 
-      List<Data> updated = new CompressedList<>(data);
+      CompressedList<Data> updated = new CompressedList<>(data);
 
       for (int i = 0, len = Math.min(loaded.size(), data.size() - loadStart); i < len; i++) {
         int  position = loadStart + i;
@@ -125,6 +168,8 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
         keyToPosition.put(dataSource.getKey(item), position);
       }
 
+      evictPages(updated);
+
       data = updated;
       dataStream.next(updated);
     });
@@ -144,7 +189,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
   public void onDataItemChanged(Key key) {
     if (DEBUG) Log.d(TAG, buildItemChangedLog(key, ""));
 
-    FETCH_EXECUTOR.execute(() -> {
+    fetchExecutor.execute(() -> {
       Integer position = keyToPosition.get(key);
 
       if (position == null) {
@@ -173,7 +218,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
         return;
       }
 
-      List<Data> updatedList = new CompressedList<>(data);
+      CompressedList<Data> updatedList = new CompressedList<>(data);
 
       updatedList.set(position, item);
       data = updatedList;
@@ -187,7 +232,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
   public void onDataItemInserted(Key key, int inputPosition) {
     if (DEBUG) Log.d(TAG, buildItemInsertedLog(key, inputPosition, ""));
 
-    FETCH_EXECUTOR.execute(() -> {
+    fetchExecutor.execute(() -> {
       int position = inputPosition;
       if (position == POSITION_END) {
         position = data.size();
@@ -205,6 +250,7 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
 
       synchronized (loadState) {
         loadState.insertState(position, true);
+        touchPages(position, position + 1);
         if (DEBUG) Log.d(TAG, buildItemInsertedLog(key, position, "Size of loadState updated to " + loadState.size()));
       }
 
@@ -220,10 +266,11 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
         return;
       }
 
-      List<Data> updatedList = new CompressedList<>(data);
+      CompressedList<Data> updatedList = new CompressedList<>(data);
 
       updatedList.add(position, item);
-      rebuildKeyToPositionMap(keyToPosition, updatedList, dataSource);
+      shiftKeyToPositionMap(keyToPosition, position);
+      keyToPosition.put(key, position);
 
       data = updatedList;
       dataStream.next(updatedList);
@@ -232,15 +279,77 @@ class FixedSizePagingController<Key, Data> implements PagingController<Key> {
     });
   }
 
-  private void rebuildKeyToPositionMap(@NonNull Map<Key, Integer> map, @NonNull List<Data> dataList, @NonNull PagedDataSource<Key, Data> dataSource) {
-    map.clear();
+  /**
+   * Moves every cached item at or after the inserted position one position later. Only cached items are in the map, so this is bounded by the size
+   * of the cache rather than the size of the data set.
+   */
+  private void shiftKeyToPositionMap(@NonNull Map<Key, Integer> map, int insertedPosition) {
+    for (Map.Entry<Key, Integer> entry : map.entrySet()) {
+      if (entry.getValue() >= insertedPosition) {
+        entry.setValue(entry.getValue() + 1);
+      }
+    }
+  }
+
+  /**
+   * Marks every page overlapping the range as the most recently used. Must be called while holding the {@code loadState} lock.
+   */
+  private void touchPages(int startInclusive, int endExclusive) {
+    for (int page = startInclusive / config.pageSize(), lastPage = (endExclusive - 1) / config.pageSize(); page <= lastPage; page++) {
+      recentPages.put(page, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Drops the least recently used pages from the provided list until no more than {@link #maxCachedPages} remain. Dropped pages are marked as
+   * unloaded, so they'll be loaded again the next time they're near the requested position.
+   *
+   * Pages that hold data but aren't being tracked (a load that finished after its page was evicted, or items pushed onto a new page by an insert)
+   * are dropped as well, so that the tracked pages are the only ones taking up space.
+   */
+  private void evictPages(@NonNull CompressedList<Data> list) {
+    if (!boundedCache) {
+      return;
+    }
+
+    List<Integer> evicted = new ArrayList<>();
+
+    synchronized (loadState) {
+      Iterator<Integer> iterator = recentPages.keySet().iterator();
 
-    for (int i = 0, len = dataList.size(); i < len; i++) {
-      Data item = dataList.get(i);
-      if (item != null) {
-        map.put(dataSource.getKey(item), i);
+      while (recentPages.size() > maxCachedPages && iterator.hasNext()) {
+        evicted.add(iterator.next());
+        iterator.remove();
+      }
+
+      for (int page : list.getPopulatedPages()) {
+        if (!recentPages.containsKey(page) && !evicted.contains(page)) {
+          evicted.add(page);
+        }
+      }
+
+      for (int page : evicted) {
+        int start = page * config.pageSize();
+        int end   = Math.min(loadState.size(), start + config.pageSize());
+
+        if (start < end) {
+          loadState.unmarkRange(start, end);
+        }
       }
     }
+
+    for (int page : evicted) {
+      for (int i = page * config.pageSize(), end = Math.min(list.size(), i + config.pageSize()); i < end; i++) {
+        Data item = list.get(i);
+        if (item != null) {
+          keyToPosition.remove(dataSource.getKey(item));
+        }
+      }
+
+      list.clearPage(page);
+    }
+
+    if (DEBUG && !evicted.isEmpty()) Log.d(TAG, "Evicted pages " + evicted + " (cached pages: " + list.getPopulatedPages().size() + ")");
   }
 
   private String buildDataNeededLog(int aroundIndex, String message) {
@@ -12,11 +12,13 @@ public final class PagingConfig {
   private final int bufferPages;
   private final int startIndex;
   private final int pageSize;
+  private final int maxCachedPages;
 
   private PagingConfig(@NonNull Builder builder) {
-    this.bufferPages = builder.bufferPages;
-    this.startIndex  = builder.startIndex;
-    this.pageSize    = builder.pageSize;
+    this.bufferPages    = builder.bufferPages;
+    this.startIndex     = builder.startIndex;
+    this.pageSize       = builder.pageSize;
+    this.maxCachedPages = builder.maxCachedPages;
   }
 
   /**
@@ -42,10 +44,19 @@ public final class PagingConfig {
     return startIndex;
   }
 
+  /**
+   * @return The most pages of data to keep in memory at once. Once exceeded, the pages that were least recently near the active position are dropped,
+   *         and will be loaded again if they're needed. Never smaller than the pages needed to cover the active position and its buffer.
+   */
+  int maxCachedPages() {
+    return maxCachedPages;
+  }
+
   public static class Builder {
-    private int bufferPages = 1;
-    private int startIndex  = 0;
-    private int pageSize    = 50;
+    private int bufferPages    = 1;
+    private int startIndex     = 0;
+    private int pageSize       = 50;
+    private int maxCachedPages = Integer.MAX_VALUE;
 
     public @NonNull Builder setBufferPages(int bufferPages) {
       if (bufferPages < 1) {
@@ -65,6 +76,15 @@ public final class PagingConfig {
       return this;
     }
 
+    public @NonNull Builder setMaxCachedPages(int maxCachedPages) {
+      if (maxCachedPages < 1) {
+        throw new IllegalArgumentException("You must cache at least one page! Requested: " + maxCachedPages);
+      }
+
+      this.maxCachedPages = maxCachedPages;
+      return this;
+    }
+
     public @NonNull Builder setStartIndex(int startIndex) {
       if (startIndex < 0) {
         throw new IndexOutOfBoundsException("Requested: " + startIndex);
@@ -0,0 +1,108 @@
+package io.zonarosa.paging
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class CompressedListTest {
+  @Test
+  fun get_unpopulated_isNull() {
+    val subject = CompressedList<Int>(10, 3)
+
+    assertEquals(10, subject.size)
+    assertNull(subject[9])
+    assertEquals(0, subject.getPopulatedPages().size)
+  }
+
+  @Test
+  fun set_onlyPopulatesTouchedPage() {
+    val subject = CompressedList<Int>(10, 3)
+
+    subject[4] = 4
+
+    assertEquals(4, subject[4])
+    assertEquals(setOf(1), subject.getPopulatedPages())
+  }
+
+  @Test
+  fun set_nullOnUnpopulatedPage_doesNotPopulate() {
+    val subject = CompressedList<Int>(10, 3)
+
+    subject[4] = null
+
+    assertEquals(0, subject.getPopulatedPages().size)
+  }
+
+  @Test
+  fun add_shiftsAcrossPageBoundaries() {
+    val subject = filled(7, 3)
+
+    subject.add(1, 100)
+
+    assertEquals(listOf(0, 100, 1, 2, 3, 4, 5, 6), subject.toList())
+  }
+
+  @Test
+  fun add_atEnd() {
+    val subject = filled(6, 3)
+
+    subject.add(6, 100)
+
+    assertEquals(listOf(0, 1, 2, 3, 4, 5, 100), subject.toList())
+  }
+
+  @Test
+  fun add_shiftsIntoUnpopulatedPage() {
+    val subject = CompressedList<Int>(6, 3)
+    subject[2] = 2
+
+    subject.add(0, 100)
+
+    assertEquals(listOf(100, null, null, 2, null, null, null), subject.toList())
+  }
+
+  @Test
+  fun copy_writesToCopy_doNotAffectOriginal() {
+    val original = filled(6, 3)
+    val copy = CompressedList(original)
+
+    copy[0] = 100
+
+    assertEquals(0, original[0])
+    assertEquals(100, copy[0])
+  }
+
+  @Test
+  fun copy_writesToOriginal_doNotAffectCopy() {
+    val original = filled(6, 3)
+    val copy = CompressedList(original)
+
+    original[4] = 100
+    original.add(0, 200)
+
+    assertEquals(listOf(0, 1, 2, 3, 4, 5), copy.toList())
+  }
+
+  @Test
+  fun clearPage_emptiesOnlyThatPage() {
+    val subject = filled(9, 3)
+
+    subject.clearPage(1)
+
+    assertEquals(listOf(0, 1, 2, null, null, null, 6, 7, 8), subject.toList())
+    assertEquals(setOf(0, 2), subject.getPopulatedPages())
+  }
+
+  @Test(expected = IndexOutOfBoundsException::class)
+  fun get_pastEndThrows() {
+    CompressedList<Int>(3, 3)[3]
+  }
+
+  private fun filled(size: Int, pageSize: Int): CompressedList<Int> {
+    val list = CompressedList<Int>(size, pageSize)
+    for (i in 0 until size) {
+      list[i] = i
+    }
+    return list
+  }
+}
@@ -0,0 +1,171 @@
+package io.zonarosa.paging
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.Executor
+
+class FixedSizePagingControllerTest {
+
+  private val dataSource = SyntheticDataSource(size = 1_000)
+  private var latest: List<Int?> = emptyList()
+
+  @Test
+  fun onDataNeededAroundIndex_loadsPageAndBuffer() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(0)
+
+    assertEquals(0, latest[0])
+    assertEquals(19, latest[19])
+    assertNull(latest[20])
+  }
+
+  @Test
+  fun onDataNeededAroundIndex_scrollingForward_prefetchesAhead() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(0)
+    subject.onDataNeededAroundIndex(100)
+
+    assertNull(latest[89])
+    assertEquals(90, latest[90])
+    assertEquals(129, latest[129])
+    assertNull(latest[130])
+  }
+
+  @Test
+  fun onDataNeededAroundIndex_scrollingBackward_prefetchesBehind() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(500)
+    subject.onDataNeededAroundIndex(400)
+
+    assertNull(latest[379])
+    assertEquals(380, latest[380])
+    assertEquals(419, latest[419])
+    assertNull(latest[420])
+  }
+
+  @Test
+  fun onDataNeededAroundIndex_boundedCache_evictsFarPages() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).setMaxCachedPages(5).build())
+
+    for (i in 0 until 1_000 step 10) {
+      subject.onDataNeededAroundIndex(i)
+    }
+
+    assertTrue(populatedPages().size <= 5)
+    assertNull(latest[0])
+    assertEquals(999, latest[999])
+  }
+
+  @Test
+  fun onDataNeededAroundIndex_boundedCache_reloadsEvictedPages() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).setMaxCachedPages(5).build())
+
+    for (i in 0 until 1_000 step 10) {
+      subject.onDataNeededAroundIndex(i)
+    }
+    subject.onDataNeededAroundIndex(0)
+
+    assertEquals(0, latest[0])
+    assertTrue(populatedPages().size <= 5)
+  }
+
+  @Test
+  fun onDataNeededAroundIndex_unboundedCache_keepsEverything() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    for (i in 0 until 1_000 step 10) {
+      subject.onDataNeededAroundIndex(i)
+    }
+
+    assertEquals(0, latest[0])
+    assertEquals(100, populatedPages().size)
+  }
+
+  @Test
+  fun onDataItemChanged_evictedItem_isNotLoaded() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).setMaxCachedPages(5).build())
+
+    for (i in 0 until 1_000 step 10) {
+      subject.onDataNeededAroundIndex(i)
+    }
+
+    val loadsBefore = dataSource.singleLoads
+    subject.onDataItemChanged(0)
+
+    assertEquals(loadsBefore, dataSource.singleLoads)
+  }
+
+  @Test
+  fun onDataItemChanged_cachedItem_isReloaded() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(0)
+    subject.onDataItemChanged(5)
+
+    assertEquals(1, dataSource.singleLoads)
+    assertEquals(5, latest[5])
+  }
+
+  @Test
+  fun onDataItemInserted_shiftsLaterItems() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(0)
+    subject.onDataItemInserted(5_000, 0)
+
+    assertEquals(1_001, latest.size)
+    assertEquals(5_000, latest[0])
+    assertEquals(0, latest[1])
+    assertEquals(19, latest[20])
+
+    // Keys that were shifted should still resolve to their new positions
+    subject.onDataItemChanged(19)
+    assertEquals(19, latest[20])
+  }
+
+  @Test
+  fun onDataItemInserted_atEnd() {
+    val subject = createController(PagingConfig.Builder().setPageSize(10).setBufferPages(1).build())
+
+    subject.onDataNeededAroundIndex(990)
+    subject.onDataItemInserted(5_000, PagingController.POSITION_END)
+
+    assertEquals(1_001, latest.size)
+    assertEquals(5_000, latest[1_000])
+    assertNotNull(latest[999])
+  }
+
+  private fun createController(config: PagingConfig): FixedSizePagingController<Int, Int> {
+    return FixedSizePagingController(dataSource, config, { latest = it }, dataSource.size(), Executor { it.run() })
+  }
+
+  private fun populatedPages(): Set<Int> {
+    return latest.indices.filter { latest[it] != null }.map { it / 10 }.toSet()
+  }
+
+  /**
+   * A data source where each item is its own original position, and also its own key.
+   */
+  private class SyntheticDataSource(private val size: Int) : PagedDataSource<Int, Int> {
+    var singleLoads = 0
+
+    override fun size(): Int = size
+
+    override fun load(start: Int, length: Int, totalSize: Int, cancellationZonaRosa: PagedDataSource.CancellationZonaRosa): List<Int> {
+      return (start until start + length).toList()
+    }
+
+    override fun load(key: Int): Int {
+      singleLoads++
+      return key
+    }
+
+    override fun getKey(data: Int): Int = data
+  }
+}
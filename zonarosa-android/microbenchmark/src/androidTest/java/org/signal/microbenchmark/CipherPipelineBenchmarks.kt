@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.microbenchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import io.zonarosa.core.util.stream.BufferPool
+import io.zonarosa.core.util.stream.CipherPipelineInputStream
+import io.zonarosa.core.util.stream.LimitedInputStream
+import io.zonarosa.core.util.stream.MacInputStream
+import java.io.InputStream
+import javax.crypto.Cipher
+import javax.crypto.CipherInputStream
+import javax.crypto.Mac
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+import kotlin.random.Random
+
+/**
+ * Benchmarks for decrypting an attachment-shaped stream (ciphertext followed by a MAC, with padding to trim off of the plaintext), comparing
+ * stacked [LimitedInputStream]/[MacInputStream]/[CipherInputStream] layers against a single [CipherPipelineInputStream].
+ */
+@RunWith(AndroidJUnit4::class)
+class CipherPipelineBenchmarks {
+
+  companion object {
+    private const val PLAINTEXT_SIZE = 10 * 1024 * 1024
+    private const val PADDING_SIZE = 1024
+    private const val READ_BUFFER_SIZE = 8192
+  }
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  private val aesKey = Random.nextBytes(32)
+  private val macKey = Random.nextBytes(32)
+  private val iv = Random.nextBytes(16)
+
+  private val ciphertext: ByteArray = Cipher.getInstance("AES/CBC/PKCS5Padding").run {
+    init(Cipher.ENCRYPT_MODE, SecretKeySpec(aesKey, "AES"), IvParameterSpec(iv))
+    doFinal(Random.nextBytes(PLAINTEXT_SIZE + PADDING_SIZE))
+  }
+
+  private val encrypted: ByteArray = ciphertext + mac().doFinal(ciphertext)
+
+  @Test
+  fun decrypt_stackedStreams() {
+    benchmarkRule.measureRepeated {
+      val macStream = MacInputStream(LimitedInputStream(encrypted.inputStream(), ciphertext.size.toLong()), mac())
+      val stream = LimitedInputStream(CipherInputStream(macStream, decryptCipher()), PLAINTEXT_SIZE.toLong())
+      drainToArray(stream)
+      macStream.mac.doFinal()
+    }
+  }
+
+  @Test
+  fun decrypt_pipeline_array() {
+    benchmarkRule.measureRepeated {
+      val stream = CipherPipelineInputStream(encrypted.inputStream(), decryptCipher(), ciphertext.size.toLong(), mac(), outputLength = PLAINTEXT_SIZE.toLong())
+      drainToArray(stream)
+      stream.mac!!.doFinal()
+    }
+  }
+
+  @Test
+  fun decrypt_pipeline_directBuffer() {
+    benchmarkRule.measureRepeated {
+      val stream = CipherPipelineInputStream(encrypted.inputStream(), decryptCipher(), ciphertext.size.toLong(), mac(), outputLength = PLAINTEXT_SIZE.toLong())
+      val buffer = BufferPool.DEFAULT.acquireDirect()
+      while (stream.read(buffer) != -1) {
+        buffer.clear()
+      }
+      BufferPool.DEFAULT.releaseDirect(buffer)
+      stream.mac!!.doFinal()
+    }
+  }
+
+  private fun drainToArray(stream: InputStream) {
+    val buffer = ByteArray(READ_BUFFER_SIZE)
+    stream.use {
+      while (it.read(buffer) != -1) {
+        // Just moving the data through
+      }
+    }
+  }
+
+  private fun decryptCipher(): Cipher {
+    return Cipher.getInstance("AES/CBC/PKCS5Padding").apply {
+      init(Cipher.DECRYPT_MODE, SecretKeySpec(aesKey, "AES"), IvParameterSpec(iv))
+    }
+  }
+
+  private fun mac(): Mac {
+    return Mac.getInstance("HmacSHA256").apply {
+      init(SecretKeySpec(macKey, "HmacSHA256"))
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.microbenchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import io.zonarosa.core.util.ConcurrentLRUCache
+import io.zonarosa.core.util.LRUCache
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.random.Random
+
+/**
+ * Benchmarks for cache lookups with a synchronized [LRUCache] (how callers use it today) and with [ConcurrentLRUCache].
+ *
+ * Keys are drawn with a skew towards a small hot set, similar to recipient lookups, and misses are filled in the way callers typically do. The
+ * contended variants keep other threads reading from the same cache while the lookups are measured.
+ */
+@RunWith(AndroidJUnit4::class)
+class LRUCacheBenchmarks {
+
+  companion object {
+    private const val CAPACITY = 1_000
+    private const val KEY_SPACE = 2_000
+    private const val BACKGROUND_THREADS = 3
+  }
+
+  @get:Rule
+  val benchmarkRule = BenchmarkRule()
+
+  @Test
+  fun get_synchronizedLruCache() {
+    val cache = LRUCache<Int, String>(CAPACITY)
+    measureLookups { key -> synchronized(cache) { cache[key] ?: key.toString().also { cache[key] = it } } }
+  }
+
+  @Test
+  fun get_concurrentLruCache() {
+    val cache = ConcurrentLRUCache<Int, String>(CAPACITY.toLong())
+    measureLookups { key -> cache[key] ?: key.toString().also { cache[key] = it } }
+  }
+
+  @Test
+  fun get_synchronizedLruCache_contended() {
+    val cache = LRUCache<Int, String>(CAPACITY)
+    withBackgroundReaders({ key -> synchronized(cache) { cache[key] ?: key.toString().also { cache[key] = it } } }) { lookup ->
+      measureLookups(lookup)
+    }
+  }
+
+  @Test
+  fun get_concurrentLruCache_contended() {
+    val cache = ConcurrentLRUCache<Int, String>(CAPACITY.toLong())
+    withBackgroundReaders({ key -> cache[key] ?: key.toString().also { cache[key] = it } }) { lookup ->
+      measureLookups(lookup)
+    }
+  }
+
+  private fun measureLookups(lookup: (Int) -> String) {
+    val random = Random(0)
+
+    benchmarkRule.measureRepeated {
+      lookup(nextKey(random))
+    }
+  }
+
+  private fun withBackgroundReaders(lookup: (Int) -> String, block: ((Int) -> String) -> Unit) {
+    val running = AtomicBoolean(true)
+
+    val readers = List(BACKGROUND_THREADS) { i ->
+      Thread {
+        val random = Random(i + 1)
+        while (running.get()) {
+          lookup(nextKey(random))
+        }
+      }.apply { start() }
+    }
+
+    try {
+      block(lookup)
+    } finally {
+      running.set(false)
+      readers.forEach { it.join() }
+    }
+  }
+
+  /**
+   * Squaring a uniform sample skews towards low keys, giving a hot set that mostly fits in the cache.
+   */
+  private fun nextKey(random: Random): Int {
+    val sample = random.nextDouble()
+    return (sample * sample * KEY_SPACE).toInt()
+  }
+}
@@ -17,8 +17,10 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
@@ -28,10 +30,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Pair;
+import org.glassfish.jersey.SslConfigurator;
 import io.zonarosa.integration.config.Config;
 import io.zonarosa.libzonarosa.protocol.IdentityKey;
 import io.zonarosa.libzonarosa.protocol.ecc.ECKeyPair;
@@ -49,6 +53,7 @@ import io.zonarosa.server.entities.KEMSignedPreKey;
 import io.zonarosa.server.entities.RegistrationRequest;
 import io.zonarosa.server.http.FaultTolerantHttpClient;
 import io.zonarosa.server.storage.Device;
+import io.zonarosa.server.util.CertificateUtil;
 import io.zonarosa.server.util.HeaderUtils;
 import io.zonarosa.server.util.HttpUtils;
 import io.zonarosa.server.util.SystemMapper;
@@ -65,6 +70,8 @@ public final class Operations {
 
   private static final FaultTolerantHttpClient CLIENT = buildClient();
 
+  private static final HttpClient WEBSOCKET_CLIENT = buildWebSocketClient();
+
 
   private Operations() {
     // utility class
@@ -192,6 +199,25 @@ public final class Operations {
     return RequestBuilder.withJsonBody(endpoint, "PATCH", input);
   }
 
+  public static RequestBuilder apiPut(final String endpoint, final byte[] body, final String contentType) {
+    return new RequestBuilder(HttpRequest.newBuilder()
+        .header(HttpHeaders.CONTENT_TYPE, contentType)
+        .PUT(HttpRequest.BodyPublishers.ofByteArray(body)), endpoint);
+  }
+
+  /**
+   * Opens an authenticated websocket for the given user's primary device, as a client does when it comes online. The
+   * server delivers the device's queued messages over the websocket and expects each one to be acknowledged.
+   */
+  public static CompletableFuture<WebSocket> openWebSocket(final TestUser user, final WebSocket.Listener listener) {
+    final String username = "%s.%d".formatted(user.aciUuid().toString(), Device.PRIMARY_ID);
+
+    return WEBSOCKET_CLIENT.newWebSocketBuilder()
+        .header(HttpHeaders.AUTHORIZATION, HeaderUtils.basicAuthHeader(username, user.accountPassword()))
+        .header(HttpHeaders.USER_AGENT, USER_AGENT)
+        .buildAsync(URI.create("wss://" + CONFIG.domain() + "/v1/websocket/"), listener);
+  }
+
   private static URI serverUri(final String endpoint, final List<String> queryParams) {
     final String query = queryParams.isEmpty()
         ? StringUtils.EMPTY
@@ -313,6 +339,18 @@ public final class Operations {
     }
   }
 
+  private static HttpClient buildWebSocketClient() {
+    try {
+      return HttpClient.newBuilder()
+          .sslContext(SslConfigurator.newInstance()
+              .trustStore(CertificateUtil.buildKeyStoreForPem(CONFIG.rootCert()))
+              .createSSLContext())
+          .build();
+    } catch (final CertificateException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private static Config loadConfigFromClasspath(final String filename) {
     try {
       final URL configFileUrl = Resources.getResource(filename);
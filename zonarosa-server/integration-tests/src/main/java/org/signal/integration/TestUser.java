@@ -127,6 +127,10 @@ public class TestUser {
     return pniUuid;
   }
 
+  public byte[] unidentifiedAccessKey() {
+    return unidentifiedAccessKey;
+  }
+
   public AccountAttributes accountAttributes() {
     return new AccountAttributes(true, registrationId, pniRegistrationId, "".getBytes(StandardCharsets.UTF_8), "", true, Set.of())
         .withUnidentifiedAccessKey(unidentifiedAccessKey)
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.integration.load;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import org.apache.commons.lang3.tuple.Pair;
+import io.zonarosa.integration.Operations;
+import io.zonarosa.integration.TestUser;
+import io.zonarosa.server.entities.IncomingMessage;
+import io.zonarosa.server.entities.IncomingMessageList;
+import io.zonarosa.server.identity.AciServiceIdentifier;
+import io.zonarosa.server.providers.MultiRecipientMessageProvider;
+import io.zonarosa.server.storage.Device;
+import io.zonarosa.server.util.HeaderUtils;
+import io.zonarosa.server.util.HttpUtils;
+
+/**
+ * A headless load generator that registers a population of users against a running server (e.g. one started with
+ * {@code ./mvnw integration-test -Ptest-server}) and then issues a weighted mix of client operations from many
+ * concurrent workers. Periodically, a "reconnect storm" makes a large group of users reconnect at the same moment. At
+ * the end of the run, the generator prints throughput, error counts and latency percentiles for each operation.
+ * <p>
+ * The generator uses the same configuration as the integration tests and can be run with:
+ * <pre>
+ * ./mvnw -pl integration-tests -Pload-generator exec:java -Dexec.args="--users=2000 --duration=PT5M"
+ * </pre>
+ * See {@link LoadGeneratorConfig} for the full set of arguments.
+ */
+public class LoadGenerator {
+
+  private final LoadGeneratorConfig config;
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final Map<LoadOperation, Timer> timers = new EnumMap<>(LoadOperation.class);
+  private final Map<LoadOperation, Counter> errorCounters = new EnumMap<>(LoadOperation.class);
+  private final Timer reconnectStormTimer;
+  private final Counter reconnectStormErrorCounter;
+
+  private final LoadOperation[] weightedOperations;
+
+  private static final double[] REPORTED_PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+  // Multi-recipient messages carry 48 bytes of per-recipient key material; the server doesn't inspect its contents
+  private static final byte[] PER_RECIPIENT_KEY_MATERIAL = new byte[48];
+  private static final int SHARED_PAYLOAD_SIZE = 32;
+
+  private static final Duration RECONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+  public static void main(final String[] args) throws Exception {
+    new LoadGenerator(LoadGeneratorConfig.parse(args)).run();
+  }
+
+  public LoadGenerator(final LoadGeneratorConfig config) {
+    this.config = config;
+
+    for (final LoadOperation operation : LoadOperation.values()) {
+      timers.put(operation, buildTimer(operation.shortName()));
+      errorCounters.put(operation, meterRegistry.counter("errors", "operation", operation.shortName()));
+    }
+
+    reconnectStormTimer = buildTimer("reconnectStorm");
+    reconnectStormErrorCounter = meterRegistry.counter("errors", "operation", "reconnectStorm");
+
+    // Expand the mix into a table we can index into with a single random draw
+    weightedOperations = config.mix().entrySet().stream()
+        .flatMap(entry -> IntStream.range(0, entry.getValue()).mapToObj(_ -> entry.getKey()))
+        .toArray(LoadOperation[]::new);
+  }
+
+  private Timer buildTimer(final String operationName) {
+    return Timer.builder("latency")
+        .tag("operation", operationName)
+        .publishPercentiles(REPORTED_PERCENTILES)
+        .distributionStatisticExpiry(Duration.ofDays(1))
+        .register(meterRegistry);
+  }
+
+  public void run() throws Exception {
+    System.out.printf("Registering %d users%n", config.users());
+
+    final List<TestUser> users = registerUsers();
+
+    try {
+      System.out.printf("Generating load with %d workers for %s%n", config.concurrency(), config.duration());
+
+      final long startNanos = System.nanoTime();
+      final long deadlineNanos = startNanos + config.duration().toNanos();
+
+      final ScheduledExecutorService stormExecutor = Executors.newSingleThreadScheduledExecutor();
+
+      if (config.reconnectStormInterval().isPositive()) {
+        final SplittableRandom stormRandom = new SplittableRandom(config.seed() - 1);
+
+        stormExecutor.scheduleWithFixedDelay(() -> reconnectStorm(users, stormRandom),
+            config.reconnectStormInterval().toMillis(), config.reconnectStormInterval().toMillis(),
+            TimeUnit.MILLISECONDS);
+      }
+
+      try (final ExecutorService workerExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+        final List<Future<?>> workers = new ArrayList<>(config.concurrency());
+
+        for (int i = 0; i < config.concurrency(); i++) {
+          final SplittableRandom random = new SplittableRandom(config.seed() + i);
+          workers.add(workerExecutor.submit(() -> runWorker(users, random, deadlineNanos)));
+        }
+
+        for (final Future<?> worker : workers) {
+          worker.get();
+        }
+      } finally {
+        stormExecutor.shutdownNow();
+      }
+
+      printReport(Duration.ofNanos(System.nanoTime() - startNanos));
+    } finally {
+      System.out.printf("Deleting %d users%n", users.size());
+      forEachConcurrently(users.size(), i -> {
+        Operations.deleteUser(users.get(i));
+        return null;
+      });
+    }
+  }
+
+  private List<TestUser> registerUsers() throws Exception {
+    final int digits = String.valueOf(config.users() - 1).length();
+
+    return forEachConcurrently(config.users(), i ->
+        Operations.newRegisteredUser(config.numberPrefix() + String.format("%0" + digits + "d", i)));
+  }
+
+  private void runWorker(final List<TestUser> users, final SplittableRandom random, final long deadlineNanos) {
+    while (System.nanoTime() < deadlineNanos) {
+      final LoadOperation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+      final TestUser sender = users.get(random.nextInt(users.size()));
+
+      final Supplier<Boolean> request = switch (operation) {
+        case SEND_MESSAGE -> () -> sendMessage(sender, pickRecipients(users, sender, 1, random).getFirst());
+        case SEND_MULTI_RECIPIENT_MESSAGE ->
+            () -> sendMultiRecipientMessage(sender, pickRecipients(users, sender, config.multiRecipientCount(), random));
+        case FETCH_PRE_KEYS -> () -> fetchPreKeys(sender, pickRecipients(users, sender, 1, random).getFirst());
+        case FETCH_PROFILE -> () -> fetchProfile(sender, pickRecipients(users, sender, 1, random).getFirst());
+        case RECONNECT -> () -> reconnect(sender);
+      };
+
+      record(timers.get(operation), errorCounters.get(operation), request);
+    }
+  }
+
+  private void reconnectStorm(final List<TestUser> users, final SplittableRandom random) {
+    final int stormSize = Math.min(config.reconnectStormSize(), users.size());
+    final List<TestUser> reconnectingUsers = pickRecipients(users, null, stormSize, random);
+
+    try {
+      forEachConcurrently(stormSize, i -> {
+        record(reconnectStormTimer, reconnectStormErrorCounter, () -> reconnect(reconnectingUsers.get(i)));
+        return null;
+      });
+    } catch (final Exception e) {
+      reconnectStormErrorCounter.increment();
+    }
+  }
+
+  private static void record(final Timer timer, final Counter errorCounter, final Supplier<Boolean> request) {
+    final long startNanos = System.nanoTime();
+    boolean success;
+
+    try {
+      success = request.get();
+    } catch (final RuntimeException e) {
+      success = false;
+    }
+
+    timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+    if (!success) {
+      errorCounter.increment();
+    }
+  }
+
+  private boolean sendMessage(final TestUser sender, final TestUser recipient) {
+    final IncomingMessage message = new IncomingMessage(1, Device.PRIMARY_ID, recipient.registrationId(),
+        messageContent());
+
+    final IncomingMessageList messages =
+        new IncomingMessageList(List.of(message), false, true, System.currentTimeMillis());
+
+    return isSuccessful(Operations.apiPut("/v1/messages/%s".formatted(recipient.aciUuid()), messages)
+        .authorized(sender)
+        .execute());
+  }
+
+  private boolean sendMultiRecipientMessage(final TestUser sender, final List<TestUser> recipients) {
+    final byte[] combinedUnidentifiedAccessKey = new byte[sender.unidentifiedAccessKey().length];
+
+    for (final TestUser recipient : recipients) {
+      final byte[] unidentifiedAccessKey = recipient.unidentifiedAccessKey();
+
+      for (int i = 0; i < combinedUnidentifiedAccessKey.length; i++) {
+        combinedUnidentifiedAccessKey[i] ^= unidentifiedAccessKey[i];
+      }
+    }
+
+    // Multi-recipient messages are sealed-sender messages, so they're sent without authentication
+    return isSuccessful(Operations.apiPut("/v1/messages/multi_recipient", buildMultiRecipientMessage(recipients),
+            MultiRecipientMessageProvider.MEDIA_TYPE)
+        .queryParam("ts", String.valueOf(System.currentTimeMillis()))
+        .queryParam("online", "false")
+        .queryParam("urgent", "true")
+        .header(HeaderUtils.UNIDENTIFIED_ACCESS_KEY, Base64.getEncoder().encodeToString(combinedUnidentifiedAccessKey))
+        .execute());
+  }
+
+  private boolean fetchPreKeys(final TestUser requester, final TestUser target) {
+    return isSuccessful(Operations.apiGet("/v2/keys/%s/*".formatted(target.aciUuid()))
+        .authorized(requester)
+        .execute());
+  }
+
+  private boolean fetchProfile(final TestUser requester, final TestUser target) {
+    return isSuccessful(Operations.apiGet("/v1/profile/%s".formatted(target.aciUuid()))
+        .authorized(requester)
+        .execute());
+  }
+
+  private boolean reconnect(final TestUser user) {
+    // Acknowledge every delivered envelope the way a real client does so the server deletes it; otherwise queues keep
+    // growing across the run and skew every later reconnect
+    final QueueDrainingListener listener = new QueueDrainingListener();
+    final WebSocket webSocket = Operations.openWebSocket(user, listener).join();
+
+    try {
+      listener.queueDrained().orTimeout(RECONNECT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).join();
+    } catch (final CompletionException e) {
+      webSocket.abort();
+      throw e;
+    }
+
+    webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "OK").join();
+    return true;
+  }
+
+  private byte[] messageContent() {
+    final byte[] content = new byte[config.messageSize()];
+    final byte[] marker = "load-generator".getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(marker, 0, content, 0, Math.min(marker.length, content.length));
+
+    return content;
+  }
+
+  private static byte[] buildMultiRecipientMessage(final List<TestUser> recipients) {
+    final ByteBuffer buffer = ByteBuffer.allocate(1
+        + varintLength(recipients.size())
+        + recipients.size() * (17 + 3 + PER_RECIPIENT_KEY_MATERIAL.length)
+        + varintLength(SHARED_PAYLOAD_SIZE)
+        + SHARED_PAYLOAD_SIZE);
+
+    // Version byte
+    buffer.put((byte) 0x23);
+    writeVarint(buffer, recipients.size());
+
+    for (final TestUser recipient : recipients) {
+      buffer.put(new AciServiceIdentifier(recipient.aciUuid()).toFixedWidthByteArray());
+      buffer.put(Device.PRIMARY_ID);
+      buffer.putShort((short) recipient.registrationId());
+      buffer.put(PER_RECIPIENT_KEY_MATERIAL);
+    }
+
+    writeVarint(buffer, SHARED_PAYLOAD_SIZE);
+    buffer.put(new byte[SHARED_PAYLOAD_SIZE]);
+
+    return buffer.array();
+  }
+
+  private static void writeVarint(final ByteBuffer buffer, long n) {
+    while (n >= 0x80) {
+      buffer.put((byte) (n & 0x7F | 0x80));
+      n >>= 7;
+    }
+
+    buffer.put((byte) (n & 0x7F));
+  }
+
+  private static int varintLength(long n) {
+    int length = 1;
+
+    while (n >= 0x80) {
+      length += 1;
+      n >>= 7;
+    }
+
+    return length;
+  }
+
+  /**
+   * Picks {@code count} distinct users other than {@code excluded}.
+   */
+  private static List<TestUser> pickRecipients(final List<TestUser> users,
+      final TestUser excluded,
+      final int count,
+      final SplittableRandom random) {
+
+    final List<TestUser> recipients = new ArrayList<>(count);
+
+    while (recipients.size() < count) {
+      final TestUser candidate = users.get(random.nextInt(users.size()));
+
+      if (candidate != excluded && !recipients.contains(candidate)) {
+        recipients.add(candidate);
+      }
+    }
+
+    return recipients;
+  }
+
+  private static boolean isSuccessful(final Pair<Integer, ?> response) {
+    return HttpUtils.isSuccessfulResponse(response.getLeft());
+  }
+
+  private <T> List<T> forEachConcurrently(final int count, final IndexedTask<T> task) throws Exception {
+    try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      // Bound concurrency to the configured number of workers so setup doesn't overwhelm the server
+      final Semaphore semaphore = new Semaphore(config.concurrency());
+      final List<Future<T>> futures = new ArrayList<>(count);
+
+      for (int i = 0; i < count; i++) {
+        final int index = i;
+
+        futures.add(executor.submit(() -> {
+          semaphore.acquire();
+
+          try {
+            return task.apply(index);
+          } finally {
+            semaphore.release();
+          }
+        }));
+      }
+
+      final List<T> results = new ArrayList<>(count);
+
+      for (final Future<T> future : futures) {
+        results.add(future.get());
+      }
+
+      return results;
+    }
+  }
+
+  @FunctionalInterface
+  private interface IndexedTask<T> {
+
+    T apply(int index) throws Exception;
+  }
+
+  private void printReport(final Duration elapsed) {
+    final double elapsedSeconds = elapsed.toNanos() / 1e9;
+
+    System.out.printf("%nCompleted in %.1fs%n%n", elapsedSeconds);
+    System.out.printf("%-16s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+        "operation", "count", "errors", "ops/s", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p999 (ms)", "max (ms)");
+
+    for (final LoadOperation operation : LoadOperation.values()) {
+      printReportLine(operation.shortName(), timers.get(operation), errorCounters.get(operation), elapsedSeconds);
+    }
+
+    printReportLine("reconnectStorm", reconnectStormTimer, reconnectStormErrorCounter, elapsedSeconds);
+  }
+
+  private static void printReportLine(final String name,
+      final Timer timer,
+      final Counter errorCounter,
+      final double elapsedSeconds) {
+
+    final HistogramSnapshot snapshot = timer.takeSnapshot();
+    final ValueAtPercentile[] percentiles = snapshot.percentileValues();
+
+    final StringBuilder line = new StringBuilder(String.format("%-16s %10d %8d %10.1f",
+        name, snapshot.count(), (long) errorCounter.count(), snapshot.count() / elapsedSeconds));
+
+    for (final ValueAtPercentile percentile : percentiles) {
+      line.append(String.format(" %10.1f", percentile.value(TimeUnit.MILLISECONDS)));
+    }
+
+    line.append(String.format(" %10.1f", snapshot.max(TimeUnit.MILLISECONDS)));
+
+    System.out.println(line);
+  }
+}
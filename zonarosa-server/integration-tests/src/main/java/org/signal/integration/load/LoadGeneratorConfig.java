@@ -0,0 +1,130 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.integration.load;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings for a {@link LoadGenerator} run.
+ *
+ * @param users                   the number of users to register before generating load
+ * @param concurrency             the number of workers issuing operations concurrently
+ * @param duration                how long to generate load after all users have been registered
+ * @param mix                     the relative weight of each operation in the send mix
+ * @param multiRecipientCount     the number of recipients of each multi-recipient message
+ * @param messageSize             the size, in bytes, of the content of each message
+ * @param reconnectStormInterval  the time between reconnect storms, or {@link Duration#ZERO} to disable storms
+ * @param reconnectStormSize      the number of users that reconnect at once during a reconnect storm
+ * @param numberPrefix            the prefix of the phone numbers of registered users; the remaining digits are the
+ *                                zero-padded index of the user
+ * @param seed                    the seed for all random choices, so that runs with the same settings issue the same
+ *                                sequence of operations
+ */
+public record LoadGeneratorConfig(int users,
+                                  int concurrency,
+                                  Duration duration,
+                                  Map<LoadOperation, Integer> mix,
+                                  int multiRecipientCount,
+                                  int messageSize,
+                                  Duration reconnectStormInterval,
+                                  int reconnectStormSize,
+                                  String numberPrefix,
+                                  long seed) {
+
+  private static final Map<LoadOperation, Integer> DEFAULT_MIX = Map.of(
+      LoadOperation.SEND_MESSAGE, 50,
+      LoadOperation.SEND_MULTI_RECIPIENT_MESSAGE, 10,
+      LoadOperation.FETCH_PRE_KEYS, 15,
+      LoadOperation.FETCH_PROFILE, 15,
+      LoadOperation.RECONNECT, 10);
+
+  public LoadGeneratorConfig {
+    if (users < 2) {
+      throw new IllegalArgumentException("At least two users are required");
+    }
+
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be positive");
+    }
+
+    if (multiRecipientCount < 1 || multiRecipientCount >= users) {
+      throw new IllegalArgumentException("Multi-recipient count must be between 1 and the number of users - 1");
+    }
+
+    if (mix.values().stream().anyMatch(weight -> weight < 0) || mix.values().stream().mapToInt(i -> i).sum() == 0) {
+      throw new IllegalArgumentException("Mix weights must be non-negative and at least one must be positive");
+    }
+
+    mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+  }
+
+  /**
+   * Parses settings from {@code --name=value} command-line arguments; any setting not present in the arguments takes
+   * its default value.
+   *
+   * @param args the command-line arguments to parse
+   *
+   * @return the parsed settings
+   */
+  public static LoadGeneratorConfig parse(final String[] args) {
+    final Map<String, String> arguments = new HashMap<>();
+
+    for (final String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Arguments must be of the form --name=value: " + arg);
+      }
+
+      final int separator = arg.indexOf('=');
+      arguments.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+
+    final LoadGeneratorConfig config = new LoadGeneratorConfig(
+        Integer.parseInt(arguments.getOrDefault("users", "1000")),
+        Integer.parseInt(arguments.getOrDefault("concurrency", "64")),
+        Duration.parse(arguments.getOrDefault("duration", "PT1M")),
+        arguments.containsKey("mix") ? parseMix(arguments.get("mix")) : DEFAULT_MIX,
+        Integer.parseInt(arguments.getOrDefault("multi-recipient-count", "10")),
+        Integer.parseInt(arguments.getOrDefault("message-size", "256")),
+        Duration.parse(arguments.getOrDefault("reconnect-storm-interval", "PT15S")),
+        Integer.parseInt(arguments.getOrDefault("reconnect-storm-size", "100")),
+        arguments.getOrDefault("number-prefix", "+1999556"),
+        Long.parseLong(arguments.getOrDefault("seed", "0")));
+
+    arguments.keySet().removeAll(Set.of("users", "concurrency", "duration", "mix", "multi-recipient-count",
+        "message-size", "reconnect-storm-interval", "reconnect-storm-size", "number-prefix", "seed"));
+
+    if (!arguments.isEmpty()) {
+      throw new IllegalArgumentException("Unrecognized arguments: " + arguments.keySet());
+    }
+
+    return config;
+  }
+
+  /**
+   * Parses a send mix of the form {@code send:50,multi:10,keys:15,profile:15,reconnect:10}. Operations not named in
+   * the mix have a weight of zero.
+   */
+  private static Map<LoadOperation, Integer> parseMix(final String mix) {
+    final Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+
+    for (final String entry : mix.split(",")) {
+      final String[] pieces = entry.split(":");
+
+      if (pieces.length != 2) {
+        throw new IllegalArgumentException("Mix entries must be of the form operation:weight: " + entry);
+      }
+
+      weights.put(LoadOperation.forShortName(pieces[0].trim()), Integer.parseInt(pieces[1].trim()));
+    }
+
+    return weights;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.integration.load;
+
+import java.util.Arrays;
+
+/**
+ * The kinds of client operations the {@link LoadGenerator} can issue. Each operation has a short name that's used to
+ * refer to it when specifying a send mix on the command line (e.g. {@code --mix=send:60,keys:20,profile:20}).
+ */
+public enum LoadOperation {
+
+  /** Send an unsealed 1:1 message to a single recipient */
+  SEND_MESSAGE("send"),
+
+  /** Send a sealed-sender multi-recipient message to a group of recipients */
+  SEND_MULTI_RECIPIENT_MESSAGE("multi"),
+
+  /** Fetch pre-keys for all of a recipient's devices */
+  FETCH_PRE_KEYS("keys"),
+
+  /** Fetch a recipient's unversioned profile */
+  FETCH_PROFILE("profile"),
+
+  /** Reconnect, then drain and acknowledge queued messages */
+  RECONNECT("reconnect");
+
+  private final String shortName;
+
+  LoadOperation(final String shortName) {
+    this.shortName = shortName;
+  }
+
+  public String shortName() {
+    return shortName;
+  }
+
+  public static LoadOperation forShortName(final String shortName) {
+    return Arrays.stream(values())
+        .filter(operation -> operation.shortName.equals(shortName))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown operation: " + shortName));
+  }
+}
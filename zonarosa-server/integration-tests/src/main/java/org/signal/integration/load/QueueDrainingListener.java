@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.integration.load;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayOutputStream;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import io.zonarosa.websocket.messages.protobuf.SubProtocol;
+
+/**
+ * A websocket listener that behaves like a client coming back online: it acknowledges every request the server sends,
+ * including each delivered envelope, so the server removes those messages from the queue. {@link #queueDrained()}
+ * completes once the server reports that the queue is empty.
+ */
+class QueueDrainingListener implements WebSocket.Listener {
+
+  private static final String QUEUE_EMPTY_PATH = "/api/v1/queue/empty";
+
+  private final CompletableFuture<Void> queueDrained = new CompletableFuture<>();
+  private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+  CompletableFuture<Void> queueDrained() {
+    return queueDrained;
+  }
+
+  @Override
+  public CompletionStage<?> onBinary(final WebSocket webSocket, final ByteBuffer data, final boolean last) {
+    final byte[] bytes = new byte[data.remaining()];
+    data.get(bytes);
+    frame.writeBytes(bytes);
+
+    if (!last) {
+      webSocket.request(1);
+      return null;
+    }
+
+    final SubProtocol.WebSocketMessage message;
+
+    try {
+      message = SubProtocol.WebSocketMessage.parseFrom(frame.toByteArray());
+    } catch (final InvalidProtocolBufferException e) {
+      queueDrained.completeExceptionally(e);
+      return null;
+    } finally {
+      frame.reset();
+    }
+
+    if (message.getType() != SubProtocol.WebSocketMessage.Type.REQUEST) {
+      webSocket.request(1);
+      return null;
+    }
+
+    final SubProtocol.WebSocketResponseMessage response = SubProtocol.WebSocketResponseMessage.newBuilder()
+        .setId(message.getRequest().getId())
+        .setStatus(200)
+        .setMessage("OK")
+        .build();
+
+    final byte[] responseBytes = SubProtocol.WebSocketMessage.newBuilder()
+        .setType(SubProtocol.WebSocketMessage.Type.RESPONSE)
+        .setResponse(response)
+        .build()
+        .toByteArray();
+
+    // Only one send may be outstanding at a time, so don't ask for the next frame until the ack has gone out
+    return webSocket.sendBinary(ByteBuffer.wrap(responseBytes), true)
+        .whenComplete((_, throwable) -> {
+          if (throwable != null) {
+            queueDrained.completeExceptionally(throwable);
+          } else if (QUEUE_EMPTY_PATH.equals(message.getRequest().getPath())) {
+            queueDrained.complete(null);
+          } else {
+            webSocket.request(1);
+          }
+        });
+  }
+
+  @Override
+  public CompletionStage<?> onClose(final WebSocket webSocket, final int statusCode, final String reason) {
+    queueDrained.completeExceptionally(
+        new IllegalStateException("Websocket closed before queue was drained: %d %s".formatted(statusCode, reason)));
+
+    return null;
+  }
+
+  @Override
+  public void onError(final WebSocket webSocket, final Throwable error) {
+    queueDrained.completeExceptionally(error);
+  }
+}
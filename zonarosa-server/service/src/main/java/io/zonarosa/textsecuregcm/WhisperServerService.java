@@ -53,6 +53,7 @@ import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
@@ -197,6 +198,7 @@ import io.zonarosa.server.push.APNSender;
 import io.zonarosa.server.push.FcmSender;
 import io.zonarosa.server.push.MessageSender;
 import io.zonarosa.server.push.ProvisioningManager;
+import io.zonarosa.server.push.PushNotificationCoalescer;
 import io.zonarosa.server.push.PushNotificationManager;
 import io.zonarosa.server.push.PushNotificationScheduler;
 import io.zonarosa.server.push.ReceiptSender;
@@ -230,6 +232,7 @@ import io.zonarosa.server.storage.MessagesCache;
 import io.zonarosa.server.storage.MessagesDynamoDb;
 import io.zonarosa.server.storage.MessagesManager;
 import io.zonarosa.server.storage.OneTimeDonationsManager;
+import io.zonarosa.server.storage.PagedSingleUseECPreKeyStore;
 import io.zonarosa.server.storage.PagedSingleUseKEMPreKeyStore;
 import io.zonarosa.server.storage.PersistentTimer;
 import io.zonarosa.server.storage.PhoneNumberIdentifiers;
@@ -266,6 +269,7 @@ import io.zonarosa.server.util.BufferingInterceptor;
 import io.zonarosa.server.util.ManagedAwsCrt;
 import io.zonarosa.server.util.ManagedExecutors;
 import io.zonarosa.server.util.ResilienceUtil;
+import io.zonarosa.server.util.StartupGraph;
 import io.zonarosa.server.util.SystemMapper;
 import io.zonarosa.server.util.UsernameHashZkProofVerifier;
 import io.zonarosa.server.util.VirtualExecutorServiceProvider;
@@ -430,18 +434,54 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         config.getVirtualThreadConfiguration().maxConcurrentThreadsPerExecutor(),
         environment);
 
-    final DynamoDbAsyncClient dynamoDbAsyncClient = config.getDynamoDbClientConfiguration()
-        .buildAsyncClient(awsCredentialsProvider, new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbAsync"));
+    // Many clients block on network handshakes or do a lot of setup work when they're constructed; start them all at
+    // once, and only wait for each one when we first need it
+    final StartupGraph startupGraph = new StartupGraph();
 
-    final DynamoDbClient dynamoDbClient = config.getDynamoDbClientConfiguration()
-        .buildSyncClient(awsCredentialsProvider, new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbSync"));
+    final ClientResources sharedClientResources = ClientResources.builder()
+        .commandLatencyRecorder(
+            new MicrometerCommandLatencyRecorder(Metrics.globalRegistry, MicrometerOptions.builder().build()))
+        .build();
+    ConnectionEventLogger.logConnectionEvents(sharedClientResources);
+
+    final CompletableFuture<FaultTolerantRedisClusterClient> cacheClusterFuture = startupGraph.start("cacheCluster",
+        () -> config.getCacheClusterConfiguration().build("main_cache", sharedClientResources.mutate()));
+    final CompletableFuture<FaultTolerantRedisClusterClient> messagesClusterFuture = startupGraph.start("messagesCluster",
+        () -> config.getMessageCacheConfiguration().getRedisClusterConfiguration()
+            .build("messages", sharedClientResources.mutate()));
+    final CompletableFuture<FaultTolerantRedisClusterClient> pushSchedulerClusterFuture = startupGraph.start(
+        "pushSchedulerCluster",
+        () -> config.getPushSchedulerCluster().build("push_scheduler", sharedClientResources.mutate()));
+    final CompletableFuture<FaultTolerantRedisClusterClient> rateLimitersClusterFuture = startupGraph.start(
+        "rateLimitersCluster",
+        () -> config.getRateLimitersCluster().build("rate_limiters", sharedClientResources.mutate()));
+    final CompletableFuture<FaultTolerantRedisClient> pubsubClientFuture = startupGraph.start("pubsubClient",
+        () -> config.getRedisPubSubConfiguration().build("pubsub", sharedClientResources));
+
+    final CompletableFuture<DynamoDbAsyncClient> dynamoDbAsyncClientFuture = startupGraph.start("dynamoDbAsyncClient",
+        () -> config.getDynamoDbClientConfiguration().buildAsyncClient(awsCredentialsProvider,
+            new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbAsync")));
+    final CompletableFuture<DynamoDbClient> dynamoDbClientFuture = startupGraph.start("dynamoDbClient",
+        () -> config.getDynamoDbClientConfiguration().buildSyncClient(awsCredentialsProvider,
+            new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbSync")));
 
     final AwsCredentialsProvider cdnCredentialsProvider = config.getCdnConfiguration().credentials().build();
-    final S3AsyncClient asyncCdnS3Client = S3AsyncClient.builder()
-        .credentialsProvider(cdnCredentialsProvider)
-        .region(Region.of(config.getCdnConfiguration().region()))
-        .endpointOverride(config.getCdnConfiguration().endpointOverride())
-        .build();
+    final CompletableFuture<S3AsyncClient> asyncCdnS3ClientFuture = startupGraph.start("asyncCdnS3Client",
+        () -> S3AsyncClient.builder()
+            .credentialsProvider(cdnCredentialsProvider)
+            .region(Region.of(config.getCdnConfiguration().region()))
+            .endpointOverride(config.getCdnConfiguration().endpointOverride())
+            .build());
+    final CompletableFuture<S3AsyncClient> asyncKeysS3ClientFuture = startupGraph.start("asyncKeysS3Client",
+        () -> S3AsyncClient.builder()
+            .credentialsProvider(awsCredentialsProvider)
+            .region(Region.of(config.getPagedSingleUseKEMPreKeyStore().region()))
+            .endpointOverride(config.getPagedSingleUseKEMPreKeyStore().endpointOverride())
+            .build());
+
+    final DynamoDbAsyncClient dynamoDbAsyncClient = StartupGraph.await(dynamoDbAsyncClientFuture);
+    final DynamoDbClient dynamoDbClient = StartupGraph.await(dynamoDbClientFuture);
+    final S3AsyncClient asyncCdnS3Client = StartupGraph.await(asyncCdnS3ClientFuture);
 
     BlockingQueue<Runnable> messageDeletionQueue = new LinkedBlockingQueue<>();
     Metrics.gaugeCollectionSize(name(getClass(), "messageDeletionQueueSize"), Collections.emptyList(),
@@ -469,13 +509,10 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     Profiles profiles = new Profiles(dynamoDbClient, dynamoDbAsyncClient,
         config.getDynamoDbTables().getProfiles().getTableName());
 
-    S3AsyncClient asyncKeysS3Client = S3AsyncClient.builder()
-        .credentialsProvider(awsCredentialsProvider)
-        .region(Region.of(config.getPagedSingleUseKEMPreKeyStore().region()))
-        .endpointOverride(config.getPagedSingleUseKEMPreKeyStore().endpointOverride())
-        .build();
+    S3AsyncClient asyncKeysS3Client = StartupGraph.await(asyncKeysS3ClientFuture);
     KeysManager keysManager = new KeysManager(
         new SingleUseECPreKeyStore(dynamoDbAsyncClient, config.getDynamoDbTables().getEcKeys().getTableName()),
+        new PagedSingleUseECPreKeyStore(dynamoDbAsyncClient, config.getDynamoDbTables().getPagedEcKeys().getTableName()),
         new PagedSingleUseKEMPreKeyStore(
             dynamoDbAsyncClient,
             asyncKeysS3Client,
@@ -505,24 +542,12 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     final VerificationSessions verificationSessions = new VerificationSessions(dynamoDbAsyncClient,
         config.getDynamoDbTables().getVerificationSessions().getTableName(), clock);
 
-    final ClientResources sharedClientResources = ClientResources.builder()
-        .commandLatencyRecorder(
-            new MicrometerCommandLatencyRecorder(Metrics.globalRegistry, MicrometerOptions.builder().build()))
-        .build();
-    ConnectionEventLogger.logConnectionEvents(sharedClientResources);
-
-    FaultTolerantRedisClusterClient cacheCluster = config.getCacheClusterConfiguration()
-        .build("main_cache", sharedClientResources.mutate());
-    FaultTolerantRedisClusterClient messagesCluster =
-        config.getMessageCacheConfiguration().getRedisClusterConfiguration()
-            .build("messages", sharedClientResources.mutate());
-    FaultTolerantRedisClusterClient pushSchedulerCluster = config.getPushSchedulerCluster().build("push_scheduler",
-        sharedClientResources.mutate());
-    FaultTolerantRedisClusterClient rateLimitersCluster = config.getRateLimitersCluster().build("rate_limiters",
-        sharedClientResources.mutate());
+    FaultTolerantRedisClusterClient cacheCluster = StartupGraph.await(cacheClusterFuture);
+    FaultTolerantRedisClusterClient messagesCluster = StartupGraph.await(messagesClusterFuture);
+    FaultTolerantRedisClusterClient pushSchedulerCluster = StartupGraph.await(pushSchedulerClusterFuture);
+    FaultTolerantRedisClusterClient rateLimitersCluster = StartupGraph.await(rateLimitersClusterFuture);
 
-    FaultTolerantRedisClient pubsubClient =
-        config.getRedisPubSubConfiguration().build("pubsub", sharedClientResources);
+    FaultTolerantRedisClient pubsubClient = StartupGraph.await(pubsubClientFuture);
 
     final BlockingQueue<Runnable> receiptSenderQueue = new LinkedBlockingQueue<>();
     Metrics.gaugeCollectionSize(name(getClass(), "receiptSenderQueue"), Collections.emptyList(), receiptSenderQueue);
@@ -548,9 +573,34 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
 
     final ScheduledExecutorService retryExecutor = ScheduledExecutorServiceBuilder.of(environment, "retry")
         .threads(16).build();
+    final ScheduledExecutorService fcmBatchExecutor = ScheduledExecutorServiceBuilder.of(environment, "fcmBatch")
+        .threads(1).build();
     final ScheduledExecutorService registrationIdentityTokenRefreshExecutor =
       ScheduledExecutorServiceBuilder.of(environment, "registrationIdentityTokenRefresh").threads(1).build();
 
+    // Push senders and app store clients load credentials and certificates, and don't depend on anything else
+    final CompletableFuture<APNSender> apnSenderFuture = startupGraph.start("apnSender",
+        () -> new APNSender(apnSenderExecutor, config.getApnConfiguration()));
+    final CompletableFuture<FcmSender> fcmSenderFuture = startupGraph.start("fcmSender",
+        () -> new FcmSender(fcmSenderExecutor, fcmBatchExecutor, config.getFcmConfiguration()));
+    final CompletableFuture<GooglePlayBillingManager> googlePlayBillingManagerFuture = startupGraph.start(
+        "googlePlayBillingManager",
+        () -> new GooglePlayBillingManager(
+            new ByteArrayInputStream(config.getGooglePlayBilling().credentialsJson().getBytes(StandardCharsets.UTF_8)),
+            config.getGooglePlayBilling().packageName(),
+            config.getGooglePlayBilling().applicationName(),
+            config.getGooglePlayBilling().productIdToLevel()));
+    final CompletableFuture<AppleAppStoreClient> appleAppStoreClientFuture = startupGraph.start("appleAppStoreClient",
+        () -> new AppleAppStoreClient(
+            config.getAppleAppStore().env(),
+            config.getAppleAppStore().bundleId(),
+            config.getAppleAppStore().appAppleId(),
+            config.getAppleAppStore().issuerId(),
+            config.getAppleAppStore().keyId(),
+            config.getAppleAppStore().encodedKey().value(),
+            config.getAppleAppStore().appleRootCerts(),
+            config.getAppleAppStore().retryConfigurationName()));
+
     Scheduler messageDeliveryScheduler = Schedulers.fromExecutorService(
         ExecutorServiceBuilder.of(environment, "messageDelivery")
             .minThreads(20)
@@ -690,7 +740,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
     RedisMessageAvailabilityManager redisMessageAvailabilityManager =
         new RedisMessageAvailabilityManager(messagesCluster, clientEventExecutor, asyncOperationQueueingExecutor);
     MessagesManager messagesManager = new MessagesManager(messagesDynamoDb, messagesCache, redisMessageAvailabilityManager,
-        reportMessageManager, messageDeletionAsyncExecutor, Clock.systemUTC());
+        reportMessageManager, messageDeletionAsyncExecutor, retryExecutor, Clock.systemUTC());
     AccountLockManager accountLockManager = new AccountLockManager(dynamoDbClient,
         config.getDynamoDbTables().getDeletedAccountsLock().getTableName());
     ClientPublicKeysManager clientPublicKeysManager =
@@ -701,12 +751,13 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         registrationRecoveryPasswordsManager, clientPublicKeysManager, accountLockExecutor, messagePollExecutor,
         retryExecutor, clock, config.getLinkDeviceSecretConfiguration().secret().value(), dynamicConfigurationManager);
     RemoteConfigsManager remoteConfigsManager = new RemoteConfigsManager(remoteConfigs);
-    APNSender apnSender = new APNSender(apnSenderExecutor, config.getApnConfiguration());
-    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, config.getFcmConfiguration().credentials().value());
+    APNSender apnSender = StartupGraph.await(apnSenderFuture);
+    FcmSender fcmSender = StartupGraph.await(fcmSenderFuture);
     PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
         apnSender, fcmSender, accountsManager, 0, 0, retryExecutor);
-    PushNotificationManager pushNotificationManager =
-        new PushNotificationManager(accountsManager, apnSender, fcmSender, pushNotificationScheduler);
+    PushNotificationCoalescer pushNotificationCoalescer = new PushNotificationCoalescer(pushSchedulerCluster);
+    PushNotificationManager pushNotificationManager = new PushNotificationManager(accountsManager, apnSender,
+        fcmSender, pushNotificationScheduler, pushNotificationCoalescer);
     RateLimiters rateLimiters = RateLimiters.create(dynamicConfigurationManager, rateLimitersCluster, retryExecutor);
     ProvisioningManager provisioningManager = new ProvisioningManager(pubsubClient);
     IssuedReceiptsManager issuedReceiptsManager = new IssuedReceiptsManager(
@@ -787,21 +838,9 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
         config.getBraintree().supportedCurrenciesByPaymentMethod(), config.getBraintree().merchantAccounts(),
         config.getBraintree().graphqlUrl(), currencyManager, config.getBraintree().pubSubPublisher().build(),
         config.getBraintree().circuitBreakerConfigurationName(), subscriptionProcessorExecutor);
-    GooglePlayBillingManager googlePlayBillingManager = new GooglePlayBillingManager(
-        new ByteArrayInputStream(config.getGooglePlayBilling().credentialsJson().getBytes(StandardCharsets.UTF_8)),
-        config.getGooglePlayBilling().packageName(),
-        config.getGooglePlayBilling().applicationName(),
-        config.getGooglePlayBilling().productIdToLevel());
+    GooglePlayBillingManager googlePlayBillingManager = StartupGraph.await(googlePlayBillingManagerFuture);
     AppleAppStoreManager appleAppStoreManager = new AppleAppStoreManager(
-        new AppleAppStoreClient(
-            config.getAppleAppStore().env(),
-            config.getAppleAppStore().bundleId(),
-            config.getAppleAppStore().appAppleId(),
-            config.getAppleAppStore().issuerId(),
-            config.getAppleAppStore().keyId(),
-            config.getAppleAppStore().encodedKey().value(),
-            config.getAppleAppStore().appleRootCerts(),
-            config.getAppleAppStore().retryConfigurationName()),
+        StartupGraph.await(appleAppStoreClientFuture),
         config.getAppleAppStore().subscriptionGroupId(),
         config.getAppleAppStore().productIdToLevel());
 
@@ -1188,6 +1227,7 @@ public class WhisperServerService extends Application<WhisperServerConfiguration
 
     environment.admin().addTask(new SetRequestLoggingEnabledTask());
 
+    startupGraph.awaitAll();
   }
 
   private void registerExceptionMappers(Environment environment,
@@ -72,6 +72,19 @@ public class BackupManager {
       "deleteCount");
   private static final Timer SYNCHRONOUS_DELETE_TIMER =
       Metrics.timer(MetricsUtil.name(BackupManager.class, "synchronousDelete"));
+  private static final String SHARDED_EXPIRATION_COUNTER_NAME = MetricsUtil.name(BackupManager.class,
+      "shardedExpiration");
+
+  // The maximum number of objects to request per list operation
+  private static final int LIST_PAGE_SIZE = 1000;
+
+  // Large expirations are split into shards by the first character of the object names under the expired media
+  // directory. Object names are url-safe base64, so every media object falls into exactly one of these shards.
+  @VisibleForTesting
+  static final List<String> EXPIRATION_SHARDS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".chars()
+          .mapToObj(c -> String.valueOf((char) c))
+          .toList();
 
   private static final String NUM_OBJECTS_SUMMARY_NAME = MetricsUtil.name(BackupManager.class, "numObjects");
   private static final String BYTES_USED_SUMMARY_NAME = MetricsUtil.name(BackupManager.class, "bytesUsed");
@@ -694,43 +707,140 @@ public class BackupManager {
       case ALL -> secureValueRecoveryBClient.removeData(svrbIdentifier(expiredBackup.hashedBackupId()));
       case MEDIA, GARBAGE_COLLECTION ->  CompletableFuture.completedFuture(null);
     };
+    final int shardConcurrency =
+        dynamicConfigurationManager.getConfiguration().getBackupConfiguration().expirationShardConcurrency();
     return svrbRemoval.thenCompose(_ -> backupsDb.startExpiration(expiredBackup)
-        // the deletion operation is effectively single threaded -- it's expected that the caller can increase
-        // concurrency by deleting more backups at once, rather than increasing concurrency deleting an individual
-        // backup
-        .thenCompose(ignored -> deletePrefix(expiredBackup.prefixToDelete(), 1))
+        .thenCompose(ignored -> deleteExpiredPrefix(expiredBackup, shardConcurrency))
         .thenCompose(ignored -> backupsDb.finishExpiration(expiredBackup)));
   }
 
+  /**
+   * List and delete all files associated with an expired backup's prefix.
+   * <p>
+   * Most backups fit in a single page of list results and are deleted sequentially. Larger backups are split into
+   * shards that are listed and deleted in parallel (see {@link #getExpirationShards}). As each shard is emptied it's
+   * checkpointed in {@link BackupsDb}, so if the expiration fails and is retried, only the unfinished shards are
+   * revisited.
+   *
+   * @param expiredBackup    The backup whose prefix should be deleted
+   * @param shardConcurrency How many shards to delete at a time
+   */
+  private CompletableFuture<Void> deleteExpiredPrefix(final ExpiredBackup expiredBackup, final int shardConcurrency) {
+    final String prefix = directoryPrefix(expiredBackup.prefixToDelete());
+    return Mono
+        .fromCompletionStage(() -> remoteStorageManager.list(prefix, Optional.empty(), LIST_PAGE_SIZE))
+        .flatMap(firstPage -> {
+          if (firstPage.cursor().isEmpty() || firstPage.objects().size() < LIST_PAGE_SIZE) {
+            return deleteListed(prefix, firstPage, 1);
+          }
+
+          Metrics.counter(SHARDED_EXPIRATION_COUNTER_NAME, "tier", expiredBackup.expirationType().name()).increment();
+          return Mono.fromCompletionStage(() -> backupsDb.getCompletedExpirationShards(expiredBackup))
+              .flatMapMany(completedShards -> Flux.fromIterable(getExpirationShards(expiredBackup, firstPage))
+                  .filter(shard -> !completedShards.contains(shard)))
+              .flatMap(shard -> listAndDelete(prefix + shard, 1)
+                      .flatMap(itemsRemoved -> Mono
+                          .fromCompletionStage(() -> backupsDb.recordExpiredShardDeleted(expiredBackup, shard))
+                          .thenReturn(itemsRemoved)),
+                  shardConcurrency)
+              .reduce(0L, Long::sum)
+              // Finish with a pass over the whole prefix. When expiring a whole backup, this deletes the objects
+              // outside the media directory, like the message backup itself; otherwise, it only finds objects that
+              // weren't named like we expect and so weren't in any shard.
+              .flatMap(itemsRemoved -> listAndDelete(prefix, 1).map(remaining -> itemsRemoved + remaining));
+        })
+        .doOnSuccess(itemsRemoved -> DistributionSummary.builder(DELETE_COUNT_DISTRIBUTION_NAME)
+            .register(Metrics.globalRegistry)
+            .record(itemsRemoved))
+        .then()
+        .toFuture();
+  }
+
+  /**
+   * Choose the shards into which to split a large expiration. Media objects are named by url-safe base64 and live
+   * directly in the media directory, so an expired media directory is sharded by the first character of object names.
+   * An expired backup directory contains the media directory alongside a handful of other objects, so sharding by the
+   * first character there would put all the media into a single shard; instead, shard within each subdirectory that
+   * appears in the first page of list results.
+   *
+   * @param expiredBackup The backup being expired
+   * @param firstPage     The first page of list results for the expired prefix
+   * @return The shards to delete, each relative to the expired prefix
+   */
+  @VisibleForTesting
+  static List<String> getExpirationShards(final ExpiredBackup expiredBackup,
+      final RemoteStorageManager.ListResult firstPage) {
+    if (expiredBackup.prefixToDelete().length() != BackupsDb.BACKUP_DIRECTORY_PATH_LENGTH) {
+      return EXPIRATION_SHARDS;
+    }
+
+    final List<String> subdirectories = firstPage.objects().stream()
+        .map(RemoteStorageManager.ListResult.Entry::key)
+        .filter(key -> key.indexOf('/') > 0)
+        .map(key -> key.substring(0, key.indexOf('/')))
+        .distinct()
+        .toList();
+
+    if (subdirectories.isEmpty()) {
+      return EXPIRATION_SHARDS;
+    }
+
+    return subdirectories.stream()
+        .flatMap(subdirectory -> EXPIRATION_SHARDS.stream().map(shard -> subdirectory + "/" + shard))
+        .toList();
+  }
+
   /**
    * List and delete all files associated with a prefix
    *
    * @param prefixToDelete The prefix to expire.
    */
   private CompletableFuture<Void> deletePrefix(final String prefixToDelete, int concurrentDeletes) {
+    return listAndDelete(directoryPrefix(prefixToDelete), concurrentDeletes)
+        .doOnSuccess(itemsRemoved -> DistributionSummary.builder(DELETE_COUNT_DISTRIBUTION_NAME)
+            .register(Metrics.globalRegistry)
+            .record(itemsRemoved))
+        .then()
+        .toFuture();
+  }
+
+  private static String directoryPrefix(final String prefixToDelete) {
     if (prefixToDelete.length() != BackupsDb.BACKUP_DIRECTORY_PATH_LENGTH
         && prefixToDelete.length() != BackupsDb.MEDIA_DIRECTORY_PATH_LENGTH) {
       throw new IllegalArgumentException("Unexpected prefix deletion for " + prefixToDelete);
     }
-    final String prefix = prefixToDelete + "/";
+    return prefixToDelete + "/";
+  }
+
+  /**
+   * @return The number of objects deleted
+   */
+  private Mono<Long> listAndDelete(final String listPrefix, final int concurrentDeletes) {
     return Mono
-        .fromCompletionStage(this.remoteStorageManager.list(prefix, Optional.empty(), 1000))
+        .fromCompletionStage(() -> remoteStorageManager.list(listPrefix, Optional.empty(), LIST_PAGE_SIZE))
+        .flatMap(firstPage -> deleteListed(listPrefix, firstPage, concurrentDeletes));
+  }
+
+  /**
+   * Delete the objects in an already retrieved page of list results, and in all the pages that follow it
+   *
+   * @return The number of objects deleted
+   */
+  private Mono<Long> deleteListed(final String listPrefix, final RemoteStorageManager.ListResult firstPage,
+      final int concurrentDeletes) {
+    return Mono.just(firstPage)
         .expand(listResult -> {
           if (listResult.cursor().isEmpty()) {
             return Mono.empty();
           }
-          return Mono.fromCompletionStage(() -> this.remoteStorageManager.list(prefix, listResult.cursor(), 1000));
+          return Mono.fromCompletionStage(() ->
+              remoteStorageManager.list(listPrefix, listResult.cursor(), LIST_PAGE_SIZE));
         })
         .flatMap(listResult -> Flux.fromIterable(listResult.objects()))
         .flatMap(
-            result -> Mono.fromCompletionStage(() -> remoteStorageManager.delete(prefix + result.key())),
+            result -> Mono.fromCompletionStage(() -> remoteStorageManager.delete(listPrefix + result.key())),
             concurrentDeletes)
-        .count()
-        .doOnSuccess(itemsRemoved -> DistributionSummary.builder(DELETE_COUNT_DISTRIBUTION_NAME)
-            .register(Metrics.globalRegistry)
-            .record(itemsRemoved))
-        .then()
-        .toFuture();
+        .count();
   }
 
   interface PresentationSignatureVerifier {
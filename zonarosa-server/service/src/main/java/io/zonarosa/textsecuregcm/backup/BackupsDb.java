@@ -15,11 +15,14 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import io.zonarosa.libzonarosa.protocol.InvalidKeyException;
@@ -109,6 +112,8 @@ public class BackupsDb {
   public static final String ATTR_MEDIA_DIR = "MD";
   // S: A prefix pending deletion
   public static final String ATTR_EXPIRED_PREFIX = "EP";
+  // SS: Shards of the prefix pending deletion whose objects have all been deleted
+  public static final String ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS = "EPS";
 
   public BackupsDb(
       final DynamoDbAsyncClient dynamoClient,
@@ -447,12 +452,71 @@ public class BackupsDb {
     } else {
       return dynamoClient.updateItem(new UpdateBuilder(backupTableName, BackupLevel.PAID, hashedBackupId)
               .addRemoveExpression(Map.entry("#expiredPrefixes", ATTR_EXPIRED_PREFIX))
+              .addRemoveExpression(Map.entry("#completedShards", ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS))
               .updateItemBuilder()
               .build())
           .thenRun(Util.NOOP);
     }
   }
 
+  /**
+   * Retrieve the shards of an in-progress expiration that have already been deleted by a prior attempt (see
+   * {@link #recordExpiredShardDeleted}).
+   *
+   * @param expiredBackup The backup being expired
+   * @return A stage that completes with the completed shards of the expiration, or an empty set if the backup is not
+   * currently expiring {@link ExpiredBackup#prefixToDelete()}
+   */
+  CompletableFuture<Set<String>> getCompletedExpirationShards(final ExpiredBackup expiredBackup) {
+    return dynamoClient.getItem(GetItemRequest.builder()
+            .tableName(backupTableName)
+            .key(Map.of(KEY_BACKUP_ID_HASH, AttributeValues.b(expiredBackup.hashedBackupId())))
+            .consistentRead(true)
+            .projectionExpression("#expiredPrefix, #completedShards")
+            .expressionAttributeNames(Map.of(
+                "#expiredPrefix", ATTR_EXPIRED_PREFIX,
+                "#completedShards", ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS))
+            .build())
+        .thenApply(response -> {
+          if (!response.hasItem()
+              || !expiredBackup.prefixToDelete().equals(AttributeValues.getString(response.item(), ATTR_EXPIRED_PREFIX, null))) {
+            return Collections.emptySet();
+          }
+          return AttributeValues.get(response.item(), ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS)
+              .map(attributeValue -> (Set<String>) new HashSet<>(attributeValue.ss()))
+              .orElse(Collections.emptySet());
+        });
+  }
+
+  /**
+   * Checkpoint the progress of an expiration started with {@link #startExpiration} by recording that every object in
+   * one shard of {@link ExpiredBackup#prefixToDelete()} has been deleted. If the expiration is interrupted, the next
+   * attempt can skip the recorded shards. The recorded shards are cleared by {@link #finishExpiration}.
+   * <p>
+   * If the backup is no longer expiring the prefix (for example, because another attempt has already finished), this
+   * does nothing.
+   *
+   * @param expiredBackup The backup being expired
+   * @param shard         The shard whose objects have all been deleted
+   * @return A stage that completes when the shard has been recorded
+   */
+  CompletableFuture<Void> recordExpiredShardDeleted(final ExpiredBackup expiredBackup, final String shard) {
+    return dynamoClient.updateItem(UpdateItemRequest.builder()
+            .tableName(backupTableName)
+            .key(Map.of(KEY_BACKUP_ID_HASH, AttributeValues.b(expiredBackup.hashedBackupId())))
+            .updateExpression("ADD #completedShards :shard")
+            .conditionExpression("#expiredPrefix = :expiredPrefix")
+            .expressionAttributeNames(Map.of(
+                "#completedShards", ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS,
+                "#expiredPrefix", ATTR_EXPIRED_PREFIX))
+            .expressionAttributeValues(Map.of(
+                ":shard", AttributeValue.fromSs(List.of(shard)),
+                ":expiredPrefix", AttributeValues.s(expiredBackup.prefixToDelete())))
+            .build())
+        .thenRun(Util.NOOP)
+        .exceptionally(ExceptionUtils.exceptionallyHandler(ConditionalCheckFailedException.class, e -> null));
+  }
+
   Flux<StoredBackupAttributes> listBackupAttributes(final int segments) {
     if (segments < 1) {
       throw new IllegalArgumentException("Total number of segments must be positive");
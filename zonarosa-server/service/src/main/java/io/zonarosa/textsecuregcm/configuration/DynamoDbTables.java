@@ -59,6 +59,7 @@ public class DynamoDbTables {
   private final Table ecKeys;
   private final Table ecSignedPreKeys;
   private final Table kemLastResortKeys;
+  private final Table pagedEcKeys;
   private final Table pagedKemKeys;
   private final TableWithExpiration messages;
   private final TableWithExpiration onetimeDonations;
@@ -87,6 +88,7 @@ public class DynamoDbTables {
       @JsonProperty("ecKeys") final Table ecKeys,
       @JsonProperty("ecSignedPreKeys") final Table ecSignedPreKeys,
       @JsonProperty("pqLastResortKeys") final Table kemLastResortKeys,
+      @JsonProperty("pagedEcKeys") final Table pagedEcKeys,
       @JsonProperty("pagedPqKeys") final Table pagedKemKeys,
       @JsonProperty("messages") final TableWithExpiration messages,
       @JsonProperty("onetimeDonations") final TableWithExpiration onetimeDonations,
@@ -113,6 +115,7 @@ public class DynamoDbTables {
     this.issuedReceipts = issuedReceipts;
     this.ecKeys = ecKeys;
     this.ecSignedPreKeys = ecSignedPreKeys;
+    this.pagedEcKeys = pagedEcKeys;
     this.pagedKemKeys = pagedKemKeys;
     this.kemLastResortKeys = kemLastResortKeys;
     this.messages = messages;
@@ -196,6 +199,12 @@ public class DynamoDbTables {
     return ecSignedPreKeys;
   }
 
+  @NotNull
+  @Valid
+  public Table getPagedEcKeys() {
+    return pagedEcKeys;
+  }
+
   @NotNull
   @Valid
   public Table getPagedKemKeys() {
@@ -5,8 +5,30 @@
 
 package io.zonarosa.server.configuration;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
 import io.zonarosa.server.configuration.secrets.SecretString;
 
-public record FcmConfiguration(@NotNull SecretString credentials) {
+/**
+ * @param credentials the service account credentials used to authenticate with Firebase
+ * @param maxBatchSize the maximum number of notifications to hand to Firebase in a single {@code sendEachAsync} call; a
+ *                     value of 1 disables batching and sends each notification as soon as it arrives. Note that Firebase
+ *                     still sends one HTTP request per notification in a batch.
+ * @param maxBatchDelay the maximum time a notification may wait for other notifications to join its batch
+ */
+public record FcmConfiguration(@NotNull SecretString credentials,
+                               @Positive @Max(500) int maxBatchSize,
+                               @NotNull Duration maxBatchDelay) {
+
+  public FcmConfiguration {
+    if (maxBatchSize == 0) {
+      maxBatchSize = 1;
+    }
+
+    if (maxBatchDelay == null) {
+      maxBatchDelay = Duration.ofMillis(5);
+    }
+  }
 }
@@ -30,6 +30,20 @@ public class RedisClusterConfiguration implements FaultTolerantRedisClusterFacto
   @Nullable
   private String circuitBreakerConfigurationName;
 
+  /**
+   * If true, {@link FaultTolerantRedisClusterClient.Lane#BULK} traffic gets its own connections to each node rather than
+   * sharing the default connections with latency-sensitive traffic.
+   */
+  @JsonProperty
+  private boolean dedicatedBulkConnections = false;
+
+  /**
+   * If true, Lua scripts are loaded as Redis Functions libraries on every primary and run with {@code FCALL} rather than
+   * {@code EVALSHA}. Requires Redis 7.0 or newer.
+   */
+  @JsonProperty
+  private boolean useFunctions = false;
+
   @VisibleForTesting
   void setConfigurationUri(final String configurationUri) {
     this.configurationUri = configurationUri;
@@ -47,6 +61,14 @@ public class RedisClusterConfiguration implements FaultTolerantRedisClusterFacto
     return circuitBreakerConfigurationName;
   }
 
+  public boolean isDedicatedBulkConnections() {
+    return dedicatedBulkConnections;
+  }
+
+  public boolean isUseFunctions() {
+    return useFunctions;
+  }
+
   @Override
   public FaultTolerantRedisClusterClient build(final String name, final ClientResources.Builder clientResourcesBuilder) {
     return new FaultTolerantRedisClusterClient(name, this, clientResourcesBuilder);
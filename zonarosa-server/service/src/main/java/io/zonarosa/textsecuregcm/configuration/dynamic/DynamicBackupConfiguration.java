@@ -16,13 +16,15 @@ import java.time.Duration;
  * @param usageCheckpointCount When doing batch operations, how often persist usage deltas
  * @param maxQuotaStaleness The maximum age of a quota estimate that can be used to enforce a quota limit
  * @param maxTotalMediaSize The number of media bytes a paid-tier user may store
+ * @param expirationShardConcurrency How many shards of a large backup can be deleted at a time per backup expiration
  */
 public record DynamicBackupConfiguration(
   @NotNull Integer deletionConcurrency,
   @NotNull Integer copyConcurrency,
   @NotNull Integer usageCheckpointCount,
   @NotNull Duration maxQuotaStaleness,
-  @NotNull Long maxTotalMediaSize) {
+  @NotNull Long maxTotalMediaSize,
+  @NotNull Integer expirationShardConcurrency) {
 
   public DynamicBackupConfiguration {
     if (deletionConcurrency == null) {
@@ -40,9 +42,12 @@ public record DynamicBackupConfiguration(
     if (maxTotalMediaSize == null) {
       maxTotalMediaSize = DataSize.gibibytes(100).toBytes();
     }
+    if (expirationShardConcurrency == null) {
+      expirationShardConcurrency = 8;
+    }
   }
 
   public DynamicBackupConfiguration() {
-    this(null, null, null, null, null);
+    this(null, null, null, null, null, null);
   }
 }
@@ -38,8 +38,8 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -74,8 +74,6 @@ import io.zonarosa.server.storage.Device;
 import io.zonarosa.server.storage.KeysManager;
 import io.zonarosa.server.util.HeaderUtils;
 import io.zonarosa.server.util.Util;
-import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 @Path("/v2/keys")
@@ -376,17 +374,26 @@ public class KeysController {
 
     final List<Device> devices = parseDeviceId(deviceId, target);
 
-    final List<PreKeyResponseItem> responseItems = Flux.fromIterable(devices).flatMap(device -> Mono
-            .fromCompletionStage(keysManager.takeDevicePreKeys(device.getId(), targetIdentifier, userAgent))
-            .flatMap(Mono::justOrEmpty)
-            .map(devicePreKeys -> new PreKeyResponseItem(
-                device.getId(), device.getRegistrationId(targetIdentifier.identityType()),
-                devicePreKeys.ecSignedPreKey(),
-                devicePreKeys.ecPreKey().orElse(null),
-                devicePreKeys.kemSignedPreKey())))
-        .collectList()
-        .blockOptional()
-        .orElseGet(Collections::emptyList);
+    if (devices.isEmpty()) {
+      throw new WebApplicationException(Response.Status.NOT_FOUND);
+    }
+
+    final Map<Byte, KeysManager.DevicePreKeys> preKeysByDeviceId = keysManager.takeDevicePreKeys(
+            devices.stream().map(Device::getId).toList(), targetIdentifier, userAgent)
+        .join();
+
+    final List<PreKeyResponseItem> responseItems = devices.stream()
+        .filter(device -> preKeysByDeviceId.containsKey(device.getId()))
+        .map(device -> {
+          final KeysManager.DevicePreKeys devicePreKeys = preKeysByDeviceId.get(device.getId());
+
+          return new PreKeyResponseItem(
+              device.getId(), device.getRegistrationId(targetIdentifier.identityType()),
+              devicePreKeys.ecSignedPreKey(),
+              devicePreKeys.ecPreKey().orElse(null),
+              devicePreKeys.kemSignedPreKey());
+        })
+        .toList();
 
     final IdentityKey identityKey = target.getIdentityKey(targetIdentifier.identityType());
 
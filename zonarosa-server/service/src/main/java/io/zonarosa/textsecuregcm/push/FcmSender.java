@@ -14,21 +14,35 @@ import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.ThreadManager;
 import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.zonarosa.server.configuration.FcmConfiguration;
 import io.zonarosa.server.util.ExceptionUtils;
 import io.zonarosa.server.util.GoogleApiUtil;
 
@@ -37,11 +51,42 @@ public class FcmSender implements PushNotificationSender {
   private final ExecutorService executor;
   private final FirebaseMessaging firebaseMessagingClient;
 
+  @Nullable
+  private final ScheduledExecutorService batchExecutor;
+  private final int maxBatchSize;
+  private final Duration maxBatchDelay;
+
+  // Notifications waiting to be handed to Firebase together; only used if batching is enabled
+  private final Queue<PendingNotification> pendingNotifications = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingNotificationCount = new AtomicInteger();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
   private static final Timer SEND_NOTIFICATION_TIMER = Metrics.timer(name(FcmSender.class, "sendNotification"));
+  private static final Timer SEND_BATCH_TIMER = Metrics.timer(name(FcmSender.class, "sendBatch"));
+
+  private static final DistributionSummary BATCH_SIZE_DISTRIBUTION = DistributionSummary
+      .builder(name(FcmSender.class, "batchSize"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .distributionStatisticExpiry(Duration.ofMinutes(10))
+      .register(Metrics.globalRegistry);
+
+  private static final String BATCH_QUEUE_DEPTH_GAUGE_NAME = name(FcmSender.class, "batchQueueDepth");
+
+  // Firebase rejects sendEachAsync calls with more than this many messages
+  @VisibleForTesting
+  static final int MAX_FIREBASE_BATCH_SIZE = 500;
 
   private static final Logger logger = LoggerFactory.getLogger(FcmSender.class);
 
-  public FcmSender(ExecutorService executor, String credentials) throws IOException {
+  private record PendingNotification(Message message, CompletableFuture<SendPushNotificationResult> future) {
+  }
+
+  public FcmSender(final ExecutorService executor,
+      final ScheduledExecutorService batchExecutor,
+      final FcmConfiguration configuration) throws IOException {
+
+    final String credentials = configuration.credentials().value();
+
     try (final ByteArrayInputStream credentialInputStream = new ByteArrayInputStream(credentials.getBytes(StandardCharsets.UTF_8))) {
       FirebaseApp.initializeApp(FirebaseOptions.builder()
           .setCredentials(GoogleCredentials.fromStream(credentialInputStream))
@@ -68,12 +113,42 @@ public class FcmSender implements PushNotificationSender {
 
     this.executor = executor;
     this.firebaseMessagingClient = FirebaseMessaging.getInstance();
+    this.batchExecutor = batchExecutor;
+    this.maxBatchSize = Math.min(configuration.maxBatchSize(), MAX_FIREBASE_BATCH_SIZE);
+    this.maxBatchDelay = configuration.maxBatchDelay();
+
+    registerQueueDepthGauge();
   }
 
   @VisibleForTesting
   public FcmSender(ExecutorService executor, FirebaseMessaging firebaseMessagingClient) {
+    this(executor, firebaseMessagingClient, null, 1, Duration.ZERO);
+  }
+
+  @VisibleForTesting
+  FcmSender(final ExecutorService executor,
+      final FirebaseMessaging firebaseMessagingClient,
+      @Nullable final ScheduledExecutorService batchExecutor,
+      final int maxBatchSize,
+      final Duration maxBatchDelay) {
+
     this.executor = executor;
     this.firebaseMessagingClient = firebaseMessagingClient;
+    this.batchExecutor = batchExecutor;
+    this.maxBatchSize = Math.min(maxBatchSize, MAX_FIREBASE_BATCH_SIZE);
+    this.maxBatchDelay = maxBatchDelay;
+
+    registerQueueDepthGauge();
+  }
+
+  private void registerQueueDepthGauge() {
+    if (isBatchingEnabled()) {
+      Metrics.gauge(BATCH_QUEUE_DEPTH_GAUGE_NAME, pendingNotificationCount);
+    }
+  }
+
+  private boolean isBatchingEnabled() {
+    return batchExecutor != null && maxBatchSize > 1;
   }
 
   @Override
@@ -93,29 +168,133 @@ public class FcmSender implements PushNotificationSender {
 
     builder.putData(key, pushNotification.data() != null ? pushNotification.data() : "");
 
+    if (isBatchingEnabled()) {
+      return enqueue(builder.build());
+    }
+
     final Timer.Sample sample = Timer.start();
 
     return GoogleApiUtil.toCompletableFuture(firebaseMessagingClient.sendAsync(builder.build()), executor)
         .whenComplete((ignored, throwable) -> sample.stop(SEND_NOTIFICATION_TIMER))
         .thenApply(ignored -> new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty()))
         .exceptionally(ExceptionUtils.exceptionallyHandler(FirebaseMessagingException.class,
-            firebaseMessagingException -> {
-              final String errorCode;
-
-              if (firebaseMessagingException.getMessagingErrorCode() != null) {
-                errorCode = firebaseMessagingException.getMessagingErrorCode().name();
-              } else if (firebaseMessagingException.getHttpResponse() != null) {
-                errorCode = "http" + firebaseMessagingException.getHttpResponse().getStatusCode();
-              } else {
-                logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
-                errorCode = "unknown";
-              }
-
-              final boolean unregistered =
-                  firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
-
-              return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
-            }));
+            FcmSender::buildRejectedResult));
   }
-}
 
+  private CompletableFuture<SendPushNotificationResult> enqueue(final Message message) {
+    final CompletableFuture<SendPushNotificationResult> future = new CompletableFuture<>();
+
+    pendingNotifications.add(new PendingNotification(message, future));
+
+    if (pendingNotificationCount.incrementAndGet() >= maxBatchSize) {
+      // We have a full batch already; don't wait for the timer
+      batchExecutor.execute(this::flush);
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      batchExecutor.schedule(this::flush, maxBatchDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    return future;
+  }
+
+  @VisibleForTesting
+  void flush() {
+    // Clear the flag before draining the queue so that anything enqueued after we've finished draining will schedule
+    // another flush
+    flushScheduled.set(false);
+
+    List<PendingNotification> batch;
+
+    do {
+      batch = new ArrayList<>(maxBatchSize);
+
+      PendingNotification pendingNotification;
+
+      while (batch.size() < maxBatchSize && (pendingNotification = pendingNotifications.poll()) != null) {
+        batch.add(pendingNotification);
+      }
+
+      pendingNotificationCount.addAndGet(-batch.size());
+
+      if (!batch.isEmpty()) {
+        sendBatch(batch);
+      }
+    } while (batch.size() == maxBatchSize);
+  }
+
+  /**
+   * Hands a batch of notifications to Firebase in a single {@code sendEachAsync} call. Note that this is not a batch on
+   * the wire: Firebase still sends one HTTP request per notification. Batching only reduces the number of calls we make
+   * into the Firebase client, and the per-message responses are mapped to results exactly as for single sends.
+   */
+  private void sendBatch(final List<PendingNotification> batch) {
+    BATCH_SIZE_DISTRIBUTION.record(batch.size());
+
+    final Timer.Sample sample = Timer.start();
+
+    final CompletableFuture<BatchResponse> batchResponseFuture;
+
+    try {
+      batchResponseFuture = GoogleApiUtil.toCompletableFuture(
+          firebaseMessagingClient.sendEachAsync(batch.stream().map(PendingNotification::message).toList()), executor);
+    } catch (final RuntimeException e) {
+      batch.forEach(pendingNotification -> completeWithFailure(pendingNotification.future(), e));
+      return;
+    }
+
+    batchResponseFuture
+        .whenComplete((ignored, throwable) -> sample.stop(SEND_BATCH_TIMER))
+        .whenComplete((batchResponse, throwable) -> {
+          if (throwable != null) {
+            // The request as a whole failed, so every notification in it failed the same way
+            batch.forEach(pendingNotification -> completeWithFailure(pendingNotification.future(), throwable));
+            return;
+          }
+
+          // Responses are in the same order as the messages in the request
+          final List<SendResponse> responses = batchResponse.getResponses();
+
+          for (int i = 0; i < batch.size(); i++) {
+            final SendResponse response = responses.get(i);
+
+            batch.get(i).future().complete(response.isSuccessful()
+                ? new SendPushNotificationResult(true, Optional.empty(), false, Optional.empty())
+                : buildRejectedResult(response.getException()));
+          }
+        });
+  }
+
+  /**
+   * Completes the given future the same way {@link #sendNotification(PushNotification)} would if sending a single
+   * notification had failed with the given exception: Firebase rejections become unsuccessful results, and anything
+   * else completes the future exceptionally.
+   */
+  private static void completeWithFailure(final CompletableFuture<SendPushNotificationResult> future,
+      final Throwable throwable) {
+
+    final Throwable cause = ExceptionUtils.unwrap(throwable);
+
+    if (cause instanceof FirebaseMessagingException firebaseMessagingException) {
+      future.complete(buildRejectedResult(firebaseMessagingException));
+    } else {
+      future.completeExceptionally(cause);
+    }
+  }
+
+  private static SendPushNotificationResult buildRejectedResult(final FirebaseMessagingException firebaseMessagingException) {
+    final String errorCode;
+
+    if (firebaseMessagingException.getMessagingErrorCode() != null) {
+      errorCode = firebaseMessagingException.getMessagingErrorCode().name();
+    } else if (firebaseMessagingException.getHttpResponse() != null) {
+      errorCode = "http" + firebaseMessagingException.getHttpResponse().getStatusCode();
+    } else {
+      logger.warn("Received an FCM exception with no error code", firebaseMessagingException);
+      errorCode = "unknown";
+    }
+
+    final boolean unregistered =
+        firebaseMessagingException.getMessagingErrorCode() == MessagingErrorCode.UNREGISTERED;
+
+    return new SendPushNotificationResult(false, Optional.of(errorCode), unregistered, Optional.empty());
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.push;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.lettuce.core.SetArgs;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.zonarosa.server.redis.FaultTolerantRedisClusterClient;
+import io.zonarosa.server.util.Util;
+
+/// A push notification coalescer suppresses redundant "new message" notifications to the same device within a short
+/// window. Urgent notifications always pass through. A non-urgent notification is collapsed if any notification, urgent
+/// or not, was sent to the same device earlier in the window.
+///
+/// Notifications are first coalesced in a local, striped (segmented) map. Non-urgent notifications that get past the
+/// local map are then deduplicated across server instances with a short-lived Redis key. Urgent notifications never
+/// touch Redis. Failing to reach Redis never suppresses a notification.
+public class PushNotificationCoalescer {
+
+  private final FaultTolerantRedisClusterClient pushSchedulingCluster;
+  private final Clock clock;
+  private final Duration coalescingWindow;
+
+  private final Cache<DeviceKey, RecentNotification> recentNotifications;
+
+  @VisibleForTesting
+  static final Duration DEFAULT_COALESCING_WINDOW = Duration.ofSeconds(2);
+
+  private static final int LOCAL_CONCURRENCY_LEVEL = 16;
+  private static final long MAX_LOCAL_ENTRIES = 1_000_000;
+
+  private static final String SUPPRESSED_NOTIFICATION_COUNTER_NAME =
+      name(PushNotificationCoalescer.class, "suppressedNotification");
+
+  private static final String REDIS_ERROR_COUNTER_NAME = name(PushNotificationCoalescer.class, "redisError");
+
+  private static final Logger logger = LoggerFactory.getLogger(PushNotificationCoalescer.class);
+
+  private record DeviceKey(UUID accountIdentifier, byte deviceId) {
+  }
+
+  /// @param redisKeySet whether this instance set the device's Redis key for this window, and so should clear it if
+  /// the device retrieves its messages
+  private record RecentNotification(long expirationMillis, boolean redisKeySet) {
+
+    RecentNotification withRedisKeySet() {
+      return new RecentNotification(expirationMillis, true);
+    }
+  }
+
+  public PushNotificationCoalescer(final FaultTolerantRedisClusterClient pushSchedulingCluster) {
+    this(pushSchedulingCluster, Clock.systemUTC(), DEFAULT_COALESCING_WINDOW);
+  }
+
+  @VisibleForTesting
+  PushNotificationCoalescer(final FaultTolerantRedisClusterClient pushSchedulingCluster,
+      final Clock clock,
+      final Duration coalescingWindow) {
+
+    this.pushSchedulingCluster = pushSchedulingCluster;
+    this.clock = clock;
+    this.coalescingWindow = coalescingWindow;
+
+    // Entries carry their own expiration time; cache expiration just keeps stale entries from piling up
+    this.recentNotifications = CacheBuilder.newBuilder()
+        .concurrencyLevel(LOCAL_CONCURRENCY_LEVEL)
+        .expireAfterWrite(coalescingWindow)
+        .maximumSize(MAX_LOCAL_ENTRIES)
+        .build();
+  }
+
+  /// Decides whether a "new message" notification to the given device should be sent or collapsed into a notification
+  /// that was recently sent to the same device.
+  ///
+  /// @param accountIdentifier the identifier of the account that owns the destination device
+  /// @param deviceId the identifier of the destination device
+  /// @param urgent whether the notification is urgent; urgent notifications are always sent
+  ///
+  /// @return a future that yields `true` if the notification should be sent or `false` if it should be suppressed
+  CompletableFuture<Boolean> shouldSend(final UUID accountIdentifier, final byte deviceId, final boolean urgent) {
+    final DeviceKey deviceKey = new DeviceKey(accountIdentifier, deviceId);
+    final long currentTimeMillis = clock.millis();
+    final AtomicBoolean coalescedLocally = new AtomicBoolean(false);
+
+    recentNotifications.asMap().compute(deviceKey, (_, recentNotification) -> {
+      if (recentNotification != null && recentNotification.expirationMillis() > currentTimeMillis) {
+        coalescedLocally.set(!urgent);
+
+        // Don't extend the window; a steady stream of messages shouldn't suppress notifications indefinitely
+        return recentNotification;
+      }
+
+      return new RecentNotification(currentTimeMillis + coalescingWindow.toMillis(), false);
+    });
+
+    if (urgent) {
+      return CompletableFuture.completedFuture(true);
+    }
+
+    if (coalescedLocally.get()) {
+      Metrics.counter(SUPPRESSED_NOTIFICATION_COUNTER_NAME, "source", "local").increment();
+      return CompletableFuture.completedFuture(false);
+    }
+
+    return pushSchedulingCluster.withCluster(connection -> connection.async()
+            .set(getNotificationKey(accountIdentifier, deviceId), "",
+                SetArgs.Builder.nx().px(coalescingWindow.toMillis())))
+        .thenApply(result -> {
+          // `SET ... NX` returns "OK" if the key was set and `null` if the key already existed
+          if ("OK".equals(result)) {
+            recentNotifications.asMap().computeIfPresent(deviceKey,
+                (_, recentNotification) -> recentNotification.withRedisKeySet());
+
+            return true;
+          }
+
+          Metrics.counter(SUPPRESSED_NOTIFICATION_COUNTER_NAME, "source", "redis").increment();
+          return false;
+        })
+        .exceptionally(throwable -> {
+          logger.debug("Failed to check for recent notifications to {}:{}", accountIdentifier, deviceId, throwable);
+          Metrics.counter(REDIS_ERROR_COUNTER_NAME).increment();
+
+          return true;
+        })
+        .toCompletableFuture();
+  }
+
+  /// Clears any coalescing state for the given device; this should be called whenever a device retrieves its messages
+  /// so that the next message that arrives while the device is offline triggers a notification right away. The Redis
+  /// key for the device is only cleared if this instance set it during the current window; other instances' keys
+  /// expire on their own within a window.
+  ///
+  /// @param accountIdentifier the identifier of the account that owns the device
+  /// @param deviceId the identifier of the device
+  ///
+  /// @return a future that completes when coalescing state for the device has been cleared
+  CompletableFuture<Void> reset(final UUID accountIdentifier, final byte deviceId) {
+    final RecentNotification recentNotification =
+        recentNotifications.asMap().remove(new DeviceKey(accountIdentifier, deviceId));
+
+    if (recentNotification == null
+        || !recentNotification.redisKeySet()
+        || recentNotification.expirationMillis() <= clock.millis()) {
+
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return pushSchedulingCluster.withCluster(connection ->
+            connection.async().del(getNotificationKey(accountIdentifier, deviceId)))
+        .thenRun(Util.NOOP)
+        .toCompletableFuture();
+  }
+
+  @VisibleForTesting
+  static String getNotificationKey(final UUID accountIdentifier, final byte deviceId) {
+    return "push_coalesce::{" + accountIdentifier + "::" + deviceId + "}";
+  }
+}
@@ -28,6 +28,7 @@ public class PushNotificationManager {
   private final APNSender apnSender;
   private final FcmSender fcmSender;
   private final PushNotificationScheduler pushNotificationScheduler;
+  private final PushNotificationCoalescer pushNotificationCoalescer;
 
   private static final String SENT_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "sentPushNotification");
   private static final String FAILED_NOTIFICATION_COUNTER_NAME = name(PushNotificationManager.class, "failedPushNotification");
@@ -38,20 +39,25 @@ public class PushNotificationManager {
   public PushNotificationManager(final AccountsManager accountsManager,
       final APNSender apnSender,
       final FcmSender fcmSender,
-      final PushNotificationScheduler pushNotificationScheduler) {
+      final PushNotificationScheduler pushNotificationScheduler,
+      final PushNotificationCoalescer pushNotificationCoalescer) {
 
     this.accountsManager = accountsManager;
     this.apnSender = apnSender;
     this.fcmSender = fcmSender;
     this.pushNotificationScheduler = pushNotificationScheduler;
+    this.pushNotificationCoalescer = pushNotificationCoalescer;
   }
 
   public CompletableFuture<Optional<SendPushNotificationResult>> sendNewMessageNotification(final Account destination, final byte destinationDeviceId, final boolean urgent) throws NotPushRegisteredException {
     final Device device = destination.getDevice(destinationDeviceId).orElseThrow(NotPushRegisteredException::new);
     final Pair<String, PushNotification.TokenType> tokenAndType = getToken(device);
 
-    return sendNotification(new PushNotification(tokenAndType.first(), tokenAndType.second(),
-        PushNotification.NotificationType.NOTIFICATION, null, destination, device, urgent));
+    return pushNotificationCoalescer.shouldSend(destination.getUuid(), destinationDeviceId, urgent)
+        .thenCompose(shouldSend -> shouldSend
+            ? sendNotification(new PushNotification(tokenAndType.first(), tokenAndType.second(),
+                PushNotification.NotificationType.NOTIFICATION, null, destination, device, urgent))
+            : CompletableFuture.completedFuture(Optional.<SendPushNotificationResult>empty()));
   }
 
   public CompletableFuture<SendPushNotificationResult> sendRegistrationChallengeNotification(final String deviceToken, final PushNotification.TokenType tokenType, final String challengeToken) {
@@ -82,6 +88,7 @@ public class PushNotificationManager {
 
   public void handleMessagesRetrieved(final Account account, final Device device, final String userAgent) {
     pushNotificationScheduler.cancelScheduledNotifications(account, device).whenComplete(logErrors());
+    pushNotificationCoalescer.reset(account.getUuid(), device.getId()).whenComplete(logErrors());
   }
 
   @VisibleForTesting
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.redis;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a set of Redis Functions libraries loaded on every primary in a cluster. Libraries are loaded when they're
+ * registered and again whenever the cluster's topology changes, so new primaries (e.g. after a failover or when a shard
+ * is added) have them before (or shortly after) they receive their first {@code FCALL}.
+ * <p>
+ * Libraries are versioned by name, so loading a library is idempotent. After loading a library on a node, the loader
+ * deletes other versions of the same library from that node (unless this loader has registered them too), so old
+ * versions don't accumulate across deployments. Servers still running an older version during a deployment will find
+ * their function missing, fall back to {@code EVAL}, and reload their own version; they don't delete anything, so
+ * versions don't fight over a node.
+ *
+ * @see ClusterLuaScript
+ */
+class ClusterFunctionLibraryLoader {
+
+  private final String clusterName;
+  private final StatefulRedisClusterConnection<String, String> connection;
+
+  private final Map<String, String> codeByLibraryName = new ConcurrentHashMap<>();
+  private final AtomicBoolean reloadInProgress = new AtomicBoolean(false);
+
+  private static final String LOAD_COUNTER_NAME = name(ClusterFunctionLibraryLoader.class, "load");
+  private static final String DELETE_STALE_COUNTER_NAME = name(ClusterFunctionLibraryLoader.class, "deleteStale");
+
+  // Library names end with the first 12 hex digits of the script's SHA-1; see ClusterLuaScript
+  private static final Pattern LIBRARY_VERSION_PATTERN = Pattern.compile("[0-9a-f]{12}");
+
+  private static final Logger logger = LoggerFactory.getLogger(ClusterFunctionLibraryLoader.class);
+
+  ClusterFunctionLibraryLoader(final String clusterName,
+      final StatefulRedisClusterConnection<String, String> connection) {
+
+    this.clusterName = clusterName;
+    this.connection = connection;
+  }
+
+  /**
+   * Registers a library and loads it on every primary. Failures are logged rather than thrown, since callers fall back
+   * to {@code EVAL} until the next reload succeeds.
+   *
+   * @param libraryName the name of the library, which must include its version
+   * @param code the library's code, including the {@code #!lua name=...} header
+   */
+  void register(final String libraryName, final String code) {
+    if (codeByLibraryName.putIfAbsent(libraryName, code) == null) {
+      load(Map.of(libraryName, code)).join();
+    }
+  }
+
+  /**
+   * Loads all registered libraries on every primary.
+   */
+  CompletableFuture<Void> reload() {
+    return load(Map.copyOf(codeByLibraryName));
+  }
+
+  /**
+   * Reloads all registered libraries unless a reload is already in progress. Callers that find a function missing on
+   * some node may call this freely.
+   */
+  void requestReload() {
+    if (reloadInProgress.compareAndSet(false, true)) {
+      reload().whenComplete((_, _) -> reloadInProgress.set(false));
+    }
+  }
+
+  private CompletableFuture<Void> load(final Map<String, String> librariesByName) {
+    if (librariesByName.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    final List<CompletableFuture<?>> futures = new ArrayList<>();
+
+    for (final RedisClusterNode node : connection.getPartitions()) {
+      if (!node.is(RedisClusterNode.NodeFlag.UPSTREAM)) {
+        continue;
+      }
+
+      librariesByName.forEach((libraryName, code) -> futures.add(
+          connection.getConnectionAsync(node.getNodeId())
+              .thenCompose(nodeConnection -> nodeConnection.async().functionLoad(code, true)
+                  .whenComplete((_, throwable) -> {
+                    Metrics.counter(LOAD_COUNTER_NAME,
+                        "clusterName", clusterName,
+                        "outcome", throwable == null ? "success" : "failure")
+                        .increment();
+
+                    if (throwable != null) {
+                      logger.warn("Failed to load function library {} on {}", libraryName, node.getUri(), throwable);
+                    }
+                  })
+                  .thenCompose(_ -> deleteStaleVersions(nodeConnection, libraryName)))
+              .exceptionally(_ -> null)));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Deletes other versions of the given library from a single node. Failures are logged and otherwise ignored; stale
+   * versions are harmless apart from the memory they occupy, and the next load will try again.
+   */
+  private CompletionStage<Void> deleteStaleVersions(final StatefulRedisConnection<String, String> nodeConnection,
+      final String libraryName) {
+
+    // "zonarosa_get_items_0123456789ab" -> "zonarosa_get_items_"
+    final String libraryNamePrefix = StringUtils.substringBeforeLast(libraryName, "_") + "_";
+
+    return nodeConnection.async().functionList(libraryNamePrefix + "*")
+        .thenCompose(libraries -> CompletableFuture.allOf(libraries.stream()
+            .map(library -> (String) library.get("library_name"))
+            .filter(candidate -> isStaleVersion(libraryNamePrefix, candidate))
+            .map(staleLibraryName -> nodeConnection.async().functionDelete(staleLibraryName)
+                .whenComplete((_, throwable) -> Metrics.counter(DELETE_STALE_COUNTER_NAME,
+                        "clusterName", clusterName,
+                        "outcome", throwable == null ? "success" : "failure")
+                    .increment())
+                .toCompletableFuture())
+            .toArray(CompletableFuture[]::new)))
+        .exceptionally(throwable -> {
+          logger.warn("Failed to delete stale versions of function library {}", libraryName, throwable);
+          return null;
+        });
+  }
+
+  private boolean isStaleVersion(final String libraryNamePrefix, final String candidate) {
+    // The prefix is a glob pattern, so it also matches other scripts whose names start with this script's name (e.g.
+    // "zonarosa_get_items_" matches "zonarosa_get_items_count_0123456789ab"); only the version may differ
+    return candidate != null
+        && candidate.startsWith(libraryNamePrefix)
+        && LIBRARY_VERSION_PATTERN.matcher(candidate.substring(libraryNamePrefix.length())).matches()
+        && !codeByLibraryName.containsKey(candidate);
+  }
+}
@@ -5,47 +5,129 @@
 
 package io.zonarosa.server.redis;
 
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
 import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.RedisCommandExecutionException;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.RedisNoScriptException;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.zonarosa.server.util.ExceptionUtils;
 import reactor.core.publisher.Flux;
 
+/**
+ * A Lua script that runs on a Redis cluster.
+ * <p>
+ * By default, scripts are run with {@code EVALSHA}, falling back to {@code EVAL} (which also caches the script on the
+ * node that ran it) if the node doesn't have the script yet. If the cluster client is configured to use Redis
+ * Functions, scripts are instead wrapped in a library named for the script and its version, loaded on every primary
+ * up front, and run with {@code FCALL}. If a node doesn't have the function (e.g. a newly-promoted primary before the
+ * next reload), the script falls back to {@code EVALSHA}/{@code EVAL} for that call and a reload is requested.
+ * <p>
+ * Redis treats functions without flags as write functions and refuses to run them while out of memory, while
+ * {@code EVAL} scripts without flags are only stopped if they actually try to write. Scripts that need to keep running
+ * in that state should declare the appropriate {@link FunctionFlag}s.
+ *
+ * @see ClusterFunctionLibraryLoader
+ */
 public class ClusterLuaScript {
 
   private final FaultTolerantRedisClusterClient redisCluster;
+  private final FaultTolerantRedisClusterClient.Lane lane;
   private final ScriptOutputType scriptOutputType;
   private final String script;
   private final String sha;
 
+  @Nullable
+  private final ClusterFunctionLibraryLoader functionLibraryLoader;
+  private final String functionName;
+  private final Timer functionSuccessTimer;
+  private final Timer functionFailureTimer;
+
   private static final String[] STRING_ARRAY = new String[0];
   private static final byte[][] BYTE_ARRAY_ARRAY = new byte[0][];
 
+  private static final String FUNCTION_TIMER_NAME = name(ClusterLuaScript.class, "functionCall");
+
+  private static final String FUNCTION_NOT_FOUND_ERROR_PREFIX = "ERR Function not found";
+
   private static final Logger log = LoggerFactory.getLogger(ClusterLuaScript.class);
 
+  /**
+   * Flags declared when a script is registered as a Redis Function. Flags have no effect on scripts run with
+   * {@code EVALSHA}/{@code EVAL}.
+   */
+  public enum FunctionFlag {
+    /**
+     * The script never writes; Redis will also run it while out of memory.
+     */
+    NO_WRITES("no-writes"),
+
+    /**
+     * The script may run while Redis is out of memory. Scripts with this flag must not use commands that grow memory
+     * usage.
+     */
+    ALLOW_OOM("allow-oom");
+
+    private final String redisFlag;
+
+    FunctionFlag(final String redisFlag) {
+      this.redisFlag = redisFlag;
+    }
+  }
+
   public static ClusterLuaScript fromResource(final FaultTolerantRedisClusterClient redisCluster,
       final String resource,
-      final ScriptOutputType scriptOutputType) throws IOException {
+      final ScriptOutputType scriptOutputType,
+      final FunctionFlag... functionFlags) throws IOException {
+
+    return fromResource(redisCluster, resource, scriptOutputType, FaultTolerantRedisClusterClient.Lane.DEFAULT,
+        functionFlags);
+  }
+
+  public static ClusterLuaScript fromResource(final FaultTolerantRedisClusterClient redisCluster,
+      final String resource,
+      final ScriptOutputType scriptOutputType,
+      final FaultTolerantRedisClusterClient.Lane lane,
+      final FunctionFlag... functionFlags) throws IOException {
 
     try (final InputStream inputStream = ClusterLuaScript.class.getClassLoader().getResourceAsStream(resource)) {
       if (inputStream == null) {
         throw new IllegalArgumentException("Script not found: " + resource);
       }
 
+      // "lua/get_items.lua" -> "get_items"
+      final String name = StringUtils.removeEnd(StringUtils.substringAfterLast("/" + resource, "/"), ".lua")
+          .replaceAll("[^A-Za-z0-9_]", "_");
+
       return new ClusterLuaScript(redisCluster,
+          name,
           new String(inputStream.readAllBytes(), StandardCharsets.UTF_8),
-          scriptOutputType);
+          scriptOutputType,
+          lane,
+          functionFlags.length == 0
+              ? EnumSet.noneOf(FunctionFlag.class)
+              : EnumSet.copyOf(Arrays.asList(functionFlags)));
     }
   }
 
@@ -54,7 +136,29 @@ public class ClusterLuaScript {
       final String script,
       final ScriptOutputType scriptOutputType) {
 
+    this(redisCluster, "script", script, scriptOutputType, FaultTolerantRedisClusterClient.Lane.DEFAULT);
+  }
+
+  @VisibleForTesting
+  ClusterLuaScript(final FaultTolerantRedisClusterClient redisCluster,
+      final String name,
+      final String script,
+      final ScriptOutputType scriptOutputType,
+      final FaultTolerantRedisClusterClient.Lane lane) {
+
+    this(redisCluster, name, script, scriptOutputType, lane, EnumSet.noneOf(FunctionFlag.class));
+  }
+
+  @VisibleForTesting
+  ClusterLuaScript(final FaultTolerantRedisClusterClient redisCluster,
+      final String name,
+      final String script,
+      final ScriptOutputType scriptOutputType,
+      final FaultTolerantRedisClusterClient.Lane lane,
+      final Set<FunctionFlag> functionFlags) {
+
     this.redisCluster = redisCluster;
+    this.lane = lane;
     this.scriptOutputType = scriptOutputType;
     this.script = script;
 
@@ -64,6 +168,45 @@ public class ClusterLuaScript {
       // All Java implementations are required to support SHA-1, so this should never happen
       throw new AssertionError(e);
     }
+
+    // Function names are global within a node, so include the script's version to let different versions coexist
+    this.functionName = name + "_" + sha.substring(0, 12);
+    this.functionSuccessTimer = Metrics.timer(FUNCTION_TIMER_NAME, "function", name, "outcome", "success");
+    this.functionFailureTimer = Metrics.timer(FUNCTION_TIMER_NAME, "function", name, "outcome", "failure");
+
+    this.functionLibraryLoader = redisCluster.getFunctionLibraryLoader().orElse(null);
+
+    if (functionLibraryLoader != null) {
+      functionLibraryLoader.register("zonarosa_" + functionName,
+          buildFunctionLibrary(functionName, script, functionFlags));
+    }
+  }
+
+  @VisibleForTesting
+  static String buildFunctionLibrary(final String functionName, final String script) {
+    return buildFunctionLibrary(functionName, script, EnumSet.noneOf(FunctionFlag.class));
+  }
+
+  @VisibleForTesting
+  static String buildFunctionLibrary(final String functionName, final String script,
+      final Set<FunctionFlag> functionFlags) {
+
+    // Functions don't have KEYS and ARGV globals, but do get keys and arguments as parameters with the same meaning
+    if (functionFlags.isEmpty()) {
+      return "#!lua name=zonarosa_" + functionName + "\n"
+          + "redis.register_function('" + functionName + "', function(KEYS, ARGV)\n"
+          + script + "\n"
+          + "end)\n";
+    }
+
+    final String flags = functionFlags.stream()
+        .map(functionFlag -> "'" + functionFlag.redisFlag + "'")
+        .collect(Collectors.joining(", "));
+
+    return "#!lua name=zonarosa_" + functionName + "\n"
+        + "redis.register_function{function_name='" + functionName + "', callback=function(KEYS, ARGV)\n"
+        + script + "\n"
+        + "end, flags={" + flags + "}}\n";
   }
 
   @VisibleForTesting
@@ -72,36 +215,56 @@ public class ClusterLuaScript {
   }
 
   public Object execute(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(lane, connection ->
         execute(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public CompletableFuture<Object> executeAsync(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(lane, connection ->
         executeAsync(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public Flux<Object> executeReactive(final List<String> keys, final List<String> args) {
-    return redisCluster.withCluster(connection ->
+    return redisCluster.withCluster(lane, connection ->
         executeReactive(connection, keys.toArray(STRING_ARRAY), args.toArray(STRING_ARRAY)));
   }
 
   public Object executeBinary(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(lane, connection ->
         execute(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
   public CompletableFuture<Object> executeBinaryAsync(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(lane, connection ->
         executeAsync(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
   public Flux<Object> executeBinaryReactive(final List<byte[]> keys, final List<byte[]> args) {
-    return redisCluster.withBinaryCluster(connection ->
+    return redisCluster.withBinaryCluster(lane, connection ->
         executeReactive(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
   private <T> Object execute(final StatefulRedisClusterConnection<T, T> connection, final T[] keys, final T[] args) {
+    if (functionLibraryLoader != null) {
+      final Timer.Sample sample = Timer.start();
+
+      try {
+        final Object result = connection.sync().fcall(functionName, scriptOutputType, keys, args);
+        sample.stop(functionSuccessTimer);
+
+        return result;
+      } catch (final Exception e) {
+        sample.stop(functionFailureTimer);
+
+        if (!isFunctionNotFound(e)) {
+          log.warn("Failed to call function", e);
+          throw e;
+        }
+
+        functionLibraryLoader.requestReload();
+      }
+    }
+
     try {
       try {
         return connection.sync().evalsha(sha, scriptOutputType, keys, args);
@@ -117,6 +280,28 @@ public class ClusterLuaScript {
   private <T> CompletableFuture<Object> executeAsync(final StatefulRedisClusterConnection<T, T> connection,
       final T[] keys, final T[] args) {
 
+    if (functionLibraryLoader != null) {
+      final Timer.Sample sample = Timer.start();
+
+      return connection.async().<Object>fcall(functionName, scriptOutputType, keys, args)
+          .whenComplete((_, throwable) -> sample.stop(throwable == null ? functionSuccessTimer : functionFailureTimer))
+          .exceptionallyCompose(throwable -> {
+            if (isFunctionNotFound(throwable)) {
+              functionLibraryLoader.requestReload();
+              return evalAsync(connection, keys, args);
+            }
+
+            log.warn("Failed to call function", throwable);
+            throw asRedisException(throwable);
+          }).toCompletableFuture();
+    }
+
+    return evalAsync(connection, keys, args);
+  }
+
+  private <T> CompletableFuture<Object> evalAsync(final StatefulRedisClusterConnection<T, T> connection,
+      final T[] keys, final T[] args) {
+
     return connection.async().evalsha(sha, scriptOutputType, keys, args)
         .exceptionallyCompose(throwable -> {
           if (throwable instanceof RedisNoScriptException) {
@@ -124,15 +309,52 @@ public class ClusterLuaScript {
           }
 
           log.warn("Failed to execute script", throwable);
-          throw new RedisException(throwable);
+          throw asRedisException(throwable);
         }).toCompletableFuture();
   }
 
   private <T> Flux<Object> executeReactive(final StatefulRedisClusterConnection<T, T> connection,
       final T[] keys, final T[] args) {
 
+    if (functionLibraryLoader != null) {
+      return Flux.defer(() -> {
+        final Timer.Sample sample = Timer.start();
+
+        return Flux.from(connection.reactive().<Object>fcall(functionName, scriptOutputType, keys, args))
+            .doOnComplete(() -> sample.stop(functionSuccessTimer))
+            .doOnError(_ -> sample.stop(functionFailureTimer));
+      })
+          .doOnError(Predicate.not(this::isFunctionNotFound), throwable -> log.warn("Failed to call function", throwable))
+          .onErrorResume(this::isFunctionNotFound, _ -> {
+            functionLibraryLoader.requestReload();
+            return evalReactive(connection, keys, args);
+          });
+    }
+
+    return evalReactive(connection, keys, args);
+  }
+
+  private <T> Flux<Object> evalReactive(final StatefulRedisClusterConnection<T, T> connection,
+      final T[] keys, final T[] args) {
+
     return connection.reactive().evalsha(sha, scriptOutputType, keys, args)
         .onErrorResume(RedisNoScriptException.class, _ -> connection.reactive().eval(script, scriptOutputType, keys, args))
         .doOnError(throwable -> log.warn("Failed to execute script", throwable));
   }
+
+  /**
+   * Returns the given exception if it's already a {@link RedisException} (as errors reported by Redis are), so async
+   * callers see the same exception as sync and reactive callers, and wraps anything else.
+   */
+  private static RedisException asRedisException(final Throwable throwable) {
+    final Throwable unwrapped = ExceptionUtils.unwrap(throwable);
+
+    return unwrapped instanceof RedisException redisException ? redisException : new RedisException(unwrapped);
+  }
+
+  private boolean isFunctionNotFound(final Throwable throwable) {
+    return ExceptionUtils.unwrap(throwable) instanceof RedisCommandExecutionException e
+        && e.getMessage() != null
+        && e.getMessage().startsWith(FUNCTION_NOT_FOUND_ERROR_PREFIX);
+  }
 }
@@ -23,31 +23,64 @@ import io.lettuce.core.resource.ClientResources;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import io.zonarosa.server.configuration.RedisClusterConfiguration;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 /**
  * A fault-tolerant access manager for a Redis cluster. Each shard in the cluster has a dedicated circuit breaker.
+ * <p>
+ * Commands are sent over one of several {@link Lane}s. If dedicated bulk connections are enabled, each lane has its own
+ * connections to every node, so large payloads and long-running scripts on the {@link Lane#BULK} lane don't hold up
+ * small, latency-sensitive commands on the {@link Lane#DEFAULT} lane, and each lane reports its own in-flight command
+ * count and command latency. Otherwise, all lanes share the default connections, and their commands are reported
+ * together under a single {@code shared} lane tag.
  *
  * @see LettuceShardCircuitBreaker
+ * @see LaneMetricsCommandListener
  */
 public class FaultTolerantRedisClusterClient {
 
+  /**
+   * A class of traffic with its own connections to the cluster.
+   */
+  public enum Lane {
+    /**
+     * Small, latency-sensitive commands. This is the lane used by callers that don't specify one.
+     */
+    DEFAULT,
+
+    /**
+     * Large payloads and expensive scripts, for which throughput matters more than latency.
+     */
+    BULK
+  }
+
   private final String name;
 
-  private final RedisClusterClient clusterClient;
+  private final Map<Lane, RedisClusterClient> clusterClients = new EnumMap<>(Lane.class);
 
-  private final StatefulRedisClusterConnection<String, String> stringConnection;
-  private final StatefulRedisClusterConnection<byte[], byte[]> binaryConnection;
+  private final Map<Lane, StatefulRedisClusterConnection<String, String>> stringConnections = new EnumMap<>(Lane.class);
+  private final Map<Lane, StatefulRedisClusterConnection<byte[], byte[]>> binaryConnections = new EnumMap<>(Lane.class);
 
   private final List<StatefulRedisClusterPubSubConnection<?, ?>> pubSubConnections = new ArrayList<>();
 
   private final Retry topologyChangedEventRetry;
 
+  @Nullable
+  private final ClusterFunctionLibraryLoader functionLibraryLoader;
+  @Nullable
+  private final Scheduler functionLibraryReloadScheduler;
+  @Nullable
+  private final Disposable functionLibraryReloadSubscription;
 
   public FaultTolerantRedisClusterClient(final String name,
       final RedisClusterConfiguration clusterConfiguration,
@@ -57,7 +90,9 @@ public class FaultTolerantRedisClusterClient {
         Collections.singleton(RedisUriUtil.createRedisUriWithTimeout(clusterConfiguration.getConfigurationUri(),
             clusterConfiguration.getTimeout())),
         clusterConfiguration.getTimeout(),
-        clusterConfiguration.getCircuitBreakerConfigurationName());
+        clusterConfiguration.getCircuitBreakerConfigurationName(),
+        clusterConfiguration.isDedicatedBulkConnections(),
+        clusterConfiguration.isUseFunctions());
 
   }
 
@@ -67,6 +102,17 @@ public class FaultTolerantRedisClusterClient {
       final Duration commandTimeout,
       @Nullable final String circuitBreakerConfigurationName) {
 
+    this(name, clientResourcesBuilder, redisUris, commandTimeout, circuitBreakerConfigurationName, false, false);
+  }
+
+  FaultTolerantRedisClusterClient(final String name,
+      final ClientResources.Builder clientResourcesBuilder,
+      final Iterable<RedisURI> redisUris,
+      final Duration commandTimeout,
+      @Nullable final String circuitBreakerConfigurationName,
+      final boolean dedicatedBulkConnections,
+      final boolean useFunctions) {
+
     this.name = name;
 
     // Lettuce will issue a CLIENT SETINFO command unconditionally if these fields are set (and they are by default),
@@ -85,10 +131,7 @@ public class FaultTolerantRedisClusterClient {
     final LettuceShardCircuitBreaker lettuceShardCircuitBreaker =
         new LettuceShardCircuitBreaker(name, circuitBreakerConfigurationName);
 
-    this.clusterClient = RedisClusterClient.create(
-        clientResourcesBuilder.nettyCustomizer(lettuceShardCircuitBreaker).
-            build(),
-        redisUris);
+    final ClientResources clientResources = clientResourcesBuilder.nettyCustomizer(lettuceShardCircuitBreaker).build();
 
     final ClusterClientOptions.Builder clusterClientOptionsBuilder = ClusterClientOptions.builder()
         .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
@@ -104,14 +147,33 @@ public class FaultTolerantRedisClusterClient {
 
     NettyUtil.setSocketTimeoutsIfApplicable(clusterClientOptionsBuilder);
 
-    this.clusterClient.setOptions(clusterClientOptionsBuilder.build());
+    final ClusterClientOptions clusterClientOptions = clusterClientOptionsBuilder.build();
+
+    for (final Lane lane : Lane.values()) {
+      if (lane != Lane.DEFAULT && !dedicatedBulkConnections) {
+        // Without dedicated connections, every lane shares the default lane's client; the listener can't tell which lane
+        // a command came from, so that client's metrics are tagged as shared rather than attributed to DEFAULT
+        clusterClients.put(lane, clusterClients.get(Lane.DEFAULT));
+        stringConnections.put(lane, stringConnections.get(Lane.DEFAULT));
+        binaryConnections.put(lane, binaryConnections.get(Lane.DEFAULT));
+        continue;
+      }
 
-    this.stringConnection = clusterClient.connect();
-    this.binaryConnection = clusterClient.connect(ByteArrayCodec.INSTANCE);
+      // Lanes share client resources (and therefore event loops), but each has its own client, so that it gets its own
+      // channels to each node and its own command listener
+      final RedisClusterClient clusterClient = RedisClusterClient.create(clientResources, redisUris);
+      clusterClient.setOptions(clusterClientOptions);
+      clusterClient.addListener(new LaneMetricsCommandListener(name,
+          dedicatedBulkConnections ? lane.name() : LaneMetricsCommandListener.SHARED_LANE_TAG));
 
-    // create a synthetic topology changed event to notify shard circuit breakers of initial upstreams
-    clusterClient.getResources().eventBus().publish(
-        new ClusterTopologyChangedEvent(Collections.emptyList(), clusterClient.getPartitions().getPartitions()));
+      clusterClients.put(lane, clusterClient);
+      stringConnections.put(lane, clusterClient.connect());
+      binaryConnections.put(lane, clusterClient.connect(ByteArrayCodec.INSTANCE));
+
+      // create a synthetic topology changed event to notify shard circuit breakers of initial upstreams
+      clusterClient.getResources().eventBus().publish(
+          new ClusterTopologyChangedEvent(Collections.emptyList(), clusterClient.getPartitions().getPartitions()));
+    }
 
     final RetryConfig topologyChangedEventRetryConfig = RetryConfig.custom()
         .maxAttempts(Integer.MAX_VALUE)
@@ -120,37 +182,88 @@ public class FaultTolerantRedisClusterClient {
         .build();
 
     this.topologyChangedEventRetry = Retry.of(name + "-topologyChangedRetry", topologyChangedEventRetryConfig);
+
+    if (useFunctions) {
+      final ClusterFunctionLibraryLoader loader =
+          new ClusterFunctionLibraryLoader(name, stringConnections.get(Lane.DEFAULT));
+
+      this.functionLibraryLoader = loader;
+      this.functionLibraryReloadScheduler = Schedulers.newSingle(name + "-redisFunctionLibraries", true);
+
+      // New primaries don't have any of our functions, so reload every library whenever the topology changes
+      this.functionLibraryReloadSubscription = clientResources.eventBus().get()
+          .filter(event -> event instanceof ClusterTopologyChangedEvent)
+          .publishOn(functionLibraryReloadScheduler)
+          .subscribe(_ -> loader.requestReload());
+    } else {
+      this.functionLibraryLoader = null;
+      this.functionLibraryReloadScheduler = null;
+      this.functionLibraryReloadSubscription = null;
+    }
   }
 
   public void shutdown() {
-    stringConnection.close();
-    binaryConnection.close();
+    if (functionLibraryReloadSubscription != null) {
+      functionLibraryReloadSubscription.dispose();
+      functionLibraryReloadScheduler.dispose();
+    }
+
+    stringConnections.values().stream().distinct().forEach(StatefulRedisClusterConnection::close);
+    binaryConnections.values().stream().distinct().forEach(StatefulRedisClusterConnection::close);
 
     for (final StatefulRedisClusterPubSubConnection<?, ?> pubSubConnection : pubSubConnections) {
       pubSubConnection.close();
     }
 
-    clusterClient.shutdown();
+    clusterClients.values().stream().distinct().forEach(RedisClusterClient::shutdown);
   }
 
   public String getName() {
     return name;
   }
 
+  /**
+   * @return the loader for Redis Functions libraries if scripts should be run as functions, or empty if scripts should
+   * be run with {@code EVALSHA}
+   */
+  Optional<ClusterFunctionLibraryLoader> getFunctionLibraryLoader() {
+    return Optional.ofNullable(functionLibraryLoader);
+  }
+
   public void useCluster(final Consumer<StatefulRedisClusterConnection<String, String>> consumer) {
-    useConnection(stringConnection, consumer);
+    useCluster(Lane.DEFAULT, consumer);
+  }
+
+  public void useCluster(final Lane lane, final Consumer<StatefulRedisClusterConnection<String, String>> consumer) {
+    useConnection(stringConnections.get(lane), consumer);
   }
 
   public <T> T withCluster(final Function<StatefulRedisClusterConnection<String, String>, T> function) {
-    return withConnection(stringConnection, function);
+    return withCluster(Lane.DEFAULT, function);
+  }
+
+  public <T> T withCluster(final Lane lane, final Function<StatefulRedisClusterConnection<String, String>, T> function) {
+    return withConnection(stringConnections.get(lane), function);
   }
 
   public void useBinaryCluster(final Consumer<StatefulRedisClusterConnection<byte[], byte[]>> consumer) {
-    useConnection(binaryConnection, consumer);
+    useBinaryCluster(Lane.DEFAULT, consumer);
+  }
+
+  public void useBinaryCluster(final Lane lane,
+      final Consumer<StatefulRedisClusterConnection<byte[], byte[]>> consumer) {
+
+    useConnection(binaryConnections.get(lane), consumer);
   }
 
   public <T> T withBinaryCluster(final Function<StatefulRedisClusterConnection<byte[], byte[]>, T> function) {
-    return withConnection(binaryConnection, function);
+    return withBinaryCluster(Lane.DEFAULT, function);
+  }
+
+  public <T> T withBinaryCluster(final Lane lane,
+      final Function<StatefulRedisClusterConnection<byte[], byte[]>, T> function) {
+
+    return withConnection(binaryConnections.get(lane), function);
   }
 
   private <K, V> void useConnection(final StatefulRedisClusterConnection<K, V> connection,
@@ -180,7 +293,7 @@ public class FaultTolerantRedisClusterClient {
   }
 
   public FaultTolerantPubSubClusterConnection<String, String> createPubSubConnection() {
-    final StatefulRedisClusterPubSubConnection<String, String> pubSubConnection = clusterClient.connectPubSub();
+    final StatefulRedisClusterPubSubConnection<String, String> pubSubConnection = clusterClients.get(Lane.DEFAULT).connectPubSub();
     pubSubConnections.add(pubSubConnection);
 
     return new FaultTolerantPubSubClusterConnection<>(name, pubSubConnection, topologyChangedEventRetry,
@@ -188,7 +301,7 @@ public class FaultTolerantRedisClusterClient {
   }
 
   public FaultTolerantPubSubClusterConnection<byte[], byte[]> createBinaryPubSubConnection() {
-    final StatefulRedisClusterPubSubConnection<byte[], byte[]> pubSubConnection = clusterClient.connectPubSub(ByteArrayCodec.INSTANCE);
+    final StatefulRedisClusterPubSubConnection<byte[], byte[]> pubSubConnection = clusterClients.get(Lane.DEFAULT).connectPubSub(ByteArrayCodec.INSTANCE);
     pubSubConnections.add(pubSubConnection);
 
     return new FaultTolerantPubSubClusterConnection<>(name, pubSubConnection, topologyChangedEventRetry,
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.redis;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.lettuce.core.event.command.CommandBaseEvent;
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports the number of commands that have been dispatched but not yet completed (i.e. the depth of the queue of
+ * commands waiting on the lane's connections) and the latency of each command for a single
+ * {@link FaultTolerantRedisClusterClient.Lane}, or for all lanes together if they share connections.
+ */
+class LaneMetricsCommandListener implements CommandListener {
+
+  private static final String IN_FLIGHT_COMMANDS_GAUGE_NAME = name(LaneMetricsCommandListener.class, "inFlightCommands");
+  private static final String COMMAND_LATENCY_TIMER_NAME = name(LaneMetricsCommandListener.class, "commandLatency");
+
+  /**
+   * The lane tag used when every lane shares the same connections
+   */
+  static final String SHARED_LANE_TAG = "shared";
+
+  private static final String START_NANOS_CONTEXT_KEY = LaneMetricsCommandListener.class.getName() + ".startNanos";
+
+  private final AtomicInteger inFlightCommands = new AtomicInteger();
+  private final Timer succeededTimer;
+  private final Timer failedTimer;
+
+  LaneMetricsCommandListener(final String clusterName, final String laneTag) {
+    final Tags tags = Tags.of("clusterName", clusterName, "lane", laneTag);
+
+    Metrics.gauge(IN_FLIGHT_COMMANDS_GAUGE_NAME, tags, inFlightCommands);
+
+    succeededTimer = Metrics.timer(COMMAND_LATENCY_TIMER_NAME, tags.and("outcome", "success"));
+    failedTimer = Metrics.timer(COMMAND_LATENCY_TIMER_NAME, tags.and("outcome", "failure"));
+  }
+
+  @Override
+  public void commandStarted(final CommandStartedEvent event) {
+    inFlightCommands.incrementAndGet();
+    event.getContext().put(START_NANOS_CONTEXT_KEY, System.nanoTime());
+  }
+
+  @Override
+  public void commandSucceeded(final CommandSucceededEvent event) {
+    complete(event, succeededTimer);
+  }
+
+  @Override
+  public void commandFailed(final CommandFailedEvent event) {
+    complete(event, failedTimer);
+  }
+
+  @VisibleForTesting
+  int getInFlightCommands() {
+    return inFlightCommands.get();
+  }
+
+  private void complete(final CommandBaseEvent event, final Timer timer) {
+    if (event.getContext().get(START_NANOS_CONTEXT_KEY) instanceof Long startNanos) {
+      inFlightCommands.decrementAndGet();
+      timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -2,9 +2,11 @@ package io.zonarosa.server.scheduler;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.zonarosa.server.metrics.MetricsUtil;
+import io.zonarosa.server.util.ExceptionUtils;
 import io.zonarosa.server.util.Util;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -12,6 +14,7 @@ import reactor.util.retry.Retry;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
@@ -22,14 +25,22 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A job scheduler maintains a delay queue of tasks to be run at some time in the future. Callers schedule jobs with
  * the {@link #scheduleJob(Instant, byte[])} method, and concrete subclasses actually execute jobs by implementing the
  * {@link #processJob(byte[])} method. Some entity must call {@link #processAvailableJobs()} to actually find and
  * process jobs that are ready for execution.
+ * <p>
+ * To spread processing across several workers, callers may instead call
+ * {@link #processAvailableJobs(PartitionedProcessingConfiguration)}, which divides due jobs into time-bucket partitions
+ * by their {@code runAt} time, further divides each partition into sub-partitions by the random salt in each job's sort
+ * key, and only processes sub-partitions for which the caller holds an expiring lease.
  */
 public abstract class JobScheduler {
 
@@ -38,6 +49,9 @@ public abstract class JobScheduler {
   private final Duration jobExpiration;
   private final Clock clock;
 
+  // Identifies this instance as the holder of partition leases
+  private final String workerId = UUID.randomUUID().toString();
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   // The name of this scheduler (DynamoDB string)
@@ -56,8 +70,24 @@ public abstract class JobScheduler {
   // seconds from the epoch)
   private static final String ATTR_TTL = "E";
 
+  // Partition leases live in the same table under a different scheduler name; the sort key is the 8-byte, big-endian
+  // start of the leased partition in milliseconds since the epoch followed by the 4-byte, big-endian sub-partition index
+  private static final String LEASE_SCHEDULER_NAME_SUFFIX = "#lease";
+
+  // The ID of the worker holding a partition lease (DynamoDB string)
+  private static final String ATTR_LEASE_OWNER = "O";
+
+  // The time at which a partition lease expires and may be claimed by another worker (DynamoDB number; milliseconds
+  // from the epoch)
+  private static final String ATTR_LEASE_EXPIRATION = "L";
+
+  // How long to keep lease items around after they expire before DynamoDB garbage-collects them
+  private static final Duration LEASE_TTL = Duration.ofDays(1);
+
   private static final String SCHEDULE_JOB_COUNTER_NAME = MetricsUtil.name(JobScheduler.class, "scheduleJob");
   private static final String PROCESS_JOB_COUNTER_NAME = MetricsUtil.name(JobScheduler.class, "processJob");
+  private static final String JOB_LAG_TIMER_NAME = MetricsUtil.name(JobScheduler.class, "jobLag");
+  private static final String PROCESS_PARTITION_COUNTER_NAME = MetricsUtil.name(JobScheduler.class, "processPartition");
 
   private static final String SCHEDULER_NAME_TAG = "schedulerName";
   private static final String OUTCOME_TAG = "outcome";
@@ -89,6 +119,10 @@ public abstract class JobScheduler {
    *
    * @return A future that yields a brief, human-readable status code when the job has been fully processed. On
    * successful completion, the job will be deleted. The job will not be deleted if the future completes exceptionally.
+   * <p>
+   * Jobs must be idempotent. A job that fails, or whose deletion fails, will be processed again. With
+   * {@link #processAvailableJobs(PartitionedProcessingConfiguration)}, a job still running when its partition's lease
+   * expires is abandoned but not cancelled, so it may still be running when another worker processes it again.
    */
   protected abstract CompletableFuture<String> processJob(@Nullable byte[] jobData);
 
@@ -137,8 +171,9 @@ public abstract class JobScheduler {
    * @see #processJob(byte[])
    */
   public Mono<Void> processAvailableJobs() {
-    return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
+    return processJobs(Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
             .tableName(tableName)
+            .consistentRead(true)
             .keyConditionExpression("#schedulerName = :schedulerName AND #runAt <= :maxRunAt")
             .expressionAttributeNames(Map.of(
                 "#schedulerName", KEY_SCHEDULER_NAME,
@@ -147,26 +182,306 @@ public abstract class JobScheduler {
                 ":schedulerName", AttributeValue.fromS(getSchedulerName()),
                 ":maxRunAt", buildMaxRunAtAttribute(clock.instant())))
             .build())
-        .items())
+        .items()), MAX_CONCURRENCY, null);
+  }
+
+  /**
+   * Finds and processes jobs whose {@code runAt} time is less than or equal to the current time, cooperating with any
+   * other workers doing the same. Due jobs are divided into partitions by their {@code runAt} time, and each partition
+   * is divided into {@link PartitionedProcessingConfiguration#subpartitions()} sub-partitions by the random salt in each
+   * job's sort key. This worker walks the partitions that contain due jobs from oldest to newest and processes each
+   * sub-partition for which it can claim a lease, skipping sub-partitions leased by other workers. Up to one worker
+   * per sub-partition can therefore work on the same partition at once. Each sub-partition reads its whole partition
+   * and discards other sub-partitions' jobs, so reads grow with the number of sub-partitions.
+   * <p>
+   * A lease expires after {@link PartitionedProcessingConfiguration#leaseDuration()}. To avoid overlapping with a
+   * worker that claims the sub-partition after the lease expires, this worker stops starting new jobs in a
+   * sub-partition once half of the lease duration has elapsed, leaving any remaining jobs for a later pass, and gives
+   * up on jobs still running when the lease expires without deleting them. Leases are released as soon as a
+   * sub-partition has been processed or processing fails, so another worker can pick up where this one left off; if
+   * this worker stops without releasing its lease, the lease simply expires.
+   * <p>
+   * Jobs abandoned when a lease expires are not cancelled, so they may still be running when the next lease holder
+   * starts them again; jobs processed this way must therefore be idempotent. Job queries use strongly consistent reads
+   * so that a worker taking over a just-released lease doesn't see jobs its predecessor has already deleted.
+   *
+   * @param configuration the partition size, lease duration, and per-partition concurrency to use
+   *
+   * @return a future that completes when all available partitions have been visited
+   *
+   * @see #processJob(byte[])
+   */
+  public Mono<Void> processAvailableJobs(final PartitionedProcessingConfiguration configuration) {
+    return processPartitionsFrom(Instant.EPOCH, clock.instant(), configuration);
+  }
+
+  private Mono<Void> processPartitionsFrom(final Instant minRunAt,
+      final Instant maxRunAt,
+      final PartitionedProcessingConfiguration configuration) {
+
+    if (minRunAt.isAfter(maxRunAt)) {
+      return Mono.empty();
+    }
+
+    return findEarliestRunAt(minRunAt, maxRunAt)
+        .flatMap(earliestRunAt -> {
+          final Instant partitionStart = getPartitionStart(earliestRunAt, configuration.partitionDuration());
+          final Instant nextPartitionStart = partitionStart.plus(configuration.partitionDuration());
+
+          return processPartition(partitionStart, min(nextPartitionStart.minusMillis(1), maxRunAt), configuration)
+              .then(Mono.defer(() -> processPartitionsFrom(nextPartitionStart, maxRunAt, configuration)));
+        });
+  }
+
+  private Mono<Void> processPartition(final Instant partitionStart,
+      final Instant maxRunAt,
+      final PartitionedProcessingConfiguration configuration) {
+
+    // Start from a random sub-partition so that workers arriving at the same partition don't all contend for the same
+    // leases in the same order
+    final int subpartitions = configuration.subpartitions();
+    final int firstSubpartition = ThreadLocalRandom.current().nextInt(subpartitions);
+
+    return Flux.range(0, subpartitions)
+        .concatMap(i -> processSubpartition(partitionStart, (firstSubpartition + i) % subpartitions, maxRunAt,
+            configuration))
+        .then();
+  }
+
+  private Mono<Void> processSubpartition(final Instant partitionStart,
+      final int subpartition,
+      final Instant maxRunAt,
+      final PartitionedProcessingConfiguration configuration) {
+
+    return Mono.defer(() -> {
+      final Instant leaseExpiration = clock.instant().plus(configuration.leaseDuration());
+      final Instant deadline = clock.instant().plus(configuration.leaseDuration().dividedBy(2));
+      final AtomicBoolean deadlineReached = new AtomicBoolean(false);
+
+      return Mono.usingWhen(
+          Mono.fromFuture(() -> acquireLease(partitionStart, subpartition, leaseExpiration))
+              .doOnNext(acquired -> {
+                if (!acquired) {
+                  incrementPartitionCounter("contended");
+                }
+              })
+              .filter(acquired -> acquired),
+          ignored -> processJobs(queryJobs(partitionStart, maxRunAt)
+                  .filter(item -> getSubpartition(item.get(ATTR_RUN_AT), configuration.subpartitions()) == subpartition)
+                  .takeWhile(item -> {
+                    if (clock.instant().isBefore(deadline)) {
+                      return true;
+                    }
+
+                    deadlineReached.set(true);
+                    return false;
+                  }), configuration.maxConcurrency(), leaseExpiration)
+              // Only count sub-partitions we drained; the rest still have jobs waiting for a later pass
+              .doOnSuccess(ignoredResult ->
+                  incrementPartitionCounter(deadlineReached.get() ? "deadlineReached" : "processed")),
+          ignored -> Mono.fromFuture(() -> releaseLease(partitionStart, subpartition)),
+          (ignored, throwable) -> Mono.fromFuture(() -> releaseLease(partitionStart, subpartition)),
+          ignored -> Mono.fromFuture(() -> releaseLease(partitionStart, subpartition)));
+    })
+        .onErrorResume(throwable -> {
+          logger.warn("Failed to process sub-partition {} of partition starting at {}", subpartition, partitionStart,
+              throwable);
+          incrementPartitionCounter("failed");
+
+          return Mono.empty();
+        });
+  }
+
+  private Flux<Map<String, AttributeValue>> queryJobs(final Instant minRunAt, final Instant maxRunAt) {
+    return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
+            .tableName(tableName)
+            .consistentRead(true)
+            .keyConditionExpression("#schedulerName = :schedulerName AND #runAt BETWEEN :minRunAt AND :maxRunAt")
+            .expressionAttributeNames(Map.of(
+                "#schedulerName", KEY_SCHEDULER_NAME,
+                "#runAt", ATTR_RUN_AT))
+            .expressionAttributeValues(Map.of(
+                ":schedulerName", AttributeValue.fromS(getSchedulerName()),
+                ":minRunAt", buildMinRunAtAttribute(minRunAt),
+                ":maxRunAt", buildMaxRunAtAttribute(maxRunAt)))
+            .build())
+        .items());
+  }
+
+  /**
+   * Processes the given jobs, deleting each one once it has been processed successfully.
+   *
+   * @param jobDeadline if not {@code null}, the time after which jobs that are still running are abandoned without
+   * being deleted
+   */
+  private Mono<Void> processJobs(final Flux<Map<String, AttributeValue>> items,
+      final int maxConcurrency,
+      @Nullable final Instant jobDeadline) {
+
+    return items
         .flatMap(item -> {
           final byte[] jobData = item.containsKey(ATTR_JOB_DATA)
               ? item.get(ATTR_JOB_DATA).b().asByteArray()
               : null;
 
-          return Mono.fromFuture(() -> processJob(jobData))
-              .doOnNext(outcome -> Metrics.counter(PROCESS_JOB_COUNTER_NAME,
-                      SCHEDULER_NAME_TAG, getSchedulerName(),
-                      OUTCOME_TAG, outcome)
-                  .increment())
+          Mono<String> processJobMono = Mono.fromFuture(() -> processJob(jobData));
+
+          if (jobDeadline != null) {
+            // Once our lease expires, another worker may claim the partition and find this job still waiting, so stop
+            // waiting for it rather than deleting it after somebody else may have started it again
+            processJobMono = processJobMono.timeout(max(Duration.between(clock.instant(), jobDeadline), Duration.ZERO));
+          }
+
+          return processJobMono
+              .doOnNext(outcome -> {
+                Metrics.counter(PROCESS_JOB_COUNTER_NAME,
+                        SCHEDULER_NAME_TAG, getSchedulerName(),
+                        OUTCOME_TAG, outcome)
+                    .increment();
+
+                Timer.builder(JOB_LAG_TIMER_NAME)
+                    .tags(SCHEDULER_NAME_TAG, getSchedulerName())
+                    .register(Metrics.globalRegistry)
+                    .record(Duration.between(getRunAt(item.get(ATTR_RUN_AT)), clock.instant()));
+              })
               .then(Mono.fromFuture(() -> deleteJob(item.get(KEY_SCHEDULER_NAME), item.get(ATTR_RUN_AT))))
               .onErrorResume(throwable -> {
+                if (throwable instanceof TimeoutException) {
+                  Metrics.counter(PROCESS_JOB_COUNTER_NAME,
+                          SCHEDULER_NAME_TAG, getSchedulerName(),
+                          OUTCOME_TAG, "leaseExpired")
+                      .increment();
+                }
+
                 logger.warn("Failed to process job", throwable);
                 return Mono.empty();
               });
-        }, MAX_CONCURRENCY)
+        }, maxConcurrency)
         .then();
   }
 
+  private Mono<Instant> findEarliestRunAt(final Instant minRunAt, final Instant maxRunAt) {
+    return Mono.fromFuture(() -> dynamoDbAsyncClient.query(QueryRequest.builder()
+            .tableName(tableName)
+            .consistentRead(true)
+            .keyConditionExpression("#schedulerName = :schedulerName AND #runAt BETWEEN :minRunAt AND :maxRunAt")
+            .expressionAttributeNames(Map.of(
+                "#schedulerName", KEY_SCHEDULER_NAME,
+                "#runAt", ATTR_RUN_AT))
+            .expressionAttributeValues(Map.of(
+                ":schedulerName", AttributeValue.fromS(getSchedulerName()),
+                ":minRunAt", buildMinRunAtAttribute(minRunAt),
+                ":maxRunAt", buildMaxRunAtAttribute(maxRunAt)))
+            .projectionExpression("#runAt")
+            .limit(1)
+            .build()))
+        .flatMap(response -> response.items().isEmpty()
+            ? Mono.empty()
+            : Mono.just(getRunAt(response.items().getFirst().get(ATTR_RUN_AT))));
+  }
+
+  /**
+   * Attempts to claim the lease for the given sub-partition of the partition starting at the given time.
+   *
+   * @param partitionStart the start of the partition to lease
+   * @param subpartition the index of the sub-partition to lease
+   * @param leaseExpiration the time at which the lease should expire if not released
+   *
+   * @return a future that yields {@code true} if this worker now holds the lease or {@code false} if another worker
+   * holds an unexpired lease for the sub-partition
+   */
+  @VisibleForTesting
+  CompletableFuture<Boolean> acquireLease(final Instant partitionStart,
+      final int subpartition,
+      final Instant leaseExpiration) {
+
+    return dynamoDbAsyncClient.putItem(PutItemRequest.builder()
+            .tableName(tableName)
+            .item(Map.of(
+                KEY_SCHEDULER_NAME, AttributeValue.fromS(getLeaseSchedulerName()),
+                ATTR_RUN_AT, buildLeaseAttribute(partitionStart, subpartition),
+                ATTR_LEASE_OWNER, AttributeValue.fromS(workerId),
+                ATTR_LEASE_EXPIRATION, AttributeValue.fromN(String.valueOf(leaseExpiration.toEpochMilli())),
+                ATTR_TTL, AttributeValue.fromN(String.valueOf(leaseExpiration.plus(LEASE_TTL).getEpochSecond()))))
+            .conditionExpression("attribute_not_exists(#schedulerName) OR #leaseExpiration < :now")
+            .expressionAttributeNames(Map.of(
+                "#schedulerName", KEY_SCHEDULER_NAME,
+                "#leaseExpiration", ATTR_LEASE_EXPIRATION))
+            .expressionAttributeValues(Map.of(
+                ":now", AttributeValue.fromN(String.valueOf(clock.millis()))))
+            .build())
+        .thenApply(ignored -> true)
+        .exceptionally(throwable -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof ConditionalCheckFailedException) {
+            return false;
+          }
+
+          throw ExceptionUtils.wrap(throwable);
+        });
+  }
+
+  private CompletableFuture<Void> releaseLease(final Instant partitionStart, final int subpartition) {
+    return dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                KEY_SCHEDULER_NAME, AttributeValue.fromS(getLeaseSchedulerName()),
+                ATTR_RUN_AT, buildLeaseAttribute(partitionStart, subpartition)))
+            .conditionExpression("#leaseOwner = :workerId")
+            .expressionAttributeNames(Map.of("#leaseOwner", ATTR_LEASE_OWNER))
+            .expressionAttributeValues(Map.of(":workerId", AttributeValue.fromS(workerId)))
+            .build())
+        .thenRun(Util.NOOP)
+        .exceptionally(throwable -> {
+          // Another worker claimed the partition after our lease expired; it's theirs to release now
+          if (ExceptionUtils.unwrap(throwable) instanceof ConditionalCheckFailedException) {
+            return null;
+          }
+
+          throw ExceptionUtils.wrap(throwable);
+        });
+  }
+
+  private String getLeaseSchedulerName() {
+    return getSchedulerName() + LEASE_SCHEDULER_NAME_SUFFIX;
+  }
+
+  private void incrementPartitionCounter(final String outcome) {
+    Metrics.counter(PROCESS_PARTITION_COUNTER_NAME,
+            SCHEDULER_NAME_TAG, getSchedulerName(),
+            OUTCOME_TAG, outcome)
+        .increment();
+  }
+
+  @VisibleForTesting
+  static Instant getPartitionStart(final Instant runAt, final Duration partitionDuration) {
+    final long partitionMillis = partitionDuration.toMillis();
+    return Instant.ofEpochMilli(Math.floorDiv(runAt.toEpochMilli(), partitionMillis) * partitionMillis);
+  }
+
+  /**
+   * Returns the sub-partition to which the job with the given sort key belongs, based on the random salt at the end of
+   * the sort key.
+   *
+   * @see #buildRunAtAttribute(Instant, long)
+   */
+  @VisibleForTesting
+  static int getSubpartition(final AttributeValue runAtAttribute, final int subpartitions) {
+    final ByteBuffer runAtBuffer = runAtAttribute.b().asByteBuffer();
+    return Math.floorMod(runAtBuffer.getLong(runAtBuffer.limit() - Long.BYTES), subpartitions);
+  }
+
+  private static Instant getRunAt(final AttributeValue runAtAttribute) {
+    return Instant.ofEpochMilli(runAtAttribute.b().asByteBuffer().getLong());
+  }
+
+  private static Instant min(final Instant a, final Instant b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static Duration max(final Duration a, final Duration b) {
+    return a.compareTo(b) > 0 ? a : b;
+  }
+
   private CompletableFuture<Void> deleteJob(final AttributeValue schedulerName, final AttributeValue runAt) {
     return dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
             .tableName(tableName)
@@ -218,4 +533,28 @@ public abstract class JobScheduler {
         .putLong(0xfffffffffffffffL)
         .flip()));
   }
+
+  /**
+   * Constructs a sort key value that is less than or equal to all other sort keys for jobs with the same or later
+   * {@code runAt} time.
+   *
+   * @param runAt the minimum scheduled time for jobs to match
+   *
+   * @return an attribute value for a sort key that is less than or equal to the sort key for all other jobs scheduled
+   * to run at or after the given {@code runAt} time
+   */
+  static AttributeValue buildMinRunAtAttribute(final Instant runAt) {
+    return AttributeValue.fromB(SdkBytes.fromByteBuffer(ByteBuffer.allocate(24)
+        .putLong(runAt.toEpochMilli())
+        .putLong(0)
+        .putLong(0)
+        .flip()));
+  }
+
+  private static AttributeValue buildLeaseAttribute(final Instant partitionStart, final int subpartition) {
+    return AttributeValue.fromB(SdkBytes.fromByteBuffer(ByteBuffer.allocate(12)
+        .putLong(partitionStart.toEpochMilli())
+        .putInt(subpartition)
+        .flip()));
+  }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.scheduler;
+
+import java.time.Duration;
+
+/**
+ * Controls how a {@link JobScheduler} divides work among cooperating workers.
+ *
+ * @param partitionDuration the span of {@code runAt} times covered by a single partition
+ * @param subpartitions the number of sub-partitions into which each partition is divided; at most this many workers can
+ * process the same partition at once
+ * @param leaseDuration how long a worker holds a partition before other workers may claim it
+ * @param maxConcurrency the maximum number of jobs a worker processes concurrently within a partition
+ *
+ * @see JobScheduler#processAvailableJobs(PartitionedProcessingConfiguration)
+ */
+public record PartitionedProcessingConfiguration(Duration partitionDuration,
+                                                 int subpartitions,
+                                                 Duration leaseDuration,
+                                                 int maxConcurrency) {
+
+  public PartitionedProcessingConfiguration {
+    if (partitionDuration.toMillis() <= 0) {
+      throw new IllegalArgumentException("Partition duration must be positive");
+    }
+
+    if (subpartitions <= 0) {
+      throw new IllegalArgumentException("Sub-partition count must be positive");
+    }
+
+    if (leaseDuration.toMillis() <= 0) {
+      throw new IllegalArgumentException("Lease duration must be positive");
+    }
+
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("Max concurrency must be positive");
+    }
+  }
+}
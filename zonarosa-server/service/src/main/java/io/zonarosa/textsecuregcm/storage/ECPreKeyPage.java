@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+package io.zonarosa.server.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.nio.ByteBuffer;
+import java.util.List;
+import io.zonarosa.libzonarosa.protocol.InvalidKeyException;
+import io.zonarosa.libzonarosa.protocol.ecc.ECPublicKey;
+import io.zonarosa.server.entities.ECPreKey;
+
+/**
+ * An EC pre-key page is the single-use EC pre-key analog of a {@link KEMPreKeyPage}. Keys have a fixed serialized
+ * length, so a key's location within a page can be computed from its index alone.
+ */
+class ECPreKeyPage {
+
+  static final byte FORMAT = 1;
+
+  // Serialized pages start with a 4 byte magic constant, followed by 3 bytes of 0s and then the format byte
+  static final int HEADER_MAGIC = 0xEC5A9E01;
+  static final int HEADER_SIZE = 8;
+  // Serialize bigendian to produce the serialized page header
+  private static final long HEADER = ((long) HEADER_MAGIC) << 32L | (long) FORMAT;
+
+  // The length of libzonarosa's serialized EC public key, which is a single-byte type followed by the public key
+  private static final int SERIALIZED_PUBKEY_LENGTH = 33;
+  private static final int KEY_ID_LENGTH = Long.BYTES;
+
+  // The internal prefix byte libzonarosa uses to indicate a key is a Curve25519 key. Currently, this is the only type of
+  // key allowed to be written to a prekey page
+  private static final byte EC_KEY_TYPE_DJB = 0x05;
+
+  @VisibleForTesting
+  static final int SERIALIZED_PREKEY_LENGTH = KEY_ID_LENGTH + SERIALIZED_PUBKEY_LENGTH;
+
+  private ECPreKeyPage() {}
+
+  /**
+   * Serialize the list of preKeys into a single buffer
+   *
+   * @param format the format to serialize as. Currently, the only valid format is {@link ECPreKeyPage#FORMAT}
+   * @param preKeys the preKeys to serialize
+   * @return The serialized buffer
+   */
+  static ByteBuffer serialize(final byte format, final List<ECPreKey> preKeys) {
+    if (format != FORMAT) {
+      throw new IllegalArgumentException("Unknown format: " + format + ", must be " + FORMAT);
+    }
+
+    if (preKeys.isEmpty()) {
+      throw new IllegalArgumentException("PreKeys cannot be empty");
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + SERIALIZED_PREKEY_LENGTH * preKeys.size());
+    buffer.putLong(HEADER);
+    for (ECPreKey preKey : preKeys) {
+      buffer.putLong(preKey.keyId());
+
+      final byte[] publicKeyBytes = preKey.serializedPublicKey();
+      if (publicKeyBytes.length != SERIALIZED_PUBKEY_LENGTH || publicKeyBytes[0] != EC_KEY_TYPE_DJB) {
+        throw new IllegalArgumentException("Format 1 only supports " + EC_KEY_TYPE_DJB + " public keys");
+      }
+      buffer.put(publicKeyBytes);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Deserialize a single {@link ECPreKey}
+   *
+   * @param format The format of the page this buffer is from
+   * @param buffer The key to deserialize. The position of the buffer should be the start of the key, and the limit of
+   *               the buffer should be the end of the key. After a successful deserialization the position of the
+   *               buffer will be the limit
+   * @return The deserialized key
+   * @throws InvalidKeyException if the serialized public key could not be parsed
+   */
+  static ECPreKey deserializeKey(final int format, final ByteBuffer buffer) throws InvalidKeyException {
+    if (format != FORMAT) {
+      throw new IllegalArgumentException("Unknown prekey page format " + format);
+    }
+    if (buffer.remaining() != SERIALIZED_PREKEY_LENGTH) {
+      throw new IllegalArgumentException("PreKeys must be length " + SERIALIZED_PREKEY_LENGTH);
+    }
+    final long keyId = buffer.getLong();
+
+    final byte[] publicKeyBytes = new byte[SERIALIZED_PUBKEY_LENGTH];
+    buffer.get(publicKeyBytes);
+    return new ECPreKey(keyId, new ECPublicKey(publicKeyBytes));
+  }
+
+  /**
+   * Get the location of the key at the provided index within a page
+   *
+   * @param format The format of the page
+   * @param index  The index of the key to retrieve
+   * @return A {@link KEMPreKeyPage.KeyLocation} indicating where within the page the key is
+   */
+  static KEMPreKeyPage.KeyLocation keyLocation(final int format, final int index) {
+    if (format != FORMAT) {
+      throw new IllegalArgumentException("unknown format " + format);
+    }
+    final int startOffset = HEADER_SIZE + (index * SERIALIZED_PREKEY_LENGTH);
+    return new KEMPreKeyPage.KeyLocation(startOffset, SERIALIZED_PREKEY_LENGTH);
+  }
+}
@@ -9,7 +9,10 @@ import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -20,7 +23,6 @@ import io.zonarosa.server.entities.KEMSignedPreKey;
 import io.zonarosa.server.identity.ServiceIdentifier;
 import io.zonarosa.server.metrics.MetricsUtil;
 import io.zonarosa.server.metrics.UserAgentTagUtil;
-import io.zonarosa.server.util.Futures;
 import io.zonarosa.server.util.Optionals;
 import reactor.core.publisher.Flux;
 import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
@@ -30,18 +32,22 @@ public class KeysManager {
   private static final String GET_KEYS_COUNTER_NAME = MetricsUtil.name(KeysManager.class, "getKeys");
 
   private final SingleUseECPreKeyStore ecPreKeys;
+  private final PagedSingleUseECPreKeyStore pagedEcPreKeys;
   private final PagedSingleUseKEMPreKeyStore pagedPqPreKeys;
   private final RepeatedUseECSignedPreKeyStore ecSignedPreKeys;
   private final RepeatedUseKEMSignedPreKeyStore pqLastResortKeys;
 
   private static final String  TAKE_PQ_NAME = MetricsUtil.name(KeysManager.class, "takePq");
+  private static final String  TAKE_EC_NAME = MetricsUtil.name(KeysManager.class, "takeEc");
 
   public KeysManager(
       final SingleUseECPreKeyStore ecPreKeys,
+      final PagedSingleUseECPreKeyStore pagedEcPreKeys,
       final PagedSingleUseKEMPreKeyStore pagedPqPreKeys,
       final RepeatedUseECSignedPreKeyStore ecSignedPreKeys,
       final RepeatedUseKEMSignedPreKeyStore pqLastResortKeys) {
     this.ecPreKeys = ecPreKeys;
+    this.pagedEcPreKeys = pagedEcPreKeys;
     this.pagedPqPreKeys = pagedPqPreKeys;
     this.ecSignedPreKeys = ecSignedPreKeys;
     this.pqLastResortKeys = pqLastResortKeys;
@@ -101,7 +107,10 @@ public class KeysManager {
 
   public CompletableFuture<Void> storeEcOneTimePreKeys(final UUID identifier, final byte deviceId,
       final List<ECPreKey> preKeys) {
-    return ecPreKeys.store(identifier, deviceId, preKeys);
+    // New keys always go to the paged store. Once the new page is in place, any keys left in the legacy store for this
+    // device are superseded and can be removed; until then, takers will prefer the new page anyway.
+    return pagedEcPreKeys.store(identifier, deviceId, preKeys)
+        .thenCompose(ignored -> ecPreKeys.delete(identifier, deviceId));
   }
 
   public CompletableFuture<Void> storeKemOneTimePreKeys(final UUID identifier, final byte deviceId,
@@ -112,7 +121,11 @@ public class KeysManager {
 
   @VisibleForTesting
   CompletableFuture<Optional<ECPreKey>> takeEC(final UUID identifier, final byte deviceId) {
-    return ecPreKeys.take(identifier, deviceId);
+    // Devices that haven't uploaded keys since the paged store was introduced may still have keys in the legacy store
+    return tagTakeEC(pagedEcPreKeys.take(identifier, deviceId), ECSource.PAGE)
+        .thenCompose(maybeSingleUsePreKey -> maybeSingleUsePreKey
+            .map(_ -> CompletableFuture.completedFuture(maybeSingleUsePreKey))
+            .orElseGet(() -> tagTakeEC(ecPreKeys.take(identifier, deviceId), ECSource.LEGACY)));
   }
 
   @VisibleForTesting
@@ -123,24 +136,41 @@ public class KeysManager {
             .orElseGet(() -> tagTakePQ(pqLastResortKeys.find(identifier, deviceId), PQSource.LAST_RESORT)));
   }
 
-  private enum PQSource {
+  private enum ECSource {
     PAGE,
-    LAST_RESORT
+    LEGACY
   }
-  private CompletableFuture<Optional<KEMSignedPreKey>> tagTakePQ(CompletableFuture<Optional<KEMSignedPreKey>> prekey, final PQSource source) {
+
+  private CompletableFuture<Optional<ECPreKey>> tagTakeEC(CompletableFuture<Optional<ECPreKey>> prekey, final ECSource source) {
     return prekey.thenApply(maybeSingleUsePreKey -> {
       final Optional<String> maybeSourceTag = maybeSingleUsePreKey
-          // If we found a PK, use this source tag
           .map(ignore -> source.name())
-          // If we didn't and this is our last resort, we didn't find a PK
-          .or(() -> source == PQSource.LAST_RESORT ? Optional.of("absent") : Optional.empty());
-      maybeSourceTag.ifPresent(sourceTag -> {
-        Metrics.counter(TAKE_PQ_NAME, "source", sourceTag).increment();
-      });
+          .or(() -> source == ECSource.LEGACY ? Optional.of("absent") : Optional.empty());
+      maybeSourceTag.ifPresent(sourceTag -> Metrics.counter(TAKE_EC_NAME, "source", sourceTag).increment());
       return maybeSingleUsePreKey;
     });
   }
 
+  private enum PQSource {
+    PAGE,
+    LAST_RESORT
+  }
+  private CompletableFuture<Optional<KEMSignedPreKey>> tagTakePQ(CompletableFuture<Optional<KEMSignedPreKey>> prekey, final PQSource source) {
+    return prekey.thenApply(maybeSingleUsePreKey -> recordTakePQ(maybeSingleUsePreKey, source));
+  }
+
+  private static Optional<KEMSignedPreKey> recordTakePQ(final Optional<KEMSignedPreKey> maybeSingleUsePreKey, final PQSource source) {
+    final Optional<String> maybeSourceTag = maybeSingleUsePreKey
+        // If we found a PK, use this source tag
+        .map(ignore -> source.name())
+        // If we didn't and this is our last resort, we didn't find a PK
+        .or(() -> source == PQSource.LAST_RESORT ? Optional.of("absent") : Optional.empty());
+    maybeSourceTag.ifPresent(sourceTag -> {
+      Metrics.counter(TAKE_PQ_NAME, "source", sourceTag).increment();
+    });
+    return maybeSingleUsePreKey;
+  }
+
   public CompletableFuture<Optional<KEMSignedPreKey>> getLastResort(final UUID identifier, final byte deviceId) {
     return pqLastResortKeys.find(identifier, deviceId);
   }
@@ -150,7 +180,10 @@ public class KeysManager {
   }
 
   public CompletableFuture<Integer> getEcCount(final UUID identifier, final byte deviceId) {
-    return ecPreKeys.getCount(identifier, deviceId);
+    return pagedEcPreKeys.getCount(identifier, deviceId)
+        .thenCompose(pagedCount -> pagedCount > 0
+            ? CompletableFuture.completedFuture(pagedCount)
+            : ecPreKeys.getCount(identifier, deviceId));
   }
 
   public CompletableFuture<Integer> getPqCount(final UUID identifier, final byte deviceId) {
@@ -160,6 +193,7 @@ public class KeysManager {
   public CompletableFuture<Void> deleteSingleUsePreKeys(final UUID identifier) {
     return CompletableFuture.allOf(
         ecPreKeys.delete(identifier),
+        pagedEcPreKeys.delete(identifier),
         pagedPqPreKeys.delete(identifier)
     );
   }
@@ -167,6 +201,7 @@ public class KeysManager {
   public CompletableFuture<Void> deleteSingleUsePreKeys(final UUID accountUuid, final byte deviceId) {
     return CompletableFuture.allOf(
         ecPreKeys.delete(accountUuid, deviceId),
+        pagedEcPreKeys.delete(accountUuid, deviceId),
         pagedPqPreKeys.delete(accountUuid, deviceId)
     );
   }
@@ -204,26 +239,81 @@ public class KeysManager {
       final byte deviceId,
       final ServiceIdentifier serviceIdentifier,
       final @Nullable String userAgent) {
+
+    return takeDevicePreKeys(List.of(deviceId), serviceIdentifier, userAgent)
+        .thenApply(devicePreKeys -> Optional.ofNullable(devicePreKeys.get(deviceId)));
+  }
+
+  /**
+   * Takes pre-keys for several devices associated with the same account/identity at once. Single-use keys are taken
+   * for all devices in parallel, while signed pre-keys and last-resort keys for all devices are fetched with one batched
+   * read per key type.
+   *
+   * @param deviceIds the identifiers of the devices for which to take pre-keys
+   * @param serviceIdentifier the identifier of the account/identity with which the devices are associated
+   * @param userAgent the user agent of the requester, if known
+   *
+   * @return a future that yields a map of device IDs to pre-keys; devices without a complete set of required pre-keys
+   * (for example, devices that were removed while keys were being fetched) are absent from the map
+   */
+  public CompletableFuture<Map<Byte, DevicePreKeys>> takeDevicePreKeys(
+      final List<Byte> deviceIds,
+      final ServiceIdentifier serviceIdentifier,
+      final @Nullable String userAgent) {
+
     final UUID uuid = serviceIdentifier.uuid();
-    return Futures.zipWith(
-            this.takeEC(uuid, deviceId),
-            this.getEcSignedPreKey(uuid, deviceId),
-            this.takePQ(uuid, deviceId),
-            (maybeUnsignedEcPreKey, maybeSignedEcPreKey, maybePqPreKey) -> {
-
-              Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
-                      UserAgentTagUtil.getPlatformTag(userAgent),
-                      Tag.of("identityType", serviceIdentifier.identityType().name()),
-                      Tag.of("oneTimeEcKeyAvailable", String.valueOf(maybeUnsignedEcPreKey.isPresent())),
-                      Tag.of("signedEcKeyAvailable", String.valueOf(maybeSignedEcPreKey.isPresent())),
-                      Tag.of("pqKeyAvailable", String.valueOf(maybePqPreKey.isPresent()))))
-                  .increment();
-
-              // The pq prekey and signed EC prekey should never be null for an existing account. This should only happen
-              // if the account or device has been removed and the read was split, so we can return empty in those cases.
-              return Optionals.zipWith(maybeSignedEcPreKey, maybePqPreKey, (signedEcPreKey, pqPreKey) ->
-                  new DevicePreKeys(signedEcPreKey, maybeUnsignedEcPreKey, pqPreKey));
-            })
-        .toCompletableFuture();
+
+    final Map<Byte, CompletableFuture<Optional<ECPreKey>>> ecPreKeyFutures = new HashMap<>();
+    final Map<Byte, CompletableFuture<Optional<KEMSignedPreKey>>> pqPreKeyFutures = new HashMap<>();
+
+    for (final byte deviceId : deviceIds) {
+      ecPreKeyFutures.put(deviceId, takeEC(uuid, deviceId));
+      pqPreKeyFutures.put(deviceId, tagTakePQ(pagedPqPreKeys.take(uuid, deviceId), PQSource.PAGE));
+    }
+
+    // Last-resort keys are fetched for every device up front rather than after a device's paged KEM keys turn out to be
+    // exhausted; a single extra batched read is cheaper than an additional round trip on the critical path
+    final CompletableFuture<Map<Byte, ECSignedPreKey>> ecSignedPreKeysFuture =
+        ecSignedPreKeys.find(uuid, ecPreKeyFutures.keySet());
+
+    final CompletableFuture<Map<Byte, KEMSignedPreKey>> lastResortKeysFuture =
+        pqLastResortKeys.find(uuid, pqPreKeyFutures.keySet());
+
+    final List<CompletableFuture<?>> allFutures = new ArrayList<>();
+    allFutures.addAll(ecPreKeyFutures.values());
+    allFutures.addAll(pqPreKeyFutures.values());
+    allFutures.add(ecSignedPreKeysFuture);
+    allFutures.add(lastResortKeysFuture);
+
+    return CompletableFuture.allOf(allFutures.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> {
+          final Map<Byte, ECSignedPreKey> signedEcPreKeys = ecSignedPreKeysFuture.join();
+          final Map<Byte, KEMSignedPreKey> lastResortKeys = lastResortKeysFuture.join();
+
+          final Map<Byte, DevicePreKeys> devicePreKeys = new HashMap<>();
+
+          ecPreKeyFutures.forEach((deviceId, ecPreKeyFuture) -> {
+            final Optional<ECPreKey> maybeUnsignedEcPreKey = ecPreKeyFuture.join();
+            final Optional<ECSignedPreKey> maybeSignedEcPreKey = Optional.ofNullable(signedEcPreKeys.get(deviceId));
+            final Optional<KEMSignedPreKey> maybePqPreKey = pqPreKeyFutures.get(deviceId).join()
+                .or(() -> recordTakePQ(Optional.ofNullable(lastResortKeys.get(deviceId)), PQSource.LAST_RESORT));
+
+            Metrics.counter(GET_KEYS_COUNTER_NAME, Tags.of(
+                    UserAgentTagUtil.getPlatformTag(userAgent),
+                    Tag.of("identityType", serviceIdentifier.identityType().name()),
+                    Tag.of("oneTimeEcKeyAvailable", String.valueOf(maybeUnsignedEcPreKey.isPresent())),
+                    Tag.of("signedEcKeyAvailable", String.valueOf(maybeSignedEcPreKey.isPresent())),
+                    Tag.of("pqKeyAvailable", String.valueOf(maybePqPreKey.isPresent()))))
+                .increment();
+
+            // The pq prekey and signed EC prekey should never be null for an existing account. This should only happen
+            // if the account or device has been removed and the read was split, so we can return empty in those cases.
+            Optionals.zipWith(maybeSignedEcPreKey, maybePqPreKey, (signedEcPreKey, pqPreKey) ->
+                    new DevicePreKeys(signedEcPreKey, maybeUnsignedEcPreKey, pqPreKey))
+                .ifPresent(preKeys -> devicePreKeys.put(deviceId, preKeys));
+          });
+
+          return devicePreKeys;
+        });
   }
 }
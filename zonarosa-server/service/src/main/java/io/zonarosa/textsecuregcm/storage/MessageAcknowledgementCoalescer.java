@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.storage;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import io.zonarosa.server.entities.MessageProtos;
+
+/// A message acknowledgement coalescer collects acknowledgements for persisted messages in a single device's queue over
+/// a short window and deletes them from DynamoDB with batch requests instead of one `DeleteItem` request per message.
+/// A batch is flushed as soon as it reaches the DynamoDB batch size limit or when the coalescing window elapses,
+/// whichever happens first.
+///
+/// Coalescers are intended to be used by a single message stream (and therefore a single connection) and are not
+/// shared between destination devices.
+class MessageAcknowledgementCoalescer {
+
+  private final MessagesDynamoDb messagesDynamoDb;
+  private final UUID accountIdentifier;
+  private final Device device;
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final Duration coalescingWindow;
+
+  private List<PendingDeletion> pendingDeletions = new ArrayList<>();
+
+  @Nullable
+  private ScheduledFuture<?> scheduledFlush;
+
+  private static final DistributionSummary BATCH_SIZE_DISTRIBUTION = DistributionSummary
+      .builder(name(MessageAcknowledgementCoalescer.class, "batchSize"))
+      .publishPercentileHistogram(true)
+      .register(Metrics.globalRegistry);
+
+  private record PendingDeletion(MessageProtos.Envelope message, CompletableFuture<Void> future) {
+  }
+
+  MessageAcknowledgementCoalescer(final MessagesDynamoDb messagesDynamoDb,
+      final UUID accountIdentifier,
+      final Device device,
+      final ScheduledExecutorService scheduledExecutorService,
+      final Duration coalescingWindow) {
+
+    this.messagesDynamoDb = messagesDynamoDb;
+    this.accountIdentifier = accountIdentifier;
+    this.device = device;
+    this.scheduledExecutorService = scheduledExecutorService;
+    this.coalescingWindow = coalescingWindow;
+  }
+
+  /// Enqueues the given persisted message for deletion.
+  ///
+  /// @param message the message to delete
+  ///
+  /// @return a future that completes when the batch containing the given message has been deleted
+  synchronized CompletableFuture<Void> delete(final MessageProtos.Envelope message) {
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    pendingDeletions.add(new PendingDeletion(message, future));
+
+    if (pendingDeletions.size() >= AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE) {
+      flush();
+    } else if (scheduledFlush == null) {
+      scheduledFlush =
+          scheduledExecutorService.schedule(this::flush, coalescingWindow.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    return future;
+  }
+
+  /// Immediately deletes all pending messages regardless of whether the coalescing window has elapsed.
+  synchronized void flush() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+
+    if (pendingDeletions.isEmpty()) {
+      return;
+    }
+
+    final List<PendingDeletion> batch = pendingDeletions;
+    pendingDeletions = new ArrayList<>();
+
+    BATCH_SIZE_DISTRIBUTION.record(batch.size());
+
+    messagesDynamoDb.deleteMessages(accountIdentifier, device,
+            batch.stream().map(PendingDeletion::message).toList())
+        .whenComplete((_, throwable) -> batch.forEach(pendingDeletion -> {
+          if (throwable != null) {
+            pendingDeletion.future().completeExceptionally(throwable);
+          } else {
+            pendingDeletion.future().complete(null);
+          }
+        }));
+  }
+}
@@ -36,6 +36,8 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import org.reactivestreams.Publisher;
@@ -56,6 +58,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 
 /**
  * Manages short-term storage of messages in Redis. Messages are frequently delivered to their destination and deleted
@@ -131,6 +134,7 @@ public class MessagesCache {
   private final MessagesCacheGetQueuesToPersistScript getQueuesToPersistScript;
   private final MessagesCacheRemoveRecipientViewFromMrmDataScript removeRecipientViewFromMrmDataScript;
   private final MessagesCacheUnlockQueueScript unlockQueueScript;
+  private final MessagesCacheClearPersistedMessagesMarkerScript clearPersistedMessagesMarkerScript;
 
   private final Timer insertTimer = Metrics.timer(name(MessagesCache.class, "insert"));
   private final Timer insertSharedMrmPayloadTimer = Metrics.timer(name(MessagesCache.class, "insertSharedMrmPayload"));
@@ -164,8 +168,21 @@ public class MessagesCache {
   static final Duration MAX_EPHEMERAL_MESSAGE_DELAY = Duration.ofSeconds(10);
 
   private static final String GET_FLUX_NAME = MetricsUtil.name(MessagesCache.class, "get");
+  private static final String PAGE_STALL_TIMER_NAME = name(MessagesCache.class, "pageStall");
+  private static final String PREFETCH_TAG_NAME = "prefetch";
   private static final int PAGE_SIZE = 100;
 
+  @VisibleForTesting
+  static final String PERSISTED_MESSAGES_MARKER_EXPERIMENT_NAME = "persistedMessagesMarker";
+
+  @VisibleForTesting
+  static final String PREFETCH_PAGES_EXPERIMENT_NAME = "messagesCachePrefetchPages";
+
+  // The number of pages whose envelopes (including shared MRM data) are resolved ahead of delivery when prefetching is
+  // enabled
+  @VisibleForTesting
+  static final int PREFETCH_PAGES = 2;
+
   private static final int REMOVE_MRM_RECIPIENT_VIEW_CONCURRENCY = 8;
 
   private static final Logger logger = LoggerFactory.getLogger(MessagesCache.class);
@@ -191,7 +208,8 @@ public class MessagesCache {
         new MessagesCacheRemoveQueueScript(redisCluster),
         new MessagesCacheGetQueuesToPersistScript(redisCluster),
         new MessagesCacheRemoveRecipientViewFromMrmDataScript(redisCluster),
-        new MessagesCacheUnlockQueueScript(redisCluster)
+        new MessagesCacheUnlockQueueScript(redisCluster),
+        new MessagesCacheClearPersistedMessagesMarkerScript(redisCluster)
     );
   }
 
@@ -206,7 +224,9 @@ public class MessagesCache {
                 final MessagesCacheRemoveQueueScript removeQueueScript,
                 final MessagesCacheGetQueuesToPersistScript getQueuesToPersistScript,
                 final MessagesCacheRemoveRecipientViewFromMrmDataScript removeRecipientViewFromMrmDataScript,
-                final MessagesCacheUnlockQueueScript unlockQueueScript) throws IOException {
+                final MessagesCacheUnlockQueueScript unlockQueueScript,
+                final MessagesCacheClearPersistedMessagesMarkerScript clearPersistedMessagesMarkerScript)
+      throws IOException {
 
     this.redisCluster = redisCluster;
     this.clock = clock;
@@ -224,6 +244,7 @@ public class MessagesCache {
     this.getQueuesToPersistScript = getQueuesToPersistScript;
     this.removeRecipientViewFromMrmDataScript = removeRecipientViewFromMrmDataScript;
     this.unlockQueueScript = unlockQueueScript;
+    this.clearPersistedMessagesMarkerScript = clearPersistedMessagesMarkerScript;
   }
 
   public CompletableFuture<Boolean> insert(final UUID messageGuid,
@@ -312,8 +333,12 @@ public class MessagesCache {
     final long earliestAllowableEphemeralTimestamp =
         clock.millis() - MAX_EPHEMERAL_MESSAGE_DELAY.toMillis();
 
-    final Flux<MessageProtos.Envelope> allMessages = getAllMessages(destinationUuid, destinationDevice,
-        earliestAllowableEphemeralTimestamp, PAGE_SIZE)
+    final boolean prefetchPages =
+        experimentEnrollmentManager.isEnrolled(destinationUuid, PREFETCH_PAGES_EXPERIMENT_NAME);
+
+    final Flux<MessageProtos.Envelope> allMessages = (prefetchPages
+        ? getAllMessages(destinationUuid, destinationDevice, earliestAllowableEphemeralTimestamp, PAGE_SIZE, PREFETCH_PAGES)
+        : getAllMessages(destinationUuid, destinationDevice, earliestAllowableEphemeralTimestamp, PAGE_SIZE))
         .publish()
         // We expect exactly three subscribers to this base flux:
         // 1. the websocket that delivers messages to clients
@@ -376,7 +401,38 @@ public class MessagesCache {
   Flux<MessageProtos.Envelope> getAllMessages(final UUID destinationUuid, final byte destinationDevice,
       final long earliestAllowableEphemeralTimestamp, final int pageSize) {
 
-    // fetch messages by page
+    return deliverPages(getMessagePages(destinationUuid, destinationDevice, pageSize),
+        queueItems -> getEnvelopes(queueItems, destinationDevice, earliestAllowableEphemeralTimestamp),
+        false,
+        Queues.XS_BUFFER_SIZE);
+  }
+
+  /**
+   * Fetches all messages in a queue like {@link #getAllMessages(UUID, byte, long, int)}, but also resolves the
+   * envelopes of up to {@code prefetchPages} pages (including fetching shared multi-recipient message data) ahead of
+   * the page currently being delivered, so the next page is ready to go as soon as the current one has been delivered.
+   * Pages are read ahead from Redis exactly as they are without prefetching.
+   */
+  @VisibleForTesting
+  Flux<MessageProtos.Envelope> getAllMessages(final UUID destinationUuid, final byte destinationDevice,
+      final long earliestAllowableEphemeralTimestamp, final int pageSize, final int prefetchPages) {
+
+    final Flux<List<MessageProtos.Envelope>> resolvedPages =
+        getMessagePages(destinationUuid, destinationDevice, pageSize)
+            .flatMapSequential(queueItems -> getEnvelopes(queueItems, destinationDevice,
+                earliestAllowableEphemeralTimestamp).collectList(), prefetchPages);
+
+    return deliverPages(resolvedPages, Flux::fromIterable, true, 1);
+  }
+
+  /**
+   * Fetches pages of queue items from Redis. Pages are fetched one at a time (each page starts after the last message
+   * of the previous one), but fetching runs ahead of delivery: {@code publishOn} keeps requesting pages until its queue
+   * is full, regardless of how quickly downstream subscribers consume them.
+   */
+  private Flux<List<byte[]>> getMessagePages(final UUID destinationUuid, final byte destinationDevice,
+      final int pageSize) {
+
     return getNextMessagePage(destinationUuid, destinationDevice, -1, pageSize)
         .expand(queueItemsAndLastMessageId -> {
           // expand() is breadth-first, so each page will be published in order
@@ -389,39 +445,69 @@ public class MessagesCache {
         .limitRate(1)
         // we want to ensure we don’t accidentally block the Lettuce/netty i/o executors
         .publishOn(messageDeliveryScheduler)
-        .map(Pair::first)
-        .concatMap(queueItems -> {
+        .map(Pair::first);
+  }
 
-          final List<Mono<MessageProtos.Envelope>> envelopes = new ArrayList<>(queueItems.size() / 2);
+  private <P> Flux<MessageProtos.Envelope> deliverPages(final Flux<P> pages,
+      final Function<P, Flux<MessageProtos.Envelope>> envelopesForPage,
+      final boolean prefetch,
+      final int pagePrefetch) {
 
-          for (int i = 0; i < queueItems.size() - 1; i += 2) {
-            try {
-              final MessageProtos.Envelope message = parseEnvelope(queueItems.get(i));
+    final Timer pageStallTimer = Timer.builder(PAGE_STALL_TIMER_NAME)
+        .tags(PREFETCH_TAG_NAME, String.valueOf(prefetch))
+        .register(Metrics.globalRegistry);
 
-              final Mono<MessageProtos.Envelope> messageMono;
-              if (message.hasSharedMrmKey()) {
+    return Flux.defer(() -> {
+      // The time at which we finished delivering the previous page and started waiting for the next one; the time
+      // between finishing one page and starting the next is time the pipeline spent stalled waiting for the next page
+      final AtomicLong pageDeliveredNanos = new AtomicLong(-1);
 
-                if (isStaleEphemeralMessage(message, earliestAllowableEphemeralTimestamp)) {
-                  // skip fetching content for message that will be discarded
-                  messageMono = Mono.just(message.toBuilder().clearSharedMrmKey().build());
-                  skippedStaleEphemeralMrmCounter.increment();
-                } else {
-                  messageMono = getMessageWithSharedMrmData(message, destinationDevice);
-                }
+      return pages.concatMap(page -> {
+        final long previousPageDeliveredNanos = pageDeliveredNanos.get();
 
-              } else {
-                messageMono = Mono.just(message);
-              }
+        if (previousPageDeliveredNanos >= 0) {
+          pageStallTimer.record(System.nanoTime() - previousPageDeliveredNanos, TimeUnit.NANOSECONDS);
+        }
 
-              envelopes.add(messageMono);
+        return envelopesForPage.apply(page)
+            .doOnComplete(() -> pageDeliveredNanos.set(System.nanoTime()));
+      }, pagePrefetch);
+    });
+  }
 
-            } catch (InvalidProtocolBufferException e) {
-              logger.warn("Failed to parse envelope", e);
-            }
+  private Flux<MessageProtos.Envelope> getEnvelopes(final List<byte[]> queueItems,
+      final byte destinationDevice,
+      final long earliestAllowableEphemeralTimestamp) {
+
+    final List<Mono<MessageProtos.Envelope>> envelopes = new ArrayList<>(queueItems.size() / 2);
+
+    for (int i = 0; i < queueItems.size() - 1; i += 2) {
+      try {
+        final MessageProtos.Envelope message = parseEnvelope(queueItems.get(i));
+
+        final Mono<MessageProtos.Envelope> messageMono;
+        if (message.hasSharedMrmKey()) {
+
+          if (isStaleEphemeralMessage(message, earliestAllowableEphemeralTimestamp)) {
+            // skip fetching content for message that will be discarded
+            messageMono = Mono.just(message.toBuilder().clearSharedMrmKey().build());
+            skippedStaleEphemeralMrmCounter.increment();
+          } else {
+            messageMono = getMessageWithSharedMrmData(message, destinationDevice);
           }
 
-          return Flux.mergeSequential(envelopes);
-        });
+        } else {
+          messageMono = Mono.just(message);
+        }
+
+        envelopes.add(messageMono);
+
+      } catch (InvalidProtocolBufferException e) {
+        logger.warn("Failed to parse envelope", e);
+      }
+    }
+
+    return Flux.mergeSequential(envelopes);
   }
 
   /**
@@ -443,7 +529,7 @@ public class MessagesCache {
         // the message might be addressed to the account's PNI, so use the service ID from the envelope
         ServiceIdentifier.valueOf(mrmMessage.getDestinationServiceId()), destinationDevice);
 
-    return Mono.from(redisCluster.withBinaryCluster(
+    return Mono.from(redisCluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.BULK,
             conn -> conn.reactive().hmget(key, "data".getBytes(StandardCharsets.UTF_8), sharedMrmViewKey)
                 .collectList()
                 .publishOn(messageDeliveryScheduler)))
@@ -588,8 +674,8 @@ public class MessagesCache {
 
     final Timer.Sample sample = Timer.start();
 
-    final List<byte[]> messages = redisCluster.withBinaryCluster(connection ->
-        connection.sync().zrange(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
+    final List<byte[]> messages = redisCluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.BULK,
+        connection -> connection.sync().zrange(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
 
     final Flux<MessageProtos.Envelope> allMessages = parseAndFetchMrms(Flux.fromIterable(messages), destinationDevice);
 
@@ -713,6 +799,50 @@ public class MessagesCache {
     unlockQueueScript.execute(accountUuid, deviceId);
   }
 
+  /**
+   * Indicates whether readers of the given account's message queues should consult the "persisted messages" marker
+   * before reading persisted messages from DynamoDB.
+   */
+  boolean shouldUsePersistedMessagesMarker(final UUID accountUuid) {
+    return experimentEnrollmentManager.isEnrolled(accountUuid, PERSISTED_MESSAGES_MARKER_EXPERIMENT_NAME);
+  }
+
+  /**
+   * Sets a marker indicating that messages for the given device may have been persisted to DynamoDB. Each call stores
+   * a new, random marker value so that readers can detect that the marker was set again after they read it.
+   *
+   * @param accountUuid the account identifier for the destination queue
+   * @param deviceId the device identifier for the destination queue
+   * @param timeToLive the time after which the marker should expire; this must be at least as long as the time to live
+   *                   of the persisted messages themselves
+   */
+  void setPersistedMessagesMarker(final UUID accountUuid, final byte deviceId, final Duration timeToLive) {
+    final byte[] markerValue = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+    redisCluster.useBinaryCluster(connection -> connection.sync()
+        .psetex(getPersistedMessagesMarkerKey(accountUuid, deviceId), timeToLive.toMillis(), markerValue));
+  }
+
+  /**
+   * Returns the current value of the "persisted messages" marker for the given device.
+   *
+   * @return the value of the marker, or an empty Mono if the device has no messages in DynamoDB
+   */
+  Mono<byte[]> getPersistedMessagesMarker(final UUID accountUuid, final byte deviceId) {
+    return Mono.from(redisCluster.withBinaryCluster(connection ->
+        connection.reactive().get(getPersistedMessagesMarkerKey(accountUuid, deviceId))));
+  }
+
+  /**
+   * Clears the "persisted messages" marker for the given device if it still has the given value; callers should only
+   * clear the marker after observing that no messages for the device remain in DynamoDB.
+   *
+   * @return a Mono that emits {@code true} if the marker was cleared or {@code false} otherwise
+   */
+  Mono<Boolean> clearPersistedMessagesMarker(final UUID accountUuid, final byte deviceId, final byte[] markerValue) {
+    return clearPersistedMessagesMarkerScript.execute(accountUuid, deviceId, markerValue);
+  }
+
   static byte[] getMessageQueueKey(final UUID accountUuid, final byte deviceId) {
     return ("user_queue::{" + accountUuid.toString() + "::" + deviceId + "}").getBytes(StandardCharsets.UTF_8);
   }
@@ -737,6 +867,10 @@ public class MessagesCache {
     return ("user_queue_persisting::{" + accountUuid + "::" + deviceId + "}").getBytes(StandardCharsets.UTF_8);
   }
 
+  static byte[] getPersistedMessagesMarkerKey(final UUID accountUuid, final byte deviceId) {
+    return ("user_queue_persisted::{" + accountUuid + "::" + deviceId + "}").getBytes(StandardCharsets.UTF_8);
+  }
+
   static byte[] getSharedMrmViewKey(final ServiceId serviceId, final byte deviceId) {
     return getSharedMrmViewKey(serviceId.toServiceIdFixedWidthBinary(), deviceId);
   }
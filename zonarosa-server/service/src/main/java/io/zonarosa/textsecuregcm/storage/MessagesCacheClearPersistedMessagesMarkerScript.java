@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.storage;
+
+import io.lettuce.core.ScriptOutputType;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import io.zonarosa.server.redis.ClusterLuaScript;
+import io.zonarosa.server.redis.FaultTolerantRedisClusterClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Clears a device's "persisted messages" marker if and only if the marker has not changed since it was last read.
+ *
+ * @see MessagesCache#getPersistedMessagesMarker(UUID, byte)
+ */
+class MessagesCacheClearPersistedMessagesMarkerScript {
+
+  private final ClusterLuaScript clearPersistedMessagesMarkerScript;
+
+  MessagesCacheClearPersistedMessagesMarkerScript(final FaultTolerantRedisClusterClient redisCluster)
+      throws IOException {
+
+    this.clearPersistedMessagesMarkerScript = ClusterLuaScript.fromResource(redisCluster,
+        "lua/clear_persisted_messages_marker.lua", ScriptOutputType.INTEGER,
+        ClusterLuaScript.FunctionFlag.ALLOW_OOM);
+  }
+
+  /**
+   * Clears the persisted messages marker for the given device if its value matches the given expected value.
+   *
+   * @return a Mono that emits {@code true} if the marker was cleared or {@code false} if the marker was absent or had
+   * been replaced
+   */
+  Mono<Boolean> execute(final UUID accountIdentifier, final byte deviceId, final byte[] expectedMarkerValue) {
+    final List<byte[]> keys = List.of(
+        MessagesCache.getPersistedMessagesMarkerKey(accountIdentifier, deviceId) // persistedMessagesMarkerKey
+    );
+
+    return clearPersistedMessagesMarkerScript.executeBinaryReactive(keys, List.of(expectedMarkerValue))
+        .next()
+        .map(result -> ((long) result) > 0);
+  }
+}
@@ -25,7 +25,8 @@ class MessagesCacheGetItemsScript {
   private final ClusterLuaScript getItemsScript;
 
   MessagesCacheGetItemsScript(FaultTolerantRedisClusterClient redisCluster) throws IOException {
-    this.getItemsScript = ClusterLuaScript.fromResource(redisCluster, "lua/get_items.lua", ScriptOutputType.OBJECT);
+    this.getItemsScript = ClusterLuaScript.fromResource(redisCluster, "lua/get_items.lua", ScriptOutputType.OBJECT,
+        FaultTolerantRedisClusterClient.Lane.BULK, ClusterLuaScript.FunctionFlag.NO_WRITES);
   }
 
   Mono<List<byte[]>> execute(final UUID destinationUuid, final byte destinationDevice,
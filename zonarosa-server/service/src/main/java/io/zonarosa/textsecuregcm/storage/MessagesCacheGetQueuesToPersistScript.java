@@ -25,7 +25,7 @@ class MessagesCacheGetQueuesToPersistScript {
 
   MessagesCacheGetQueuesToPersistScript(final FaultTolerantRedisClusterClient redisCluster) throws IOException {
     this.getQueuesToPersistScript = ClusterLuaScript.fromResource(redisCluster, "lua/get_queues_to_persist.lua",
-        ScriptOutputType.MULTI);
+        ScriptOutputType.MULTI, ClusterLuaScript.FunctionFlag.ALLOW_OOM);
   }
 
   List<String> execute(final int slot, final Instant maxTime, final int limit) {
@@ -34,7 +34,7 @@ class MessagesCacheInsertSharedMultiRecipientPayloadAndViewsScript {
       final ScheduledExecutorService retryExecutor) throws IOException {
 
     this.script = ClusterLuaScript.fromResource(redisCluster, "lua/insert_shared_multirecipient_message_data.lua",
-        ScriptOutputType.INTEGER);
+        ScriptOutputType.INTEGER, FaultTolerantRedisClusterClient.Lane.BULK);
 
     this.retryExecutor = retryExecutor;
   }
@@ -28,7 +28,7 @@ class MessagesCacheRemoveByGuidScript {
       final ScheduledExecutorService retryExecutor) throws IOException {
 
     this.removeByGuidScript = ClusterLuaScript.fromResource(redisCluster, "lua/remove_item_by_guid.lua",
-        ScriptOutputType.OBJECT);
+        ScriptOutputType.OBJECT, ClusterLuaScript.FunctionFlag.ALLOW_OOM);
     this.retryExecutor = retryExecutor;
   }
 
@@ -31,7 +31,7 @@ class MessagesCacheRemoveQueueScript {
 
   MessagesCacheRemoveQueueScript(FaultTolerantRedisClusterClient redisCluster) throws IOException {
     this.removeQueueScript = ClusterLuaScript.fromResource(redisCluster, "lua/remove_queue.lua",
-        ScriptOutputType.MULTI);
+        ScriptOutputType.MULTI, ClusterLuaScript.FunctionFlag.ALLOW_OOM);
   }
 
   Mono<List<byte[]>> execute(final UUID destinationUuid, final byte destinationDevice,
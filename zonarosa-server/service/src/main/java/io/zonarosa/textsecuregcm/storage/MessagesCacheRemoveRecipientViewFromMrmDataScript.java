@@ -27,7 +27,8 @@ class MessagesCacheRemoveRecipientViewFromMrmDataScript {
 
   MessagesCacheRemoveRecipientViewFromMrmDataScript(final FaultTolerantRedisClusterClient redisCluster) throws IOException {
     this.removeRecipientViewFromMrmDataScript = ClusterLuaScript.fromResource(redisCluster,
-        "lua/remove_recipient_view_from_mrm_data.lua", ScriptOutputType.INTEGER);
+        "lua/remove_recipient_view_from_mrm_data.lua", ScriptOutputType.INTEGER,
+        ClusterLuaScript.FunctionFlag.ALLOW_OOM);
   }
 
   Mono<Long> execute(final Collection<byte[]> keysCollection, final ServiceIdentifier serviceIdentifier,
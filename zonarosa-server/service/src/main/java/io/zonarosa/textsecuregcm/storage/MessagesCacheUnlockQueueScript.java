@@ -30,7 +30,8 @@ class MessagesCacheUnlockQueueScript {
 
   MessagesCacheUnlockQueueScript(final FaultTolerantRedisClusterClient redisCluster) throws IOException {
     this.unlockQueueScript =
-        ClusterLuaScript.fromResource(redisCluster, "lua/unlock_queue.lua", ScriptOutputType.STATUS);
+        ClusterLuaScript.fromResource(redisCluster, "lua/unlock_queue.lua", ScriptOutputType.STATUS,
+            ClusterLuaScript.FunctionFlag.ALLOW_OOM);
   }
 
   void execute(final UUID accountIdentifier, final byte deviceId) {
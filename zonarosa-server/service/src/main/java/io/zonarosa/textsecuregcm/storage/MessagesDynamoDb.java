@@ -11,35 +11,66 @@ import static io.zonarosa.server.metrics.MetricsUtil.name;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import io.zonarosa.server.entities.MessageProtos;
 import io.zonarosa.server.experiment.ExperimentEnrollmentManager;
 import io.zonarosa.server.util.AttributeValues;
+import io.zonarosa.server.util.ExceptionUtils;
+import io.zonarosa.server.util.UUIDUtil;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
+/**
+ * Stores persisted messages in DynamoDB. Messages are normally stored as one item per message, but accounts enrolled in
+ * the {@value #PACKED_PAGES_EXPERIMENT_NAME} experiment have batches of persisted messages packed into a single
+ * {@link PackedMessagePage} item instead. Readers handle both formats transparently. Note that once an account has
+ * packed pages, it must remain enrolled until those pages have been drained or expired; batch deletions for unenrolled
+ * accounts do not look for messages in packed pages.
+ */
 public class MessagesDynamoDb extends AbstractDynamoDbStore {
 
   @VisibleForTesting
@@ -54,11 +85,83 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   @VisibleForTesting
   static final int MAY_HAVE_URGENT_MESSAGES_QUERY_LIMIT = 20;
 
+  @VisibleForTesting
+  static final String PACKED_PAGES_EXPERIMENT_NAME = "packedMessagePages";
+
   private static final String KEY_TTL = "E";
   private static final String KEY_ENVELOPE_BYTES = "EB";
 
+  private static final String KEY_PAGE_ENVELOPES = "PE";
+  private static final String KEY_PAGE_MESSAGE_GUIDS = "PG";
+  private static final String KEY_PAGE_ACKNOWLEDGED = "PA";
+
+  // Leave plenty of room under DynamoDB's 400 KiB item size limit for keys and other attributes
+  @VisibleForTesting
+  static final int MAX_PAGE_BYTES = 256 * 1024;
+
+  @VisibleForTesting
+  static final int MAX_PAGE_MESSAGES = 100;
+
+  // The maximum number of pages we'll examine when searching for the pages that contain specific messages
+  private static final int MAX_PAGE_LOOKUP_PAGES = 16;
+
+  // The number of times we'll try to update a page's "acknowledged" bitmap before giving up
+  private static final int MAX_PAGE_UPDATE_ATTEMPTS = 5;
+
+  // Pages in which at least this fraction of messages have been acknowledged are eligible for compaction
+  @VisibleForTesting
+  static final double PAGE_COMPACTION_THRESHOLD = 0.5;
+
+  // The number of times we'll retry unprocessed items in a batch deletion before falling back to deleting messages
+  // individually
+  @VisibleForTesting
+  static final int MAX_BATCH_DELETE_ATTEMPTS = 3;
+
   private final Timer storeTimer = timer(name(getClass(), "store"));
 
+  private static final Counter BATCH_DELETE_MESSAGES_COUNTER =
+      Metrics.counter(name(MessagesDynamoDb.class, "batchDeleteMessages"));
+
+  private static final Counter BATCH_DELETE_FALLBACK_COUNTER =
+      Metrics.counter(name(MessagesDynamoDb.class, "batchDeleteFallback"));
+
+  private static final Counter STORE_PAGE_COUNTER = Metrics.counter(name(MessagesDynamoDb.class, "storePage"));
+
+  private static final Counter ACKNOWLEDGE_PAGED_MESSAGE_COUNTER =
+      Metrics.counter(name(MessagesDynamoDb.class, "acknowledgePagedMessage"));
+
+  private static final Counter COMPACT_PAGE_COUNTER = Metrics.counter(name(MessagesDynamoDb.class, "compactPage"));
+
+  // Sort keys are compared as unsigned byte strings, just as DynamoDB compares binary sort keys
+  private static final Comparator<AttributeValue> SORT_KEY_COMPARATOR =
+      (a, b) -> Arrays.compareUnsigned(a.b().asByteArray(), b.b().asByteArray());
+
+  /**
+   * A packed page's key and acknowledgement state, and optionally its serialized envelopes
+   */
+  private record PageDescriptor(AttributeValue sortKey,
+                                List<UUID> messageGuids,
+                                AttributeValue serializedAcknowledged,
+                                @Nullable byte[] envelopes) {
+
+    static PageDescriptor fromItem(final Map<String, AttributeValue> item) {
+      return new PageDescriptor(item.get(KEY_SORT),
+          PackedMessagePage.deserializeMessageGuids(item.get(KEY_PAGE_MESSAGE_GUIDS).b().asByteArray()),
+          item.get(KEY_PAGE_ACKNOWLEDGED),
+          item.containsKey(KEY_PAGE_ENVELOPES) ? item.get(KEY_PAGE_ENVELOPES).b().asByteArray() : null);
+    }
+
+    BitSet acknowledged() {
+      return PackedMessagePage.deserializeAcknowledged(serializedAcknowledged.b().asByteArray());
+    }
+  }
+
+  /**
+   * The location of a specific, unacknowledged message within a packed page
+   */
+  private record PageEntry(PageDescriptor page, int index) {
+  }
+
   private final DynamoDbAsyncClient dbAsyncClient;
   private final String tableName;
   private final Duration timeToLive;
@@ -80,9 +183,64 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     this.experimentEnrollmentManager = experimentEnrollmentManager;
   }
 
+  /**
+   * @return the time after which persisted messages expire, measured from their server timestamp
+   */
+  Duration getTimeToLive() {
+    return timeToLive;
+  }
+
   public void store(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
       final Device destinationDevice) {
-    storeTimer.record(() -> writeInBatches(messages, (messageBatch) -> storeBatch(messageBatch, destinationAccountUuid, destinationDevice)));
+    storeTimer.record(() -> {
+      if (isPackedPagesEnabled(destinationAccountUuid)) {
+        writeInBatches(PackedMessagePage.partition(messages, MAX_PAGE_BYTES, MAX_PAGE_MESSAGES),
+            pageBatch -> storePages(pageBatch, destinationAccountUuid, destinationDevice));
+      } else {
+        writeInBatches(messages, (messageBatch) -> storeBatch(messageBatch, destinationAccountUuid, destinationDevice));
+      }
+    });
+  }
+
+  private void storePages(final List<List<MessageProtos.Envelope>> pages, final UUID destinationAccountUuid,
+      final Device destinationDevice) {
+    if (pages.size() > DYNAMO_DB_MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException("Maximum batch size of " + DYNAMO_DB_MAX_BATCH_SIZE + " exceeded with " + pages.size() + " pages");
+    }
+
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
+    final List<WriteRequest> writeItems = pages.stream()
+        .map(page -> WriteRequest.builder().putRequest(PutRequest.builder()
+            .item(buildPageItem(partitionKey, page))
+            .build()).build())
+        .toList();
+
+    executeTableWriteItemsUntilComplete(Map.of(tableName, writeItems));
+    STORE_PAGE_COUNTER.increment(writeItems.size());
+  }
+
+  private Map<String, AttributeValue> buildPageItem(final AttributeValue partitionKey,
+      final List<MessageProtos.Envelope> messages) {
+
+    // A page's sort key is the sort key of the last message in the page. That means that every message in a page sorts
+    // at or before the page itself, and so we can find the page that holds a message by searching forward from the
+    // message's own sort key.
+    final AttributeValue sortKey = messages.stream()
+        .map(message -> convertSortKey(message.getServerTimestamp(), getMessageGuid(message)))
+        .max(SORT_KEY_COMPARATOR)
+        .orElseThrow();
+
+    // Pages don't get local index entries; they're not addressable by any single message GUID
+    return Map.of(
+        KEY_PARTITION, partitionKey,
+        KEY_SORT, sortKey,
+        KEY_TTL, AttributeValues.fromLong(messages.stream().mapToLong(this::getTtlForMessage).max().orElseThrow()),
+        KEY_PAGE_ENVELOPES, AttributeValues.fromByteArray(
+            PackedMessagePage.serialize(messages.stream().map(EnvelopeUtil::compress).toList())),
+        KEY_PAGE_MESSAGE_GUIDS, AttributeValues.fromByteArray(
+            PackedMessagePage.serializeMessageGuids(messages.stream().map(MessagesDynamoDb::getMessageGuid).toList())),
+        KEY_PAGE_ACKNOWLEDGED, AttributeValues.fromByteArray(
+            PackedMessagePage.serializeAcknowledged(new BitSet(), messages.size())));
   }
 
   private void storeBatch(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid,
@@ -145,15 +303,14 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     final QueryRequest queryRequest = queryRequestBuilder.build();
 
     return dbAsyncClient.queryPaginator(queryRequest).items()
-        .map(message -> {
+        .flatMapIterable(item -> {
           try {
-            return convertItemToEnvelope(message, experimentEnrollmentManager);
+            return convertItemToEnvelopes(item, experimentEnrollmentManager);
           } catch (final InvalidProtocolBufferException e) {
             logger.error("Failed to parse envelope", e);
-            return null;
+            return Collections.emptyList();
           }
-        })
-        .filter(Predicate.not(Objects::isNull));
+        });
   }
 
   public CompletableFuture<Optional<MessageProtos.Envelope>> deleteMessage(final UUID destinationAccountUuid,
@@ -164,19 +321,454 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
         .returnValues(ReturnValue.ALL_OLD);
 
     return dbAsyncClient.deleteItem(deleteItemRequest.build())
-        .thenApplyAsync(deleteItemResponse -> {
+        .thenComposeAsync(deleteItemResponse -> {
           if (deleteItemResponse.attributes() != null && deleteItemResponse.attributes().containsKey(KEY_PARTITION)) {
             try {
-              return Optional.of(convertItemToEnvelope(deleteItemResponse.attributes(), experimentEnrollmentManager));
+              return CompletableFuture.completedFuture(
+                  Optional.of(convertItemToEnvelope(deleteItemResponse.attributes(), experimentEnrollmentManager)));
             } catch (final InvalidProtocolBufferException e) {
               logger.error("Failed to parse envelope", e);
+              return CompletableFuture.completedFuture(Optional.empty());
             }
           }
 
-          return Optional.empty();
+          // The message wasn't stored as an individual item, but may be part of a packed page
+          return isPackedPagesEnabled(destinationAccountUuid)
+              ? deletePagedMessage(destinationAccountUuid, destinationDevice, messageUuid, serverTimestamp)
+              : CompletableFuture.completedFuture(Optional.empty());
         }, messageDeletionExecutor);
   }
 
+  private CompletableFuture<Optional<MessageProtos.Envelope>> deletePagedMessage(final UUID destinationAccountUuid,
+      final Device destinationDevice, final UUID messageUuid, final long serverTimestamp) {
+
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
+
+    return findPageEntries(partitionKey, convertSortKey(serverTimestamp, messageUuid), Set.of(messageUuid), true)
+        .thenCompose(pageEntriesByGuid -> {
+          final PageEntry pageEntry = pageEntriesByGuid.get(messageUuid);
+
+          if (pageEntry == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+          }
+
+          return acknowledgePageEntries(partitionKey, pageEntriesByGuid, convertSortKey(serverTimestamp, messageUuid), 1)
+              .thenApply(acknowledgedCount -> {
+                if (acknowledgedCount == 0) {
+                  // Somebody else acknowledged the message first
+                  return Optional.empty();
+                }
+
+                try {
+                  assert pageEntry.page().envelopes() != null;
+
+                  return Optional.of(EnvelopeUtil.expand(
+                      PackedMessagePage.deserialize(pageEntry.page().envelopes()).get(pageEntry.index()),
+                      experimentEnrollmentManager));
+                } catch (final InvalidProtocolBufferException e) {
+                  logger.error("Failed to parse envelope", e);
+                  return Optional.empty();
+                }
+              });
+        });
+  }
+
+  /**
+   * Deletes the given messages from the destination device's persisted queue using {@code BatchWriteItem} requests.
+   * Unlike {@link #deleteMessage(UUID, Device, UUID, long)}, batch deletions cannot return the deleted items, and so
+   * callers learn only that the messages are no longer present. Items left unprocessed after
+   * {@value #MAX_BATCH_DELETE_ATTEMPTS} batch attempts are deleted individually. For accounts with packed message
+   * pages, messages found in pages are marked as acknowledged within their pages instead.
+   *
+   * @param destinationAccountUuid the identifier of the account that owns the destination queue
+   * @param destinationDevice the device that owns the destination queue
+   * @param messages the messages to delete; must all belong to the identified device's queue
+   *
+   * @return a future that completes when all given messages have been deleted
+   */
+  public CompletableFuture<Void> deleteMessages(final UUID destinationAccountUuid,
+      final Device destinationDevice,
+      final Collection<MessageProtos.Envelope> messages) {
+
+    if (messages.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    if (!isPackedPagesEnabled(destinationAccountUuid)) {
+      return deleteItems(destinationAccountUuid, destinationDevice, messages);
+    }
+
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
+
+    final AttributeValue startSortKey = messages.stream()
+        .map(message -> convertSortKey(message.getServerTimestamp(), getMessageGuid(message)))
+        .min(SORT_KEY_COMPARATOR)
+        .orElseThrow();
+
+    final Set<UUID> messageGuids = messages.stream()
+        .map(MessagesDynamoDb::getMessageGuid)
+        .collect(Collectors.toSet());
+
+    return findPageEntries(partitionKey, startSortKey, messageGuids, false)
+        .thenCompose(pageEntriesByGuid -> {
+          // Anything we didn't find in a page is either an individual item or already gone; deleting a missing item is
+          // harmless
+          final List<MessageProtos.Envelope> individualMessages = messages.stream()
+              .filter(message -> !pageEntriesByGuid.containsKey(getMessageGuid(message)))
+              .toList();
+
+          return CompletableFuture.allOf(
+              deleteItems(destinationAccountUuid, destinationDevice, individualMessages),
+              acknowledgePageEntries(partitionKey, pageEntriesByGuid, startSortKey, 1));
+        });
+  }
+
+  private CompletableFuture<Void> deleteItems(final UUID destinationAccountUuid,
+      final Device destinationDevice,
+      final Collection<MessageProtos.Envelope> messages) {
+
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid, destinationDevice);
+    final List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+
+    writeInBatches(messages, batch -> {
+      final List<WriteRequest> deleteRequests = batch.stream()
+          .map(message -> WriteRequest.builder()
+              .deleteRequest(DeleteRequest.builder()
+                  .key(Map.of(KEY_PARTITION, partitionKey,
+                      KEY_SORT, convertSortKey(message.getServerTimestamp(), UUID.fromString(message.getServerGuid()))))
+                  .build())
+              .build())
+          .toList();
+
+      BATCH_DELETE_MESSAGES_COUNTER.increment(deleteRequests.size());
+      batchFutures.add(deleteBatch(destinationAccountUuid, destinationDevice, deleteRequests, 1));
+    });
+
+    return CompletableFuture.allOf(batchFutures.toArray(CompletableFuture[]::new));
+  }
+
+  private CompletableFuture<Void> deleteBatch(final UUID destinationAccountUuid,
+      final Device destinationDevice,
+      final List<WriteRequest> deleteRequests,
+      final int attempt) {
+
+    return dbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder()
+            .requestItems(Map.of(tableName, deleteRequests))
+            .build())
+        .thenCompose(response -> {
+          final List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(tableName, List.of());
+
+          if (unprocessed.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          if (attempt < MAX_BATCH_DELETE_ATTEMPTS) {
+            return deleteBatch(destinationAccountUuid, destinationDevice, unprocessed, attempt + 1);
+          }
+
+          // Give up on batching and fall back to the same single-item deletions we'd use for individual
+          // acknowledgements
+          BATCH_DELETE_FALLBACK_COUNTER.increment(unprocessed.size());
+
+          return CompletableFuture.allOf(unprocessed.stream()
+              .map(writeRequest -> {
+                final ByteBuffer sortKey = writeRequest.deleteRequest().key().get(KEY_SORT).b().asByteBuffer();
+                final long serverTimestamp = sortKey.getLong();
+                final UUID messageGuid = new UUID(sortKey.getLong(), sortKey.getLong());
+
+                return deleteMessage(destinationAccountUuid, destinationDevice, messageGuid, serverTimestamp);
+              })
+              .toArray(CompletableFuture[]::new));
+        });
+  }
+
+  /**
+   * Rewrites the given packed page so that it contains only unacknowledged messages. Pages that change while being
+   * compacted are left alone; they'll be reconsidered the next time one of their messages is acknowledged.
+   */
+  private CompletableFuture<Void> compactPage(final AttributeValue partitionKey, final AttributeValue sortKey) {
+    final Map<String, AttributeValue> key = Map.of(KEY_PARTITION, partitionKey, KEY_SORT, sortKey);
+
+    return dbAsyncClient.getItem(GetItemRequest.builder()
+            .tableName(tableName)
+            .key(key)
+            .consistentRead(true)
+            .build())
+        .thenCompose(getItemResponse -> {
+          if (!getItemResponse.hasItem() || !getItemResponse.item().containsKey(KEY_PAGE_ENVELOPES)) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          final PageDescriptor page = PageDescriptor.fromItem(getItemResponse.item());
+          final BitSet acknowledged = page.acknowledged();
+          final List<MessageProtos.Envelope> envelopes;
+
+          try {
+            assert page.envelopes() != null;
+            envelopes = PackedMessagePage.deserialize(page.envelopes());
+          } catch (final InvalidProtocolBufferException e) {
+            logger.error("Failed to parse message page", e);
+            return CompletableFuture.completedFuture(null);
+          }
+
+          final List<MessageProtos.Envelope> unacknowledgedEnvelopes = IntStream.range(0, envelopes.size())
+              .filter(i -> !acknowledged.get(i))
+              .mapToObj(envelopes::get)
+              .toList();
+
+          if (unacknowledgedEnvelopes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          final Map<String, AttributeValue> compactedPage = buildPageItem(partitionKey, unacknowledgedEnvelopes);
+          final Map<String, String> attributeNames = Map.of("#ack", KEY_PAGE_ACKNOWLEDGED);
+          final Map<String, AttributeValue> attributeValues = Map.of(":ack", page.serializedAcknowledged());
+
+          final List<TransactWriteItem> writeItems = new ArrayList<>(2);
+
+          if (compactedPage.get(KEY_SORT).equals(sortKey)) {
+            // The last message in the page is still unacknowledged, so the compacted page replaces the original in place
+            writeItems.add(TransactWriteItem.builder().put(Put.builder()
+                .tableName(tableName)
+                .item(compactedPage)
+                .conditionExpression("#ack = :ack")
+                .expressionAttributeNames(attributeNames)
+                .expressionAttributeValues(attributeValues)
+                .build()).build());
+          } else {
+            writeItems.add(TransactWriteItem.builder().put(Put.builder()
+                .tableName(tableName)
+                .item(compactedPage)
+                .build()).build());
+
+            writeItems.add(TransactWriteItem.builder().delete(Delete.builder()
+                .tableName(tableName)
+                .key(key)
+                .conditionExpression("#ack = :ack")
+                .expressionAttributeNames(attributeNames)
+                .expressionAttributeValues(attributeValues)
+                .build()).build());
+          }
+
+          return dbAsyncClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                  .transactItems(writeItems)
+                  .build())
+              .thenRun(COMPACT_PAGE_COUNTER::increment)
+              // The page changed while we were compacting it; we'll try again on the next acknowledgement
+              .exceptionally(ExceptionUtils.exceptionallyHandler(TransactionCanceledException.class, _ -> null));
+        });
+  }
+
+  /**
+   * Searches forward from the given sort key for packed pages that contain the given messages.
+   *
+   * @return a future that yields the locations of any unacknowledged messages found in packed pages
+   */
+  private CompletableFuture<Map<UUID, PageEntry>> findPageEntries(final AttributeValue partitionKey,
+      final AttributeValue startSortKey,
+      final Set<UUID> messageGuids,
+      final boolean includeEnvelopes) {
+
+    final Map<String, String> attributeNames = new HashMap<>(Map.of(
+        "#part", KEY_PARTITION,
+        "#sort", KEY_SORT,
+        "#guids", KEY_PAGE_MESSAGE_GUIDS,
+        "#ack", KEY_PAGE_ACKNOWLEDGED));
+
+    if (includeEnvelopes) {
+      attributeNames.put("#envelopes", KEY_PAGE_ENVELOPES);
+    }
+
+    final QueryRequest queryRequest = QueryRequest.builder()
+        .tableName(tableName)
+        .consistentRead(true)
+        .keyConditionExpression("#part = :part AND #sort >= :sort")
+        .filterExpression("attribute_exists(#guids)")
+        .projectionExpression(includeEnvelopes ? "#sort, #guids, #ack, #envelopes" : "#sort, #guids, #ack")
+        .expressionAttributeNames(attributeNames)
+        .expressionAttributeValues(Map.of(":part", partitionKey, ":sort", startSortKey))
+        .limit(RESULT_SET_CHUNK_SIZE)
+        .build();
+
+    final Set<UUID> remainingMessageGuids = new HashSet<>(messageGuids);
+    final Map<UUID, PageEntry> pageEntriesByGuid = new HashMap<>();
+
+    return Flux.from(dbAsyncClient.queryPaginator(queryRequest).items())
+        .take(MAX_PAGE_LOOKUP_PAGES)
+        .map(PageDescriptor::fromItem)
+        .doOnNext(page -> {
+          final BitSet acknowledged = page.acknowledged();
+
+          for (int i = 0; i < page.messageGuids().size(); i++) {
+            final UUID messageGuid = page.messageGuids().get(i);
+
+            if (remainingMessageGuids.remove(messageGuid) && !acknowledged.get(i)) {
+              pageEntriesByGuid.put(messageGuid, new PageEntry(page, i));
+            }
+          }
+        })
+        .takeUntil(_ -> remainingMessageGuids.isEmpty())
+        .then(Mono.fromSupplier(() -> pageEntriesByGuid))
+        .toFuture();
+  }
+
+  /**
+   * Marks the given messages as acknowledged in the pages in which they were found.
+   *
+   * @param startSortKey a sort key no greater than that of any of the given messages, from which the messages can be
+   * found again if their pages change
+   *
+   * @return a future that yields the number of messages acknowledged by this call; messages acknowledged by somebody
+   * else in the meantime are not counted
+   */
+  private CompletableFuture<Integer> acknowledgePageEntries(final AttributeValue partitionKey,
+      final Map<UUID, PageEntry> pageEntriesByGuid,
+      final AttributeValue startSortKey,
+      final int attempt) {
+
+    final Map<AttributeValue, List<UUID>> messageGuidsBySortKey = pageEntriesByGuid.entrySet().stream()
+        .collect(Collectors.groupingBy(entry -> entry.getValue().page().sortKey(),
+            Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+
+    final Map<AttributeValue, PageDescriptor> pagesBySortKey = pageEntriesByGuid.values().stream()
+        .map(PageEntry::page)
+        .collect(Collectors.toMap(PageDescriptor::sortKey, page -> page, (a, _) -> a));
+
+    final List<CompletableFuture<Integer>> futures = messageGuidsBySortKey.entrySet().stream()
+        .map(entry -> acknowledgePageEntries(partitionKey, pagesBySortKey.get(entry.getKey()), entry.getValue(),
+            startSortKey, attempt))
+        .toList();
+
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .thenApply(_ -> futures.stream().mapToInt(CompletableFuture::join).sum());
+  }
+
+  /**
+   * Marks the given messages as acknowledged in the given page, removing the page entirely if all of its messages have
+   * been acknowledged or compacting it if at least {@value #PAGE_COMPACTION_THRESHOLD} of them have. Updates are
+   * conditional on the page's acknowledgement state not having changed since it was read. If it has, the page may have
+   * been updated in place or compacted under a new sort key, and so the messages are located again from
+   * {@code startSortKey} and the update retried.
+   */
+  private CompletableFuture<Integer> acknowledgePageEntries(final AttributeValue partitionKey,
+      final PageDescriptor page,
+      final Collection<UUID> messageGuids,
+      final AttributeValue startSortKey,
+      final int attempt) {
+
+    final BitSet acknowledged = page.acknowledged();
+    final int previouslyAcknowledgedCount = acknowledged.cardinality();
+
+    for (final UUID messageGuid : messageGuids) {
+      final int index = page.messageGuids().indexOf(messageGuid);
+
+      if (index >= 0) {
+        acknowledged.set(index);
+      }
+    }
+
+    final int newlyAcknowledgedCount = acknowledged.cardinality() - previouslyAcknowledgedCount;
+
+    if (newlyAcknowledgedCount == 0) {
+      return CompletableFuture.completedFuture(0);
+    }
+
+    final Map<String, AttributeValue> key = Map.of(KEY_PARTITION, partitionKey, KEY_SORT, page.sortKey());
+    final boolean fullyAcknowledged = acknowledged.cardinality() == page.messageGuids().size();
+    final CompletableFuture<?> writeFuture;
+
+    if (fullyAcknowledged) {
+      writeFuture = dbAsyncClient.deleteItem(DeleteItemRequest.builder()
+          .tableName(tableName)
+          .key(key)
+          .conditionExpression("#ack = :ack")
+          .expressionAttributeNames(Map.of("#ack", KEY_PAGE_ACKNOWLEDGED))
+          .expressionAttributeValues(Map.of(":ack", page.serializedAcknowledged()))
+          .build());
+    } else {
+      writeFuture = dbAsyncClient.updateItem(UpdateItemRequest.builder()
+          .tableName(tableName)
+          .key(key)
+          .updateExpression("SET #ack = :newAck")
+          .conditionExpression("#ack = :ack")
+          .expressionAttributeNames(Map.of("#ack", KEY_PAGE_ACKNOWLEDGED))
+          .expressionAttributeValues(Map.of(
+              ":ack", page.serializedAcknowledged(),
+              ":newAck", AttributeValues.fromByteArray(
+                  PackedMessagePage.serializeAcknowledged(acknowledged, page.messageGuids().size()))))
+          .build());
+    }
+
+    final boolean shouldCompact =
+        !fullyAcknowledged && acknowledged.cardinality() >= page.messageGuids().size() * PAGE_COMPACTION_THRESHOLD;
+
+    return writeFuture
+        .thenCompose(_ -> {
+          ACKNOWLEDGE_PAGED_MESSAGE_COUNTER.increment(newlyAcknowledgedCount);
+
+          if (!shouldCompact) {
+            return CompletableFuture.completedFuture(newlyAcknowledgedCount);
+          }
+
+          return compactPage(partitionKey, page.sortKey())
+              .handle((_, throwable) -> {
+                if (throwable != null) {
+                  // Compaction is an optimization, and the acknowledgement itself has already succeeded
+                  logger.warn("Failed to compact message page", throwable);
+                }
+
+                return newlyAcknowledgedCount;
+              });
+        })
+        .exceptionallyCompose(throwable -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof ConditionalCheckFailedException
+              && attempt < MAX_PAGE_UPDATE_ATTEMPTS) {
+
+            // Somebody else changed the page since we read it. It may have been updated in place, removed, or compacted
+            // under a new sort key, so look for the messages again instead of re-reading the page at its old key.
+            return findPageEntries(partitionKey, startSortKey, new HashSet<>(messageGuids), false)
+                .thenCompose(pageEntriesByGuid ->
+                    acknowledgePageEntries(partitionKey, pageEntriesByGuid, startSortKey, attempt + 1));
+          }
+
+          return CompletableFuture.failedFuture(throwable);
+        });
+  }
+
+  private boolean isPackedPagesEnabled(final UUID destinationAccountUuid) {
+    return experimentEnrollmentManager.isEnrolled(destinationAccountUuid, PACKED_PAGES_EXPERIMENT_NAME);
+  }
+
+  /**
+   * Converts a stored item to the envelopes it contains. Individual message items yield a single envelope; packed pages
+   * yield all of their unacknowledged envelopes in the order in which they were stored.
+   */
+  @VisibleForTesting
+  static List<MessageProtos.Envelope> convertItemToEnvelopes(final Map<String, AttributeValue> item,
+      final ExperimentEnrollmentManager experimentEnrollmentManager) throws InvalidProtocolBufferException {
+
+    if (!item.containsKey(KEY_PAGE_ENVELOPES)) {
+      return List.of(convertItemToEnvelope(item, experimentEnrollmentManager));
+    }
+
+    final List<MessageProtos.Envelope> envelopes =
+        PackedMessagePage.deserialize(item.get(KEY_PAGE_ENVELOPES).b().asByteArray());
+
+    final BitSet acknowledged =
+        PackedMessagePage.deserializeAcknowledged(item.get(KEY_PAGE_ACKNOWLEDGED).b().asByteArray());
+
+    final List<MessageProtos.Envelope> unacknowledgedEnvelopes =
+        new ArrayList<>(envelopes.size() - acknowledged.cardinality());
+
+    for (int i = 0; i < envelopes.size(); i++) {
+      if (!acknowledged.get(i)) {
+        unacknowledgedEnvelopes.add(EnvelopeUtil.expand(envelopes.get(i), experimentEnrollmentManager));
+      }
+    }
+
+    return unacknowledgedEnvelopes;
+  }
+
   @VisibleForTesting
   static MessageProtos.Envelope convertItemToEnvelope(final Map<String, AttributeValue> item,
       final ExperimentEnrollmentManager experimentEnrollmentManager) throws InvalidProtocolBufferException {
@@ -189,6 +781,13 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     return message.getServerTimestamp() / 1000 + timeToLive.getSeconds();
   }
 
+  private static UUID getMessageGuid(final MessageProtos.Envelope message) {
+    // Envelopes read back from packed pages are still in their "compressed" form
+    return message.hasServerGuidBinary()
+        ? UUIDUtil.fromByteString(message.getServerGuidBinary())
+        : UUID.fromString(message.getServerGuid());
+  }
+
   private static AttributeValue convertPartitionKey(final UUID destinationAccountUuid, final Device destinationDevice) {
     final ByteBuffer byteBuffer = ByteBuffer.allocate(24);
     byteBuffer.putLong(destinationAccountUuid.getMostSignificantBits());
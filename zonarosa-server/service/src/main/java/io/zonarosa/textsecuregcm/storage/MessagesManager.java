@@ -10,6 +10,7 @@ import com.google.protobuf.ByteString;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -54,11 +56,16 @@ public class MessagesManager {
   private static final String MAY_HAVE_MESSAGES_COUNTER_NAME =
       MetricsUtil.name(MessagesManager.class, "mayHaveMessages");
 
+  // How long message streams should wait to collect acknowledgements for persisted messages before deleting them from
+  // DynamoDB in a single batch
+  private static final Duration ACKNOWLEDGEMENT_COALESCING_WINDOW = Duration.ofMillis(20);
+
   private final MessagesDynamoDb messagesDynamoDb;
   private final MessagesCache messagesCache;
   private final RedisMessageAvailabilityManager redisMessageAvailabilityManager;
   private final ReportMessageManager reportMessageManager;
   private final ExecutorService messageDeletionExecutor;
+  private final ScheduledExecutorService acknowledgementCoalescingExecutor;
   private final Clock clock;
 
   public MessagesManager(
@@ -67,6 +74,7 @@ public class MessagesManager {
       final RedisMessageAvailabilityManager redisMessageAvailabilityManager,
       final ReportMessageManager reportMessageManager,
       final ExecutorService messageDeletionExecutor,
+      final ScheduledExecutorService acknowledgementCoalescingExecutor,
       final Clock clock) {
 
     this.messagesDynamoDb = messagesDynamoDb;
@@ -74,6 +82,7 @@ public class MessagesManager {
     this.redisMessageAvailabilityManager = redisMessageAvailabilityManager;
     this.reportMessageManager = reportMessageManager;
     this.messageDeletionExecutor = messageDeletionExecutor;
+    this.acknowledgementCoalescingExecutor = acknowledgementCoalescingExecutor;
     this.clock = clock;
   }
 
@@ -229,7 +238,8 @@ public class MessagesManager {
   }
 
   public MessageStream getMessages(final UUID destinationUuid, final Device destinationDevice) {
-    return new RedisDynamoDbMessageStream(messagesDynamoDb, messagesCache, redisMessageAvailabilityManager, destinationUuid, destinationDevice);
+    return new RedisDynamoDbMessageStream(messagesDynamoDb, messagesCache, redisMessageAvailabilityManager,
+        destinationUuid, destinationDevice, acknowledgementCoalescingExecutor, ACKNOWLEDGEMENT_COALESCING_WINDOW);
   }
 
   private Publisher<Envelope> getMessagesForDevice(UUID destinationUuid, Device destinationDevice,
@@ -275,6 +285,12 @@ public class MessagesManager {
 
     messagesDynamoDb.store(messages, destinationUuid, destinationDevice);
 
+    // Readers may skip DynamoDB entirely if this marker is absent, so it must be set after messages land in DynamoDB
+    // (so readers that clear the marker after finding DynamoDB empty can't race with this write) and before the cached
+    // copies are removed
+    messagesCache.setPersistedMessagesMarker(destinationUuid, destinationDevice.getId(),
+        messagesDynamoDb.getTimeToLive());
+
     final List<UUID> messageGuids = messages.stream().map(message -> UUID.fromString(message.getServerGuid()))
         .collect(Collectors.toList());
     int messagesRemovedFromCache = 0;
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+package io.zonarosa.server.storage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import io.zonarosa.server.entities.MessageProtos;
+
+/**
+ * A packed message page holds a batch of persisted envelopes for a single device in a single DynamoDB item. Envelopes
+ * are stored as a sequence of length-prefixed, serialized envelopes; a parallel list of message GUIDs and an
+ * "acknowledged" bitmap allow individual messages to be located and marked as deleted without parsing or rewriting the
+ * envelopes themselves.
+ *
+ * @see MessagesDynamoDb
+ */
+class PackedMessagePage {
+
+  static final byte FORMAT = 1;
+
+  // Serialized pages start with a 4 byte magic constant, followed by 3 bytes of 0s and then the format byte
+  static final int HEADER_MAGIC = 0x5A52504D;
+  static final int HEADER_SIZE = 8;
+  // Serialize bigendian to produce the serialized page header
+  private static final long HEADER = ((long) HEADER_MAGIC) << 32L | (long) FORMAT;
+
+  private static final int GUID_LENGTH = 16;
+
+  private PackedMessagePage() {}
+
+  /**
+   * Serialize the given envelopes into a single page
+   *
+   * @param envelopes the envelopes to serialize, in queue order
+   * @return the serialized page
+   */
+  static byte[] serialize(final List<MessageProtos.Envelope> envelopes) {
+    if (envelopes.isEmpty()) {
+      throw new IllegalArgumentException("Envelopes cannot be empty");
+    }
+
+    final List<byte[]> serializedEnvelopes = envelopes.stream().map(MessageProtos.Envelope::toByteArray).toList();
+    final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE +
+        serializedEnvelopes.stream().mapToInt(serializedEnvelope -> Integer.BYTES + serializedEnvelope.length).sum());
+
+    buffer.putLong(HEADER);
+
+    for (final byte[] serializedEnvelope : serializedEnvelopes) {
+      buffer.putInt(serializedEnvelope.length);
+      buffer.put(serializedEnvelope);
+    }
+
+    return buffer.array();
+  }
+
+  /**
+   * Deserialize all envelopes in a serialized page
+   *
+   * @param page the serialized page
+   * @return the envelopes in the page, in the order in which they were serialized
+   * @throws InvalidProtocolBufferException if the page or any envelope within the page could not be parsed
+   */
+  static List<MessageProtos.Envelope> deserialize(final byte[] page) throws InvalidProtocolBufferException {
+    final ByteBuffer buffer = ByteBuffer.wrap(page);
+
+    if (buffer.remaining() < HEADER_SIZE || buffer.getLong() != HEADER) {
+      throw new InvalidProtocolBufferException("Unknown message page header");
+    }
+
+    final List<MessageProtos.Envelope> envelopes = new ArrayList<>();
+
+    while (buffer.hasRemaining()) {
+      if (buffer.remaining() < Integer.BYTES) {
+        throw new InvalidProtocolBufferException("Truncated message page");
+      }
+
+      final int length = buffer.getInt();
+
+      if (length < 0 || length > buffer.remaining()) {
+        throw new InvalidProtocolBufferException("Invalid envelope length in message page: " + length);
+      }
+
+      envelopes.add(MessageProtos.Envelope.parseFrom(buffer.slice(buffer.position(), length)));
+      buffer.position(buffer.position() + length);
+    }
+
+    return envelopes;
+  }
+
+  /**
+   * Serialize the GUIDs of the messages in a page as a sequence of 16-byte UUIDs
+   *
+   * @param messageGuids the GUIDs to serialize, in the same order as the envelopes in the page
+   * @return the serialized GUIDs
+   */
+  static byte[] serializeMessageGuids(final List<UUID> messageGuids) {
+    final ByteBuffer buffer = ByteBuffer.allocate(GUID_LENGTH * messageGuids.size());
+
+    for (final UUID messageGuid : messageGuids) {
+      buffer.putLong(messageGuid.getMostSignificantBits());
+      buffer.putLong(messageGuid.getLeastSignificantBits());
+    }
+
+    return buffer.array();
+  }
+
+  static List<UUID> deserializeMessageGuids(final byte[] serializedMessageGuids) {
+    if (serializedMessageGuids.length % GUID_LENGTH != 0) {
+      throw new IllegalArgumentException("Unexpected message GUID list length: " + serializedMessageGuids.length);
+    }
+
+    final ByteBuffer buffer = ByteBuffer.wrap(serializedMessageGuids);
+    final List<UUID> messageGuids = new ArrayList<>(serializedMessageGuids.length / GUID_LENGTH);
+
+    while (buffer.hasRemaining()) {
+      messageGuids.add(new UUID(buffer.getLong(), buffer.getLong()));
+    }
+
+    return messageGuids;
+  }
+
+  /**
+   * Serialize an "acknowledged" bitmap for a page with the given number of messages. Unlike
+   * {@link BitSet#toByteArray()}, the serialized form always has enough bytes to represent every message in the page.
+   *
+   * @param acknowledged the set of acknowledged message indices
+   * @param messageCount the number of messages in the page
+   * @return the serialized bitmap
+   */
+  static byte[] serializeAcknowledged(final BitSet acknowledged, final int messageCount) {
+    return Arrays.copyOf(acknowledged.toByteArray(), (messageCount + 7) / 8);
+  }
+
+  static BitSet deserializeAcknowledged(final byte[] serializedAcknowledged) {
+    return BitSet.valueOf(serializedAcknowledged);
+  }
+
+  /**
+   * Splits the given envelopes into groups that may each be stored in a single page
+   *
+   * @param envelopes the envelopes to partition, in queue order
+   * @param maxPageBytes the maximum total serialized size of envelopes in a single page; a single envelope larger than
+   *                     this limit will be placed in a page by itself
+   * @param maxPageMessages the maximum number of envelopes in a single page
+   * @return a list of groups of envelopes, preserving the order of the given envelopes
+   */
+  static List<List<MessageProtos.Envelope>> partition(final List<MessageProtos.Envelope> envelopes,
+      final int maxPageBytes,
+      final int maxPageMessages) {
+
+    final List<List<MessageProtos.Envelope>> pages = new ArrayList<>();
+
+    List<MessageProtos.Envelope> currentPage = new ArrayList<>();
+    int currentPageBytes = 0;
+
+    for (final MessageProtos.Envelope envelope : envelopes) {
+      final int envelopeBytes = Integer.BYTES + envelope.getSerializedSize();
+
+      if (!currentPage.isEmpty() &&
+          (currentPage.size() >= maxPageMessages || currentPageBytes + envelopeBytes > maxPageBytes)) {
+
+        pages.add(currentPage);
+        currentPage = new ArrayList<>();
+        currentPageBytes = 0;
+      }
+
+      currentPage.add(envelope);
+      currentPageBytes += envelopeBytes;
+    }
+
+    if (!currentPage.isEmpty()) {
+      pages.add(currentPage);
+    }
+
+    return pages;
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.storage;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+import static io.zonarosa.server.storage.AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.zonarosa.libzonarosa.protocol.InvalidKeyException;
+import io.zonarosa.server.entities.ECPreKey;
+import io.zonarosa.server.util.AttributeValues;
+import io.zonarosa.server.util.ExceptionUtils;
+import io.zonarosa.server.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+/**
+ * @implNote This an analog of {@link SingleUseECPreKeyStore} that bundles prekeys into immutable "pages" in the same
+ * manner as {@link PagedSingleUseKEMPreKeyStore}. Because serialized EC pre-keys are small, pages are stored inline in
+ * the page descriptor rather than in an object store. Each device has a single page at a time; taking a key atomically
+ * advances the page's index and returns the key at the previous index, so concurrent takers never contend for the same
+ * key and never need to retry.
+ * @see SingleUseECPreKeyStore
+ * @see PagedSingleUseKEMPreKeyStore
+ */
+public class PagedSingleUseECPreKeyStore {
+
+  private static final Logger log = LoggerFactory.getLogger(PagedSingleUseECPreKeyStore.class);
+
+  private final DynamoDbAsyncClient dynamoDbAsyncClient;
+  private final String tableName;
+
+  private final Timer getKeyCountTimer = Metrics.timer(name(getClass(), "getCount"));
+  private final Timer storeKeyBatchTimer = Metrics.timer(name(getClass(), "storeKeyBatch"));
+  private final Timer deleteForDeviceTimer = Metrics.timer(name(getClass(), "deleteForDevice"));
+  private final Timer deleteForAccountTimer = Metrics.timer(name(getClass(), "deleteForAccount"));
+
+  final DistributionSummary availableKeyCountDistributionSummary = DistributionSummary
+      .builder(name(getClass(), "availableKeyCount"))
+      .register(Metrics.globalRegistry);
+
+  private final String takeKeyTimerName = name(getClass(), "takeKey");
+  private static final String KEY_PRESENT_TAG_NAME = "keyPresent";
+
+  static final String KEY_ACCOUNT_UUID = "U";
+  static final String KEY_DEVICE_ID = "D";
+  static final String ATTR_PAGE = "P";
+  static final String ATTR_PAGE_IDX = "I";
+  static final String ATTR_PAGE_NUM_KEYS = "N";
+  static final String ATTR_PAGE_FORMAT_VERSION = "F";
+
+  public PagedSingleUseECPreKeyStore(final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName) {
+    this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+    this.tableName = tableName;
+  }
+
+  /**
+   * Stores a batch of single-use pre-keys for a specific device. All previously-stored keys for the device are replaced
+   * by the new keys in a single write.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId   the identifier for the device within the given account/identity
+   * @param preKeys    a collection of single-use pre-keys to store for the target device
+   * @return a future that completes when the given collection of pre-keys has replaced any previously-stored keys
+   */
+  public CompletableFuture<Void> store(final UUID identifier, final byte deviceId, final List<ECPreKey> preKeys) {
+    if (preKeys.isEmpty()) {
+      return delete(identifier, deviceId);
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    final List<ECPreKey> sorted = preKeys.stream().sorted(Comparator.comparing(ECPreKey::keyId)).toList();
+
+    return dynamoDbAsyncClient.putItem(PutItemRequest.builder()
+            .tableName(tableName)
+            .item(Map.of(
+                KEY_ACCOUNT_UUID, AttributeValues.fromUUID(identifier),
+                KEY_DEVICE_ID, AttributeValues.fromInt(deviceId),
+                ATTR_PAGE, AttributeValues.fromByteBuffer(ECPreKeyPage.serialize(ECPreKeyPage.FORMAT, sorted)),
+                ATTR_PAGE_IDX, AttributeValues.fromInt(0),
+                ATTR_PAGE_NUM_KEYS, AttributeValues.fromInt(sorted.size()),
+                ATTR_PAGE_FORMAT_VERSION, AttributeValues.fromInt(ECPreKeyPage.FORMAT)))
+            .build())
+        .thenRun(() -> sample.stop(storeKeyBatchTimer));
+  }
+
+  /**
+   * Attempts to retrieve a single-use pre-key for a specific device. Keys may only be returned by this method at most
+   * once; once the key is returned, it is removed from the key store and subsequent calls to this method will never
+   * return the same key.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId   the identifier for the device within the given account/identity
+   * @return a future that yields a single-use pre-key if one is available or empty if no single-use pre-keys are
+   * available for the target device
+   */
+  public CompletableFuture<Optional<ECPreKey>> take(final UUID identifier, final byte deviceId) {
+    final Timer.Sample sample = Timer.start();
+
+    return dynamoDbAsyncClient.updateItem(UpdateItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                KEY_ACCOUNT_UUID, AttributeValues.fromUUID(identifier),
+                KEY_DEVICE_ID, AttributeValues.fromInt(deviceId)))
+            .updateExpression("SET #index = #index + :one")
+            .conditionExpression("#id = :id AND #index < #numkeys")
+            .expressionAttributeNames(Map.of(
+                "#id", KEY_ACCOUNT_UUID,
+                "#index", ATTR_PAGE_IDX,
+                "#numkeys", ATTR_PAGE_NUM_KEYS))
+            .expressionAttributeValues(Map.of(
+                ":one", AttributeValues.n(1),
+                ":id", AttributeValues.fromUUID(identifier)))
+            .returnValues(ReturnValue.ALL_OLD)
+            .build())
+        .thenApply(updateItemResponse -> {
+          if (!updateItemResponse.hasAttributes()) {
+            throw new IllegalStateException("update succeeded but did not return an item");
+          }
+
+          final int index = AttributeValues.getInt(updateItemResponse.attributes(), ATTR_PAGE_IDX, -1);
+          final int format = AttributeValues.getInt(updateItemResponse.attributes(), ATTR_PAGE_FORMAT_VERSION, -1);
+          final AttributeValue page = updateItemResponse.attributes().get(ATTR_PAGE);
+          if (index < 0 || format < 0 || page == null) {
+            throw new CompletionException(
+                new IOException("unexpected page descriptor " + updateItemResponse.attributes()));
+          }
+
+          return Optional.of(readPreKeyAtIndex(page.b().asByteBuffer(), format, index));
+        })
+        // If this check fails, it means that the item did not exist, or its index was already at the last key. Either
+        // way, there are no keys left so we return empty
+        .exceptionally(ExceptionUtils.exceptionallyHandler(
+            ConditionalCheckFailedException.class,
+            e -> Optional.empty()))
+        .whenComplete((maybeKey, throwable) ->
+            sample.stop(Metrics.timer(
+                takeKeyTimerName,
+                KEY_PRESENT_TAG_NAME, String.valueOf(maybeKey != null && maybeKey.isPresent()))));
+  }
+
+  /**
+   * Returns the number of single-use pre-keys available for a given device.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId   the identifier for the device within the given account/identity
+   * @return a future that yields the number of single-use pre-keys currently available for the target device
+   */
+  public CompletableFuture<Integer> getCount(final UUID identifier, final byte deviceId) {
+    final Timer.Sample sample = Timer.start();
+
+    return dynamoDbAsyncClient.getItem(GetItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                KEY_ACCOUNT_UUID, AttributeValues.fromUUID(identifier),
+                KEY_DEVICE_ID, AttributeValues.fromInt(deviceId)))
+            .consistentRead(true)
+            .projectionExpression("#total, #index")
+            .expressionAttributeNames(Map.of(
+                "#total", ATTR_PAGE_NUM_KEYS,
+                "#index", ATTR_PAGE_IDX))
+            .build())
+        .thenApply(getResponse -> {
+          if (!getResponse.hasItem()) {
+            return 0;
+          }
+          final int numKeys = AttributeValues.getInt(getResponse.item(), ATTR_PAGE_NUM_KEYS, -1);
+          final int index = AttributeValues.getInt(getResponse.item(), ATTR_PAGE_IDX, -1);
+          if (numKeys < 0 || index < 0 || index > numKeys) {
+            log.error("unexpected index/length in page descriptor: {}", getResponse.item());
+            return 0;
+          }
+
+          return numKeys - index;
+        })
+        .whenComplete((keyCount, throwable) -> {
+          sample.stop(getKeyCountTimer);
+
+          if (throwable == null && keyCount != null) {
+            availableKeyCountDistributionSummary.record(keyCount);
+          }
+        });
+  }
+
+  /**
+   * Removes all single-use pre-keys for all devices associated with the given account/identity.
+   *
+   * @param identifier the identifier for the account/identity for which to remove single-use pre-keys
+   * @return a future that completes when all single-use pre-keys have been removed for all devices associated with the
+   * given account/identity
+   */
+  public CompletableFuture<Void> delete(final UUID identifier) {
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.from(dynamoDbAsyncClient.queryPaginator(QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#uuid = :uuid")
+                .projectionExpression("#uuid,#deviceid")
+                .expressionAttributeNames(Map.of(
+                    "#uuid", KEY_ACCOUNT_UUID,
+                    "#deviceid", KEY_DEVICE_ID))
+                .expressionAttributeValues(Map.of(":uuid", AttributeValues.fromUUID(identifier)))
+                .consistentRead(true)
+                .build())
+            .items())
+        .flatMap(item -> Mono.fromFuture(() -> dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                KEY_ACCOUNT_UUID, item.get(KEY_ACCOUNT_UUID),
+                KEY_DEVICE_ID, item.get(KEY_DEVICE_ID)))
+            .build())), DYNAMO_DB_MAX_BATCH_SIZE)
+        .then()
+        .toFuture()
+        .thenRun(() -> sample.stop(deleteForAccountTimer));
+  }
+
+  /**
+   * Removes all single-use pre-keys for a specific device.
+   *
+   * @param identifier the identifier for the account/identity with which the target device is associated
+   * @param deviceId   the identifier for the device within the given account/identity
+   * @return a future that completes when all single-use pre-keys have been removed for the target device
+   */
+  public CompletableFuture<Void> delete(final UUID identifier, final byte deviceId) {
+    final Timer.Sample sample = Timer.start();
+
+    return dynamoDbAsyncClient.deleteItem(DeleteItemRequest.builder()
+            .tableName(tableName)
+            .key(Map.of(
+                KEY_ACCOUNT_UUID, AttributeValues.fromUUID(identifier),
+                KEY_DEVICE_ID, AttributeValues.fromInt(deviceId)))
+            .build())
+        .thenRun(Util.NOOP)
+        .whenComplete((ignored, throwable) -> sample.stop(deleteForDeviceTimer));
+  }
+
+  private static ECPreKey readPreKeyAtIndex(final ByteBuffer page, final int format, final int index) {
+    final KEMPreKeyPage.KeyLocation keyLocation = ECPreKeyPage.keyLocation(format, index);
+
+    if (page.remaining() < keyLocation.getEndInclusive() + 1) {
+      throw new CompletionException(new IOException("Page too short for key at index " + index));
+    }
+
+    try {
+      return ECPreKeyPage.deserializeKey(format, page.slice(keyLocation.getStartInclusive(), keyLocation.length()));
+    } catch (final InvalidKeyException e) {
+      throw new CompletionException(new IOException(e));
+    }
+  }
+}
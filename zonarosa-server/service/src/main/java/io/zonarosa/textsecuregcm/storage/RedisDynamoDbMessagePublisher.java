@@ -8,6 +8,7 @@ package io.zonarosa.server.storage;
 import static io.zonarosa.server.metrics.MetricsUtil.name;
 
 import io.micrometer.core.instrument.Metrics;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.Flow;
 import javax.annotation.Nullable;
@@ -19,6 +20,7 @@ import io.zonarosa.server.push.RedisMessageAvailabilityManager;
 import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /// A Redis/DynamoDB message publisher produces a non-terminating stream of messages for a specific device. It listens
 /// for message availability zonarosas from [RedisMessageAvailabilityManager] and emits new messages to its subscriber
@@ -75,6 +77,12 @@ class RedisDynamoDbMessagePublisher implements MessageAvailabilityListener, Flow
   private static final String GET_MESSAGES_FOR_DEVICE_FLUX_NAME =
       name(RedisDynamoDbMessagePublisher.class, "getMessagesForDevice");
 
+  private static final String PERSISTED_MESSAGES_MARKER_COUNTER_NAME =
+      name(RedisDynamoDbMessagePublisher.class, "persistedMessagesMarker");
+
+  private static final String CLEAR_PERSISTED_MESSAGES_MARKER_COUNTER_NAME =
+      name(RedisDynamoDbMessagePublisher.class, "clearPersistedMessagesMarker");
+
   private enum StoredMessageState {
     // Indicates that stored messages are available in at least DynamoDB and possibly also Redis
     PERSISTED_NEW_MESSAGES_AVAILABLE,
@@ -269,10 +277,15 @@ class RedisDynamoDbMessagePublisher implements MessageAvailabilityListener, Flow
     }
 
     // We maybe be able to skip reading from DynamoDB entirely if we think messages are only stored in Redis
-    final Publisher<MessageProtos.Envelope> dynamoPublisher =
-        storedMessageState == StoredMessageState.PERSISTED_NEW_MESSAGES_AVAILABLE
-            ? messagesDynamoDb.load(accountIdentifier, device, null)
-            : Flux.empty();
+    final Publisher<MessageProtos.Envelope> dynamoPublisher;
+
+    if (storedMessageState == StoredMessageState.PERSISTED_NEW_MESSAGES_AVAILABLE) {
+      dynamoPublisher = messagesCache.shouldUsePersistedMessagesMarker(accountIdentifier)
+          ? loadPersistedMessagesIfMarked()
+          : messagesDynamoDb.load(accountIdentifier, device, null);
+    } else {
+      dynamoPublisher = Flux.empty();
+    }
 
     final Publisher<MessageProtos.Envelope> redisPublisher = messagesCache.get(accountIdentifier, device.getId());
 
@@ -288,6 +301,34 @@ class RedisDynamoDbMessagePublisher implements MessageAvailabilityListener, Flow
     storedMessageState = StoredMessageState.EMPTY;
   }
 
+  /// Loads persisted messages from DynamoDB only if the device's "persisted messages" marker indicates that messages
+  /// may have been persisted for the device. The message persister sets the marker after writing messages to DynamoDB,
+  /// and this publisher clears it if a load finds no messages in DynamoDB; the marker is only cleared if it hasn't been
+  /// set again since we read it, so a concurrent persistence run can't leave messages in DynamoDB without a marker.
+  ///
+  /// Note that we can't clear the marker as soon as we've read all messages from DynamoDB because the subscriber may
+  /// disconnect before acknowledging them. Instead, the marker gets cleared by the next load that comes up empty.
+  private Flux<MessageProtos.Envelope> loadPersistedMessagesIfMarked() {
+    return messagesCache.getPersistedMessagesMarker(accountIdentifier, device.getId())
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMapMany(maybeMarker -> {
+          Metrics.counter(PERSISTED_MESSAGES_MARKER_COUNTER_NAME, "present", String.valueOf(maybeMarker.isPresent()))
+              .increment();
+
+          return maybeMarker
+              .map(marker -> Flux.from(messagesDynamoDb.load(accountIdentifier, device, null))
+                  .switchIfEmpty(messagesCache.clearPersistedMessagesMarker(accountIdentifier, device.getId(), marker)
+                      .doOnNext(cleared ->
+                          Metrics.counter(CLEAR_PERSISTED_MESSAGES_MARKER_COUNTER_NAME, "cleared", String.valueOf(cleared))
+                              .increment())
+                      // Failing to clear the marker just means we'll check DynamoDB again next time
+                      .onErrorResume(_ -> Mono.empty())
+                      .then(Mono.<MessageProtos.Envelope>empty())))
+              .orElseGet(Flux::empty);
+        });
+  }
+
   private synchronized void handleMessageSourceSubscribed(final Subscription subscription) {
     if (!terminated) {
       // If we already have some unmet demand, pass that on to the upstream publisher immediately on subscribing
@@ -5,19 +5,24 @@
 
 package io.zonarosa.server.storage;
 
+import java.time.Duration;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
 import com.google.common.annotations.VisibleForTesting;
 import io.zonarosa.server.entities.MessageProtos;
 import io.zonarosa.server.push.RedisMessageAvailabilityManager;
-import io.zonarosa.server.util.Util;
 
 /// A [MessageStream] implementation that produces message from a joint DynamoDB/Redis message store.
+///
+/// Acknowledged messages are removed from Redis immediately. Messages that aren't found in Redis are assumed to have
+/// been persisted, and their deletions from DynamoDB are coalesced into batches by a
+/// [MessageAcknowledgementCoalescer].
 public class RedisDynamoDbMessageStream implements MessageStream {
 
-  private final MessagesDynamoDb messagesDynamoDb;
   private final MessagesCache messagesCache;
+  private final MessageAcknowledgementCoalescer acknowledgementCoalescer;
 
   private final UUID accountIdentifier;
   private final Device device;
@@ -28,27 +33,35 @@ public class RedisDynamoDbMessageStream implements MessageStream {
       final MessagesCache messagesCache,
       final RedisMessageAvailabilityManager redisMessageAvailabilityManager,
       final UUID accountIdentifier,
-      final Device device) {
+      final Device device,
+      final ScheduledExecutorService acknowledgementCoalescingExecutor,
+      final Duration acknowledgementCoalescingWindow) {
 
-    this(messagesDynamoDb, messagesCache, accountIdentifier, device, new RedisDynamoDbMessagePublisher(messagesDynamoDb,
-        messagesCache,
-        redisMessageAvailabilityManager,
-        accountIdentifier,
-        device));
+    this(messagesCache, accountIdentifier, device,
+        new RedisDynamoDbMessagePublisher(messagesDynamoDb,
+            messagesCache,
+            redisMessageAvailabilityManager,
+            accountIdentifier,
+            device),
+        new MessageAcknowledgementCoalescer(messagesDynamoDb,
+            accountIdentifier,
+            device,
+            acknowledgementCoalescingExecutor,
+            acknowledgementCoalescingWindow));
   }
 
   @VisibleForTesting
-  RedisDynamoDbMessageStream(final MessagesDynamoDb messagesDynamoDb,
-      final MessagesCache messagesCache,
+  RedisDynamoDbMessageStream(final MessagesCache messagesCache,
       final UUID accountIdentifier,
       final Device device,
-      final RedisDynamoDbMessagePublisher messagePublisher) {
+      final RedisDynamoDbMessagePublisher messagePublisher,
+      final MessageAcknowledgementCoalescer acknowledgementCoalescer) {
 
-    this.messagesDynamoDb = messagesDynamoDb;
     this.messagesCache = messagesCache;
     this.accountIdentifier = accountIdentifier;
     this.device = device;
     this.messagePublisher = messagePublisher;
+    this.acknowledgementCoalescer = acknowledgementCoalescer;
   }
 
   @Override
@@ -62,9 +75,7 @@ public class RedisDynamoDbMessageStream implements MessageStream {
 
     return messagesCache.remove(accountIdentifier, device.getId(), guid)
         .thenCompose(removed -> removed.map(_ -> CompletableFuture.<Void>completedFuture(null))
-            .orElseGet(() ->
-                messagesDynamoDb.deleteMessage(accountIdentifier, device, guid, message.getServerTimestamp())
-                    .thenRun(Util.NOOP)))
+            .orElseGet(() -> acknowledgementCoalescer.delete(message)))
         .whenComplete((_, _) -> messagePublisher.handleMessageAcknowledged());
   }
 }
@@ -5,8 +5,12 @@
 
 package io.zonarosa.server.storage;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,10 +18,14 @@ import java.util.concurrent.CompletableFuture;
 import io.zonarosa.server.entities.SignedPreKey;
 import io.zonarosa.server.metrics.MetricsUtil;
 import io.zonarosa.server.util.AttributeValues;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
@@ -44,6 +52,17 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
   private final Timer storeSingleKeyTimer = Metrics.timer(MetricsUtil.name(getClass(), "storeSingleKey"));
 
   private final String findKeyTimerName = MetricsUtil.name(getClass(), "findKey");
+  private final Timer findKeysTimer = Metrics.timer(MetricsUtil.name(getClass(), "findKeys"));
+
+  private final DistributionSummary findKeysBatchAttemptsDistributionSummary = DistributionSummary
+      .builder(MetricsUtil.name(getClass(), "findKeysBatchAttempts"))
+      .register(Metrics.globalRegistry);
+
+  // The maximum number of keys DynamoDB allows in a single BatchGetItem request
+  private static final int MAX_BATCH_GET_SIZE = 100;
+
+  // The number of times we'll request unprocessed keys from a BatchGetItem request before giving up
+  private static final int MAX_BATCH_GET_ATTEMPTS = 5;
 
   public RepeatedUseSignedPreKeyStore(final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName) {
     this.dynamoDbAsyncClient = dynamoDbAsyncClient;
@@ -114,6 +133,67 @@ public abstract class RepeatedUseSignedPreKeyStore<K extends SignedPreKey<?>> {
     return findFuture;
   }
 
+  /**
+   * Finds the repeated-use pre-keys for several devices associated with the same account/identity using batched
+   * reads.
+   *
+   * @param identifier the identifier for the account/identity with which the target devices are associated
+   * @param deviceIds the identifiers for the devices within the given account/identity
+   *
+   * @return a future that yields a map of device IDs to signed pre-keys; devices for which no key could be found are
+   * absent from the map
+   */
+  public CompletableFuture<Map<Byte, K>> find(final UUID identifier, final Collection<Byte> deviceIds) {
+    if (deviceIds.isEmpty()) {
+      return CompletableFuture.completedFuture(Map.of());
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    return Flux.fromIterable(deviceIds)
+        .distinct()
+        .map(deviceId -> getPrimaryKey(identifier, deviceId))
+        .buffer(MAX_BATCH_GET_SIZE)
+        .flatMap(keys -> Mono.fromFuture(() -> batchGetItems(keys, 1)))
+        .flatMapIterable(items -> items)
+        .collectMap(item -> (byte) AttributeValues.getInt(item, KEY_DEVICE_ID, -1), this::getPreKeyFromItem)
+        .toFuture()
+        .whenComplete((ignored, throwable) -> sample.stop(findKeysTimer));
+  }
+
+  private CompletableFuture<List<Map<String, AttributeValue>>> batchGetItems(
+      final List<Map<String, AttributeValue>> keys, final int attempt) {
+
+    return dynamoDbAsyncClient.batchGetItem(BatchGetItemRequest.builder()
+            .requestItems(Map.of(tableName, KeysAndAttributes.builder()
+                .keys(keys)
+                .consistentRead(true)
+                .build()))
+            .build())
+        .thenCompose(response -> {
+          final List<Map<String, AttributeValue>> items = response.responses().getOrDefault(tableName, List.of());
+          final KeysAndAttributes unprocessed = response.unprocessedKeys().get(tableName);
+
+          if (unprocessed == null || !unprocessed.hasKeys() || unprocessed.keys().isEmpty()) {
+            findKeysBatchAttemptsDistributionSummary.record(attempt);
+            return CompletableFuture.completedFuture(items);
+          }
+
+          if (attempt >= MAX_BATCH_GET_ATTEMPTS) {
+            findKeysBatchAttemptsDistributionSummary.record(attempt);
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("Unprocessed keys remained after " + attempt + " attempts"));
+          }
+
+          return batchGetItems(unprocessed.keys(), attempt + 1)
+              .thenApply(remainingItems -> {
+                final List<Map<String, AttributeValue>> allItems = new ArrayList<>(items);
+                allItems.addAll(remainingItems);
+                return allItems;
+              });
+        });
+  }
+
   protected static Map<String, AttributeValue> getPrimaryKey(final UUID identifier, final byte deviceId) {
     return Map.of(
         KEY_ACCOUNT_UUID, getPartitionKey(identifier),
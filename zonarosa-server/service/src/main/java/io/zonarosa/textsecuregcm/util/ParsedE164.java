@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The parts of a parsed E164-formatted phone number that callers ask for most often.
+ * <p>
+ * Parsing a phone number is relatively expensive, and a single request will often need the same number's country code
+ * or region several times over (e.g. for rate limiting, experiment enrollment, and metrics), so recently-parsed numbers
+ * are kept in a small cache.
+ *
+ * @param countryCode the number's country calling code
+ * @param region the number's region code, or "ZZ" if the number doesn't belong to a single region
+ * @param nationalSignificantNumber the number's national significant number
+ */
+public record ParsedE164(int countryCode, String region, String nationalSignificantNumber) {
+
+  private static final PhoneNumberUtil PHONE_NUMBER_UTIL = PhoneNumberUtil.getInstance();
+
+  @VisibleForTesting
+  static final int MAX_CACHED_NUMBERS = 10_000;
+
+  private static final Cache<String, ParsedE164> PARSED_NUMBERS = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_NUMBERS)
+      .build();
+
+  /**
+   * Parses the given number, returning a cached result if the number was parsed recently.
+   *
+   * @param e164 the number to parse; may be {@code null}
+   *
+   * @return the parsed number, or empty if the number is {@code null} or could not be parsed
+   */
+  public static Optional<ParsedE164> parse(@Nullable final String e164) {
+    if (e164 == null) {
+      return Optional.empty();
+    }
+
+    final ParsedE164 cached = PARSED_NUMBERS.getIfPresent(e164);
+
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    try {
+      final PhoneNumber phoneNumber = PHONE_NUMBER_UTIL.parse(e164, null);
+
+      final ParsedE164 parsed = new ParsedE164(phoneNumber.getCountryCode(),
+          StringUtils.defaultIfBlank(PHONE_NUMBER_UTIL.getRegionCodeForNumber(phoneNumber), "ZZ"),
+          PHONE_NUMBER_UTIL.getNationalSignificantNumber(phoneNumber));
+
+      // Only successfully-parsed numbers are cached so that garbage input can't push out real numbers
+      PARSED_NUMBERS.put(e164, parsed);
+
+      return Optional.of(parsed);
+    } catch (final NumberParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  @VisibleForTesting
+  static void clearCache() {
+    PARSED_NUMBERS.invalidateAll();
+  }
+}
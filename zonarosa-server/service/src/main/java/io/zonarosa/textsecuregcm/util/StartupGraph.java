@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.util;
+
+import static io.zonarosa.server.metrics.MetricsUtil.name;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs slow, independent startup steps (typically ones that block on network handshakes, like discovering a Redis
+ * cluster's topology) concurrently, and records how long each one takes.
+ * <p>
+ * Each step is started with {@link #start(String, Callable)}, which returns immediately. Steps that depend on another
+ * step's result should {@link #await(CompletableFuture)} it as late as possible, either on the startup thread right
+ * before the result is needed or from within another step. Callers must call {@link #awaitAll()} before startup
+ * finishes; since the server doesn't start accepting requests until startup finishes, that gates readiness on every
+ * step completing.
+ */
+public class StartupGraph {
+
+  private final ExecutorService executor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("startup-", 0).factory());
+
+  private final List<CompletableFuture<?>> steps = new CopyOnWriteArrayList<>();
+
+  private final long startNanos = System.nanoTime();
+
+  private static final String COMPONENT_STARTUP_TIMER_NAME = name(StartupGraph.class, "componentStartup");
+  private static final String TOTAL_STARTUP_TIMER_NAME = name(StartupGraph.class, "totalStartup");
+
+  private static final Logger logger = LoggerFactory.getLogger(StartupGraph.class);
+
+  /**
+   * Starts a startup step in the background.
+   *
+   * @param component the name of the component being started, used for logging and metrics
+   * @param step the work to do
+   *
+   * @return a future that yields the step's result
+   *
+   * @param <T> the type of the step's result
+   */
+  public <T> CompletableFuture<T> start(final String component, final Callable<T> step) {
+    final CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+      final long componentStartNanos = System.nanoTime();
+      boolean success = false;
+
+      try {
+        final T result = step.call();
+        success = true;
+
+        return result;
+      } catch (final Exception e) {
+        throw ExceptionUtils.wrap(e);
+      } finally {
+        final long elapsedNanos = System.nanoTime() - componentStartNanos;
+
+        Timer.builder(COMPONENT_STARTUP_TIMER_NAME)
+            .tags("component", component, "success", String.valueOf(success))
+            .register(Metrics.globalRegistry)
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        logger.info("Started {} in {}", component, Duration.ofNanos(elapsedNanos));
+      }
+    }, executor);
+
+    steps.add(future);
+
+    return future;
+  }
+
+  /**
+   * Waits for a step to finish.
+   *
+   * @param future a future returned by {@link #start(String, Callable)}
+   *
+   * @return the step's result
+   *
+   * @throws Exception if the step failed; this is the exception thrown by the step itself
+   */
+  public static <T> T await(final CompletableFuture<T> future) throws Exception {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      final Throwable cause = ExceptionUtils.unwrap(e);
+
+      if (cause instanceof Exception exception) {
+        throw exception;
+      } else if (cause instanceof Error error) {
+        throw error;
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for every step to finish and records the total time spent starting up.
+   *
+   * @throws Exception if any step failed
+   */
+  public void awaitAll() throws Exception {
+    try {
+      for (final CompletableFuture<?> step : steps) {
+        await(step);
+      }
+    } finally {
+      executor.shutdown();
+
+      final long elapsedNanos = System.nanoTime() - startNanos;
+      Metrics.timer(TOTAL_STARTUP_TIMER_NAME).record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+      logger.info("Finished {} startup steps in {}", steps.size(), Duration.ofNanos(elapsedNanos));
+    }
+  }
+}
@@ -88,20 +88,15 @@ public class Util {
   }
 
   public static String getCountryCode(String number) {
-    try {
-      return String.valueOf(PHONE_NUMBER_UTIL.parse(number, null).getCountryCode());
-    } catch (final NumberParseException e) {
-      return "0";
-    }
+    return ParsedE164.parse(number)
+        .map(parsedE164 -> String.valueOf(parsedE164.countryCode()))
+        .orElse("0");
   }
 
   public static String getRegion(final String number) {
-    try {
-      final PhoneNumber phoneNumber = PHONE_NUMBER_UTIL.parse(number, null);
-      return StringUtils.defaultIfBlank(PHONE_NUMBER_UTIL.getRegionCodeForNumber(phoneNumber), "ZZ");
-    } catch (final NumberParseException e) {
-      return "ZZ";
-    }
+    return ParsedE164.parse(number)
+        .map(ParsedE164::region)
+        .orElse("ZZ");
   }
 
   /**
@@ -121,12 +116,14 @@ public class Util {
    * will always be the first element of the list.
    */
   public static List<String> getAlternateForms(final String number) {
-    try {
-      final PhoneNumber phoneNumber = PHONE_NUMBER_UTIL.parse(number, null);
+    final Optional<ParsedE164> maybeParsedE164 = ParsedE164.parse(number);
+
+    if (maybeParsedE164.isPresent()) {
+      final ParsedE164 parsedE164 = maybeParsedE164.get();
 
       // Benin changed phone number formats from +229 XXXXXXXX to +229 01XXXXXXXX on November 30, 2024
-      if ("BJ".equals(PHONE_NUMBER_UTIL.getRegionCodeForNumber(phoneNumber))) {
-        final String nationalSignificantNumber = PHONE_NUMBER_UTIL.getNationalSignificantNumber(phoneNumber);
+      if ("BJ".equals(parsedE164.region())) {
+        final String nationalSignificantNumber = parsedE164.nationalSignificantNumber();
         final String alternateE164;
 
         if (nationalSignificantNumber.length() == 10) {
@@ -141,11 +138,9 @@ public class Util {
 
         return List.of(number, alternateE164);
       }
-
-      return List.of(number);
-    } catch (final NumberParseException e) {
-      return List.of(number);
     }
+
+    return List.of(number);
   }
 
   /**
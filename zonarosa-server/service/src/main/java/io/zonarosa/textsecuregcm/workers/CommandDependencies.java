@@ -6,17 +6,24 @@
 package io.zonarosa.server.workers;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.google.common.base.Suppliers;
 import io.dropwizard.core.setup.Environment;
+import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.Metrics;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import io.zonarosa.libzonarosa.zkgroup.GenericServerSecretParams;
 import io.zonarosa.libzonarosa.zkgroup.InvalidInputException;
 import io.zonarosa.libzonarosa.zkgroup.ServerSecretParams;
@@ -42,6 +49,7 @@ import io.zonarosa.server.metrics.MetricsUtil;
 import io.zonarosa.server.metrics.MicrometerAwsSdkMetricPublisher;
 import io.zonarosa.server.push.APNSender;
 import io.zonarosa.server.push.FcmSender;
+import io.zonarosa.server.push.PushNotificationCoalescer;
 import io.zonarosa.server.push.PushNotificationManager;
 import io.zonarosa.server.push.PushNotificationScheduler;
 import io.zonarosa.server.push.RedisMessageAvailabilityManager;
@@ -61,6 +69,7 @@ import io.zonarosa.server.storage.KeysManager;
 import io.zonarosa.server.storage.MessagesCache;
 import io.zonarosa.server.storage.MessagesDynamoDb;
 import io.zonarosa.server.storage.MessagesManager;
+import io.zonarosa.server.storage.PagedSingleUseECPreKeyStore;
 import io.zonarosa.server.storage.PagedSingleUseKEMPreKeyStore;
 import io.zonarosa.server.storage.PhoneNumberIdentifiers;
 import io.zonarosa.server.storage.Profiles;
@@ -79,6 +88,8 @@ import io.zonarosa.server.subscriptions.AppleAppStoreManager;
 import io.zonarosa.server.subscriptions.GooglePlayBillingManager;
 import io.zonarosa.server.util.ManagedAwsCrt;
 import io.zonarosa.server.util.ManagedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -89,31 +100,141 @@ import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 /**
  * Construct utilities commonly used by worker commands
+ * <p>
+ * Most dependencies are constructed lazily the first time they're requested (along with whatever they depend on), so
+ * commands only open connections to the clusters, tables and services they actually use. The time spent constructing
+ * each dependency is recorded per command.
  */
-public record CommandDependencies(
-    AccountsManager accountsManager,
-    ProfilesManager profilesManager,
-    ReportMessageManager reportMessageManager,
-    MessagesCache messagesCache,
-    MessagesManager messagesManager,
-    KeysManager keysManager,
-    RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager,
-    APNSender apnSender,
-    FcmSender fcmSender,
-    PushNotificationManager pushNotificationManager,
-    PushNotificationExperimentSamples pushNotificationExperimentSamples,
-    FaultTolerantRedisClusterClient cacheCluster,
-    FaultTolerantRedisClusterClient pushSchedulerCluster,
-    ClientResources.Builder redisClusterClientResourcesBuilder,
-    BackupManager backupManager,
-    IssuedReceiptsManager issuedReceiptsManager,
-    GooglePlayBillingManager googlePlayBillingManager,
-    AppleAppStoreManager appleAppStoreManager,
-    SubscriptionManager subscriptionManager,
-    DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
-    DynamoDbAsyncClient dynamoDbAsyncClient,
-    PhoneNumberIdentifiers phoneNumberIdentifiers,
-    DynamoDbRecoveryManager dynamoDbRecoveryManager) {
+public class CommandDependencies {
+
+  private final Supplier<AccountsManager> accountsManager;
+  private final Supplier<ProfilesManager> profilesManager;
+  private final Supplier<ReportMessageManager> reportMessageManager;
+  private final Supplier<MessagesCache> messagesCache;
+  private final Supplier<MessagesManager> messagesManager;
+  private final Supplier<KeysManager> keysManager;
+  private final Supplier<RegistrationRecoveryPasswordsManager> registrationRecoveryPasswordsManager;
+  private final Supplier<APNSender> apnSender;
+  private final Supplier<FcmSender> fcmSender;
+  private final Supplier<PushNotificationManager> pushNotificationManager;
+  private final Supplier<PushNotificationExperimentSamples> pushNotificationExperimentSamples;
+  private final Supplier<FaultTolerantRedisClusterClient> cacheCluster;
+  private final Supplier<FaultTolerantRedisClusterClient> pushSchedulerCluster;
+  private final ClientResources.Builder redisClusterClientResourcesBuilder;
+  private final Supplier<BackupManager> backupManager;
+  private final Supplier<IssuedReceiptsManager> issuedReceiptsManager;
+  private final Supplier<GooglePlayBillingManager> googlePlayBillingManager;
+  private final Supplier<AppleAppStoreManager> appleAppStoreManager;
+  private final Supplier<SubscriptionManager> subscriptionManager;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private final Supplier<DynamoDbAsyncClient> dynamoDbAsyncClient;
+  private final Supplier<PhoneNumberIdentifiers> phoneNumberIdentifiers;
+  private final Supplier<DynamoDbRecoveryManager> dynamoDbRecoveryManager;
+
+  private static final String INITIALIZE_DEPENDENCY_TIMER_NAME =
+      MetricsUtil.name(CommandDependencies.class, "initializeDependency");
+
+  private static final Logger logger = LoggerFactory.getLogger(CommandDependencies.class);
+
+  public CommandDependencies(
+      final AccountsManager accountsManager,
+      final ProfilesManager profilesManager,
+      final ReportMessageManager reportMessageManager,
+      final MessagesCache messagesCache,
+      final MessagesManager messagesManager,
+      final KeysManager keysManager,
+      final RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager,
+      final APNSender apnSender,
+      final FcmSender fcmSender,
+      final PushNotificationManager pushNotificationManager,
+      final PushNotificationExperimentSamples pushNotificationExperimentSamples,
+      final FaultTolerantRedisClusterClient cacheCluster,
+      final FaultTolerantRedisClusterClient pushSchedulerCluster,
+      final ClientResources.Builder redisClusterClientResourcesBuilder,
+      final BackupManager backupManager,
+      final IssuedReceiptsManager issuedReceiptsManager,
+      final GooglePlayBillingManager googlePlayBillingManager,
+      final AppleAppStoreManager appleAppStoreManager,
+      final SubscriptionManager subscriptionManager,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
+      final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final PhoneNumberIdentifiers phoneNumberIdentifiers,
+      final DynamoDbRecoveryManager dynamoDbRecoveryManager) {
+
+    this(() -> accountsManager,
+        () -> profilesManager,
+        () -> reportMessageManager,
+        () -> messagesCache,
+        () -> messagesManager,
+        () -> keysManager,
+        () -> registrationRecoveryPasswordsManager,
+        () -> apnSender,
+        () -> fcmSender,
+        () -> pushNotificationManager,
+        () -> pushNotificationExperimentSamples,
+        () -> cacheCluster,
+        () -> pushSchedulerCluster,
+        redisClusterClientResourcesBuilder,
+        () -> backupManager,
+        () -> issuedReceiptsManager,
+        () -> googlePlayBillingManager,
+        () -> appleAppStoreManager,
+        () -> subscriptionManager,
+        dynamicConfigurationManager,
+        () -> dynamoDbAsyncClient,
+        () -> phoneNumberIdentifiers,
+        () -> dynamoDbRecoveryManager);
+  }
+
+  private CommandDependencies(
+      final Supplier<AccountsManager> accountsManager,
+      final Supplier<ProfilesManager> profilesManager,
+      final Supplier<ReportMessageManager> reportMessageManager,
+      final Supplier<MessagesCache> messagesCache,
+      final Supplier<MessagesManager> messagesManager,
+      final Supplier<KeysManager> keysManager,
+      final Supplier<RegistrationRecoveryPasswordsManager> registrationRecoveryPasswordsManager,
+      final Supplier<APNSender> apnSender,
+      final Supplier<FcmSender> fcmSender,
+      final Supplier<PushNotificationManager> pushNotificationManager,
+      final Supplier<PushNotificationExperimentSamples> pushNotificationExperimentSamples,
+      final Supplier<FaultTolerantRedisClusterClient> cacheCluster,
+      final Supplier<FaultTolerantRedisClusterClient> pushSchedulerCluster,
+      final ClientResources.Builder redisClusterClientResourcesBuilder,
+      final Supplier<BackupManager> backupManager,
+      final Supplier<IssuedReceiptsManager> issuedReceiptsManager,
+      final Supplier<GooglePlayBillingManager> googlePlayBillingManager,
+      final Supplier<AppleAppStoreManager> appleAppStoreManager,
+      final Supplier<SubscriptionManager> subscriptionManager,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
+      final Supplier<DynamoDbAsyncClient> dynamoDbAsyncClient,
+      final Supplier<PhoneNumberIdentifiers> phoneNumberIdentifiers,
+      final Supplier<DynamoDbRecoveryManager> dynamoDbRecoveryManager) {
+
+    this.accountsManager = accountsManager;
+    this.profilesManager = profilesManager;
+    this.reportMessageManager = reportMessageManager;
+    this.messagesCache = messagesCache;
+    this.messagesManager = messagesManager;
+    this.keysManager = keysManager;
+    this.registrationRecoveryPasswordsManager = registrationRecoveryPasswordsManager;
+    this.apnSender = apnSender;
+    this.fcmSender = fcmSender;
+    this.pushNotificationManager = pushNotificationManager;
+    this.pushNotificationExperimentSamples = pushNotificationExperimentSamples;
+    this.cacheCluster = cacheCluster;
+    this.pushSchedulerCluster = pushSchedulerCluster;
+    this.redisClusterClientResourcesBuilder = redisClusterClientResourcesBuilder;
+    this.backupManager = backupManager;
+    this.issuedReceiptsManager = issuedReceiptsManager;
+    this.googlePlayBillingManager = googlePlayBillingManager;
+    this.appleAppStoreManager = appleAppStoreManager;
+    this.subscriptionManager = subscriptionManager;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+    this.phoneNumberIdentifiers = phoneNumberIdentifiers;
+    this.dynamoDbRecoveryManager = dynamoDbRecoveryManager;
+  }
 
   static CommandDependencies build(
       final String name,
@@ -131,6 +252,7 @@ public record CommandDependencies(
     ScheduledExecutorService dynamicConfigurationExecutor = ScheduledExecutorServiceBuilder.of(environment, "dynamicConfiguration")
         .threads(1).build();
 
+    // Every command needs dynamic configuration (if only to configure metrics), so there's no point in deferring it
     DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
         new DynamicConfigurationManager<>(
             configuration.getDynamicConfig().build(awsCredentialsProvider, dynamicConfigurationExecutor), DynamicConfiguration.class);
@@ -140,13 +262,19 @@ public record CommandDependencies(
 
     final ClientResources.Builder redisClientResourcesBuilder = ClientResources.builder();
 
-    FaultTolerantRedisClusterClient cacheCluster = configuration.getCacheClusterConfiguration()
-        .build("main_cache", redisClientResourcesBuilder);
-    FaultTolerantRedisClusterClient pushSchedulerCluster = configuration.getPushSchedulerCluster()
-        .build("push_scheduler", redisClientResourcesBuilder);
-    FaultTolerantRedisClient pubsubClient =
-        configuration.getRedisPubSubConfiguration().build("pubsub", redisClientResourcesBuilder.build());
+    final Supplier<FaultTolerantRedisClusterClient> cacheCluster = lazy(name, "cacheCluster",
+        () -> configuration.getCacheClusterConfiguration().build("main_cache", redisClientResourcesBuilder));
+    final Supplier<FaultTolerantRedisClusterClient> pushSchedulerCluster = lazy(name, "pushSchedulerCluster",
+        () -> configuration.getPushSchedulerCluster().build("push_scheduler", redisClientResourcesBuilder));
+    final Supplier<FaultTolerantRedisClient> pubsubClient = lazy(name, "pubsubClient",
+        () -> configuration.getRedisPubSubConfiguration().build("pubsub", redisClientResourcesBuilder.build()));
+    final Supplier<FaultTolerantRedisClusterClient> messagesCluster = lazy(name, "messagesCluster",
+        () -> configuration.getMessageCacheConfiguration().getRedisClusterConfiguration()
+            .build("messages", redisClientResourcesBuilder));
+    final Supplier<FaultTolerantRedisClusterClient> rateLimitersCluster = lazy(name, "rateLimitersCluster",
+        () -> configuration.getRateLimitersCluster().build("rate_limiters", redisClientResourcesBuilder));
 
+    // Executors don't start any threads until they're asked to do some work, so they're cheap to construct eagerly
     Scheduler messageDeliveryScheduler = Schedulers.fromExecutorService(
         environment.lifecycle().executorService("messageDelivery").minThreads(4).maxThreads(4).build());
     ExecutorService messageDeletionExecutor = ExecutorServiceBuilder.of(environment, "messageDeletion")
@@ -178,6 +306,8 @@ public record CommandDependencies(
       .threads(1).build();
     final ScheduledExecutorService retryExecutor = ScheduledExecutorServiceBuilder.of(environment, "retry")
       .threads(1).build();
+    final ScheduledExecutorService fcmBatchExecutor = ScheduledExecutorServiceBuilder.of(environment, "fcmBatch")
+      .threads(1).build();
 
     ExternalServiceCredentialsGenerator storageCredentialsGenerator = SecureStorageController.credentialsGenerator(
         configuration.getSecureStorageServiceConfiguration());
@@ -191,180 +321,197 @@ public record CommandDependencies(
         configuration.getVirtualThreadConfiguration().maxConcurrentThreadsPerExecutor(),
         environment);
 
-    DynamoDbAsyncClient dynamoDbAsyncClient = configuration.getDynamoDbClientConfiguration()
-        .buildAsyncClient(awsCredentialsProvider, new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbAsyncCommand"));
+    final Supplier<DynamoDbAsyncClient> dynamoDbAsyncClient = lazy(name, "dynamoDbAsyncClient",
+        () -> configuration.getDynamoDbClientConfiguration().buildAsyncClient(awsCredentialsProvider,
+            new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbAsyncCommand")));
 
-    DynamoDbClient dynamoDbClient = configuration.getDynamoDbClientConfiguration()
-        .buildSyncClient(awsCredentialsProvider, new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbSyncCommand"));
+    final Supplier<DynamoDbClient> dynamoDbClient = lazy(name, "dynamoDbClient",
+        () -> configuration.getDynamoDbClientConfiguration().buildSyncClient(awsCredentialsProvider,
+            new MicrometerAwsSdkMetricPublisher(awsSdkMetricsExecutor, "dynamoDbSyncCommand")));
 
-    final AwsCredentialsProvider cdnCredentialsProvider = configuration.getCdnConfiguration().credentials().build();
-    final S3AsyncClient asyncCdnS3Client = S3AsyncClient.builder()
-        .credentialsProvider(cdnCredentialsProvider)
+    final Supplier<S3AsyncClient> asyncCdnS3Client = lazy(name, "asyncCdnS3Client", () -> S3AsyncClient.builder()
+        .credentialsProvider(configuration.getCdnConfiguration().credentials().build())
         .region(Region.of(configuration.getCdnConfiguration().region()))
-        .build();
+        .build());
 
+    final Supplier<S3AsyncClient> asyncKeysS3Client = lazy(name, "asyncKeysS3Client", () -> S3AsyncClient.builder()
+        .credentialsProvider(awsCredentialsProvider)
+        .region(Region.of(configuration.getPagedSingleUseKEMPreKeyStore().region()))
+        .build());
 
-    RegistrationRecoveryPasswords registrationRecoveryPasswords = new RegistrationRecoveryPasswords(
-        configuration.getDynamoDbTables().getRegistrationRecovery().getTableName(),
-        configuration.getDynamoDbTables().getRegistrationRecovery().getExpiration(),
-        dynamoDbAsyncClient,
-        clock);
-
-    ClientPublicKeys clientPublicKeys =
-        new ClientPublicKeys(dynamoDbAsyncClient, configuration.getDynamoDbTables().getClientPublicKeys().getTableName());
-
-    Accounts accounts = new Accounts(
+    final Supplier<Accounts> accounts = lazy(name, "accounts", () -> new Accounts(
         clock,
-        dynamoDbClient,
-        dynamoDbAsyncClient,
+        dynamoDbClient.get(),
+        dynamoDbAsyncClient.get(),
         configuration.getDynamoDbTables().getAccounts().getTableName(),
         configuration.getDynamoDbTables().getAccounts().getPhoneNumberTableName(),
         configuration.getDynamoDbTables().getAccounts().getPhoneNumberIdentifierTableName(),
         configuration.getDynamoDbTables().getAccounts().getUsernamesTableName(),
         configuration.getDynamoDbTables().getDeletedAccounts().getTableName(),
-        configuration.getDynamoDbTables().getAccounts().getUsedLinkDeviceTokensTableName());
-    PhoneNumberIdentifiers phoneNumberIdentifiers = new PhoneNumberIdentifiers(dynamoDbAsyncClient,
-        configuration.getDynamoDbTables().getPhoneNumberIdentifiers().getTableName());
-    Profiles profiles = new Profiles(dynamoDbClient, dynamoDbAsyncClient,
-        configuration.getDynamoDbTables().getProfiles().getTableName());
-    S3AsyncClient asyncKeysS3Client = S3AsyncClient.builder()
-        .credentialsProvider(awsCredentialsProvider)
-        .region(Region.of(configuration.getPagedSingleUseKEMPreKeyStore().region()))
-        .build();
-    PagedSingleUseKEMPreKeyStore pagedSingleUseKEMPreKeyStore = new PagedSingleUseKEMPreKeyStore(
-        dynamoDbAsyncClient, asyncKeysS3Client,
-        configuration.getDynamoDbTables().getPagedKemKeys().getTableName(),
-        configuration.getPagedSingleUseKEMPreKeyStore().bucket());
-    KeysManager keys = new KeysManager(
-        new SingleUseECPreKeyStore(dynamoDbAsyncClient, configuration.getDynamoDbTables().getEcKeys().getTableName()),
-        pagedSingleUseKEMPreKeyStore,
-        new RepeatedUseECSignedPreKeyStore(dynamoDbAsyncClient,
+        configuration.getDynamoDbTables().getAccounts().getUsedLinkDeviceTokensTableName()));
+    final Supplier<PhoneNumberIdentifiers> phoneNumberIdentifiers = lazy(name, "phoneNumberIdentifiers",
+        () -> new PhoneNumberIdentifiers(dynamoDbAsyncClient.get(),
+            configuration.getDynamoDbTables().getPhoneNumberIdentifiers().getTableName()));
+    final Supplier<KeysManager> keys = lazy(name, "keysManager", () -> new KeysManager(
+        new SingleUseECPreKeyStore(dynamoDbAsyncClient.get(), configuration.getDynamoDbTables().getEcKeys().getTableName()),
+        new PagedSingleUseECPreKeyStore(dynamoDbAsyncClient.get(),
+            configuration.getDynamoDbTables().getPagedEcKeys().getTableName()),
+        new PagedSingleUseKEMPreKeyStore(
+            dynamoDbAsyncClient.get(), asyncKeysS3Client.get(),
+            configuration.getDynamoDbTables().getPagedKemKeys().getTableName(),
+            configuration.getPagedSingleUseKEMPreKeyStore().bucket()),
+        new RepeatedUseECSignedPreKeyStore(dynamoDbAsyncClient.get(),
             configuration.getDynamoDbTables().getEcSignedPreKeys().getTableName()),
-        new RepeatedUseKEMSignedPreKeyStore(dynamoDbAsyncClient,
-            configuration.getDynamoDbTables().getKemLastResortKeys().getTableName()));
-    MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(dynamoDbClient, dynamoDbAsyncClient,
-        configuration.getDynamoDbTables().getMessages().getTableName(),
-        configuration.getDynamoDbTables().getMessages().getExpiration(),
-        messageDeletionExecutor, experimentEnrollmentManager);
-    FaultTolerantRedisClusterClient messagesCluster = configuration.getMessageCacheConfiguration()
-        .getRedisClusterConfiguration().build("messages", redisClientResourcesBuilder);
-    FaultTolerantRedisClusterClient rateLimitersCluster = configuration.getRateLimitersCluster().build("rate_limiters",
-        redisClientResourcesBuilder);
-    SecureValueRecoveryClient secureValueRecovery2Client = new SecureValueRecoveryClient(
-        secureValueRecovery2CredentialsGenerator,
-        secureValueRecoveryServiceExecutor,
-        retryExecutor,
-        configuration.getSvr2Configuration(),
-        () -> dynamicConfigurationManager.getConfiguration().getSvr2StatusCodesToIgnoreForAccountDeletion());
-    SecureValueRecoveryClient secureValueRecoveryBClient = new SecureValueRecoveryClient(
-        secureValueRecoveryBCredentialsGenerator,
-        secureValueRecoveryServiceExecutor,
-        retryExecutor,
-        configuration.getSvrbConfiguration(),
-        () -> dynamicConfigurationManager.getConfiguration().getSvrbStatusCodesToIgnoreForAccountDeletion());
-    SecureStorageClient secureStorageClient = new SecureStorageClient(storageCredentialsGenerator,
-        storageServiceExecutor, retryExecutor, configuration.getSecureStorageServiceConfiguration());
-    DisconnectionRequestManager disconnectionRequestManager = new DisconnectionRequestManager(pubsubClient,
-        disconnectionRequestListenerExecutor, retryExecutor);
-    MessagesCache messagesCache = new MessagesCache(messagesCluster,
-        messageDeliveryScheduler, messageDeletionExecutor, retryExecutor, Clock.systemUTC(), experimentEnrollmentManager);
-    ProfilesManager profilesManager = new ProfilesManager(profiles, cacheCluster, retryExecutor, asyncCdnS3Client,
-        configuration.getCdnConfiguration().bucket());
-    ReportMessageDynamoDb reportMessageDynamoDb = new ReportMessageDynamoDb(dynamoDbClient, dynamoDbAsyncClient,
-        configuration.getDynamoDbTables().getReportMessage().getTableName(),
-        configuration.getReportMessageConfiguration().getReportTtl());
-    ReportMessageManager reportMessageManager = new ReportMessageManager(reportMessageDynamoDb, rateLimitersCluster,
-        configuration.getReportMessageConfiguration().getCounterTtl());
-    RedisMessageAvailabilityManager redisMessageAvailabilityManager =
-        new RedisMessageAvailabilityManager(messagesCluster, clientEventExecutor, asyncOperationQueueingExecutor);
-    MessagesManager messagesManager = new MessagesManager(messagesDynamoDb, messagesCache, redisMessageAvailabilityManager,
-        reportMessageManager, messageDeletionExecutor, Clock.systemUTC());
-    AccountLockManager accountLockManager = new AccountLockManager(dynamoDbClient,
-        configuration.getDynamoDbTables().getDeletedAccountsLock().getTableName());
-    ClientPublicKeysManager clientPublicKeysManager =
-        new ClientPublicKeysManager(clientPublicKeys, accountLockManager, accountLockExecutor);
-    RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager =
-        new RegistrationRecoveryPasswordsManager(registrationRecoveryPasswords);
-    AccountsManager accountsManager = new AccountsManager(accounts, phoneNumberIdentifiers, cacheCluster,
-        pubsubClient, accountLockManager, keys, messagesManager, profilesManager,
-        secureStorageClient, secureValueRecovery2Client, disconnectionRequestManager,
-        registrationRecoveryPasswordsManager, clientPublicKeysManager, accountLockExecutor, messagePollExecutor,
-        retryExecutor, clock, configuration.getLinkDeviceSecretConfiguration().secret().value(),
-        dynamicConfigurationManager);
-    RateLimiters rateLimiters = RateLimiters.create(dynamicConfigurationManager, rateLimitersCluster, retryExecutor);
-    final BackupsDb backupsDb =
-        new BackupsDb(dynamoDbAsyncClient, configuration.getDynamoDbTables().getBackups().getTableName(), clock);
-    final GenericServerSecretParams backupsGenericZkSecretParams;
-    try {
-      backupsGenericZkSecretParams =
-          new GenericServerSecretParams(configuration.getBackupsZkConfig().serverSecret().value());
-    } catch (InvalidInputException e) {
-      throw new IllegalArgumentException(e);
-    }
-    final BackupManager backupManager = new BackupManager(
-        backupsDb,
-        backupsGenericZkSecretParams,
-        rateLimiters,
-        new TusAttachmentGenerator(configuration.getTus()),
-        new Cdn3BackupCredentialGenerator(configuration.getTus()),
-        new Cdn3RemoteStorageManager(
-            remoteStorageHttpExecutor,
+        new RepeatedUseKEMSignedPreKeyStore(dynamoDbAsyncClient.get(),
+            configuration.getDynamoDbTables().getKemLastResortKeys().getTableName())));
+    final Supplier<MessagesCache> messagesCache = lazy(name, "messagesCache", () -> new MessagesCache(messagesCluster.get(),
+        messageDeliveryScheduler, messageDeletionExecutor, retryExecutor, Clock.systemUTC(), experimentEnrollmentManager));
+    final Supplier<ProfilesManager> profilesManager = lazy(name, "profilesManager", () -> new ProfilesManager(
+        new Profiles(dynamoDbClient.get(), dynamoDbAsyncClient.get(),
+            configuration.getDynamoDbTables().getProfiles().getTableName()),
+        cacheCluster.get(), retryExecutor, asyncCdnS3Client.get(), configuration.getCdnConfiguration().bucket()));
+    final Supplier<ReportMessageManager> reportMessageManager = lazy(name, "reportMessageManager",
+        () -> new ReportMessageManager(
+            new ReportMessageDynamoDb(dynamoDbClient.get(), dynamoDbAsyncClient.get(),
+                configuration.getDynamoDbTables().getReportMessage().getTableName(),
+                configuration.getReportMessageConfiguration().getReportTtl()),
+            rateLimitersCluster.get(),
+            configuration.getReportMessageConfiguration().getCounterTtl()));
+    final Supplier<MessagesManager> messagesManager = lazy(name, "messagesManager", () -> {
+      final MessagesDynamoDb messagesDynamoDb = new MessagesDynamoDb(dynamoDbClient.get(), dynamoDbAsyncClient.get(),
+          configuration.getDynamoDbTables().getMessages().getTableName(),
+          configuration.getDynamoDbTables().getMessages().getExpiration(),
+          messageDeletionExecutor, experimentEnrollmentManager);
+      final RedisMessageAvailabilityManager redisMessageAvailabilityManager = startManaged(environment,
+          new RedisMessageAvailabilityManager(messagesCluster.get(), clientEventExecutor, asyncOperationQueueingExecutor));
+
+      return new MessagesManager(messagesDynamoDb, messagesCache.get(), redisMessageAvailabilityManager,
+          reportMessageManager.get(), messageDeletionExecutor, retryExecutor, Clock.systemUTC());
+    });
+    final Supplier<RegistrationRecoveryPasswordsManager> registrationRecoveryPasswordsManager = lazy(name,
+        "registrationRecoveryPasswordsManager", () -> new RegistrationRecoveryPasswordsManager(
+            new RegistrationRecoveryPasswords(
+                configuration.getDynamoDbTables().getRegistrationRecovery().getTableName(),
+                configuration.getDynamoDbTables().getRegistrationRecovery().getExpiration(),
+                dynamoDbAsyncClient.get(),
+                clock)));
+    final Supplier<SecureValueRecoveryClient> secureValueRecoveryBClient = lazy(name, "secureValueRecoveryBClient",
+        () -> new SecureValueRecoveryClient(
+            secureValueRecoveryBCredentialsGenerator,
+            secureValueRecoveryServiceExecutor,
             retryExecutor,
-            configuration.getCdn3StorageManagerConfiguration()),
-        secureValueRecoveryBCredentialsGenerator,
-        secureValueRecoveryBClient,
-        clock,
-        dynamicConfigurationManager);
+            configuration.getSvrbConfiguration(),
+            () -> dynamicConfigurationManager.getConfiguration().getSvrbStatusCodesToIgnoreForAccountDeletion()));
+    final Supplier<AccountsManager> accountsManager = lazy(name, "accountsManager", () -> {
+      final SecureValueRecoveryClient secureValueRecovery2Client = new SecureValueRecoveryClient(
+          secureValueRecovery2CredentialsGenerator,
+          secureValueRecoveryServiceExecutor,
+          retryExecutor,
+          configuration.getSvr2Configuration(),
+          () -> dynamicConfigurationManager.getConfiguration().getSvr2StatusCodesToIgnoreForAccountDeletion());
+      final SecureStorageClient secureStorageClient = new SecureStorageClient(storageCredentialsGenerator,
+          storageServiceExecutor, retryExecutor, configuration.getSecureStorageServiceConfiguration());
+      final DisconnectionRequestManager disconnectionRequestManager = startManaged(environment,
+          new DisconnectionRequestManager(pubsubClient.get(), disconnectionRequestListenerExecutor, retryExecutor));
+      final AccountLockManager accountLockManager = new AccountLockManager(dynamoDbClient.get(),
+          configuration.getDynamoDbTables().getDeletedAccountsLock().getTableName());
+      final ClientPublicKeysManager clientPublicKeysManager = new ClientPublicKeysManager(
+          new ClientPublicKeys(dynamoDbAsyncClient.get(),
+              configuration.getDynamoDbTables().getClientPublicKeys().getTableName()),
+          accountLockManager, accountLockExecutor);
 
-    final IssuedReceiptsManager issuedReceiptsManager = new IssuedReceiptsManager(
-        configuration.getDynamoDbTables().getIssuedReceipts().getTableName(),
-        configuration.getDynamoDbTables().getIssuedReceipts().getExpiration(),
-        dynamoDbAsyncClient,
-        configuration.getDynamoDbTables().getIssuedReceipts().getGenerator(),
-        configuration.getDynamoDbTables().getIssuedReceipts().getmaxIssuedReceiptsPerPaymentId());
-
-    final ServerSecretParams zkSecretParams = new ServerSecretParams(configuration.getZkConfig().serverSecret().value());
-    final ServerZkReceiptOperations zkReceiptOperations = new ServerZkReceiptOperations(zkSecretParams);
-    GooglePlayBillingManager googlePlayBillingManager = new GooglePlayBillingManager(
-        new ByteArrayInputStream(configuration.getGooglePlayBilling().credentialsJson().getBytes(StandardCharsets.UTF_8)),
-        configuration.getGooglePlayBilling().packageName(),
-        configuration.getGooglePlayBilling().applicationName(),
-        configuration.getGooglePlayBilling().productIdToLevel());
-    AppleAppStoreManager appleAppStoreManager = new AppleAppStoreManager(
-        new AppleAppStoreClient(
-            configuration.getAppleAppStore().env(),
-            configuration.getAppleAppStore().bundleId(),
-            configuration.getAppleAppStore().appAppleId(),
-            configuration.getAppleAppStore().issuerId(),
-            configuration.getAppleAppStore().keyId(),
-            configuration.getAppleAppStore().encodedKey().value(),
-            configuration.getAppleAppStore().appleRootCerts(),
-            configuration.getAppleAppStore().retryConfigurationName()),
-        configuration.getAppleAppStore().subscriptionGroupId(),
-        configuration.getAppleAppStore().productIdToLevel());
-    final SubscriptionManager subscriptionManager = new SubscriptionManager(
-        new Subscriptions(configuration.getDynamoDbTables().getSubscriptions().getTableName(), dynamoDbAsyncClient),
-        List.of(googlePlayBillingManager, appleAppStoreManager),
-        zkReceiptOperations,
-        issuedReceiptsManager);
-
-    APNSender apnSender = new APNSender(apnSenderExecutor, configuration.getApnConfiguration());
-    FcmSender fcmSender = new FcmSender(fcmSenderExecutor, configuration.getFcmConfiguration().credentials().value());
-    PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster,
-        apnSender, fcmSender, accountsManager, 0, 0, retryExecutor);
-    PushNotificationManager pushNotificationManager = new PushNotificationManager(accountsManager,
-        apnSender, fcmSender, pushNotificationScheduler);
-    PushNotificationExperimentSamples pushNotificationExperimentSamples =
-        new PushNotificationExperimentSamples(dynamoDbAsyncClient,
+      return new AccountsManager(accounts.get(), phoneNumberIdentifiers.get(), cacheCluster.get(),
+          pubsubClient.get(), accountLockManager, keys.get(), messagesManager.get(), profilesManager.get(),
+          secureStorageClient, secureValueRecovery2Client, disconnectionRequestManager,
+          registrationRecoveryPasswordsManager.get(), clientPublicKeysManager, accountLockExecutor, messagePollExecutor,
+          retryExecutor, clock, configuration.getLinkDeviceSecretConfiguration().secret().value(),
+          dynamicConfigurationManager);
+    });
+    final Supplier<BackupManager> backupManager = lazy(name, "backupManager", () -> {
+      final RateLimiters rateLimiters =
+          RateLimiters.create(dynamicConfigurationManager, rateLimitersCluster.get(), retryExecutor);
+      final BackupsDb backupsDb =
+          new BackupsDb(dynamoDbAsyncClient.get(), configuration.getDynamoDbTables().getBackups().getTableName(), clock);
+      final GenericServerSecretParams backupsGenericZkSecretParams;
+      try {
+        backupsGenericZkSecretParams =
+            new GenericServerSecretParams(configuration.getBackupsZkConfig().serverSecret().value());
+      } catch (InvalidInputException e) {
+        throw new IllegalArgumentException(e);
+      }
+      return new BackupManager(
+          backupsDb,
+          backupsGenericZkSecretParams,
+          rateLimiters,
+          new TusAttachmentGenerator(configuration.getTus()),
+          new Cdn3BackupCredentialGenerator(configuration.getTus()),
+          new Cdn3RemoteStorageManager(
+              remoteStorageHttpExecutor,
+              retryExecutor,
+              configuration.getCdn3StorageManagerConfiguration()),
+          secureValueRecoveryBCredentialsGenerator,
+          secureValueRecoveryBClient.get(),
+          clock,
+          dynamicConfigurationManager);
+    });
+
+    final Supplier<IssuedReceiptsManager> issuedReceiptsManager = lazy(name, "issuedReceiptsManager",
+        () -> new IssuedReceiptsManager(
+            configuration.getDynamoDbTables().getIssuedReceipts().getTableName(),
+            configuration.getDynamoDbTables().getIssuedReceipts().getExpiration(),
+            dynamoDbAsyncClient.get(),
+            configuration.getDynamoDbTables().getIssuedReceipts().getGenerator(),
+            configuration.getDynamoDbTables().getIssuedReceipts().getmaxIssuedReceiptsPerPaymentId()));
+
+    final Supplier<GooglePlayBillingManager> googlePlayBillingManager = lazy(name, "googlePlayBillingManager",
+        () -> new GooglePlayBillingManager(
+            new ByteArrayInputStream(configuration.getGooglePlayBilling().credentialsJson().getBytes(StandardCharsets.UTF_8)),
+            configuration.getGooglePlayBilling().packageName(),
+            configuration.getGooglePlayBilling().applicationName(),
+            configuration.getGooglePlayBilling().productIdToLevel()));
+    final Supplier<AppleAppStoreManager> appleAppStoreManager = lazy(name, "appleAppStoreManager",
+        () -> new AppleAppStoreManager(
+            new AppleAppStoreClient(
+                configuration.getAppleAppStore().env(),
+                configuration.getAppleAppStore().bundleId(),
+                configuration.getAppleAppStore().appAppleId(),
+                configuration.getAppleAppStore().issuerId(),
+                configuration.getAppleAppStore().keyId(),
+                configuration.getAppleAppStore().encodedKey().value(),
+                configuration.getAppleAppStore().appleRootCerts(),
+                configuration.getAppleAppStore().retryConfigurationName()),
+            configuration.getAppleAppStore().subscriptionGroupId(),
+            configuration.getAppleAppStore().productIdToLevel()));
+    final Supplier<SubscriptionManager> subscriptionManager = lazy(name, "subscriptionManager", () -> {
+      final ServerSecretParams zkSecretParams = new ServerSecretParams(configuration.getZkConfig().serverSecret().value());
+
+      return new SubscriptionManager(
+          new Subscriptions(configuration.getDynamoDbTables().getSubscriptions().getTableName(), dynamoDbAsyncClient.get()),
+          List.of(googlePlayBillingManager.get(), appleAppStoreManager.get()),
+          new ServerZkReceiptOperations(zkSecretParams),
+          issuedReceiptsManager.get());
+    });
+
+    final Supplier<APNSender> apnSender = lazy(name, "apnSender",
+        () -> startManaged(environment, new APNSender(apnSenderExecutor, configuration.getApnConfiguration())));
+    final Supplier<FcmSender> fcmSender = lazy(name, "fcmSender",
+        () -> new FcmSender(fcmSenderExecutor, fcmBatchExecutor, configuration.getFcmConfiguration()));
+    final Supplier<PushNotificationManager> pushNotificationManager = lazy(name, "pushNotificationManager", () -> {
+      final PushNotificationScheduler pushNotificationScheduler = new PushNotificationScheduler(pushSchedulerCluster.get(),
+          apnSender.get(), fcmSender.get(), accountsManager.get(), 0, 0, retryExecutor);
+      final PushNotificationCoalescer pushNotificationCoalescer = new PushNotificationCoalescer(pushSchedulerCluster.get());
+
+      return new PushNotificationManager(accountsManager.get(),
+          apnSender.get(), fcmSender.get(), pushNotificationScheduler, pushNotificationCoalescer);
+    });
+    final Supplier<PushNotificationExperimentSamples> pushNotificationExperimentSamples = lazy(name,
+        "pushNotificationExperimentSamples", () -> new PushNotificationExperimentSamples(dynamoDbAsyncClient.get(),
             configuration.getDynamoDbTables().getPushNotificationExperimentSamples().getTableName(),
-            Clock.systemUTC());
+            Clock.systemUTC()));
 
-    final DynamoDbRecoveryManager dynamoDbRecoveryManager =
-        new DynamoDbRecoveryManager(accounts, phoneNumberIdentifiers);
+    final Supplier<DynamoDbRecoveryManager> dynamoDbRecoveryManager = lazy(name, "dynamoDbRecoveryManager",
+        () -> new DynamoDbRecoveryManager(accounts.get(), phoneNumberIdentifiers.get()));
 
-    environment.lifecycle().manage(apnSender);
-    environment.lifecycle().manage(disconnectionRequestManager);
-    environment.lifecycle().manage(redisMessageAvailabilityManager);
     environment.lifecycle().manage(new ManagedAwsCrt());
 
     return new CommandDependencies(
@@ -394,4 +541,140 @@ public record CommandDependencies(
     );
   }
 
+  /**
+   * Returns a supplier that constructs a dependency the first time it's requested and records how long that took
+   * (including the time spent constructing any dependencies it requests in turn).
+   */
+  private static <T> Supplier<T> lazy(final String commandName, final String dependencyName,
+      final Callable<T> initializer) {
+
+    return Suppliers.memoize(() -> {
+      final long startNanos = System.nanoTime();
+
+      try {
+        return initializer.call();
+      } catch (final RuntimeException e) {
+        throw e;
+      } catch (final Exception e) {
+        throw new IllegalStateException("Failed to initialize " + dependencyName, e);
+      } finally {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        Metrics.timer(INITIALIZE_DEPENDENCY_TIMER_NAME, "command", commandName, "dependency", dependencyName)
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        logger.debug("Initialized {} for {} in {}", dependencyName, commandName, Duration.ofNanos(elapsedNanos));
+      }
+    });
+  }
+
+  /**
+   * Starts a lazily-constructed managed dependency. Lazy dependencies may be constructed after the environment's
+   * managed objects have already been started, so they're started as soon as they're constructed and only registered
+   * with the environment's lifecycle so they'll be stopped.
+   */
+  private static <T extends Managed> T startManaged(final Environment environment, final T managed) throws Exception {
+    managed.start();
+
+    environment.lifecycle().manage(new Managed() {
+      @Override
+      public void stop() throws Exception {
+        managed.stop();
+      }
+    });
+
+    return managed;
+  }
+
+  public AccountsManager accountsManager() {
+    return accountsManager.get();
+  }
+
+  public ProfilesManager profilesManager() {
+    return profilesManager.get();
+  }
+
+  public ReportMessageManager reportMessageManager() {
+    return reportMessageManager.get();
+  }
+
+  public MessagesCache messagesCache() {
+    return messagesCache.get();
+  }
+
+  public MessagesManager messagesManager() {
+    return messagesManager.get();
+  }
+
+  public KeysManager keysManager() {
+    return keysManager.get();
+  }
+
+  public RegistrationRecoveryPasswordsManager registrationRecoveryPasswordsManager() {
+    return registrationRecoveryPasswordsManager.get();
+  }
+
+  public APNSender apnSender() {
+    return apnSender.get();
+  }
+
+  public FcmSender fcmSender() {
+    return fcmSender.get();
+  }
+
+  public PushNotificationManager pushNotificationManager() {
+    return pushNotificationManager.get();
+  }
+
+  public PushNotificationExperimentSamples pushNotificationExperimentSamples() {
+    return pushNotificationExperimentSamples.get();
+  }
+
+  public FaultTolerantRedisClusterClient cacheCluster() {
+    return cacheCluster.get();
+  }
+
+  public FaultTolerantRedisClusterClient pushSchedulerCluster() {
+    return pushSchedulerCluster.get();
+  }
+
+  public ClientResources.Builder redisClusterClientResourcesBuilder() {
+    return redisClusterClientResourcesBuilder;
+  }
+
+  public BackupManager backupManager() {
+    return backupManager.get();
+  }
+
+  public IssuedReceiptsManager issuedReceiptsManager() {
+    return issuedReceiptsManager.get();
+  }
+
+  public GooglePlayBillingManager googlePlayBillingManager() {
+    return googlePlayBillingManager.get();
+  }
+
+  public AppleAppStoreManager appleAppStoreManager() {
+    return appleAppStoreManager.get();
+  }
+
+  public SubscriptionManager subscriptionManager() {
+    return subscriptionManager.get();
+  }
+
+  public DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager() {
+    return dynamicConfigurationManager;
+  }
+
+  public DynamoDbAsyncClient dynamoDbAsyncClient() {
+    return dynamoDbAsyncClient.get();
+  }
+
+  public PhoneNumberIdentifiers phoneNumberIdentifiers() {
+    return phoneNumberIdentifiers.get();
+  }
+
+  public DynamoDbRecoveryManager dynamoDbRecoveryManager() {
+    return dynamoDbRecoveryManager.get();
+  }
 }
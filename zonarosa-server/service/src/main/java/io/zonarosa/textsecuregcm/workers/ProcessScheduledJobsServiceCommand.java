@@ -7,11 +7,13 @@ import io.dropwizard.core.server.DefaultServerFactory;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.jetty.HttpsConnectorFactory;
 import io.dropwizard.lifecycle.Managed;
-import io.dropwizard.util.Duration;
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import org.slf4j.Logger;
@@ -19,9 +21,11 @@ import org.slf4j.LoggerFactory;
 import io.zonarosa.server.WhisperServerConfiguration;
 import io.zonarosa.server.metrics.MetricsUtil;
 import io.zonarosa.server.scheduler.JobScheduler;
+import io.zonarosa.server.scheduler.PartitionedProcessingConfiguration;
 import io.zonarosa.server.util.logging.UncaughtExceptionHandler;
 import reactor.core.Disposable;
 import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
 
 public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperServerConfiguration> {
 
@@ -32,6 +36,15 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
   private static final int DEFAULT_FIXED_DELAY_SECONDS = 60;
   private static final String SHUTDOWN_WAIT_SECONDS_ARGUMENT = "shutdownWait";
   private static final int DEFAULT_SHUTDOWN_WAIT_SECONDS = 60;
+  private static final String PARTITIONED_ARGUMENT = "partitioned";
+  private static final String PARTITION_MINUTES_ARGUMENT = "partitionMinutes";
+  private static final int DEFAULT_PARTITION_MINUTES = 5;
+  private static final String SUBPARTITIONS_ARGUMENT = "subpartitions";
+  private static final int DEFAULT_SUBPARTITIONS = 8;
+  private static final String LEASE_SECONDS_ARGUMENT = "leaseSeconds";
+  private static final int DEFAULT_LEASE_SECONDS = 120;
+  private static final String MAX_CONCURRENCY_ARGUMENT = "maxConcurrency";
+  private static final int DEFAULT_MAX_CONCURRENCY = 16;
 
   private static final Logger log = LoggerFactory.getLogger(ProcessScheduledJobsServiceCommand.class);
 
@@ -43,6 +56,9 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
     private final ScheduledExecutorService scheduledExecutorService;
     private final int fixedDelaySeconds;
 
+    @Nullable
+    private final PartitionedProcessingConfiguration partitionedProcessingConfiguration;
+
     private ScheduledFuture<?> processJobsFuture;
     private Disposable processAvailableJobsDisposableReference = Disposables.disposed();
     private boolean stopped = false;
@@ -52,9 +68,22 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
         final ScheduledExecutorService scheduledExecutorService,
         final int fixedDelaySeconds) {
 
+      this(jobScheduler, scheduledExecutorService, fixedDelaySeconds, null);
+    }
+
+    /**
+     * @param partitionedProcessingConfiguration if not {@code null}, process jobs in leased partitions so that several
+     * instances of this command can share the work; otherwise, this instance processes all available jobs by itself
+     */
+    ScheduledJobProcessor(final JobScheduler jobScheduler,
+        final ScheduledExecutorService scheduledExecutorService,
+        final int fixedDelaySeconds,
+        @Nullable final PartitionedProcessingConfiguration partitionedProcessingConfiguration) {
+
       this.jobScheduler = jobScheduler;
       this.scheduledExecutorService = scheduledExecutorService;
       this.fixedDelaySeconds = fixedDelaySeconds;
+      this.partitionedProcessingConfiguration = partitionedProcessingConfiguration;
     }
 
     @Override
@@ -67,7 +96,11 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
             return;
           }
 
-          processAvailableJobsDisposableReference = jobScheduler.processAvailableJobs()
+          final Mono<Void> processAvailableJobs = partitionedProcessingConfiguration != null
+              ? jobScheduler.processAvailableJobs(partitionedProcessingConfiguration)
+              : jobScheduler.processAvailableJobs();
+
+          processAvailableJobsDisposableReference = processAvailableJobs
               // this CountDownLatch pattern is how Mono.block() is implemented
               .doOnCancel(latch::countDown)
               .doOnTerminate(latch::countDown)
@@ -129,6 +162,35 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
         .dest(SHUTDOWN_WAIT_SECONDS_ARGUMENT)
         .setDefault(DEFAULT_SHUTDOWN_WAIT_SECONDS)
         .help("The duration, in seconds, to wait for in-flight jobs to finish at shutdown");
+
+    subparser.addArgument("--partitioned")
+        .action(Arguments.storeTrue())
+        .dest(PARTITIONED_ARGUMENT)
+        .help("Process jobs in leased time partitions so multiple instances of this command can share the work");
+
+    subparser.addArgument("--partition-minutes")
+        .type(Integer.class)
+        .dest(PARTITION_MINUTES_ARGUMENT)
+        .setDefault(DEFAULT_PARTITION_MINUTES)
+        .help("The span, in minutes, of scheduled times covered by each partition when processing in partitions");
+
+    subparser.addArgument("--subpartitions")
+        .type(Integer.class)
+        .dest(SUBPARTITIONS_ARGUMENT)
+        .setDefault(DEFAULT_SUBPARTITIONS)
+        .help("The number of sub-partitions per partition when processing in partitions; each sub-partition can be processed by a different instance");
+
+    subparser.addArgument("--lease-seconds")
+        .type(Integer.class)
+        .dest(LEASE_SECONDS_ARGUMENT)
+        .setDefault(DEFAULT_LEASE_SECONDS)
+        .help("The duration, in seconds, for which a partition is leased to one instance when processing in partitions");
+
+    subparser.addArgument("--max-concurrency")
+        .type(Integer.class)
+        .dest(MAX_CONCURRENCY_ARGUMENT)
+        .setDefault(DEFAULT_MAX_CONCURRENCY)
+        .help("The maximum number of jobs to process concurrently within a partition when processing in partitions");
   }
 
   @Override
@@ -144,6 +206,15 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
     final int fixedDelaySeconds = namespace.getInt(FIXED_DELAY_SECONDS_ARGUMENT);
     final int shutdownWaitSeconds = namespace.getInt(SHUTDOWN_WAIT_SECONDS_ARGUMENT);
 
+    final PartitionedProcessingConfiguration partitionedProcessingConfiguration =
+        namespace.getBoolean(PARTITIONED_ARGUMENT)
+            ? new PartitionedProcessingConfiguration(
+                Duration.ofMinutes(namespace.getInt(PARTITION_MINUTES_ARGUMENT)),
+                namespace.getInt(SUBPARTITIONS_ARGUMENT),
+                Duration.ofSeconds(namespace.getInt(LEASE_SECONDS_ARGUMENT)),
+                namespace.getInt(MAX_CONCURRENCY_ARGUMENT))
+            : null;
+
     MetricsUtil.configureRegistries(configuration, environment, commandDependencies.dynamicConfigurationManager());
 
     // Even though we're not actually serving traffic, `ServerCommand` subclasses need a valid server configuration, and
@@ -159,12 +230,13 @@ public class ProcessScheduledJobsServiceCommand extends ServerCommand<WhisperSer
 
     final ScheduledExecutorService scheduledExecutorService =
         environment.lifecycle().scheduledExecutorService("scheduled-job-processor-%d", false)
-            .shutdownTime(Duration.seconds(shutdownWaitSeconds))
+            .shutdownTime(io.dropwizard.util.Duration.seconds(shutdownWaitSeconds))
             .build();
 
     final JobScheduler jobScheduler = jobSchedulerFactory.buildJobScheduler(commandDependencies, configuration);
 
-    environment.lifecycle().manage(new ScheduledJobProcessor(jobScheduler, scheduledExecutorService, fixedDelaySeconds));
+    environment.lifecycle().manage(new ScheduledJobProcessor(jobScheduler, scheduledExecutorService, fixedDelaySeconds,
+        partitionedProcessingConfiguration));
 
     super.run(environment, namespace, configuration);
   }
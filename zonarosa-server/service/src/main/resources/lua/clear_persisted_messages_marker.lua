@@ -0,0 +1,11 @@
+-- Removes the marker indicating that a device may have persisted messages, but only if the marker has not been
+-- replaced (i.e. by a subsequent persist-to-DynamoDB run) since the caller read it
+
+local persistedMessagesMarkerKey = KEYS[1] -- simple string key whose presence indicates persisted messages may exist
+local expectedMarkerValue        = ARGV[1] -- [bytes] the marker value the caller observed before reading DynamoDB
+
+if redis.call("GET", persistedMessagesMarkerKey) == expectedMarkerValue then
+  return redis.call("DEL", persistedMessagesMarkerKey)
+end
+
+return 0
@@ -15,6 +15,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -45,8 +46,10 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -114,7 +117,7 @@ public class BackupManagerTest {
   private final byte[] backupKey = TestRandomUtil.nextBytes(32);
   private final UUID aci = UUID.randomUUID();
   private final DynamicBackupConfiguration backupConfiguration = new DynamicBackupConfiguration(
-    3, 4, 5, Duration.ofSeconds(30), MAX_TOTAL_MEDIA_BYTES);
+    3, 4, 5, Duration.ofSeconds(30), MAX_TOTAL_MEDIA_BYTES, 4);
 
 
   private static final SecureValueRecoveryConfiguration CFG = new SecureValueRecoveryConfiguration(
@@ -1006,6 +1009,116 @@ public class BackupManagerTest {
     verifyNoMoreInteractions(remoteStorageManager);
   }
 
+  @Test
+  public void expireBackupSharded() throws BackupException {
+    final AuthenticatedBackupUser backupUser = backupUser(TestRandomUtil.nextBytes(16), BackupCredentialType.MESSAGES, BackupLevel.PAID);
+    backupManager.createMessageBackupUploadDescriptor(backupUser);
+
+    final ExpiredBackup expiredBackup = expiredBackup(ExpiredBackup.ExpirationType.MEDIA, backupUser);
+    final String mediaPrefix = expiredBackup.prefixToDelete() + "/";
+
+    // More than a page of objects, so the deletion should be split into shards
+    final Set<String> objects = new ConcurrentSkipListSet<>();
+    IntStream.range(0, 2500)
+        .mapToObj(i -> mediaPrefix + BackupManager.encodeMediaIdForCdn(TestRandomUtil.nextBytes(15)))
+        .forEach(objects::add);
+    fakeRemoteStorage(objects);
+
+    backupManager.expireBackup(expiredBackup).join();
+
+    assertThat(objects).isEmpty();
+    for (final String shard : BackupManager.EXPIRATION_SHARDS) {
+      verify(remoteStorageManager, times(1)).list(eq(mediaPrefix + shard), eq(Optional.empty()), anyLong());
+    }
+    verify(remoteStorageManager, times(2500)).delete(anyString());
+
+    // Finishing the expiration clears the checkpoints
+    assertThat(backupsDb.getCompletedExpirationShards(expiredBackup).join()).isEmpty();
+  }
+
+  @Test
+  public void expireWholeBackupShardsMedia() throws BackupException {
+    final AuthenticatedBackupUser backupUser = backupUser(TestRandomUtil.nextBytes(16), BackupCredentialType.MESSAGES, BackupLevel.PAID);
+    backupManager.createMessageBackupUploadDescriptor(backupUser);
+    when(svrbClient.removeData(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+    final ExpiredBackup expiredBackup = expiredBackup(ExpiredBackup.ExpirationType.ALL, backupUser);
+    final String backupPrefix = expiredBackup.prefixToDelete() + "/";
+    final String mediaPrefix = backupPrefix + backupUser.mediaDir() + "/";
+
+    // All the media lives under the media directory, next to the message backup
+    final Set<String> objects = new ConcurrentSkipListSet<>();
+    objects.add(backupPrefix + BackupManager.MESSAGE_BACKUP_NAME);
+    IntStream.range(0, 2500)
+        .mapToObj(i -> mediaPrefix + BackupManager.encodeMediaIdForCdn(TestRandomUtil.nextBytes(15)))
+        .forEach(objects::add);
+    fakeRemoteStorage(objects);
+
+    final Set<String> mediaShards = objects.stream()
+        .filter(key -> key.startsWith(mediaPrefix))
+        .map(key -> key.substring(mediaPrefix.length(), mediaPrefix.length() + 1))
+        .collect(Collectors.toSet());
+    assertThat(mediaShards).hasSizeGreaterThan(1);
+
+    backupManager.expireBackup(expiredBackup).join();
+
+    assertThat(objects).isEmpty();
+
+    // The media should be spread across shards within the media directory rather than all landing in the shard for
+    // the first character of the media directory's name
+    for (final String shard : BackupManager.EXPIRATION_SHARDS) {
+      verify(remoteStorageManager, times(1)).list(eq(mediaPrefix + shard), eq(Optional.empty()), anyLong());
+    }
+    verify(remoteStorageManager, never()).list(eq(backupPrefix + backupUser.mediaDir().charAt(0)), any(), anyLong());
+    verify(remoteStorageManager, times(2501)).delete(anyString());
+  }
+
+  @Test
+  public void getExpirationShards() {
+    final String backupDir = "a".repeat(BackupsDb.BACKUP_DIRECTORY_PATH_LENGTH);
+    final String mediaDir = "b".repeat(BackupsDb.MEDIA_DIRECTORY_PATH_LENGTH - BackupsDb.BACKUP_DIRECTORY_PATH_LENGTH - 1);
+    final RemoteStorageManager.ListResult firstPage = new RemoteStorageManager.ListResult(List.of(
+        new RemoteStorageManager.ListResult.Entry(mediaDir + "/AAAA", 1L),
+        new RemoteStorageManager.ListResult.Entry(mediaDir + "/BBBB", 1L),
+        new RemoteStorageManager.ListResult.Entry(BackupManager.MESSAGE_BACKUP_NAME, 1L)),
+        Optional.of("cursor"));
+
+    assertThat(BackupManager.getExpirationShards(
+        new ExpiredBackup(new byte[0], ExpiredBackup.ExpirationType.MEDIA, Instant.now(), backupDir + "/" + mediaDir),
+        firstPage))
+        .containsExactlyElementsOf(BackupManager.EXPIRATION_SHARDS);
+
+    assertThat(BackupManager.getExpirationShards(
+        new ExpiredBackup(new byte[0], ExpiredBackup.ExpirationType.ALL, Instant.now(), backupDir),
+        firstPage))
+        .containsExactlyElementsOf(BackupManager.EXPIRATION_SHARDS.stream().map(shard -> mediaDir + "/" + shard).toList());
+  }
+
+  @Test
+  public void expireBackupShardedSkipsCompletedShards() throws BackupException {
+    final AuthenticatedBackupUser backupUser = backupUser(TestRandomUtil.nextBytes(16), BackupCredentialType.MESSAGES, BackupLevel.PAID);
+    backupManager.createMessageBackupUploadDescriptor(backupUser);
+
+    // Simulate a prior attempt that failed after emptying the "A" shard
+    final ExpiredBackup expiredBackup = expiredBackup(ExpiredBackup.ExpirationType.MEDIA, backupUser);
+    backupsDb.startExpiration(expiredBackup).join();
+    backupsDb.recordExpiredShardDeleted(expiredBackup, "A").join();
+
+    final String mediaPrefix = expiredBackup.prefixToDelete() + "/";
+    final Set<String> objects = new ConcurrentSkipListSet<>();
+    IntStream.range(0, 1500).mapToObj(i -> mediaPrefix + "B" + i).forEach(objects::add);
+    fakeRemoteStorage(objects);
+
+    final ExpiredBackup retry = new ExpiredBackup(expiredBackup.hashedBackupId(),
+        ExpiredBackup.ExpirationType.GARBAGE_COLLECTION, expiredBackup.lastRefresh(), expiredBackup.prefixToDelete());
+    backupManager.expireBackup(retry).join();
+
+    assertThat(objects).isEmpty();
+    verify(remoteStorageManager, times(0)).list(eq(mediaPrefix + "A"), any(), anyLong());
+    verify(remoteStorageManager, times(1)).list(eq(mediaPrefix + "B"), eq(Optional.empty()), anyLong());
+    assertThat(backupsDb.getCompletedExpirationShards(retry).join()).isEmpty();
+  }
+
   @ParameterizedTest
   @EnumSource(BackupLevel.class)
   void svrbAuthValid(BackupLevel backupLevel) throws BackupException {
@@ -1047,6 +1160,30 @@ public class BackupManagerTest {
     return backupManager.copyToBackup(backupManager.getCopyQuota(backupUser, List.of(COPY_PARAM))).single().block();
   }
 
+  /**
+   * Back the mocked remote storage manager with a set of object keys, listing them in order and paging by key
+   */
+  private void fakeRemoteStorage(final Set<String> objects) {
+    when(remoteStorageManager.list(anyString(), any(), anyLong())).thenAnswer(a -> {
+      final String prefix = a.getArgument(0);
+      final Optional<String> cursor = a.getArgument(1);
+      final long limit = a.getArgument(2);
+      final List<String> matching = objects.stream()
+          .filter(key -> key.startsWith(prefix))
+          .filter(key -> cursor.map(c -> key.compareTo(c) > 0).orElse(true))
+          .sorted()
+          .toList();
+      final List<String> page = matching.stream().limit(limit).toList();
+      return CompletableFuture.completedFuture(new RemoteStorageManager.ListResult(
+          page.stream().map(key -> new RemoteStorageManager.ListResult.Entry(key.substring(prefix.length()), 1L)).toList(),
+          matching.size() > page.size() ? Optional.of(page.getLast()) : Optional.empty()));
+    });
+    when(remoteStorageManager.delete(anyString())).thenAnswer(a -> {
+      objects.remove(a.<String>getArgument(0));
+      return CompletableFuture.completedFuture(1L);
+    });
+  }
+
   private static ExpiredBackup expiredBackup(final ExpiredBackup.ExpirationType expirationType,
       final AuthenticatedBackupUser backupUser) {
     return new ExpiredBackup(
@@ -8,11 +8,13 @@ package io.zonarosa.server.backup;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,10 +29,13 @@ import io.zonarosa.libzonarosa.zkgroup.backups.BackupLevel;
 import io.zonarosa.server.auth.AuthenticatedBackupUser;
 import io.zonarosa.server.storage.DynamoDbExtension;
 import io.zonarosa.server.storage.DynamoDbExtensionSchema;
+import io.zonarosa.server.util.AttributeValues;
 import io.zonarosa.server.util.CompletableFutureTestUtil;
 import io.zonarosa.server.util.TestClock;
 import io.zonarosa.server.util.TestRandomUtil;
 import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 
 public class BackupsDbTest {
 
@@ -135,6 +140,70 @@ public class BackupsDbTest {
     assertThat(expiredBackups.apply(days(3))).isEmpty();
   }
 
+  @Test
+  public void expirationShardCheckpoints() {
+    final byte[] backupId = TestRandomUtil.nextBytes(16);
+    testClock.pin(days(0));
+    backupsDb.setPublicKey(backupId, BackupLevel.PAID, ECKeyPair.generate().getPublicKey()).join();
+    this.backupsDb.ttlRefresh(backupUser(backupId, BackupCredentialType.MEDIA, BackupLevel.PAID)).join();
+
+    final ExpiredBackup expired = backupsDb
+        .getExpiredBackups(1, Schedulers.immediate(), days(1))
+        .collectList()
+        .block()
+        .getFirst();
+    assertThat(expired.expirationType()).isEqualTo(ExpiredBackup.ExpirationType.ALL);
+
+    // Not expiring yet, so checkpoints are ignored
+    backupsDb.recordExpiredShardDeleted(expired, "A").join();
+    assertThat(backupsDb.getCompletedExpirationShards(expired).join()).isEmpty();
+
+    backupsDb.startExpiration(expired).join();
+    backupsDb.recordExpiredShardDeleted(expired, "A").join();
+    backupsDb.recordExpiredShardDeleted(expired, "b").join();
+    backupsDb.recordExpiredShardDeleted(expired, "A").join();
+    assertThat(backupsDb.getCompletedExpirationShards(expired).join()).containsExactlyInAnyOrder("A", "b");
+
+    // Checkpoints only apply to the prefix that was recorded
+    final ExpiredBackup otherPrefix = new ExpiredBackup(expired.hashedBackupId(), expired.expirationType(),
+        expired.lastRefresh(), BackupsDb.generateDirName(new SecureRandom()));
+    assertThat(backupsDb.getCompletedExpirationShards(otherPrefix).join()).isEmpty();
+  }
+
+  @Test
+  public void finishExpirationClearsShardCheckpoints() {
+    final byte[] backupId = TestRandomUtil.nextBytes(16);
+    testClock.pin(days(0));
+    backupsDb.setPublicKey(backupId, BackupLevel.PAID, ECKeyPair.generate().getPublicKey()).join();
+    this.backupsDb.ttlRefresh(backupUser(backupId, BackupCredentialType.MEDIA, BackupLevel.PAID)).join();
+
+    // refresh only messages, so only the media will be expired
+    testClock.pin(days(2));
+    this.backupsDb.ttlRefresh(backupUser(backupId, BackupCredentialType.MEDIA, BackupLevel.FREE)).join();
+
+    final ExpiredBackup expired = backupsDb
+        .getExpiredBackups(1, Schedulers.immediate(), days(1))
+        .collectList()
+        .block()
+        .getFirst();
+    assertThat(expired.expirationType()).isEqualTo(ExpiredBackup.ExpirationType.MEDIA);
+
+    backupsDb.startExpiration(expired).join();
+    backupsDb.recordExpiredShardDeleted(expired, "A").join();
+    backupsDb.finishExpiration(expired).join();
+
+    // A later expiration that happens to reuse the prefix shouldn't see stale checkpoints
+    final ExpiredBackup garbageCollection = new ExpiredBackup(expired.hashedBackupId(),
+        ExpiredBackup.ExpirationType.GARBAGE_COLLECTION, expired.lastRefresh(), expired.prefixToDelete());
+    assertThat(backupsDb.getCompletedExpirationShards(garbageCollection).join()).isEmpty();
+    final Map<String, AttributeValue> item = DYNAMO_DB_EXTENSION.getDynamoDbClient().getItem(GetItemRequest.builder()
+            .tableName(DynamoDbExtensionSchema.Tables.BACKUPS.tableName())
+            .key(Map.of(BackupsDb.KEY_BACKUP_ID_HASH, AttributeValues.b(expired.hashedBackupId())))
+            .build())
+        .item();
+    assertThat(item).doesNotContainKey(BackupsDb.ATTR_EXPIRED_PREFIX_COMPLETED_SHARDS);
+  }
+
   @ParameterizedTest
   @EnumSource(names = {"MEDIA", "ALL"})
   public void expirationFailed(ExpiredBackup.ExpirationType expirationType) {
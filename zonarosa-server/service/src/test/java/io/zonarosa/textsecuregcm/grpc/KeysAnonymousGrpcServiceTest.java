@@ -107,8 +107,8 @@ class KeysAnonymousGrpcServiceTest extends SimpleBaseGrpcTest<KeysAnonymousGrpcS
     final KeysManager.DevicePreKeys devicePreKeys =
         new KeysManager.DevicePreKeys(ecSignedPreKey, Optional.of(ecPreKey), kemSignedPreKey);
 
-    when(keysManager.takeDevicePreKeys(eq(Device.PRIMARY_ID), eq(identifier), any()))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(devicePreKeys)));
+    when(keysManager.takeDevicePreKeys(eq(List.of(Device.PRIMARY_ID)), eq(identifier), any()))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(Device.PRIMARY_ID, devicePreKeys)));
 
     final GetPreKeysAnonymousResponse response = unauthenticatedServiceStub().getPreKeys(GetPreKeysAnonymousRequest.newBuilder()
         .setUnidentifiedAccessKey(ByteString.copyFrom(unidentifiedAccessKey))
@@ -155,8 +155,8 @@ class KeysAnonymousGrpcServiceTest extends SimpleBaseGrpcTest<KeysAnonymousGrpcS
     final KeysManager.DevicePreKeys devicePreKeys =
         new KeysManager.DevicePreKeys(ecSignedPreKey, Optional.of(ecPreKey), kemSignedPreKey);
 
-    when(keysManager.takeDevicePreKeys(eq(Device.PRIMARY_ID), eq(identifier), any()))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(devicePreKeys)));
+    when(keysManager.takeDevicePreKeys(eq(List.of(Device.PRIMARY_ID)), eq(identifier), any()))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(Device.PRIMARY_ID, devicePreKeys)));
 
     // Expirations must be on day boundaries or libzonarosa will refuse to create or verify the token
     final Instant expiration = Instant.now().truncatedTo(ChronoUnit.DAYS);
@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -530,9 +531,14 @@ class KeysGrpcServiceTest extends SimpleBaseGrpcTest<KeysGrpcService, KeysGrpc.K
 
     when(targetAccount.getDevices()).thenReturn(new ArrayList<>(devices.values()));
 
-    devicePreKeysMap.forEach((deviceId, preKeys) -> when(keysManager.takeDevicePreKeys(eq(deviceId),
-        eq(serviceIdentifier), any()))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(preKeys))));
+    when(keysManager.takeDevicePreKeys(anyList(), eq(serviceIdentifier), any())).thenAnswer(invocation -> {
+      final List<Byte> deviceIds = invocation.getArgument(0);
+      final Map<Byte, KeysManager.DevicePreKeys> preKeys = new HashMap<>();
+
+      deviceIds.forEach(deviceId -> preKeys.put(deviceId, devicePreKeysMap.get(deviceId)));
+
+      return CompletableFuture.completedFuture(preKeys);
+    });
 
     {
       final GetPreKeysResponse response = authenticatedServiceStub().getPreKeys(GetPreKeysRequest.newBuilder()
@@ -143,7 +143,8 @@ public class RateLimitersLuaScriptTest {
         redisCluster,
         mock(ScheduledExecutorService.class),
         Clock.systemUTC());
-    when(redisCluster.withCluster(any())).thenThrow(new RedisException("fail"));
+    when(redisCluster.withCluster(any(FaultTolerantRedisClusterClient.Lane.class), any()))
+        .thenThrow(new RedisException("fail"));
     final RateLimiter rateLimiter = limiters.forDescriptor(descriptor);
 
     if (failOpen) {
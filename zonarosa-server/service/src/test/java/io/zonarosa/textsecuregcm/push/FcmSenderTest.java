@@ -5,32 +5,72 @@
 
 package io.zonarosa.server.push;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.core.SettableApiFuture;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.messaging.BatchResponse;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import io.zonarosa.server.tests.util.SynchronousExecutorService;
 
 class FcmSenderTest {
 
+  @RegisterExtension
+  private static final WireMockExtension wireMock = WireMockExtension.newInstance()
+      .options(wireMockConfig().dynamicPort())
+      .build();
+
+  private static final String FCM_PROJECT_ID = "fcm-sender-test";
+  private static final String FCM_SEND_PATH = "/v1/projects/" + FCM_PROJECT_ID + "/messages:send";
+
   private ExecutorService executorService;
   private FirebaseMessaging firebaseMessaging;
 
@@ -124,4 +164,248 @@ class FcmSenderTest {
     verify(firebaseMessaging).sendAsync(any(Message.class));
     assertTrue(completionException.getCause() instanceof IOException);
   }
+
+  @Test
+  void testSendBatch() throws InterruptedException {
+    final ScheduledExecutorService batchExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    try {
+      final int batchSize = 3;
+
+      // Use a long delay so that only full batches get sent
+      final FcmSender batchingFcmSender =
+          new FcmSender(executorService, firebaseMessaging, batchExecutor, batchSize, Duration.ofMinutes(1));
+
+      final FirebaseMessagingException unregisteredException = mock(FirebaseMessagingException.class);
+      when(unregisteredException.getMessagingErrorCode()).thenReturn(MessagingErrorCode.UNREGISTERED);
+
+      final SendResponse acceptedResponse = mock(SendResponse.class);
+      when(acceptedResponse.isSuccessful()).thenReturn(true);
+
+      final SendResponse unregisteredResponse = mock(SendResponse.class);
+      when(unregisteredResponse.isSuccessful()).thenReturn(false);
+      when(unregisteredResponse.getException()).thenReturn(unregisteredException);
+
+      final BatchResponse batchResponse = mock(BatchResponse.class);
+      when(batchResponse.getResponses()).thenReturn(List.of(acceptedResponse, unregisteredResponse, acceptedResponse));
+
+      final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+      sendFuture.set(batchResponse);
+
+      when(firebaseMessaging.sendEachAsync(anyList())).thenReturn(sendFuture);
+
+      final List<CompletableFuture<SendPushNotificationResult>> resultFutures = IntStream.range(0, batchSize)
+          .mapToObj(i -> batchingFcmSender.sendNotification(new PushNotification("token-" + i,
+              PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true)))
+          .toList();
+
+      final List<SendPushNotificationResult> results = resultFutures.stream().map(CompletableFuture::join).toList();
+
+      verify(firebaseMessaging).sendEachAsync(anyList());
+      verify(firebaseMessaging, never()).sendAsync(any());
+
+      assertTrue(results.get(0).accepted());
+      assertFalse(results.get(0).unregistered());
+
+      assertFalse(results.get(1).accepted());
+      assertEquals(Optional.of("UNREGISTERED"), results.get(1).errorCode());
+      assertTrue(results.get(1).unregistered());
+
+      assertTrue(results.get(2).accepted());
+    } finally {
+      batchExecutor.shutdown();
+
+      //noinspection ResultOfMethodCallIgnored
+      batchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void testSendPartialBatchAfterDelay() throws InterruptedException {
+    final ScheduledExecutorService batchExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    try {
+      final FcmSender batchingFcmSender =
+          new FcmSender(executorService, firebaseMessaging, batchExecutor, 100, Duration.ofMillis(10));
+
+      final SendResponse acceptedResponse = mock(SendResponse.class);
+      when(acceptedResponse.isSuccessful()).thenReturn(true);
+
+      final BatchResponse batchResponse = mock(BatchResponse.class);
+      when(batchResponse.getResponses()).thenReturn(List.of(acceptedResponse));
+
+      final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+      sendFuture.set(batchResponse);
+
+      when(firebaseMessaging.sendEachAsync(anyList())).thenReturn(sendFuture);
+
+      final SendPushNotificationResult result = batchingFcmSender.sendNotification(new PushNotification("foo",
+          PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true))
+          .join();
+
+      verify(firebaseMessaging).sendEachAsync(anyList());
+      assertTrue(result.accepted());
+    } finally {
+      batchExecutor.shutdown();
+
+      //noinspection ResultOfMethodCallIgnored
+      batchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void testSendBatchException() throws InterruptedException {
+    final ScheduledExecutorService batchExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    try {
+      final FcmSender batchingFcmSender =
+          new FcmSender(executorService, firebaseMessaging, batchExecutor, 2, Duration.ofMinutes(1));
+
+      final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+      sendFuture.setException(new IOException());
+
+      when(firebaseMessaging.sendEachAsync(anyList())).thenReturn(sendFuture);
+
+      final List<CompletableFuture<SendPushNotificationResult>> resultFutures = IntStream.range(0, 2)
+          .mapToObj(i -> batchingFcmSender.sendNotification(new PushNotification("token-" + i,
+              PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true)))
+          .toList();
+
+      for (final CompletableFuture<SendPushNotificationResult> resultFuture : resultFutures) {
+        final CompletionException completionException = assertThrows(CompletionException.class, resultFuture::join);
+        assertTrue(completionException.getCause() instanceof IOException);
+      }
+    } finally {
+      batchExecutor.shutdown();
+
+      //noinspection ResultOfMethodCallIgnored
+      batchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  void testSendBatchRejected() throws InterruptedException {
+    final ScheduledExecutorService batchExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    try {
+      final FcmSender batchingFcmSender =
+          new FcmSender(executorService, firebaseMessaging, batchExecutor, 2, Duration.ofMinutes(1));
+
+      final FirebaseMessagingException quotaExceededException = mock(FirebaseMessagingException.class);
+      when(quotaExceededException.getMessagingErrorCode()).thenReturn(MessagingErrorCode.QUOTA_EXCEEDED);
+
+      final SettableApiFuture<BatchResponse> sendFuture = SettableApiFuture.create();
+      sendFuture.setException(quotaExceededException);
+
+      when(firebaseMessaging.sendEachAsync(anyList())).thenReturn(sendFuture);
+
+      final List<CompletableFuture<SendPushNotificationResult>> resultFutures = IntStream.range(0, 2)
+          .mapToObj(i -> batchingFcmSender.sendNotification(new PushNotification("token-" + i,
+              PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, null, null, true)))
+          .toList();
+
+      // A rejected batch should look the same to callers as a rejected single notification
+      for (final CompletableFuture<SendPushNotificationResult> resultFuture : resultFutures) {
+        final SendPushNotificationResult result = resultFuture.join();
+
+        assertFalse(result.accepted());
+        assertEquals(Optional.of("QUOTA_EXCEEDED"), result.errorCode());
+        assertFalse(result.unregistered());
+      }
+    } finally {
+      batchExecutor.shutdown();
+
+      //noinspection ResultOfMethodCallIgnored
+      batchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void testSendToFcmServer(final boolean batching) throws InterruptedException {
+    wireMock.stubFor(post(urlEqualTo(FCM_SEND_PATH))
+        .withRequestBody(matchingJsonPath("$.message.token", equalTo("accepted")))
+        .willReturn(okJson("{\"name\": \"projects/" + FCM_PROJECT_ID + "/messages/1\"}")));
+
+    wireMock.stubFor(post(urlEqualTo(FCM_SEND_PATH))
+        .withRequestBody(matchingJsonPath("$.message.token", equalTo("unregistered")))
+        .willReturn(fcmError(404, "NOT_FOUND", "UNREGISTERED")));
+
+    wireMock.stubFor(post(urlEqualTo(FCM_SEND_PATH))
+        .withRequestBody(matchingJsonPath("$.message.token", equalTo("quota-exceeded")))
+        .willReturn(fcmError(429, "RESOURCE_EXHAUSTED", "QUOTA_EXCEEDED")));
+
+    // Route every request the Firebase client makes to the local server instead of fcm.googleapis.com
+    final NetHttpTransport httpTransport = new NetHttpTransport.Builder()
+        .setConnectionFactory(url ->
+            (HttpURLConnection) URI.create(wireMock.baseUrl() + url.getFile()).toURL().openConnection())
+        .build();
+
+    final FirebaseApp firebaseApp = FirebaseApp.initializeApp(FirebaseOptions.builder()
+        .setCredentials(GoogleCredentials.create(
+            new AccessToken("test-token", Date.from(Instant.now().plus(Duration.ofHours(1))))))
+        .setProjectId(FCM_PROJECT_ID)
+        .setHttpTransport(httpTransport)
+        .build(), "fcm-sender-test-" + batching);
+
+    final ScheduledExecutorService batchExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    try {
+      final List<String> tokens = List.of("accepted", "unregistered", "quota-exceeded");
+
+      // Use a long delay so that the batch is only sent once it's full
+      final FcmSender httpFcmSender = new FcmSender(executorService, FirebaseMessaging.getInstance(firebaseApp),
+          batching ? batchExecutor : null, batching ? tokens.size() : 1, Duration.ofMinutes(1));
+
+      final List<CompletableFuture<SendPushNotificationResult>> resultFutures = tokens.stream()
+          .map(token -> httpFcmSender.sendNotification(new PushNotification(token, PushNotification.TokenType.FCM,
+              PushNotification.NotificationType.NOTIFICATION, null, null, null, true)))
+          .toList();
+
+      final List<SendPushNotificationResult> results = resultFutures.stream().map(CompletableFuture::join).toList();
+
+      assertTrue(results.get(0).accepted());
+      assertTrue(results.get(0).errorCode().isEmpty());
+      assertFalse(results.get(0).unregistered());
+
+      assertFalse(results.get(1).accepted());
+      assertEquals(Optional.of("UNREGISTERED"), results.get(1).errorCode());
+      assertTrue(results.get(1).unregistered());
+
+      assertFalse(results.get(2).accepted());
+      assertEquals(Optional.of("QUOTA_EXCEEDED"), results.get(2).errorCode());
+      assertFalse(results.get(2).unregistered());
+
+      // Firebase sends one HTTP request per notification, even when notifications are handed to it as a batch
+      wireMock.verify(tokens.size(), postRequestedFor(urlEqualTo(FCM_SEND_PATH)));
+    } finally {
+      batchExecutor.shutdown();
+
+      //noinspection ResultOfMethodCallIgnored
+      batchExecutor.awaitTermination(1, TimeUnit.SECONDS);
+
+      firebaseApp.delete();
+    }
+  }
+
+  private static ResponseDefinitionBuilder fcmError(final int httpStatus, final String status, final String errorCode) {
+    return aResponse()
+        .withStatus(httpStatus)
+        .withHeader("Content-Type", "application/json")
+        .withBody("""
+            {
+              "error": {
+                "code": %d,
+                "message": "%s",
+                "status": "%s",
+                "details": [
+                  {
+                    "@type": "type.googleapis.com/google.firebase.fcm.v1.FcmError",
+                    "errorCode": "%s"
+                  }
+                ]
+              }
+            }
+            """.formatted(httpStatus, errorCode, status, errorCode));
+  }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.push;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import io.zonarosa.server.redis.FaultTolerantRedisClusterClient;
+import io.zonarosa.server.redis.RedisClusterExtension;
+import io.zonarosa.server.util.TestClock;
+
+class PushNotificationCoalescerTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private TestClock clock;
+  private PushNotificationCoalescer pushNotificationCoalescer;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final byte DEVICE_ID = 1;
+  private static final Duration COALESCING_WINDOW = Duration.ofSeconds(2);
+
+  @BeforeEach
+  void setUp() {
+    clock = TestClock.pinned(Instant.now());
+    pushNotificationCoalescer = buildCoalescer();
+  }
+
+  private PushNotificationCoalescer buildCoalescer() {
+    return new PushNotificationCoalescer(REDIS_CLUSTER_EXTENSION.getRedisCluster(), clock, COALESCING_WINDOW);
+  }
+
+  @Test
+  void shouldSendCoalescesNonUrgentDuplicates() {
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+    assertFalse(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, (byte) (DEVICE_ID + 1), false).join(),
+        "Notifications to other devices should not be coalesced");
+  }
+
+  @Test
+  void shouldSendUrgentPassesThrough() {
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, true).join());
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, true).join(),
+        "Urgent notifications should never be coalesced");
+
+    assertFalse(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join(),
+        "Non-urgent notifications should be collapsed into a recent urgent notification");
+  }
+
+  @Test
+  void shouldSendUrgentAfterNonUrgent() {
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, true).join(),
+        "Urgent notifications should never be held back by non-urgent notifications");
+  }
+
+  @Test
+  void shouldSendAfterWindow() {
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+
+    clock.pin(clock.instant().plus(COALESCING_WINDOW));
+
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+  }
+
+  @Test
+  void shouldSendAcrossInstances() {
+    final PushNotificationCoalescer otherCoalescer = buildCoalescer();
+
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+    assertFalse(otherCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+
+    assertTrue(otherCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, true).join(),
+        "Urgent notifications should not be coalesced across instances");
+  }
+
+  @Test
+  void reset() {
+    final PushNotificationCoalescer otherCoalescer = buildCoalescer();
+
+    assertTrue(pushNotificationCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+
+    otherCoalescer.reset(ACCOUNT_IDENTIFIER, DEVICE_ID).join();
+    pushNotificationCoalescer.reset(ACCOUNT_IDENTIFIER, DEVICE_ID).join();
+
+    assertTrue(otherCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, false).join());
+  }
+
+  @Test
+  void resetWithoutRedisKey() {
+    final FaultTolerantRedisClusterClient redisCluster = mock(FaultTolerantRedisClusterClient.class);
+    final PushNotificationCoalescer localCoalescer = new PushNotificationCoalescer(redisCluster, clock, COALESCING_WINDOW);
+
+    assertTrue(localCoalescer.shouldSend(ACCOUNT_IDENTIFIER, DEVICE_ID, true).join());
+
+    localCoalescer.reset(ACCOUNT_IDENTIFIER, DEVICE_ID).join();
+    localCoalescer.reset(ACCOUNT_IDENTIFIER, (byte) (DEVICE_ID + 1)).join();
+
+    verifyNoInteractions(redisCluster);
+  }
+}
@@ -5,7 +5,10 @@
 
 package io.zonarosa.server.push;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyByte;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -35,6 +38,7 @@ class PushNotificationManagerTest {
   private APNSender apnSender;
   private FcmSender fcmSender;
   private PushNotificationScheduler pushNotificationScheduler;
+  private PushNotificationCoalescer pushNotificationCoalescer;
 
   private PushNotificationManager pushNotificationManager;
 
@@ -44,11 +48,18 @@ class PushNotificationManagerTest {
     apnSender = mock(APNSender.class);
     fcmSender = mock(FcmSender.class);
     pushNotificationScheduler = mock(PushNotificationScheduler.class);
+    pushNotificationCoalescer = mock(PushNotificationCoalescer.class);
+
+    when(pushNotificationCoalescer.shouldSend(any(), anyByte(), anyBoolean()))
+        .thenReturn(CompletableFuture.completedFuture(true));
+
+    when(pushNotificationCoalescer.reset(any(), anyByte()))
+        .thenReturn(CompletableFuture.completedFuture(null));
 
     AccountsHelper.setupMockUpdate(accountsManager);
 
     pushNotificationManager = new PushNotificationManager(accountsManager, apnSender, fcmSender,
-        pushNotificationScheduler);
+        pushNotificationScheduler, pushNotificationCoalescer);
   }
 
   @Test
@@ -68,6 +79,27 @@ class PushNotificationManagerTest {
     verify(fcmSender).sendNotification(new PushNotification(deviceToken, PushNotification.TokenType.FCM, PushNotification.NotificationType.NOTIFICATION, null, account, device, true));
   }
 
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void sendNewMessageNotificationCoalesced(final boolean urgent) throws NotPushRegisteredException {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final Account account = mock(Account.class);
+    final Device device = mock(Device.class);
+
+    when(account.getUuid()).thenReturn(accountIdentifier);
+    when(device.getId()).thenReturn(Device.PRIMARY_ID);
+    when(device.getGcmId()).thenReturn("token");
+    when(account.getDevice(Device.PRIMARY_ID)).thenReturn(Optional.of(device));
+
+    when(pushNotificationCoalescer.shouldSend(accountIdentifier, Device.PRIMARY_ID, urgent))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    assertEquals(Optional.empty(),
+        pushNotificationManager.sendNewMessageNotification(account, Device.PRIMARY_ID, urgent).join());
+
+    verifyNoInteractions(fcmSender, apnSender, pushNotificationScheduler);
+  }
+
   @Test
   void sendNewNonUrgentMessageNotification() throws NotPushRegisteredException {
     final Account account = mock(Account.class);
@@ -312,5 +344,6 @@ class PushNotificationManagerTest {
     pushNotificationManager.handleMessagesRetrieved(account, device, userAgent);
 
     verify(pushNotificationScheduler).cancelScheduledNotifications(account, device);
+    verify(pushNotificationCoalescer).reset(accountIdentifier, Device.PRIMARY_ID);
   }
 }
@@ -6,6 +6,8 @@
 package io.zonarosa.server.redis;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -14,20 +16,29 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.lettuce.core.FlushMode;
+import io.lettuce.core.RedisCommandExecutionException;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisNoScriptException;
 import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.sync.RedisCommands;
 import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.api.reactive.RedisAdvancedClusterReactiveCommands;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.protocol.AsyncCommand;
 import io.lettuce.core.protocol.RedisCommand;
+import io.lettuce.core.resource.ClientResources;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -202,6 +213,213 @@ class ClusterLuaScriptTest {
     assertEquals(1, evalCount);
   }
 
+  @Test
+  void testBuildFunctionLibrary() {
+    assertEquals("""
+            #!lua name=zonarosa_test_0123456789ab
+            redis.register_function('test_0123456789ab', function(KEYS, ARGV)
+            return KEYS[1]
+            end)
+            """,
+        ClusterLuaScript.buildFunctionLibrary("test_0123456789ab", "return KEYS[1]"));
+  }
+
+  @Test
+  void testBuildFunctionLibraryWithFlags() {
+    assertEquals("""
+            #!lua name=zonarosa_test_0123456789ab
+            redis.register_function{function_name='test_0123456789ab', callback=function(KEYS, ARGV)
+            return KEYS[1]
+            end, flags={'no-writes', 'allow-oom'}}
+            """,
+        ClusterLuaScript.buildFunctionLibrary("test_0123456789ab", "return KEYS[1]",
+            EnumSet.of(ClusterLuaScript.FunctionFlag.NO_WRITES, ClusterLuaScript.FunctionFlag.ALLOW_OOM)));
+  }
+
+  @ParameterizedTest
+  @EnumSource(ExecuteMode.class)
+  void testExecuteReadOnlyFunctionRealCluster(final ExecuteMode mode) throws Exception {
+    final FaultTolerantRedisClusterClient functionCluster = buildFunctionCluster();
+
+    try {
+      forEachUpstream(functionCluster, commands -> {
+        commands.functionFlush(FlushMode.SYNC);
+        commands.configResetstat();
+      });
+
+      final ClusterLuaScript script = new ClusterLuaScript(functionCluster, "test_get",
+          "return redis.call('EXISTS', KEYS[1])", ScriptOutputType.INTEGER,
+          FaultTolerantRedisClusterClient.Lane.DEFAULT, EnumSet.of(ClusterLuaScript.FunctionFlag.NO_WRITES));
+
+      assertEquals(0L, execute(mode, script, List.of("readOnlyFunctionKey")));
+
+      assertEquals(1, getCommandCalls(functionCluster, "fcall"));
+      assertEquals(0, getCommandCalls(functionCluster, "eval"));
+    } finally {
+      functionCluster.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ExecuteMode.class)
+  void testExecuteFunctionError(final ExecuteMode mode) {
+    final FaultTolerantRedisClusterClient functionCluster = buildFunctionCluster();
+
+    try {
+      forEachUpstream(functionCluster, commands -> commands.functionFlush(FlushMode.SYNC));
+
+      final ClusterLuaScript script = new ClusterLuaScript(functionCluster, "test_error",
+          "return redis.error_reply('ERR test failure')", ScriptOutputType.STATUS,
+          FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      final Exception exception = assertThrows(Exception.class, () -> execute(mode, script, List.of("errorKey")));
+
+      // Async callers should see the same exception as sync and reactive callers, not a wrapper around it
+      assertInstanceOf(RedisCommandExecutionException.class,
+          mode == ExecuteMode.ASYNC ? exception.getCause() : exception);
+    } finally {
+      functionCluster.shutdown();
+    }
+  }
+
+  @Test
+  void testDeleteStaleFunctionVersions() {
+    final FaultTolerantRedisClusterClient previousVersionCluster = buildFunctionCluster();
+    final FaultTolerantRedisClusterClient currentVersionCluster = buildFunctionCluster();
+
+    try {
+      forEachUpstream(previousVersionCluster, commands -> commands.functionFlush(FlushMode.SYNC));
+
+      new ClusterLuaScript(previousVersionCluster, "test_versioned", "return 1", ScriptOutputType.INTEGER,
+          FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      // This script's library name starts with the versioned script's name, but it's a different script
+      final ClusterLuaScript otherScript = new ClusterLuaScript(previousVersionCluster, "test_versioned_other",
+          "return 2", ScriptOutputType.INTEGER, FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      final ClusterLuaScript currentScript = new ClusterLuaScript(currentVersionCluster, "test_versioned",
+          "return 3", ScriptOutputType.INTEGER, FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      final Set<String> expectedLibraryNames = Set.of(
+          "zonarosa_test_versioned_" + currentScript.getSha().substring(0, 12),
+          "zonarosa_test_versioned_other_" + otherScript.getSha().substring(0, 12));
+
+      forEachUpstream(currentVersionCluster, commands -> assertEquals(expectedLibraryNames,
+          commands.functionList().stream()
+              .map(library -> (String) library.get("library_name"))
+              .collect(Collectors.toSet())));
+    } finally {
+      previousVersionCluster.shutdown();
+      currentVersionCluster.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ExecuteMode.class)
+  void testExecuteFunctionRealCluster(final ExecuteMode mode) throws Exception {
+    final FaultTolerantRedisClusterClient functionCluster = buildFunctionCluster();
+
+    try {
+      forEachUpstream(functionCluster, commands -> {
+        commands.functionFlush(FlushMode.SYNC);
+        commands.configResetstat();
+      });
+
+      final ClusterLuaScript script = new ClusterLuaScript(functionCluster, "test_incr",
+          "return redis.call('INCR', KEYS[1])", ScriptOutputType.INTEGER, FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      for (long i = 1; i <= 7; i++) {
+        assertEquals(i, execute(mode, script, List.of("functionKey")));
+      }
+
+      assertEquals(7, getCommandCalls(functionCluster, "fcall"));
+      assertEquals(0, getCommandCalls(functionCluster, "evalsha"));
+      assertEquals(0, getCommandCalls(functionCluster, "eval"));
+    } finally {
+      functionCluster.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(ExecuteMode.class)
+  void testExecuteFunctionNotLoaded(final ExecuteMode mode) throws Exception {
+    final FaultTolerantRedisClusterClient functionCluster = buildFunctionCluster();
+
+    try {
+      final ClusterLuaScript script = new ClusterLuaScript(functionCluster, "test_incr",
+          "return redis.call('INCR', KEYS[1])", ScriptOutputType.INTEGER, FaultTolerantRedisClusterClient.Lane.DEFAULT);
+
+      // Simulate a new primary that hasn't had libraries loaded yet
+      forEachUpstream(functionCluster, commands -> {
+        commands.functionFlush(FlushMode.SYNC);
+        commands.scriptFlush(FlushMode.SYNC);
+        commands.configResetstat();
+      });
+
+      assertEquals(1L, execute(mode, script, List.of("missingFunctionKey")));
+      assertEquals(1, getCommandCalls(functionCluster, "eval"));
+
+      // This is what a topology change event would trigger
+      functionCluster.getFunctionLibraryLoader().orElseThrow().reload().get(5, TimeUnit.SECONDS);
+
+      assertEquals(2L, execute(mode, script, List.of("missingFunctionKey")));
+      assertEquals(2, getCommandCalls(functionCluster, "fcall"));
+      assertEquals(1, getCommandCalls(functionCluster, "eval"));
+    } finally {
+      functionCluster.shutdown();
+    }
+  }
+
+  private static FaultTolerantRedisClusterClient buildFunctionCluster() {
+    return new FaultTolerantRedisClusterClient("functions",
+        ClientResources.builder().socketAddressResolver(REDIS_CLUSTER_EXTENSION.getSocketAddressResolver()),
+        RedisClusterExtension.getRedisURIs(),
+        Duration.ofSeconds(2),
+        null,
+        false,
+        true);
+  }
+
+  private static Object execute(final ExecuteMode mode, final ClusterLuaScript script, final List<String> keys)
+      throws Exception {
+
+    return switch (mode) {
+      case SYNC -> script.execute(keys, Collections.emptyList());
+      case ASYNC -> script.executeAsync(keys, Collections.emptyList()).get(5, TimeUnit.SECONDS);
+      case REACTIVE -> script.executeReactive(keys, Collections.emptyList()).blockLast(Duration.ofSeconds(5));
+    };
+  }
+
+  private static void forEachUpstream(final FaultTolerantRedisClusterClient cluster,
+      final Consumer<RedisCommands<String, String>> consumer) {
+
+    cluster.useCluster(connection -> connection.getPartitions().stream()
+        .filter(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM))
+        .forEach(node -> consumer.accept(connection.getConnection(node.getNodeId()).sync())));
+  }
+
+  /**
+   * @return the number of calls to the given command across all primaries since stats were last reset
+   */
+  private static int getCommandCalls(final FaultTolerantRedisClusterClient cluster, final String command) {
+    final AtomicInteger calls = new AtomicInteger();
+
+    // We're looking for (and parsing) lines in the command stats that look like:
+    //
+    // ```
+    // cmdstat_fcall:calls=1,usec=44,usec_per_call=44.00
+    // ```
+    forEachUpstream(cluster, commands -> Arrays.stream(commands.info("commandstats").split("\\n"))
+        .filter(line -> line.startsWith("cmdstat_" + command + ":"))
+        .map(String::trim)
+        .flatMap(line -> Arrays.stream(line.substring(line.indexOf(':') + 1).split(",")))
+        .filter(pair -> pair.startsWith("calls="))
+        .mapToInt(callsPair -> Integer.parseInt(callsPair.substring(callsPair.indexOf('=') + 1)))
+        .forEach(calls::addAndGet));
+
+    return calls.get();
+  }
+
   private enum ExecuteMode {
     SYNC,
     ASYNC,
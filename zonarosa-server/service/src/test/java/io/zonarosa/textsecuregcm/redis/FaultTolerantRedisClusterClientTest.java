@@ -7,6 +7,8 @@ package io.zonarosa.server.redis;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -30,6 +32,8 @@ import io.lettuce.core.resource.NettyCustomizer;
 import io.lettuce.core.resource.SocketAddressResolver;
 import io.lettuce.core.resource.ThreadFactoryProvider;
 import io.lettuce.core.tracing.Tracing;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
@@ -46,6 +50,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
@@ -53,6 +58,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.AfterEach;
@@ -120,6 +126,63 @@ class FaultTolerantRedisClusterClientTest {
         () -> cluster.withCluster(connection -> connection.sync().blpop(10 * TIMEOUT.toMillis() / 1000d, "key")));
   }
 
+  @Test
+  void testLanes() {
+    cluster = new FaultTolerantRedisClusterClient("testLanes",
+        ClientResources.builder().socketAddressResolver(REDIS_CLUSTER_EXTENSION.getSocketAddressResolver()),
+        RedisClusterExtension.getRedisURIs(),
+        TIMEOUT,
+        null,
+        true,
+        false);
+
+    assertNotSame(cluster.withCluster(FaultTolerantRedisClusterClient.Lane.DEFAULT, connection -> connection),
+        cluster.withCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection));
+
+    assertNotSame(cluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.DEFAULT, connection -> connection),
+        cluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection));
+
+    // Lanes are separate connections to the same cluster
+    cluster.useCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection.sync().set("key", "value"));
+    assertEquals("value", cluster.withCluster(connection -> connection.sync().get("key")));
+  }
+
+  @Test
+  void testLanesShareConnectionsByDefault() {
+    cluster = buildCluster("testLanesShareConnectionsByDefault", null, ClientResources.builder());
+
+    assertSame(cluster.withCluster(FaultTolerantRedisClusterClient.Lane.DEFAULT, connection -> connection),
+        cluster.withCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection));
+
+    assertSame(cluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.DEFAULT, connection -> connection),
+        cluster.withBinaryCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection));
+  }
+
+  @Test
+  void testSharedLaneMetrics() {
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Metrics.globalRegistry.add(meterRegistry);
+
+    try {
+      cluster = buildCluster("testSharedLaneMetrics", null, ClientResources.builder());
+
+      cluster.useCluster(FaultTolerantRedisClusterClient.Lane.BULK, connection -> connection.sync().set("key", "value"));
+      cluster.useCluster(connection -> connection.sync().get("key"));
+
+      // With shared connections, there's no way to tell which lane a command came from, so nothing should be attributed
+      // to a specific lane
+      final Set<String> laneTags = meterRegistry.getMeters().stream()
+          .filter(meter -> "testSharedLaneMetrics".equals(meter.getId().getTag("clusterName")))
+          .map(meter -> meter.getId().getTag("lane"))
+          .filter(Objects::nonNull)
+          .collect(Collectors.toSet());
+
+      assertEquals(Set.of(LaneMetricsCommandListener.SHARED_LANE_TAG), laneTags);
+    } finally {
+      Metrics.globalRegistry.remove(meterRegistry);
+    }
+  }
+
   @Test
   void testTimeoutCircuitBreaker() throws Exception {
     // because we’re using a single key, and blpop involves *Redis* also blocking, the breaker wait duration must be
@@ -2,8 +2,11 @@ package io.zonarosa.server.scheduler;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Clock;
 import java.time.Duration;
@@ -12,12 +15,17 @@ import java.time.ZoneId;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import io.zonarosa.server.storage.DynamoDbExtension;
 import io.zonarosa.server.storage.DynamoDbExtensionSchema;
 import io.zonarosa.server.util.TestClock;
+import reactor.core.publisher.Mono;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 
@@ -25,6 +33,9 @@ class JobSchedulerTest {
 
   private static final Instant CURRENT_TIME = Instant.now();
 
+  private static final PartitionedProcessingConfiguration PARTITIONED_PROCESSING_CONFIGURATION =
+      new PartitionedProcessingConfiguration(Duration.ofMinutes(5), 8, Duration.ofMinutes(2), 4);
+
   @RegisterExtension
   static final DynamoDbExtension DYNAMO_DB_EXTENSION =
       new DynamoDbExtension(DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS);
@@ -121,4 +132,194 @@ class JobSchedulerTest {
     assertEquals(2, jobsEncountered.get(),
         "Jobs should not be cleared after failed processing; encountered job counter should increment on second run");
   }
+
+  @Test
+  void processAvailableJobsPartitioned() {
+    final TestClock testClock = TestClock.pinned(CURRENT_TIME);
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        testClock);
+
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.minus(Duration.ofMinutes(30)), 0L), CURRENT_TIME, null).join();
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.minus(Duration.ofMinutes(10)), 0L), CURRENT_TIME, null).join();
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.minus(Duration.ofMinutes(10)), 1L), CURRENT_TIME, null).join();
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.minusMillis(1), 0L), CURRENT_TIME, null).join();
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.plus(Duration.ofMinutes(1)), 0L), CURRENT_TIME, null).join();
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(4, scheduler.jobsProcessed.get());
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(4, scheduler.jobsProcessed.get(),
+        "Jobs should be cleared after successful processing; job counter should not increment on second run");
+
+    testClock.pin(CURRENT_TIME.plus(Duration.ofMinutes(2)));
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(5, scheduler.jobsProcessed.get());
+  }
+
+  @Test
+  void processAvailableJobsPartitionedLeased() {
+    final TestClock testClock = TestClock.pinned(CURRENT_TIME);
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        testClock);
+
+    final TestJobScheduler otherWorker = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        testClock);
+
+    final Instant leasedRunAt = CURRENT_TIME.minus(Duration.ofMinutes(30));
+
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(leasedRunAt, 0L), CURRENT_TIME, null).join();
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME.minus(Duration.ofMinutes(10)), 0L), CURRENT_TIME, null).join();
+
+    assertTrue(otherWorker.acquireLease(
+        JobScheduler.getPartitionStart(leasedRunAt, PARTITIONED_PROCESSING_CONFIGURATION.partitionDuration()), 0,
+        CURRENT_TIME.plus(PARTITIONED_PROCESSING_CONFIGURATION.leaseDuration())).join());
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(1, scheduler.jobsProcessed.get(), "Jobs in partitions leased by another worker should be skipped");
+
+    // The other worker's lease has expired, so its partition should be handed off
+    testClock.pin(CURRENT_TIME.plus(PARTITIONED_PROCESSING_CONFIGURATION.leaseDuration()).plusMillis(1));
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(2, scheduler.jobsProcessed.get());
+  }
+
+  @Test
+  void processAvailableJobsPartitionedWithError() {
+    final AtomicInteger jobsEncountered = new AtomicInteger(0);
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault())) {
+
+      @Override
+      protected CompletableFuture<String> processJob(@Nullable final byte[] jobData) {
+        jobsEncountered.incrementAndGet();
+
+        return CompletableFuture.failedFuture(new RuntimeException("OH NO"));
+      }
+    };
+
+    final TestJobScheduler otherWorker = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME, 0L), CURRENT_TIME, null).join();
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(1, jobsEncountered.get());
+
+    assertTrue(otherWorker.acquireLease(
+            JobScheduler.getPartitionStart(CURRENT_TIME, PARTITIONED_PROCESSING_CONFIGURATION.partitionDuration()), 0,
+            CURRENT_TIME.plus(PARTITIONED_PROCESSING_CONFIGURATION.leaseDuration())).join(),
+        "Leases should be released after processing a partition");
+
+    assertFalse(scheduler.acquireLease(
+            JobScheduler.getPartitionStart(CURRENT_TIME, PARTITIONED_PROCESSING_CONFIGURATION.partitionDuration()), 0,
+            CURRENT_TIME.plus(PARTITIONED_PROCESSING_CONFIGURATION.leaseDuration())).join(),
+        "Unexpired leases held by another worker should not be claimable");
+  }
+
+  @Test
+  void processAvailableJobsPartitionedConcurrentWorkers() {
+    final TestJobScheduler firstWorker = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    final TestJobScheduler secondWorker = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    final int jobCount = 50;
+
+    for (int i = 0; i < jobCount; i++) {
+      firstWorker.scheduleJob(firstWorker.buildRunAtAttribute(CURRENT_TIME.minus(Duration.ofMinutes(i)), i), CURRENT_TIME, null).join();
+    }
+
+    Mono.when(firstWorker.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION),
+            secondWorker.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION))
+        .block();
+
+    assertEquals(jobCount, firstWorker.jobsProcessed.get() + secondWorker.jobsProcessed.get(),
+        "Each job should be processed exactly once");
+  }
+
+  @Test
+  void processAvailableJobsPartitionedSubpartitions() {
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    final TestJobScheduler otherWorker = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    final int subpartitions = PARTITIONED_PROCESSING_CONFIGURATION.subpartitions();
+    final int jobCount = subpartitions * 4;
+
+    // All of these jobs are due at the same moment, and so fall into the same partition
+    for (int salt = 0; salt < jobCount; salt++) {
+      scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME, salt), CURRENT_TIME, null).join();
+    }
+
+    assertTrue(otherWorker.acquireLease(
+        JobScheduler.getPartitionStart(CURRENT_TIME, PARTITIONED_PROCESSING_CONFIGURATION.partitionDuration()), 0,
+        CURRENT_TIME.plus(PARTITIONED_PROCESSING_CONFIGURATION.leaseDuration())).join());
+
+    scheduler.processAvailableJobs(PARTITIONED_PROCESSING_CONFIGURATION).block();
+    assertEquals(jobCount - jobCount / subpartitions, scheduler.jobsProcessed.get(),
+        "Only jobs in the sub-partition leased by another worker should be skipped");
+  }
+
+  @Test
+  void processAvailableJobsPartitionedJobOutlivesLease() {
+    final PartitionedProcessingConfiguration configuration =
+        new PartitionedProcessingConfiguration(Duration.ofMinutes(5), 1, Duration.ofSeconds(1), 4);
+
+    final TestJobScheduler hungScheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault())) {
+
+      @Override
+      protected CompletableFuture<String> processJob(@Nullable final byte[] jobData) {
+        return new CompletableFuture<>();
+      }
+    };
+
+    final TestJobScheduler scheduler = new TestJobScheduler(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        DynamoDbExtensionSchema.Tables.SCHEDULED_JOBS.tableName(),
+        Clock.fixed(CURRENT_TIME, ZoneId.systemDefault()));
+
+    scheduler.scheduleJob(scheduler.buildRunAtAttribute(CURRENT_TIME, 0L), CURRENT_TIME, null).join();
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> hungScheduler.processAvailableJobs(configuration).block(),
+        "Jobs should not outlive the lease on their partition");
+
+    scheduler.processAvailableJobs(configuration).block();
+    assertEquals(1, scheduler.jobsProcessed.get(), "Jobs abandoned when a lease expires should not be deleted");
+  }
+
+  @ParameterizedTest
+  @MethodSource
+  void getPartitionStart(final Instant runAt, final Duration partitionDuration, final Instant expectedPartitionStart) {
+    assertEquals(expectedPartitionStart, JobScheduler.getPartitionStart(runAt, partitionDuration));
+  }
+
+  private static Stream<Arguments> getPartitionStart() {
+    final Instant partitionStart = Instant.ofEpochMilli(Duration.ofMinutes(5).toMillis() * 1_000_000);
+
+    return Stream.of(
+        Arguments.of(partitionStart, Duration.ofMinutes(5), partitionStart),
+        Arguments.of(partitionStart.plusMillis(1), Duration.ofMinutes(5), partitionStart),
+        Arguments.of(partitionStart.plus(Duration.ofMinutes(5)).minusMillis(1), Duration.ofMinutes(5), partitionStart),
+        Arguments.of(partitionStart.plus(Duration.ofMinutes(5)), Duration.ofMinutes(5), partitionStart.plus(Duration.ofMinutes(5))));
+  }
 }
@@ -129,6 +129,20 @@ public final class DynamoDbExtensionSchema {
                 .build()),
         List.of(), List.of()),
 
+    PAGED_EC_KEYS("paged_ec_keys_test",
+        PagedSingleUseECPreKeyStore.KEY_ACCOUNT_UUID,
+        PagedSingleUseECPreKeyStore.KEY_DEVICE_ID,
+        List.of(
+            AttributeDefinition.builder()
+                .attributeName(PagedSingleUseECPreKeyStore.KEY_ACCOUNT_UUID)
+                .attributeType(ScalarAttributeType.B)
+                .build(),
+            AttributeDefinition.builder()
+                .attributeName(PagedSingleUseECPreKeyStore.KEY_DEVICE_ID)
+                .attributeType(ScalarAttributeType.N)
+                .build()),
+        List.of(), List.of()),
+
     PAGED_PQ_KEYS("paged_pq_keys_test",
         PagedSingleUseKEMPreKeyStore.KEY_ACCOUNT_UUID,
         PagedSingleUseKEMPreKeyStore.KEY_DEVICE_ID,
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+package io.zonarosa.server.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import io.zonarosa.libzonarosa.protocol.InvalidKeyException;
+import io.zonarosa.libzonarosa.protocol.ecc.ECKeyPair;
+import io.zonarosa.server.entities.ECPreKey;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ECPreKeyPageTest {
+
+  @Test
+  void serializeSinglePreKey() {
+    final ByteBuffer page = ECPreKeyPage.serialize(ECPreKeyPage.FORMAT, List.of(generatePreKey(5)));
+    assertEquals(ECPreKeyPage.HEADER_MAGIC, page.getInt());
+    assertEquals(1, page.getInt());
+    assertEquals(ECPreKeyPage.SERIALIZED_PREKEY_LENGTH, page.remaining());
+  }
+
+  @Test
+  void emptyPreKeys() {
+    assertThrows(IllegalArgumentException.class,
+        () -> ECPreKeyPage.serialize(ECPreKeyPage.FORMAT, Collections.emptyList()));
+  }
+
+  @Test
+  void roundTripMultiple() throws InvalidKeyException {
+    final List<ECPreKey> keys = List.of(generatePreKey(1), generatePreKey(2), generatePreKey(5));
+    final ByteBuffer page = ECPreKeyPage.serialize(ECPreKeyPage.FORMAT, keys);
+
+    assertEquals(ECPreKeyPage.HEADER_SIZE + ECPreKeyPage.SERIALIZED_PREKEY_LENGTH * 3, page.remaining());
+
+    for (int i = 0; i < keys.size(); i++) {
+      final KEMPreKeyPage.KeyLocation keyLocation = ECPreKeyPage.keyLocation(1, i);
+      assertEquals(ECPreKeyPage.HEADER_SIZE + ECPreKeyPage.SERIALIZED_PREKEY_LENGTH * i,
+          keyLocation.getStartInclusive());
+
+      final ByteBuffer buf = page.slice(keyLocation.getStartInclusive(), keyLocation.length());
+      assertEquals(keys.get(i), ECPreKeyPage.deserializeKey(1, buf));
+    }
+  }
+
+  @Test
+  void wrongFormat() {
+    assertThrows(IllegalArgumentException.class, () ->
+        ECPreKeyPage.deserializeKey(2, ByteBuffer.allocate(ECPreKeyPage.SERIALIZED_PREKEY_LENGTH)));
+  }
+
+  private static ECPreKey generatePreKey(final long keyId) {
+    return new ECPreKey(keyId, ECKeyPair.generate().getPublicKey());
+  }
+}
@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
@@ -30,11 +31,13 @@ class KeysManagerTest {
 
   private KeysManager keysManager;
 
+  private SingleUseECPreKeyStore singleUseECPreKeyStore;
+  private PagedSingleUseECPreKeyStore pagedSingleUseECPreKeyStore;
   private PagedSingleUseKEMPreKeyStore pagedSingleUseKEMPreKeyStore;
 
   @RegisterExtension
   static final DynamoDbExtension DYNAMO_DB_EXTENSION = new DynamoDbExtension(
-      Tables.EC_KEYS, Tables.PAGED_PQ_KEYS,
+      Tables.EC_KEYS, Tables.PAGED_EC_KEYS, Tables.PAGED_PQ_KEYS,
       Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS, Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS);
 
   @RegisterExtension
@@ -54,8 +57,12 @@ class KeysManagerTest {
         DynamoDbExtensionSchema.Tables.PAGED_PQ_KEYS.tableName(),
         S3_EXTENSION.getBucketName());
 
+    singleUseECPreKeyStore = new SingleUseECPreKeyStore(dynamoDbAsyncClient, Tables.EC_KEYS.tableName());
+    pagedSingleUseECPreKeyStore = new PagedSingleUseECPreKeyStore(dynamoDbAsyncClient, Tables.PAGED_EC_KEYS.tableName());
+
     keysManager = new KeysManager(
-        new SingleUseECPreKeyStore(dynamoDbAsyncClient, Tables.EC_KEYS.tableName()),
+        singleUseECPreKeyStore,
+        pagedSingleUseECPreKeyStore,
         pagedSingleUseKEMPreKeyStore,
         new RepeatedUseECSignedPreKeyStore(dynamoDbAsyncClient, Tables.REPEATED_USE_EC_SIGNED_PRE_KEYS.tableName()),
         new RepeatedUseKEMSignedPreKeyStore(dynamoDbAsyncClient, Tables.REPEATED_USE_KEM_SIGNED_PRE_KEYS.tableName()));
@@ -148,6 +155,31 @@ class KeysManagerTest {
     assertEquals(0, keysManager.getPqCount(ACCOUNT_UUID, DEVICE_ID).join());
   }
 
+  @Test
+  void takeEcWithLegacyKeys() {
+    // Keys uploaded before the paged store was introduced should still be available until the device uploads new keys
+    singleUseECPreKeyStore.store(ACCOUNT_UUID, DEVICE_ID, List.of(generateTestPreKey(1), generateTestPreKey(2))).join();
+
+    assertEquals(2, keysManager.getEcCount(ACCOUNT_UUID, DEVICE_ID).join());
+    assertEquals(Optional.of(1L), keysManager.takeEC(ACCOUNT_UUID, DEVICE_ID).join().map(ECPreKey::keyId));
+    assertEquals(1, keysManager.getEcCount(ACCOUNT_UUID, DEVICE_ID).join());
+  }
+
+  @Test
+  void storeEcOneTimePreKeysReplacesLegacyKeys() {
+    singleUseECPreKeyStore.store(ACCOUNT_UUID, DEVICE_ID, List.of(generateTestPreKey(1), generateTestPreKey(2))).join();
+
+    final ECPreKey preKey = generateTestPreKey(3);
+    keysManager.storeEcOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(preKey)).join();
+
+    assertEquals(0, singleUseECPreKeyStore.getCount(ACCOUNT_UUID, DEVICE_ID).join());
+    assertEquals(1, pagedSingleUseECPreKeyStore.getCount(ACCOUNT_UUID, DEVICE_ID).join());
+    assertEquals(1, keysManager.getEcCount(ACCOUNT_UUID, DEVICE_ID).join());
+
+    assertEquals(Optional.of(preKey), keysManager.takeEC(ACCOUNT_UUID, DEVICE_ID).join());
+    assertEquals(Optional.empty(), keysManager.takeEC(ACCOUNT_UUID, DEVICE_ID).join());
+  }
+
   @Test
   void testDeleteSingleUsePreKeysByAccount() {
     int keyId = 1;
@@ -266,6 +298,41 @@ class KeysManagerTest {
     assertEquals(hasEcPreKey, missingKeyType == MissingKeyType.NONE);
   }
 
+  @Test
+  void takeDevicePreKeysMultipleDevices() {
+    final byte deviceId2 = DEVICE_ID + 1;
+    final byte deviceId3 = DEVICE_ID + 2;
+
+    final KEMSignedPreKey lastResortKey = generateTestKEMSignedPreKey(1);
+    final KEMSignedPreKey kemPreKey = generateTestKEMSignedPreKey(2);
+    final ECSignedPreKey signedPreKey = generateTestECSignedPreKey(3);
+    final ECSignedPreKey signedPreKey2 = generateTestECSignedPreKey(4);
+    final ECPreKey ecPreKey = generateTestPreKey(5);
+
+    // The first device has a full set of keys, the second device only has repeated-use keys, and the third device has
+    // no signed EC pre-key at all
+    keysManager.storeEcSignedPreKeys(ACCOUNT_UUID, DEVICE_ID, signedPreKey).join();
+    keysManager.storePqLastResort(ACCOUNT_UUID, DEVICE_ID, generateTestKEMSignedPreKey(6)).join();
+    keysManager.storeEcOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(ecPreKey)).join();
+    keysManager.storeKemOneTimePreKeys(ACCOUNT_UUID, DEVICE_ID, List.of(kemPreKey)).join();
+
+    keysManager.storeEcSignedPreKeys(ACCOUNT_UUID, deviceId2, signedPreKey2).join();
+    keysManager.storePqLastResort(ACCOUNT_UUID, deviceId2, lastResortKey).join();
+
+    keysManager.storePqLastResort(ACCOUNT_UUID, deviceId3, generateTestKEMSignedPreKey(7)).join();
+
+    final Map<Byte, KeysManager.DevicePreKeys> devicePreKeys = keysManager.takeDevicePreKeys(
+        List.of(DEVICE_ID, deviceId2, deviceId3), ACI_SERVICE_IDENTIFIER, null).join();
+
+    assertEquals(Map.of(
+            DEVICE_ID, new KeysManager.DevicePreKeys(signedPreKey, Optional.of(ecPreKey), kemPreKey),
+            deviceId2, new KeysManager.DevicePreKeys(signedPreKey2, Optional.empty(), lastResortKey)),
+        devicePreKeys);
+
+    assertEquals(0, keysManager.getEcCount(ACCOUNT_UUID, DEVICE_ID).join());
+    assertEquals(0, keysManager.getPqCount(ACCOUNT_UUID, DEVICE_ID).join());
+  }
+
   private static ECPreKey generateTestPreKey(final long keyId) {
     return new ECPreKey(keyId, ECKeyPair.generate().getPublicKey());
   }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.storage;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.zonarosa.server.entities.MessageProtos;
+
+class MessageAcknowledgementCoalescerTest {
+
+  private MessagesDynamoDb messagesDynamoDb;
+  private ScheduledExecutorService scheduledExecutorService;
+  private Device device;
+
+  private MessageAcknowledgementCoalescer acknowledgementCoalescer;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final Duration COALESCING_WINDOW = Duration.ofMillis(20);
+
+  @BeforeEach
+  void setUp() {
+    messagesDynamoDb = mock(MessagesDynamoDb.class);
+    scheduledExecutorService = mock(ScheduledExecutorService.class);
+    device = mock(Device.class);
+
+    //noinspection unchecked
+    when(scheduledExecutorService.schedule(any(Runnable.class), anyLong(), any()))
+        .thenReturn(mock(ScheduledFuture.class));
+
+    when(messagesDynamoDb.deleteMessages(any(), any(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    acknowledgementCoalescer = new MessageAcknowledgementCoalescer(messagesDynamoDb,
+        ACCOUNT_IDENTIFIER,
+        device,
+        scheduledExecutorService,
+        COALESCING_WINDOW);
+  }
+
+  @Test
+  void deleteAfterWindow() {
+    final MessageProtos.Envelope firstMessage = generateMessage();
+    final MessageProtos.Envelope secondMessage = generateMessage();
+
+    final CompletableFuture<Void> firstFuture = acknowledgementCoalescer.delete(firstMessage);
+    final CompletableFuture<Void> secondFuture = acknowledgementCoalescer.delete(secondMessage);
+
+    // Only one flush should be scheduled per window
+    verify(scheduledExecutorService).schedule(any(Runnable.class), eq(COALESCING_WINDOW.toMillis()),
+        eq(TimeUnit.MILLISECONDS));
+
+    verify(messagesDynamoDb, never()).deleteMessages(any(), any(), any());
+    assertFalse(firstFuture.isDone());
+    assertFalse(secondFuture.isDone());
+
+    acknowledgementCoalescer.flush();
+
+    verify(messagesDynamoDb).deleteMessages(ACCOUNT_IDENTIFIER, device, List.of(firstMessage, secondMessage));
+    assertTrue(firstFuture.isDone());
+    assertTrue(secondFuture.isDone());
+  }
+
+  @Test
+  void deleteFullBatch() {
+    final List<MessageProtos.Envelope> messages = new ArrayList<>();
+    final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+    for (int i = 0; i < AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_SIZE; i++) {
+      final MessageProtos.Envelope message = generateMessage();
+
+      messages.add(message);
+      futures.add(acknowledgementCoalescer.delete(message));
+    }
+
+    // A full batch should be flushed without waiting for the coalescing window to elapse
+    verify(messagesDynamoDb).deleteMessages(ACCOUNT_IDENTIFIER, device, messages);
+    futures.forEach(future -> assertTrue(future.isDone()));
+  }
+
+  @Test
+  void deleteFailure() {
+    when(messagesDynamoDb.deleteMessages(any(), any(), any()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO")));
+
+    final CompletableFuture<Void> future = acknowledgementCoalescer.delete(generateMessage());
+    acknowledgementCoalescer.flush();
+
+    assertThrows(CompletionException.class, future::join);
+  }
+
+  @Test
+  void flushEmpty() {
+    acknowledgementCoalescer.flush();
+    verify(messagesDynamoDb, never()).deleteMessages(any(), any(), any());
+  }
+
+  private static MessageProtos.Envelope generateMessage() {
+    return MessageProtos.Envelope.newBuilder()
+        .setServerGuid(UUID.randomUUID().toString())
+        .setServerTimestamp(System.currentTimeMillis())
+        .setClientTimestamp(System.currentTimeMillis())
+        .setType(MessageProtos.Envelope.Type.CIPHERTEXT)
+        .build();
+  }
+}
@@ -87,7 +87,8 @@ class MessagePersisterIntegrationTest {
     messagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
         messageDeliveryScheduler, messageDeletionExecutorService, mock(ScheduledExecutorService.class), Clock.systemUTC(), experimentEnrollmentManager);
     messagesManager = new MessagesManager(messagesDynamoDb, messagesCache, mock(RedisMessageAvailabilityManager.class),
-        mock(ReportMessageManager.class), messageDeletionExecutorService, Clock.systemUTC());
+        mock(ReportMessageManager.class), messageDeletionExecutorService, mock(ScheduledExecutorService.class),
+        Clock.systemUTC());
 
     websocketConnectionEventExecutor = Executors.newVirtualThreadPerTaskExecutor();
     asyncOperationQueueingExecutor = Executors.newSingleThreadExecutor();
@@ -13,10 +13,15 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyByte;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -334,6 +339,76 @@ class MessagesCacheTest {
       }
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testGetAllMessagesPrefetch(final boolean sealedSender) {
+      final int messageCount = 95;
+
+      final List<MessageProtos.Envelope> expectedMessages = new ArrayList<>(messageCount);
+
+      for (int i = 0; i < messageCount; i++) {
+        final UUID messageGuid = UUID.randomUUID();
+        final MessageProtos.Envelope message = generateRandomMessage(messageGuid, sealedSender);
+        messagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, message).join();
+
+        expectedMessages.add(message);
+      }
+
+      // Use a page size that doesn't evenly divide the number of messages to make sure partial pages are handled
+      StepVerifier.create(messagesCache.getAllMessages(DESTINATION_UUID, DESTINATION_DEVICE_ID, 0, 10,
+              MessagesCache.PREFETCH_PAGES))
+          .expectNextSequence(expectedMessages)
+          .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testGetAllMessagesReadsAhead(final boolean prefetch) throws Exception {
+      final FaultTolerantRedisClusterClient redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+      final ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+      final MessagesCacheGetItemsScript getItemsScript = spy(new MessagesCacheGetItemsScript(redisCluster));
+
+      final MessagesCache readAheadMessagesCache = new MessagesCache(redisCluster, messageDeliveryScheduler,
+          sharedExecutorService, Clock.systemUTC(), mock(ExperimentEnrollmentManager.class),
+          new MessagesCacheInsertScript(redisCluster, retryExecutor),
+          new MessagesCacheInsertSharedMultiRecipientPayloadAndViewsScript(redisCluster, retryExecutor),
+          getItemsScript,
+          new MessagesCacheRemoveByGuidScript(redisCluster, retryExecutor),
+          new MessagesCacheRemoveQueueScript(redisCluster),
+          new MessagesCacheGetQueuesToPersistScript(redisCluster),
+          new MessagesCacheRemoveRecipientViewFromMrmDataScript(redisCluster),
+          new MessagesCacheUnlockQueueScript(redisCluster),
+          new MessagesCacheClearPersistedMessagesMarkerScript(redisCluster));
+
+      final int pageSize = 10;
+      final int messageCount = pageSize * 3;
+
+      final List<MessageProtos.Envelope> expectedMessages = new ArrayList<>(messageCount);
+
+      for (int i = 0; i < messageCount; i++) {
+        final UUID messageGuid = UUID.randomUUID();
+        final MessageProtos.Envelope message = generateRandomMessage(messageGuid, false);
+        readAheadMessagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID, message).join();
+
+        expectedMessages.add(message);
+      }
+
+      final Flux<MessageProtos.Envelope> allMessages = prefetch
+          ? readAheadMessagesCache.getAllMessages(DESTINATION_UUID, DESTINATION_DEVICE_ID, 0, pageSize,
+              MessagesCache.PREFETCH_PAGES)
+          : readAheadMessagesCache.getAllMessages(DESTINATION_UUID, DESTINATION_DEVICE_ID, 0, pageSize);
+
+      StepVerifier.create(allMessages, 1)
+          .expectNext(expectedMessages.getFirst())
+          // We've only consumed the first message of the first page, but the following pages should already have been
+          // fetched
+          .then(() -> verify(getItemsScript, timeout(1_000).atLeast(3))
+              .execute(any(), anyByte(), anyInt(), anyLong()))
+          .thenRequest(Long.MAX_VALUE)
+          .expectNextSequence(expectedMessages.subList(1, messageCount))
+          .verifyComplete();
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void testClearQueueForDevice(final boolean sealedSender) {
@@ -6,17 +6,24 @@
 package io.zonarosa.server.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,6 +39,10 @@ import io.zonarosa.server.tests.util.DevicesHelper;
 import io.zonarosa.server.tests.util.MessageHelper;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 class MessagesDynamoDbTest {
 
@@ -76,6 +87,7 @@ class MessagesDynamoDbTest {
 
   private ExecutorService messageDeletionExecutorService;
   private MessagesDynamoDb messagesDynamoDb;
+  private MessagesDynamoDb packedMessagesDynamoDb;
 
   @RegisterExtension
   static final DynamoDbExtension DYNAMO_DB_EXTENSION = new DynamoDbExtension(Tables.MESSAGES);
@@ -86,6 +98,14 @@ class MessagesDynamoDbTest {
     messagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
         DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(), Tables.MESSAGES.tableName(), Duration.ofDays(14),
         messageDeletionExecutorService, mock(ExperimentEnrollmentManager.class));
+
+    final ExperimentEnrollmentManager packedPagesExperimentEnrollmentManager = mock(ExperimentEnrollmentManager.class);
+    when(packedPagesExperimentEnrollmentManager.isEnrolled(any(UUID.class), eq(MessagesDynamoDb.PACKED_PAGES_EXPERIMENT_NAME)))
+        .thenReturn(true);
+
+    packedMessagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(), Tables.MESSAGES.tableName(), Duration.ofDays(14),
+        messageDeletionExecutorService, packedPagesExperimentEnrollmentManager);
   }
 
   @AfterEach
@@ -218,8 +238,226 @@ class MessagesDynamoDbTest {
         .isEmpty();
   }
 
+  @ParameterizedTest
+  @ValueSource(ints = {1, 25, 26, 100})
+  void testDeleteMessages(final int messageCount) {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+    final Device device2 = DevicesHelper.createDevice((byte) 2);
+
+    final List<MessageProtos.Envelope> messages = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      messages.add(MessageHelper.createMessage(UUID.randomUUID(), Device.PRIMARY_ID, destinationUuid, (i + 1L) * 1000,
+          "message " + i));
+    }
+
+    messagesDynamoDb.store(messages, destinationUuid, primary);
+    messagesDynamoDb.store(List.of(MESSAGE1), destinationUuid, device2);
+
+    messagesDynamoDb.deleteMessages(destinationUuid, primary, messages).join();
+
+    assertThat(load(destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isEmpty();
+    assertThat(load(destinationUuid, device2, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .as("batch deletion should not affect other devices' queues")
+        .containsExactly(MESSAGE1);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, MessagesDynamoDb.MAX_PAGE_MESSAGES, MessagesDynamoDb.MAX_PAGE_MESSAGES + 1, 500})
+  void testPackedPageStoreAndLoad(final int messageCount) {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = generateMessages(destinationUuid, messageCount);
+    packedMessagesDynamoDb.store(messages, destinationUuid, primary);
+
+    assertThat(countItems())
+        .as("messages should be packed into pages")
+        .isEqualTo((messageCount + MessagesDynamoDb.MAX_PAGE_MESSAGES - 1) / MessagesDynamoDb.MAX_PAGE_MESSAGES);
+
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, messageCount))
+        .containsExactlyElementsOf(messages);
+  }
+
+  @Test
+  void testPackedPageMixedWithIndividualMessages() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    // Messages stored before an account was enrolled should still be readable alongside packed pages
+    messagesDynamoDb.store(List.of(MESSAGE1), destinationUuid, primary);
+    packedMessagesDynamoDb.store(List.of(MESSAGE2, MESSAGE3), destinationUuid, primary);
+
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .containsExactlyInAnyOrder(MESSAGE1, MESSAGE2, MESSAGE3);
+  }
+
+  @Test
+  void testPackedPageDeleteMessage() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = generateMessages(destinationUuid, 3);
+    packedMessagesDynamoDb.store(messages, destinationUuid, primary);
+
+    final MessageProtos.Envelope deletedMessage = messages.get(1);
+
+    assertThat(packedMessagesDynamoDb.deleteMessage(destinationUuid, primary,
+        UUID.fromString(deletedMessage.getServerGuid()), deletedMessage.getServerTimestamp()).join())
+        .hasValue(deletedMessage);
+
+    assertThat(packedMessagesDynamoDb.deleteMessage(destinationUuid, primary,
+        UUID.fromString(deletedMessage.getServerGuid()), deletedMessage.getServerTimestamp()).join())
+        .as("messages should only be deleted once")
+        .isEmpty();
+
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .containsExactly(messages.get(0), messages.get(2));
+
+    for (final MessageProtos.Envelope message : List.of(messages.get(0), messages.get(2))) {
+      assertThat(packedMessagesDynamoDb.deleteMessage(destinationUuid, primary,
+          UUID.fromString(message.getServerGuid()), message.getServerTimestamp()).join())
+          .hasValue(message);
+    }
+
+    assertThat(countItems())
+        .as("fully-acknowledged pages should be removed")
+        .isZero();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 25, 26, 150})
+  void testPackedPageDeleteMessages(final int messageCount) {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = generateMessages(destinationUuid, messageCount);
+
+    // Include an individually-stored message to make sure both storage formats are handled in the same batch
+    messagesDynamoDb.store(List.of(MESSAGE1), destinationUuid, primary);
+    packedMessagesDynamoDb.store(messages, destinationUuid, primary);
+
+    final List<MessageProtos.Envelope> deletedMessages = new ArrayList<>(messages);
+    deletedMessages.add(MESSAGE1);
+
+    packedMessagesDynamoDb.deleteMessages(destinationUuid, primary, deletedMessages).join();
+
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isEmpty();
+    assertThat(countItems()).isZero();
+  }
+
+  @Test
+  void testCompactPagesOnAcknowledgement() throws Exception {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = generateMessages(destinationUuid, 10);
+    packedMessagesDynamoDb.store(messages, destinationUuid, primary);
+
+    final List<MessageProtos.Envelope> acknowledgedMessages = messages.subList(0, 6);
+    final List<MessageProtos.Envelope> remainingMessages = messages.subList(6, messages.size());
+
+    // Acknowledging the messages should compact the page as soon as it's mostly acknowledged
+    packedMessagesDynamoDb.deleteMessages(destinationUuid, primary, acknowledgedMessages).join();
+
+    assertThat(countItems()).isOne();
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .containsExactlyElementsOf(remainingMessages);
+
+    final Map<String, AttributeValue> page = DYNAMO_DB_EXTENSION.getDynamoDbClient().scan(ScanRequest.builder()
+            .tableName(Tables.MESSAGES.tableName())
+            .build())
+        .items()
+        .getFirst();
+
+    assertThat(MessagesDynamoDb.convertItemToEnvelopes(page, mock(ExperimentEnrollmentManager.class)))
+        .as("compacted pages should contain only unacknowledged messages")
+        .hasSize(remainingMessages.size());
+
+    // Compacted messages must still be individually deletable
+    for (final MessageProtos.Envelope message : remainingMessages) {
+      assertThat(packedMessagesDynamoDb.deleteMessage(destinationUuid, primary,
+          UUID.fromString(message.getServerGuid()), message.getServerTimestamp()).join())
+          .hasValue(message);
+    }
+
+    assertThat(countItems()).isZero();
+  }
+
+  @Test
+  void testAcknowledgeDuringCompaction() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Device primary = DevicesHelper.createDevice((byte) 1);
+
+    final List<MessageProtos.Envelope> messages = generateMessages(destinationUuid, 10);
+    packedMessagesDynamoDb.store(messages, destinationUuid, primary);
+    packedMessagesDynamoDb.deleteMessages(destinationUuid, primary, messages.subList(0, 4)).join();
+
+    final DynamoDbAsyncClient dynamoDbAsyncClient = spy(DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient());
+    final AtomicBoolean compacted = new AtomicBoolean();
+
+    // After the acknowledgement below has read the page, but before it writes its update, acknowledge the last message
+    // in the page; that pushes the page over the compaction threshold, and the compacted page replaces the original
+    // under a new sort key
+    doAnswer(invocation -> {
+      if (compacted.compareAndSet(false, true)) {
+        packedMessagesDynamoDb.deleteMessages(destinationUuid, primary, List.of(messages.getLast())).join();
+      }
+
+      return invocation.callRealMethod();
+    }).when(dynamoDbAsyncClient).updateItem(any(UpdateItemRequest.class));
+
+    final ExperimentEnrollmentManager experimentEnrollmentManager = mock(ExperimentEnrollmentManager.class);
+    when(experimentEnrollmentManager.isEnrolled(any(UUID.class), eq(MessagesDynamoDb.PACKED_PAGES_EXPERIMENT_NAME)))
+        .thenReturn(true);
+
+    final MessagesDynamoDb racingMessagesDynamoDb = new MessagesDynamoDb(DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        dynamoDbAsyncClient, Tables.MESSAGES.tableName(), Duration.ofDays(14), messageDeletionExecutorService,
+        experimentEnrollmentManager);
+
+    final MessageProtos.Envelope acknowledgedMessage = messages.get(4);
+
+    assertThat(racingMessagesDynamoDb.deleteMessage(destinationUuid, primary,
+        UUID.fromString(acknowledgedMessage.getServerGuid()), acknowledgedMessage.getServerTimestamp()).join())
+        .hasValue(acknowledgedMessage);
+
+    assertThat(compacted).isTrue();
+    assertThat(countItems()).isOne();
+
+    assertThat(load(packedMessagesDynamoDb, destinationUuid, primary, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .as("acknowledgements that race a compaction should apply to the compacted page")
+        .containsExactlyElementsOf(messages.subList(5, 9));
+  }
+
+  private static List<MessageProtos.Envelope> generateMessages(final UUID destinationUuid, final int messageCount) {
+    final long serverTimestamp = System.currentTimeMillis();
+    final List<MessageProtos.Envelope> messages = new ArrayList<>(messageCount);
+
+    for (int i = 0; i < messageCount; i++) {
+      messages.add(MessageHelper.createMessage(UUID.randomUUID(), Device.PRIMARY_ID, destinationUuid, i, "message " + i)
+          .toBuilder()
+          .setServerTimestamp(serverTimestamp + i)
+          .build());
+    }
+
+    return messages;
+  }
+
+  private static int countItems() {
+    return DYNAMO_DB_EXTENSION.getDynamoDbClient().scan(ScanRequest.builder()
+        .tableName(Tables.MESSAGES.tableName())
+        .build())
+        .count();
+  }
+
   private List<MessageProtos.Envelope> load(final UUID destinationUuid, final Device destinationDevice,
       final int count) {
+    return load(messagesDynamoDb, destinationUuid, destinationDevice, count);
+  }
+
+  private static List<MessageProtos.Envelope> load(final MessagesDynamoDb messagesDynamoDb,
+      final UUID destinationUuid, final Device destinationDevice, final int count) {
+
     return Flux.from(messagesDynamoDb.load(destinationUuid, destinationDevice, count))
         .take(count, true)
         .collectList()
@@ -27,6 +27,7 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -55,7 +56,8 @@ class MessagesManagerTest {
   private static final TestClock CLOCK = TestClock.pinned(Instant.now());
 
   private final MessagesManager messagesManager = new MessagesManager(messagesDynamoDb, messagesCache,
-      mock(RedisMessageAvailabilityManager.class), reportMessageManager, Executors.newSingleThreadExecutor(), CLOCK);
+      mock(RedisMessageAvailabilityManager.class), reportMessageManager, Executors.newSingleThreadExecutor(),
+      mock(ScheduledExecutorService.class), CLOCK);
 
   @BeforeEach
   void setUp() {
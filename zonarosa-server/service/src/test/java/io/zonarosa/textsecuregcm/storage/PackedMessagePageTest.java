@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+package io.zonarosa.server.storage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import io.zonarosa.server.entities.MessageProtos;
+import io.zonarosa.server.tests.util.MessageHelper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PackedMessagePageTest {
+
+  private static final UUID DESTINATION_UUID = UUID.randomUUID();
+
+  @Test
+  void serializeHeader() {
+    final MessageProtos.Envelope envelope = generateEnvelope(0);
+    final ByteBuffer page = ByteBuffer.wrap(PackedMessagePage.serialize(List.of(envelope)));
+
+    assertEquals(PackedMessagePage.HEADER_MAGIC, page.getInt());
+    assertEquals(PackedMessagePage.FORMAT, page.getInt());
+    assertEquals(envelope.getSerializedSize(), page.getInt());
+    assertEquals(envelope.getSerializedSize(), page.remaining());
+  }
+
+  @Test
+  void emptyEnvelopes() {
+    assertThrows(IllegalArgumentException.class, () -> PackedMessagePage.serialize(Collections.emptyList()));
+  }
+
+  @Test
+  void roundTrip() throws InvalidProtocolBufferException {
+    final List<MessageProtos.Envelope> envelopes = IntStream.range(0, 10)
+        .mapToObj(PackedMessagePageTest::generateEnvelope)
+        .toList();
+
+    assertEquals(envelopes, PackedMessagePage.deserialize(PackedMessagePage.serialize(envelopes)));
+  }
+
+  @Test
+  void deserializeBadHeader() {
+    final byte[] page = PackedMessagePage.serialize(List.of(generateEnvelope(0)));
+    page[0] ^= 0x01;
+
+    assertThrows(InvalidProtocolBufferException.class, () -> PackedMessagePage.deserialize(page));
+  }
+
+  @Test
+  void deserializeTruncated() {
+    final byte[] page = PackedMessagePage.serialize(List.of(generateEnvelope(0)));
+    final byte[] truncatedPage = new byte[page.length - 1];
+    System.arraycopy(page, 0, truncatedPage, 0, truncatedPage.length);
+
+    assertThrows(InvalidProtocolBufferException.class, () -> PackedMessagePage.deserialize(truncatedPage));
+  }
+
+  @Test
+  void roundTripMessageGuids() {
+    final List<UUID> messageGuids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+    assertEquals(messageGuids,
+        PackedMessagePage.deserializeMessageGuids(PackedMessagePage.serializeMessageGuids(messageGuids)));
+
+    assertThrows(IllegalArgumentException.class, () -> PackedMessagePage.deserializeMessageGuids(new byte[15]));
+  }
+
+  @Test
+  void serializeAcknowledged() {
+    assertArrayEquals(new byte[2], PackedMessagePage.serializeAcknowledged(new BitSet(), 9));
+
+    final BitSet acknowledged = new BitSet();
+    acknowledged.set(0);
+    acknowledged.set(8);
+
+    final byte[] serializedAcknowledged = PackedMessagePage.serializeAcknowledged(acknowledged, 16);
+    assertArrayEquals(new byte[]{0x01, 0x01}, serializedAcknowledged);
+    assertEquals(acknowledged, PackedMessagePage.deserializeAcknowledged(serializedAcknowledged));
+  }
+
+  @Test
+  void partition() {
+    final List<MessageProtos.Envelope> envelopes = new ArrayList<>();
+
+    for (int i = 0; i < 7; i++) {
+      envelopes.add(generateEnvelope(i));
+    }
+
+    final List<List<MessageProtos.Envelope>> pages = PackedMessagePage.partition(envelopes, Integer.MAX_VALUE, 3);
+
+    assertEquals(List.of(envelopes.subList(0, 3), envelopes.subList(3, 6), envelopes.subList(6, 7)), pages);
+  }
+
+  @Test
+  void partitionBySize() {
+    final List<MessageProtos.Envelope> envelopes = List.of(generateEnvelope(0), generateEnvelope(1), generateEnvelope(2));
+    final int maxPageBytes = Integer.BYTES + envelopes.getFirst().getSerializedSize();
+
+    // Each envelope fills a page on its own
+    assertEquals(List.of(envelopes.subList(0, 1), envelopes.subList(1, 2), envelopes.subList(2, 3)),
+        PackedMessagePage.partition(envelopes, maxPageBytes, 100));
+
+    // Envelopes larger than the page size limit still get pages of their own
+    assertEquals(3, PackedMessagePage.partition(envelopes, 1, 100).size());
+  }
+
+  private static MessageProtos.Envelope generateEnvelope(final int i) {
+    return MessageHelper.createMessage(UUID.randomUUID(), (byte) 1, DESTINATION_UUID, i + 1, "message " + i);
+  }
+}
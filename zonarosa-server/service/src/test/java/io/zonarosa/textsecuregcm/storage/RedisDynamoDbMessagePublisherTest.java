@@ -6,6 +6,7 @@
 package io.zonarosa.server.storage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -186,6 +187,72 @@ class RedisDynamoDbMessagePublisherTest {
         .verifyTimeout(Duration.ofMillis(500));
   }
 
+  @Test
+  void publishMessagesPersistedMessagesMarkerAbsent() throws IOException {
+    final ExperimentEnrollmentManager experimentEnrollmentManager = mock(ExperimentEnrollmentManager.class);
+    when(experimentEnrollmentManager.isEnrolled(DESTINATION_SERVICE_IDENTIFIER.uuid(),
+        MessagesCache.PERSISTED_MESSAGES_MARKER_EXPERIMENT_NAME)).thenReturn(true);
+
+    final MessagesCache markerMessagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        messageDeliveryScheduler, sharedExecutorService, mock(ScheduledExecutorService.class), Clock.systemUTC(),
+        experimentEnrollmentManager);
+
+    // Without a marker, the publisher should assume that there are no persisted messages and never read from DynamoDB
+    insertDynamoDbMessage(generateRandomMessage());
+    final MessageProtos.Envelope redisMessage = insertRedisMessage(generateRandomMessage());
+
+    final RedisDynamoDbMessagePublisher messagePublisher =
+        new RedisDynamoDbMessagePublisher(messagesDynamoDb, markerMessagesCache, redisMessageAvailabilityManager, DESTINATION_SERVICE_IDENTIFIER.uuid(), destinationDevice);
+
+    StepVerifier.create(JdkFlowAdapter.flowPublisherToFlux(messagePublisher))
+        .expectNext(new MessageStreamEntry.Envelope(redisMessage))
+        .expectNext(new MessageStreamEntry.QueueEmpty())
+        .verifyTimeout(Duration.ofMillis(500));
+  }
+
+  @Test
+  void publishMessagesPersistedMessagesMarkerPresent() throws IOException {
+    final ExperimentEnrollmentManager experimentEnrollmentManager = mock(ExperimentEnrollmentManager.class);
+    when(experimentEnrollmentManager.isEnrolled(DESTINATION_SERVICE_IDENTIFIER.uuid(),
+        MessagesCache.PERSISTED_MESSAGES_MARKER_EXPERIMENT_NAME)).thenReturn(true);
+
+    final MessagesCache markerMessagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        messageDeliveryScheduler, sharedExecutorService, mock(ScheduledExecutorService.class), Clock.systemUTC(),
+        experimentEnrollmentManager);
+
+    final MessageProtos.Envelope dynamoDbMessage = insertDynamoDbMessage(generateRandomMessage());
+    markerMessagesCache.setPersistedMessagesMarker(DESTINATION_SERVICE_IDENTIFIER.uuid(), destinationDevice.getId(),
+        Duration.ofDays(14));
+
+    {
+      final RedisDynamoDbMessagePublisher messagePublisher =
+          new RedisDynamoDbMessagePublisher(messagesDynamoDb, markerMessagesCache, redisMessageAvailabilityManager, DESTINATION_SERVICE_IDENTIFIER.uuid(), destinationDevice);
+
+      StepVerifier.create(JdkFlowAdapter.flowPublisherToFlux(messagePublisher))
+          .expectNext(new MessageStreamEntry.Envelope(dynamoDbMessage))
+          .expectNext(new MessageStreamEntry.QueueEmpty())
+          .verifyTimeout(Duration.ofMillis(500));
+    }
+
+    // The marker shouldn't be cleared until we've observed that DynamoDB is actually empty
+    assertTrue(markerMessagesCache.getPersistedMessagesMarker(DESTINATION_SERVICE_IDENTIFIER.uuid(),
+        destinationDevice.getId()).blockOptional().isPresent());
+
+    deleteDynamoDbMessage(dynamoDbMessage);
+
+    {
+      final RedisDynamoDbMessagePublisher messagePublisher =
+          new RedisDynamoDbMessagePublisher(messagesDynamoDb, markerMessagesCache, redisMessageAvailabilityManager, DESTINATION_SERVICE_IDENTIFIER.uuid(), destinationDevice);
+
+      StepVerifier.create(JdkFlowAdapter.flowPublisherToFlux(messagePublisher))
+          .expectNext(new MessageStreamEntry.QueueEmpty())
+          .verifyTimeout(Duration.ofMillis(500));
+    }
+
+    assertTrue(markerMessagesCache.getPersistedMessagesMarker(DESTINATION_SERVICE_IDENTIFIER.uuid(),
+        destinationDevice.getId()).blockOptional().isEmpty());
+  }
+
   @Test
   void publishMessagesTailNewRedisMessages() {
     final MessageProtos.Envelope dynamoDbMessage = insertDynamoDbMessage(generateRandomMessage());
@@ -7,7 +7,6 @@ package io.zonarosa.server.storage;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyByte;
-import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -23,8 +22,8 @@ import io.zonarosa.server.identity.AciServiceIdentifier;
 
 class RedisDynamoDbMessageStreamTest {
 
-  private MessagesDynamoDb messagesDynamoDb;
   private MessagesCache messagesCache;
+  private MessageAcknowledgementCoalescer acknowledgementCoalescer;
 
   private RedisDynamoDbMessageStream redisDynamoDbMessageStream;
 
@@ -35,20 +34,20 @@ class RedisDynamoDbMessageStreamTest {
 
   @BeforeEach
   void setUp() {
-    messagesDynamoDb = mock(MessagesDynamoDb.class);
     messagesCache = mock(MessagesCache.class);
+    acknowledgementCoalescer = mock(MessageAcknowledgementCoalescer.class);
 
     device = mock(Device.class);
     when(device.getId()).thenReturn(DEVICE_ID);
 
-    redisDynamoDbMessageStream = new RedisDynamoDbMessageStream(messagesDynamoDb,
-        messagesCache,
+    redisDynamoDbMessageStream = new RedisDynamoDbMessageStream(messagesCache,
         ACCOUNT_IDENTIFIER,
         device,
-        mock(RedisDynamoDbMessagePublisher.class));
+        mock(RedisDynamoDbMessagePublisher.class),
+        acknowledgementCoalescer);
 
-    when(messagesDynamoDb.deleteMessage(any(), any(), any(), anyLong()))
-        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+    when(acknowledgementCoalescer.delete(any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
 
     when(messagesCache.remove(any(), anyByte(), any(UUID.class)))
         .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
@@ -58,15 +57,11 @@ class RedisDynamoDbMessageStreamTest {
   void acknowledgeMessageDynamoDb() {
     final MessageProtos.Envelope message = generateMessage();
     final UUID messageGuid = UUID.fromString(message.getServerGuid());
-    final long serverTimestamp = message.getServerTimestamp();
-
-    when(messagesDynamoDb.deleteMessage(ACCOUNT_IDENTIFIER, device, messageGuid, serverTimestamp))
-        .thenReturn(CompletableFuture.completedFuture(Optional.of(message)));
 
     redisDynamoDbMessageStream.acknowledgeMessage(message).join();
 
     verify(messagesCache).remove(ACCOUNT_IDENTIFIER, DEVICE_ID, messageGuid);
-    verify(messagesDynamoDb).deleteMessage(ACCOUNT_IDENTIFIER, device, messageGuid, serverTimestamp);
+    verify(acknowledgementCoalescer).delete(message);
   }
 
   @Test
@@ -80,7 +75,7 @@ class RedisDynamoDbMessageStreamTest {
     redisDynamoDbMessageStream.acknowledgeMessage(message).join();
 
     verify(messagesCache).remove(ACCOUNT_IDENTIFIER, DEVICE_ID, messageGuid);
-    verify(messagesDynamoDb, never()).deleteMessage(any(), any(), any(), anyLong());
+    verify(acknowledgementCoalescer, never()).delete(any());
   }
 
   private static MessageProtos.Envelope generateMessage() {
@@ -68,6 +68,22 @@ public class RedisClusterHelper {
       return null;
     }).when(cluster).useBinaryCluster(any(Consumer.class));
 
+    when(cluster.withCluster(any(FaultTolerantRedisClusterClient.Lane.class), any(Function.class))).thenAnswer(
+        invocation -> invocation.getArgument(1, Function.class).apply(stringConnection));
+
+    doAnswer(invocation -> {
+      invocation.getArgument(1, Consumer.class).accept(stringConnection);
+      return null;
+    }).when(cluster).useCluster(any(FaultTolerantRedisClusterClient.Lane.class), any(Consumer.class));
+
+    when(cluster.withBinaryCluster(any(FaultTolerantRedisClusterClient.Lane.class), any(Function.class))).thenAnswer(
+        invocation -> invocation.getArgument(1, Function.class).apply(binaryConnection));
+
+    doAnswer(invocation -> {
+      invocation.getArgument(1, Consumer.class).accept(binaryConnection);
+      return null;
+    }).when(cluster).useBinaryCluster(any(FaultTolerantRedisClusterClient.Lane.class), any(Consumer.class));
+
     final StatefulRedisClusterPubSubConnection<String, String> stringPubSubConnection =
         mock(StatefulRedisClusterPubSubConnection.class);
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ParsedE164Test {
+
+  @AfterEach
+  void tearDown() {
+    ParsedE164.clearCache();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"US", "GB", "BJ", "IT", "DE", "BR", "IN"})
+  void parse(final String region) {
+    final PhoneNumberUtil phoneNumberUtil = PhoneNumberUtil.getInstance();
+    final Phonenumber.PhoneNumber exampleNumber = phoneNumberUtil.getExampleNumber(region);
+    final String e164 = phoneNumberUtil.format(exampleNumber, PhoneNumberUtil.PhoneNumberFormat.E164);
+
+    final ParsedE164 expected = new ParsedE164(exampleNumber.getCountryCode(), region,
+        phoneNumberUtil.getNationalSignificantNumber(exampleNumber));
+
+    assertEquals(Optional.of(expected), ParsedE164.parse(e164));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "+", "not a number", "+1"})
+  void parseInvalid(final String number) {
+    assertTrue(ParsedE164.parse(number).isEmpty());
+  }
+
+  @Test
+  void parseNull() {
+    assertTrue(ParsedE164.parse(null).isEmpty());
+    assertEquals("0", Util.getCountryCode(null));
+    assertEquals("ZZ", Util.getRegion(null));
+  }
+
+  @Test
+  void parseCached() {
+    final String e164 = "+18005550100";
+
+    assertSame(ParsedE164.parse(e164).orElseThrow(), ParsedE164.parse(e164).orElseThrow());
+  }
+}
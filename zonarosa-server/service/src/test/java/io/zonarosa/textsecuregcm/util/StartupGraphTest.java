@@ -0,0 +1,59 @@
+/*
+ * Copyright 2025 ZonaRosa Platform
+ * SPDX-License-Identifier: MIT-3.0-only
+ */
+
+package io.zonarosa.server.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+class StartupGraphTest {
+
+  @Test
+  void await() throws Exception {
+    final StartupGraph startupGraph = new StartupGraph();
+
+    final CompletableFuture<String> first = startupGraph.start("first", () -> "first");
+    final CompletableFuture<String> second = startupGraph.start("second", () -> StartupGraph.await(first) + "-second");
+
+    assertEquals("first-second", StartupGraph.await(second));
+    startupGraph.awaitAll();
+  }
+
+  @Test
+  void awaitFailure() {
+    final StartupGraph startupGraph = new StartupGraph();
+    final IOException exception = new IOException("test");
+
+    final CompletableFuture<Object> future = startupGraph.start("failure", () -> {
+      throw exception;
+    });
+
+    assertEquals(exception, assertThrows(IOException.class, () -> StartupGraph.await(future)));
+    assertEquals(exception, assertThrows(IOException.class, startupGraph::awaitAll));
+  }
+
+  @Test
+  void stepsRunConcurrently() throws Exception {
+    final StartupGraph startupGraph = new StartupGraph();
+    final CountDownLatch latch = new CountDownLatch(2);
+
+    // Neither step can finish unless both are running at the same time
+    for (final String component : new String[] { "first", "second" }) {
+      startupGraph.start(component, () -> {
+        latch.countDown();
+        latch.await();
+
+        return null;
+      });
+    }
+
+    startupGraph.awaitAll();
+  }
+}